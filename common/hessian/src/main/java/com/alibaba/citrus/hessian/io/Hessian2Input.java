@@ -132,6 +132,22 @@ public class Hessian2Input
         _is = is;
     }
 
+    /**
+     * Initialize the Hessian stream with a new underlying input stream,
+     * so that the instance could be reused.
+     */
+    public void init(InputStream is) {
+        reset();
+
+        _is = is;
+        _offset = 0;
+        _length = 0;
+        _isLastChunk = false;
+        _chunkLength = 0;
+        _method = null;
+        _replyFault = null;
+    }
+
     /** Sets the serializer factory. */
     public void setSerializerFactory(SerializerFactory factory) {
         _serializerFactory = factory;
@@ -17,9 +17,12 @@
 
 package com.alibaba.citrus.util;
 
+import static com.alibaba.citrus.util.CollectionUtil.*;
+
 import java.io.IOException;
 import java.io.UnsupportedEncodingException;
 import java.util.BitSet;
+import java.util.Map;
 
 import com.alibaba.citrus.util.i18n.LocaleUtil;
 import com.alibaba.citrus.util.internal.Entities;
@@ -30,6 +33,10 @@ import com.alibaba.citrus.util.internal.Entities;
  * @author Michael Zhou
  */
 public class StringEscapeUtil {
+    /** 将一个数字转换成16进制的转换表。 */
+    private static final char[] HEXADECIMAL = { '0', '1', '2', '3', '4', '5', '6', '7', '8', '9', 'A', 'B', 'C', 'D',
+                                                'E', 'F' };
+
     // ==========================================================================
     // Java和JavaScript。
     // ==========================================================================
@@ -206,8 +213,35 @@ public class StringEscapeUtil {
         escapeJavaStyleString(str, true, out, strict);
     }
 
+    /** Java字符串中需要转义的ASCII字符及其转义形式。 */
+    private static final String[] JAVA_ESCAPES = new String[128];
+
+    /** JavaScript字符串中需要转义的ASCII字符及其转义形式，比Java多了单引号和slash。 */
+    private static final String[] JAVA_SCRIPT_ESCAPES;
+
+    static {
+        for (int ch = 0; ch < 32; ch++) {
+            JAVA_ESCAPES[ch] = "\\u00" + HEXADECIMAL[ch >> 4] + HEXADECIMAL[ch & 0xF];
+        }
+
+        JAVA_ESCAPES['\b'] = "\\b";
+        JAVA_ESCAPES['\n'] = "\\n";
+        JAVA_ESCAPES['\t'] = "\\t";
+        JAVA_ESCAPES['\f'] = "\\f";
+        JAVA_ESCAPES['\r'] = "\\r";
+        JAVA_ESCAPES['"'] = "\\\"";
+        JAVA_ESCAPES['\\'] = "\\\\";
+
+        JAVA_SCRIPT_ESCAPES = JAVA_ESCAPES.clone();
+        JAVA_SCRIPT_ESCAPES['\''] = "\\'";
+        JAVA_SCRIPT_ESCAPES['/'] = "\\/"; // 注意：对于javascript，对/进行escape是重要的安全措施。
+    }
+
     /**
      * 按Java或JavaScript的规则对字符串进行转义。
+     * <p>
+     * 先找到第一个需要转义的字符，假如没有，则直接返回原字符串，不创建任何对象。
+     * </p>
      *
      * @param str        要转义的字符串
      * @param javascript 是否对单引号和slash进行转义
@@ -219,14 +253,19 @@ public class StringEscapeUtil {
             return null;
         }
 
+        String[] escapes = javascript ? JAVA_SCRIPT_ESCAPES : JAVA_ESCAPES;
+        int index = indexOfJavaStyleEscape(str, escapes, strict);
+
+        if (index < 0) {
+            return str;
+        }
+
         try {
-            StringBuilder out = new StringBuilder(str.length() * 2);
+            StringBuilder out = new StringBuilder(str.length() + 16);
 
-            if (escapeJavaStyleString(str, javascript, out, strict)) {
-                return out.toString();
-            }
+            escapeJavaStyleString(str, index, escapes, out, strict);
 
-            return str;
+            return out.toString();
         } catch (IOException e) {
             return str; // StringBuilder不可能发生这个异常
         }
@@ -243,110 +282,71 @@ public class StringEscapeUtil {
      */
     private static boolean escapeJavaStyleString(String str, boolean javascript, Appendable out, boolean strict)
             throws IOException {
-        boolean needToChange = false;
-
         if (out == null) {
             throw new IllegalArgumentException("The Appendable must not be null");
         }
 
         if (str == null) {
-            return needToChange;
+            return false;
+        }
+
+        String[] escapes = javascript ? JAVA_SCRIPT_ESCAPES : JAVA_ESCAPES;
+        int index = indexOfJavaStyleEscape(str, escapes, strict);
+
+        if (index < 0) {
+            out.append(str);
+            return false;
         }
 
+        escapeJavaStyleString(str, index, escapes, out, strict);
+
+        return true;
+    }
+
+    /** 取得第一个需要转义的字符的位置，如果不需要转义，则返回<code>-1</code>。 */
+    private static int indexOfJavaStyleEscape(String str, String[] escapes, boolean strict) {
         int length = str.length();
 
         for (int i = 0; i < length; i++) {
             char ch = str.charAt(i);
 
-            if (ch < 32) {
-                switch (ch) {
-                    case '\b':
-                        out.append('\\');
-                        out.append('b');
-                        break;
-
-                    case '\n':
-                        out.append('\\');
-                        out.append('n');
-                        break;
-
-                    case '\t':
-                        out.append('\\');
-                        out.append('t');
-                        break;
+            if (ch < 128 ? escapes[ch] != null : strict && ch > 0xff) {
+                return i;
+            }
+        }
 
-                    case '\f':
-                        out.append('\\');
-                        out.append('f');
-                        break;
+        return -1;
+    }
 
-                    case '\r':
-                        out.append('\\');
-                        out.append('r');
-                        break;
+    /** 从<code>fromIndex</code>开始转义，不需要转义的连续字符被整段输出。 */
+    private static void escapeJavaStyleString(String str, int fromIndex, String[] escapes, Appendable out,
+                                              boolean strict) throws IOException {
+        int length = str.length();
+        int start = 0;
 
-                    default:
+        for (int i = fromIndex; i < length; i++) {
+            char ch = str.charAt(i);
 
-                        if (ch > 0xf) {
-                            out.append("\\u00" + Integer.toHexString(ch).toUpperCase());
-                        } else {
-                            out.append("\\u000" + Integer.toHexString(ch).toUpperCase());
-                        }
+            if (ch < 128) {
+                String escaped = escapes[ch];
 
-                        break;
+                if (escaped == null) {
+                    continue;
                 }
 
-                // 设置改变标志
-                needToChange = true;
+                out.append(str, start, i).append(escaped);
             } else if (strict && ch > 0xff) {
-                if (ch > 0xfff) {
-                    out.append("\\u").append(Integer.toHexString(ch).toUpperCase());
-                } else {
-                    out.append("\\u0").append(Integer.toHexString(ch).toUpperCase());
-                }
-
-                // 设置改变标志
-                needToChange = true;
+                out.append(str, start, i).append('\\').append('u');
+                out.append(HEXADECIMAL[ch >> 12]).append(HEXADECIMAL[ch >> 8 & 0xF]);
+                out.append(HEXADECIMAL[ch >> 4 & 0xF]).append(HEXADECIMAL[ch & 0xF]);
             } else {
-                switch (ch) {
-                    case '\'':
-                    case '/': // 注意：对于javascript，对/进行escape是重要的安全措施。
-
-                        if (javascript) {
-                            out.append('\\');
-
-                            // 设置改变标志
-                            needToChange = true;
-                        }
-
-                        out.append(ch);
-
-                        break;
-
-                    case '"':
-                        out.append('\\');
-                        out.append('"');
-
-                        // 设置改变标志
-                        needToChange = true;
-                        break;
-
-                    case '\\':
-                        out.append('\\');
-                        out.append('\\');
-
-                        // 设置改变标志
-                        needToChange = true;
-                        break;
-
-                    default:
-                        out.append(ch);
-                        break;
-                }
+                continue;
             }
+
+            start = i + 1;
         }
 
-        return needToChange;
+        out.append(str, start, length);
     }
 
     /**
@@ -709,14 +709,24 @@ public class StringEscapeUtil {
             return null;
         }
 
-        try {
-            StringBuilder out = new StringBuilder(str.length());
+        if (entities == null) {
+            throw new IllegalArgumentException("The Entities must not be null");
+        }
 
-            if (escapeEntitiesInternal(entities, str, out)) {
-                return out.toString();
-            }
+        String[] escapes = entities.getEscapeTable();
+        int index = indexOfEntityEscape(str, escapes);
 
+        // 不需要转义，直接返回原字符串，不创建任何对象
+        if (index < 0) {
             return str;
+        }
+
+        try {
+            StringBuilder out = new StringBuilder(str.length() + 16);
+
+            escapeEntitiesInternal(str, index, escapes, out);
+
+            return out.toString();
         } catch (IOException e) {
             return str; // StringBuilder不可能发生这个异常
         }
@@ -872,23 +882,55 @@ public class StringEscapeUtil {
             return needToChange;
         }
 
-        for (int i = 0; i < str.length(); ++i) {
+        String[] escapes = entities.getEscapeTable();
+        int index = indexOfEntityEscape(str, escapes);
+
+        if (index < 0) {
+            out.append(str);
+        } else {
+            escapeEntitiesInternal(str, index, escapes, out);
+
+            // 设置改变标志
+            needToChange = true;
+        }
+
+        return needToChange;
+    }
+
+    /** 取得第一个需要转义的字符的位置，如果不需要转义，则返回<code>-1</code>。 */
+    private static int indexOfEntityEscape(String str, String[] escapes) {
+        int length = str.length();
+        int tableSize = escapes.length;
+
+        for (int i = 0; i < length; i++) {
             char ch = str.charAt(i);
-            String entityName = entities.getEntityName(ch);
 
-            if (entityName == null) {
-                out.append(ch);
-            } else {
-                out.append('&');
-                out.append(entityName);
-                out.append(';');
+            if (ch < tableSize && escapes[ch] != null) {
+                return i;
+            }
+        }
 
-                // 设置改变标志
-                needToChange = true;
+        return -1;
+    }
+
+    /** 从<code>fromIndex</code>开始转义，不需要转义的连续字符被整段输出。 */
+    private static void escapeEntitiesInternal(String str, int fromIndex, String[] escapes, Appendable out)
+            throws IOException {
+        int length = str.length();
+        int tableSize = escapes.length;
+        int start = 0;
+
+        for (int i = fromIndex; i < length; i++) {
+            char ch = str.charAt(i);
+            String escaped;
+
+            if (ch < tableSize && (escaped = escapes[ch]) != null) {
+                out.append(str, start, i).append(escaped);
+                start = i + 1;
             }
         }
 
-        return needToChange;
+        out.append(str, start, length);
     }
 
     /**
@@ -1124,9 +1166,38 @@ public class StringEscapeUtil {
         UNRESERVED.or(MARK);
     }
 
-    /** 将一个数字转换成16进制的转换表。 */
-    private static char[] HEXADECIMAL = { '0', '1', '2', '3', '4', '5', '6', '7', '8', '9', 'A', 'B', 'C', 'D', 'E',
-                                          'F' };
+    /** 以严格方式编码时，不需要转换的字符。 */
+    private static final boolean[] STRICT_SAFE_CHARACTERS = new boolean[256];
+
+    /** 以非严格方式编码时，不需要转换的字符。 */
+    private static final boolean[] LOOSE_SAFE_CHARACTERS = new boolean[256];
+
+    static {
+        for (int ch = 0; ch < 256; ch++) {
+            STRICT_SAFE_CHARACTERS[ch] = UNRESERVED.get(ch);
+            LOOSE_SAFE_CHARACTERS[ch] = ch > ' ' && !RESERVED.get(ch) && !Character.isWhitespace((char) ch);
+        }
+    }
+
+    /** ASCII字符的URL编码，仅适用于和ASCII兼容的字符编码。 */
+    private static final String[] URL_ESCAPES = new String[128];
+
+    /** 包含所有ASCII字符的字符串，用来检查字符编码是否和ASCII兼容。 */
+    private static final String ASCII_CHARACTERS;
+
+    static {
+        char[] chars = new char[128];
+
+        for (int ch = 0; ch < 128; ch++) {
+            URL_ESCAPES[ch] = "%" + HEXADECIMAL[ch >> 4] + HEXADECIMAL[ch & 0xF];
+            chars[ch] = (char) ch;
+        }
+
+        ASCII_CHARACTERS = new String(chars);
+    }
+
+    /** 记录字符编码是否和ASCII兼容。 */
+    private static final Map<String, Boolean> asciiCompatibleEncodings = createConcurrentHashMap();
 
     /**
      * 将指定字符串编码成<code>application/x-www-form-urlencoded</code>格式。
@@ -1319,14 +1390,19 @@ public class StringEscapeUtil {
             return null;
         }
 
+        int index = indexOfURLEscape(str, strict);
+
+        // 不需要编码，直接返回原字符串，不创建任何对象
+        if (index < 0) {
+            return str;
+        }
+
         try {
-            StringBuilder out = new StringBuilder(64);
+            StringBuilder out = new StringBuilder(str.length() + 16);
 
-            if (escapeURLInternal(str, encoding, out, strict)) {
-                return out.toString();
-            }
+            escapeURLInternal(str, index, encoding, out, strict);
 
-            return str;
+            return out.toString();
         } catch (UnsupportedEncodingException e) {
             throw e;
         } catch (IOException e) {
@@ -1348,56 +1424,116 @@ public class StringEscapeUtil {
      */
     private static boolean escapeURLInternal(String str, String encoding, Appendable out, boolean strict)
             throws IOException {
-        if (encoding == null) {
-            encoding = LocaleUtil.getContext().getCharset().name();
-        }
-
-        boolean needToChange = false;
-
         if (out == null) {
             throw new IllegalArgumentException("The Appendable must not be null");
         }
 
         if (str == null) {
-            return needToChange;
+            return false;
         }
 
-        char[] charArray = str.toCharArray();
-        int length = charArray.length;
+        int index = indexOfURLEscape(str, strict);
+
+        if (index < 0) {
+            out.append(str);
+            return false;
+        }
+
+        escapeURLInternal(str, index, encoding, out, strict);
+
+        return true;
+    }
+
+    /** 取得第一个需要编码的字符的位置，如果不需要编码，则返回<code>-1</code>。 */
+    private static int indexOfURLEscape(String str, boolean strict) {
+        int length = str.length();
 
         for (int i = 0; i < length; i++) {
-            int ch = charArray[i];
+            if (!isSafeCharacter(str.charAt(i), strict)) {
+                return i;
+            }
+        }
+
+        return -1;
+    }
+
+    /** 从<code>fromIndex</code>开始编码，“安全”的连续字符被整段输出，需要编码的连续字符被一起编码。 */
+    private static void escapeURLInternal(String str, int fromIndex, String encoding, Appendable out, boolean strict)
+            throws IOException {
+        int length = str.length();
+        int start = 0;
+
+        for (int i = fromIndex; i < length; i++) {
+            char ch = str.charAt(i);
 
             if (isSafeCharacter(ch, strict)) {
-                // “安全”的字符，直接输出
-                out.append((char) ch);
-            } else if (ch == ' ') {
+                continue;
+            }
+
+            out.append(str, start, i);
+
+            if (ch == ' ') {
                 // 特殊情况：空格（0x20）转换成'+'
                 out.append('+');
+                start = i + 1;
+                continue;
+            }
 
-                // 设置改变标志
-                needToChange = true;
-            } else {
-                // 对ch进行URL编码。
-                // 首先按指定encoding取得该字符的字节码。
-                byte[] bytes = String.valueOf((char) ch).getBytes(encoding);
+            if (encoding == null) {
+                encoding = LocaleUtil.getContext().getCharset().name();
+            }
+
+            // 假如encoding和ASCII兼容，则ASCII字符直接查表。
+            if (ch < 128 && isAsciiCompatible(encoding)) {
+                out.append(URL_ESCAPES[ch]);
+                start = i + 1;
+                continue;
+            }
 
-                for (byte toEscape : bytes) {
-                    out.append('%');
+            // 对连续的非ASCII字符进行URL编码。
+            // 首先按指定encoding取得这些字符的字节码。
+            int end = i + 1;
 
-                    int low = toEscape & 0x0F;
-                    int high = (toEscape & 0xF0) >> 4;
+            for (; end < length; end++) {
+                char next = str.charAt(end);
 
-                    out.append(HEXADECIMAL[high]);
-                    out.append(HEXADECIMAL[low]);
+                if (next < 128 || isSafeCharacter(next, strict)) {
+                    break;
                 }
+            }
 
-                // 设置改变标志
-                needToChange = true;
+            byte[] bytes = str.substring(i, end).getBytes(encoding);
+
+            for (byte toEscape : bytes) {
+                out.append('%');
+                out.append(HEXADECIMAL[(toEscape & 0xF0) >> 4]);
+                out.append(HEXADECIMAL[toEscape & 0x0F]);
             }
+
+            i = end - 1;
+            start = end;
         }
 
-        return needToChange;
+        out.append(str, start, length);
+    }
+
+    /** 判断指定字符编码是否和ASCII兼容，即ASCII字符被编码成相同值的单个字节。 */
+    private static boolean isAsciiCompatible(String encoding) throws UnsupportedEncodingException {
+        Boolean compatible = asciiCompatibleEncodings.get(encoding);
+
+        if (compatible == null) {
+            byte[] bytes = ASCII_CHARACTERS.getBytes(encoding);
+
+            compatible = bytes.length == 128;
+
+            for (int i = 0; compatible && i < 128; i++) {
+                compatible = bytes[i] == i;
+            }
+
+            asciiCompatibleEncodings.put(encoding, compatible);
+        }
+
+        return compatible;
     }
 
     /**
@@ -1408,10 +1544,10 @@ public class StringEscapeUtil {
      * @return 如果是“安全”的，则返回<code>true</code>
      */
     private static boolean isSafeCharacter(int ch, boolean strict) {
-        if (strict) {
-            return UNRESERVED.get(ch);
+        if (ch < 256) {
+            return strict ? STRICT_SAFE_CHARACTERS[ch] : LOOSE_SAFE_CHARACTERS[ch];
         } else {
-            return ch > ' ' && !RESERVED.get(ch) && !Character.isWhitespace((char) ch);
+            return !strict && !Character.isWhitespace((char) ch);
         }
     }
 
@@ -0,0 +1,362 @@
+/*
+ * Copyright (c) 2002-2012 Alibaba Group Holding Limited.
+ * All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.alibaba.citrus.util.collection;
+
+import static com.alibaba.citrus.util.Assert.*;
+
+import java.lang.management.ManagementFactory;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+
+import com.alibaba.citrus.util.ToStringBuilder;
+import com.alibaba.citrus.util.ToStringBuilder.MapBuilder;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * 一个有容量限制的cache，采用segmented LRU算法淘汰旧的项。
+ * <p>
+ * 新加入的项被放在“试用区”中，再次被访问时，才被提升到“保护区”。保护区最多占总容量的80%，超出时，
+ * 保护区中最久未被访问的项被降回试用区。当cache超出限制时，先淘汰试用区中最久未被访问的项。
+ * 这样，只被访问一次的项（例如爬虫所产生的随机名称）不会挤掉经常被访问的项。
+ * </p>
+ * <p>
+ * 命中、未命中和淘汰的次数可以通过JMX查看。
+ * </p>
+ * <p>
+ * 所有的方法都是线程安全的。容量较大的cache按key的hash值被分成若干段，每段独立加锁，
+ * 因此并发的读取不会在同一个锁上排队。容量被平均分配到各段中，淘汰也在各段中独立进行。
+ * </p>
+ *
+ * @author Michael Zhou
+ */
+public class BoundedCache<K, V> implements BoundedCacheMBean {
+    private final static Logger log              = LoggerFactory.getLogger(BoundedCache.class);
+    private final static String OBJECT_NAME_TYPE = "com.alibaba.citrus:type=BoundedCache";
+    private final static int    MAX_SEGMENTS     = 16;
+    private final static int    MIN_SEGMENT_SIZE = 64;
+
+    private final int             maxSize;
+    private final Segment<K, V>[] segments;
+    private       ObjectName      objectName;
+
+    /** 创建一个cache，限制项的数量。 */
+    @SuppressWarnings("unchecked")
+    public BoundedCache(int maxSize) {
+        assertTrue(maxSize > 0, "maxSize must be > 0: %d", maxSize);
+
+        this.maxSize = maxSize;
+
+        // 每段至少容纳MIN_SEGMENT_SIZE项，段数为2的幂
+        int segmentCount = 1;
+
+        while (segmentCount < MAX_SEGMENTS && maxSize / (segmentCount * 2) >= MIN_SEGMENT_SIZE) {
+            segmentCount *= 2;
+        }
+
+        this.segments = new Segment[segmentCount];
+
+        for (int i = 0; i < segmentCount; i++) {
+            segments[i] = new Segment<K, V>(maxSize / segmentCount + (i < maxSize % segmentCount ? 1 : 0));
+        }
+    }
+
+    private Segment<K, V> getSegment(Object key) {
+        if (segments.length == 1) {
+            return segments[0];
+        }
+
+        int hash = key.hashCode();
+
+        hash ^= hash >>> 16;
+        hash ^= hash >>> 8;
+
+        return segments[hash & segments.length - 1];
+    }
+
+    /** 取得指定key所对应的值，如果不存在，则返回<code>null</code>。 */
+    public V get(K key) {
+        return getSegment(key).get(key);
+    }
+
+    /** 保存一个值，返回原来的值。 */
+    public V put(K key, V value) {
+        assertNotNull(key, "key");
+        assertNotNull(value, "value");
+
+        return getSegment(key).put(key, value);
+    }
+
+    /** 删除一个值，返回原来的值。 */
+    public V remove(K key) {
+        return getSegment(key).remove(key);
+    }
+
+    public void clear() {
+        for (Segment<K, V> segment : segments) {
+            segment.clear();
+        }
+    }
+
+    public int getSize() {
+        int size = 0;
+
+        for (Segment<K, V> segment : segments) {
+            size += segment.getSize();
+        }
+
+        return size;
+    }
+
+    public int getMaxSize() {
+        return maxSize;
+    }
+
+    public long getHitCount() {
+        return getStats()[0];
+    }
+
+    public long getMissCount() {
+        return getStats()[1];
+    }
+
+    public long getEvictionCount() {
+        return getStats()[2];
+    }
+
+    public double getHitRate() {
+        long[] stats = getStats();
+        long total = stats[0] + stats[1];
+        return total == 0 ? 0 : (double) stats[0] / total;
+    }
+
+    public void resetStats() {
+        for (Segment<K, V> segment : segments) {
+            synchronized (segment) {
+                segment.hitCount = 0;
+                segment.missCount = 0;
+                segment.evictionCount = 0;
+            }
+        }
+    }
+
+    /** 取得各段统计之和：命中、未命中和淘汰的次数。 */
+    private long[] getStats() {
+        long[] stats = new long[3];
+
+        for (Segment<K, V> segment : segments) {
+            synchronized (segment) {
+                stats[0] += segment.hitCount;
+                stats[1] += segment.missCount;
+                stats[2] += segment.evictionCount;
+            }
+        }
+
+        return stats;
+    }
+
+    /** 将cache注册到platform MBean server中，不属于任何context。 */
+    public void registerMBean(String name) {
+        registerMBean(null, name);
+    }
+
+    /**
+     * 将cache注册到platform MBean server中。
+     * <p>
+     * 如果指定了<code>context</code>（例如cache所属的application context），则MBean名称中将包含该context的标识，
+     * 以便通过<code>getObjectNamePattern(context)</code>只查询属于该context的cache。
+     * </p>
+     * <p>
+     * 如果名称已被占用（例如多个应用使用了相同的名称），或未指定名称，则在名称后附加一个id。注册失败时，只记录警告信息。
+     * </p>
+     */
+    public synchronized void registerMBean(Object context, String name) {
+        if (objectName != null) {
+            return;
+        }
+
+        MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+
+        try {
+            ObjectName oname = new ObjectName(OBJECT_NAME_TYPE + getContextKey(context) + ",name="
+                                              + ObjectName.quote(name == null ? "anonymous" : name));
+
+            if (name == null || server.isRegistered(oname)) {
+                oname = new ObjectName(oname + ",id=" + Integer.toHexString(System.identityHashCode(this)));
+            }
+
+            server.registerMBean(this, oname);
+            objectName = oname;
+        } catch (Exception e) {
+            log.warn("Could not register MBean for cache " + name, e);
+        }
+    }
+
+    /** 从platform MBean server中注销。 */
+    public synchronized void unregisterMBean() {
+        if (objectName != null) {
+            try {
+                ManagementFactory.getPlatformMBeanServer().unregisterMBean(objectName);
+            } catch (Exception e) {
+                log.warn("Could not unregister MBean " + objectName, e);
+            }
+
+            objectName = null;
+        }
+    }
+
+    /** 取得注册的MBean名称，如果未注册，则返回<code>null</code>。 */
+    public synchronized ObjectName getObjectName() {
+        return objectName;
+    }
+
+    /**
+     * 取得用来查询MBean的名称模式。
+     * <p>
+     * 如果<code>context</code>为<code>null</code>，则匹配所有的cache，否则只匹配属于该context的cache。
+     * </p>
+     */
+    public static ObjectName getObjectNamePattern(Object context) {
+        try {
+            return new ObjectName(OBJECT_NAME_TYPE + getContextKey(context) + ",*");
+        } catch (Exception e) {
+            throw new IllegalArgumentException(e);
+        }
+    }
+
+    /** 以context对象的identity为标识，使不同应用中同名的context也不会混淆。 */
+    private static String getContextKey(Object context) {
+        return context == null ? "" : ",context=" + Integer.toHexString(System.identityHashCode(context));
+    }
+
+    @Override
+    public String toString() {
+        MapBuilder mb = new MapBuilder();
+        long[] stats = getStats();
+
+        mb.append("size", getSize() + "/" + maxSize);
+        mb.append("hits", stats[0]);
+        mb.append("misses", stats[1]);
+        mb.append("evictions", stats[2]);
+
+        return new ToStringBuilder().append("BoundedCache").append(mb).toString();
+    }
+
+    /** cache中的一段，所有的访问均在该对象的锁保护下进行。 */
+    private static class Segment<K, V> {
+        private final int                 maxSize;
+        private final int                 maxProtectedSize;
+        private final LinkedHashMap<K, V> probation;
+        private final LinkedHashMap<K, V> protectedSegment;
+        private       long                hitCount;
+        private       long                missCount;
+        private       long                evictionCount;
+
+        private Segment(int maxSize) {
+            this.maxSize = maxSize;
+            this.maxProtectedSize = maxSize * 4 / 5;
+            this.probation = new LinkedHashMap<K, V>(16, 0.75f, true);
+            this.protectedSegment = new LinkedHashMap<K, V>(16, 0.75f, true);
+        }
+
+        private synchronized V get(K key) {
+            V entry = protectedSegment.get(key);
+
+            if (entry == null) {
+                entry = probation.remove(key);
+
+                // 再次被访问的项，提升到保护区
+                if (entry != null) {
+                    protectedSegment.put(key, entry);
+
+                    if (protectedSegment.size() > maxProtectedSize) {
+                        demote();
+                    }
+                }
+            }
+
+            if (entry == null) {
+                missCount++;
+                return null;
+            }
+
+            hitCount++;
+            return entry;
+        }
+
+        private synchronized V put(K key, V value) {
+            V old = protectedSegment.get(key);
+
+            if (old != null) {
+                protectedSegment.put(key, value);
+            } else {
+                old = probation.put(key, value);
+            }
+
+            evict();
+
+            return old;
+        }
+
+        private synchronized V remove(K key) {
+            V old = protectedSegment.remove(key);
+
+            if (old == null) {
+                old = probation.remove(key);
+            }
+
+            return old;
+        }
+
+        private synchronized void clear() {
+            probation.clear();
+            protectedSegment.clear();
+        }
+
+        private synchronized int getSize() {
+            return probation.size() + protectedSegment.size();
+        }
+
+        /** 将保护区中最久未被访问的项降回试用区。 */
+        private void demote() {
+            Iterator<Map.Entry<K, V>> i = protectedSegment.entrySet().iterator();
+            Map.Entry<K, V> eldest = i.next();
+
+            i.remove();
+            probation.put(eldest.getKey(), eldest.getValue());
+        }
+
+        /** 淘汰项，直到满足限制。 */
+        private void evict() {
+            while (getSize() > maxSize) {
+                LinkedHashMap<K, V> segment = probation.isEmpty() ? protectedSegment : probation;
+                Iterator<K> i = segment.keySet().iterator();
+
+                if (!i.hasNext()) {
+                    break;
+                }
+
+                i.next();
+                i.remove();
+                evictionCount++;
+            }
+        }
+    }
+}
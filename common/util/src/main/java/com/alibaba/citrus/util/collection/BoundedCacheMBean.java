@@ -0,0 +1,48 @@
+/*
+ * Copyright (c) 2002-2012 Alibaba Group Holding Limited.
+ * All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.alibaba.citrus.util.collection;
+
+/**
+ * <code>BoundedCache</code>的JMX接口。
+ *
+ * @author Michael Zhou
+ */
+public interface BoundedCacheMBean {
+    /** 取得cache中项的数量。 */
+    int getSize();
+
+    /** 取得cache中项的最大数量。 */
+    int getMaxSize();
+
+    /** 取得命中的次数。 */
+    long getHitCount();
+
+    /** 取得未命中的次数。 */
+    long getMissCount();
+
+    /** 取得因超出限制而被清除的项的数量。 */
+    long getEvictionCount();
+
+    /** 取得命中率，介于<code>0</code>和<code>1</code>之间。 */
+    double getHitRate();
+
+    /** 清除cache中所有的项，但保留统计数据。 */
+    void clear();
+
+    /** 清除统计数据。 */
+    void resetStats();
+}
@@ -346,6 +346,7 @@ public class Entities {
     private Map<String, Integer> entityNameToValue = createHashMap();
     private IntHashMap<String>   entityValueToName = new IntHashMap<String>();
     private String[] lookupTable;
+    private volatile String[] escapeTable;
 
     public Entities() {
     }
@@ -382,6 +383,8 @@ public class Entities {
         if (value < LOOKUP_TABLE_SIZE && lookupTable != null) {
             lookupTable[value] = name;
         }
+
+        escapeTable = null;
     }
 
     /**
@@ -407,6 +410,41 @@ public class Entities {
         return entityValueToName.get(value);
     }
 
+    /**
+     * 取得转义查找表。
+     * <p>
+     * 以字符值为下标，值为完整的实体引用，例如<code>&amp;amp;</code>；不需要转义的字符对应<code>null</code>。
+     * 表的长度为最大的entity值加1，超出范围的字符均不需要转义。
+     * </p>
+     *
+     * @return 转义查找表，调用者不应修改它
+     */
+    public String[] getEscapeTable() {
+        String[] table = escapeTable;
+
+        if (table == null) {
+            int maxValue = -1;
+
+            for (Integer value : entityNameToValue.values()) {
+                maxValue = Math.max(maxValue, value);
+            }
+
+            table = new String[maxValue + 1];
+
+            for (int i = 0; i < table.length; i++) {
+                String name = entityValueToName.get(i);
+
+                if (name != null) {
+                    table[i] = "&" + name + ";";
+                }
+            }
+
+            escapeTable = table;
+        }
+
+        return table;
+    }
+
     /**
      * 取得指定entity名称对应的entity值。
      *
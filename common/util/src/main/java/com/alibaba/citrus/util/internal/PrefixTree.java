@@ -0,0 +1,87 @@
+/*
+ * Copyright (c) 2002-2012 Alibaba Group Holding Limited.
+ * All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.alibaba.citrus.util.internal;
+
+import static com.alibaba.citrus.util.Assert.*;
+import static com.alibaba.citrus.util.CollectionUtil.*;
+
+import java.util.Map;
+
+/**
+ * 以字符为节点的前缀树，每个前缀上可以挂若干个整数序号。
+ * <p>
+ * 用来快速找出所有是某个字符串前缀的项，例如：以字面前缀开头的正则表达式或pattern。
+ * </p>
+ * <p>
+ * 该类在创建和添加时不是线程安全的，添加完成以后，可以被多个线程同时读取。
+ * </p>
+ *
+ * @author Michael Zhou
+ */
+public class PrefixTree {
+    private final Map<Character, PrefixTree> children = createHashMap();
+    private       int[]                      indexes  = new int[0];
+
+    /** 将序号加到指定的前缀上。 */
+    public void add(String prefix, int index) {
+        assertNotNull(prefix, "prefix");
+
+        PrefixTree node = this;
+
+        for (int i = 0; i < prefix.length(); i++) {
+            PrefixTree child = node.children.get(prefix.charAt(i));
+
+            if (child == null) {
+                child = new PrefixTree();
+                node.children.put(prefix.charAt(i), child);
+            }
+
+            node = child;
+        }
+
+        int[] newIndexes = new int[node.indexes.length + 1];
+
+        System.arraycopy(node.indexes, 0, newIndexes, 0, node.indexes.length);
+        newIndexes[node.indexes.length] = index;
+        node.indexes = newIndexes;
+    }
+
+    /**
+     * 对于<code>str</code>的每一个被加入的前缀，将其序号在<code>marks</code>中置为<code>true</code>。
+     *
+     * @return 新置为<code>true</code>的序号的个数
+     */
+    public int mark(String str, boolean[] marks) {
+        PrefixTree node = this;
+        int count = 0;
+
+        for (int i = 0; i < str.length() && node != null; i++) {
+            node = node.children.get(str.charAt(i));
+
+            if (node != null) {
+                for (int index : node.indexes) {
+                    if (!marks[index]) {
+                        marks[index] = true;
+                        count++;
+                    }
+                }
+            }
+        }
+
+        return count;
+    }
+}
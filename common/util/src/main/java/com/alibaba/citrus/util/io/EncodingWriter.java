@@ -0,0 +1,260 @@
+/*
+ * Copyright (c) 2002-2012 Alibaba Group Holding Limited.
+ * All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.alibaba.citrus.util.io;
+
+import static com.alibaba.citrus.util.Assert.*;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.Writer;
+import java.nio.Buffer;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.charset.CharacterCodingException;
+import java.nio.charset.Charset;
+import java.nio.charset.CharsetEncoder;
+import java.nio.charset.CoderResult;
+import java.nio.charset.CodingErrorAction;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * 将字符编码后写入字节流的<code>Writer</code>，功能同<code>OutputStreamWriter</code>，但是非同步的。
+ * <p>
+ * 除了字符以外，还可以通过{@link #writeEncoded(byte[], int, int)}直接写入已经用相同字符集编码过的字节，
+ * 例如模板中预先编码好的静态文本，从而避免重复编码。
+ * </p>
+ *
+ * @author Michael Zhou
+ */
+public class EncodingWriter extends Writer {
+    private static final int                            DEFAULT_BUFFER_SIZE = 8192;
+    private static final ConcurrentMap<Charset, Boolean> statelessCharsets   = new ConcurrentHashMap<Charset, Boolean>();
+    private final OutputStream   out;
+    private final Charset        charset;
+    private final CharsetEncoder encoder;
+    private final CharBuffer     chars;
+    private final ByteBuffer     bytes;
+    private       boolean        closed;
+
+    public EncodingWriter(OutputStream out, String charsetName) {
+        this(out, Charset.forName(assertNotNull(charsetName, "charsetName")));
+    }
+
+    public EncodingWriter(OutputStream out, Charset charset) {
+        this.out = assertNotNull(out, "outputStream");
+        this.charset = assertNotNull(charset, "charset");
+        this.encoder = charset.newEncoder().onMalformedInput(CodingErrorAction.REPLACE)
+                              .onUnmappableCharacter(CodingErrorAction.REPLACE);
+        this.chars = CharBuffer.allocate(DEFAULT_BUFFER_SIZE / 2);
+        this.bytes = ByteBuffer.allocate(DEFAULT_BUFFER_SIZE);
+    }
+
+    /** 取得输出的字符集。 */
+    public Charset getCharset() {
+        return charset;
+    }
+
+    /**
+     * 预先编码一段文本。
+     * <p>
+     * 只有当每段文本单独编码的结果和连续编码的结果相同时，预先编码才有意义。诸如<code>UTF-8</code>、<code>GBK</code>
+     * 等无状态的字符集都满足这个条件；而<code>UTF-16</code>（带BOM）、<code>ISO-2022-JP</code>（带shift状态）等则不满足，
+     * 此时返回<code>null</code>。
+     * </p>
+     */
+    public static byte[] preEncode(String text, Charset charset) {
+        if (!isStateless(charset)) {
+            return null;
+        }
+
+        try {
+            ByteBuffer buffer = charset.newEncoder().onMalformedInput(CodingErrorAction.REPLACE)
+                                       .onUnmappableCharacter(CodingErrorAction.REPLACE).encode(CharBuffer.wrap(text));
+            byte[] result = new byte[buffer.remaining()];
+
+            buffer.get(result);
+
+            return result;
+        } catch (CharacterCodingException e) {
+            return null;
+        }
+    }
+
+    private static boolean isStateless(Charset charset) {
+        Boolean stateless = statelessCharsets.get(charset);
+
+        if (stateless == null) {
+            stateless = encodedLength(charset, "a") * 2 == encodedLength(charset, "aa")
+                        && encodedLength(charset, "中") * 2 == encodedLength(charset, "中中")
+                        && encodedLength(charset, "a") + encodedLength(charset, "中") == encodedLength(charset,
+                                                                                                          "a中");
+
+            statelessCharsets.putIfAbsent(charset, stateless);
+        }
+
+        return stateless;
+    }
+
+    private static int encodedLength(Charset charset, String s) {
+        try {
+            return charset.newEncoder().onMalformedInput(CodingErrorAction.REPLACE)
+                          .onUnmappableCharacter(CodingErrorAction.REPLACE).encode(CharBuffer.wrap(s)).remaining();
+        } catch (CharacterCodingException e) {
+            return -1;
+        }
+    }
+
+    @Override
+    public void write(int c) throws IOException {
+        ensureOpen();
+
+        if (!chars.hasRemaining()) {
+            encodeChars(false);
+        }
+
+        chars.put((char) c);
+    }
+
+    @Override
+    public void write(char[] cbuf, int off, int len) throws IOException {
+        ensureOpen();
+
+        if (off < 0 || len < 0 || off + len > cbuf.length) {
+            throw new IndexOutOfBoundsException();
+        }
+
+        while (len > 0) {
+            if (!chars.hasRemaining()) {
+                encodeChars(false);
+            }
+
+            int n = Math.min(len, chars.remaining());
+
+            chars.put(cbuf, off, n);
+            off += n;
+            len -= n;
+        }
+    }
+
+    @Override
+    public void write(String str, int off, int len) throws IOException {
+        ensureOpen();
+
+        if (off < 0 || len < 0 || off + len > str.length()) {
+            throw new IndexOutOfBoundsException();
+        }
+
+        while (len > 0) {
+            if (!chars.hasRemaining()) {
+                encodeChars(false);
+            }
+
+            int n = Math.min(len, chars.remaining());
+
+            chars.put(str, off, off + n);
+            off += n;
+            len -= n;
+        }
+    }
+
+    /**
+     * 直接写入已经用{@link #getCharset()}编码过的字节。
+     * <p>
+     * 假如此前写入的字符不完整（例如只写入了surrogate pair的前半部分），则不能直接写入字节，此时返回<code>false</code>，
+     * 调用者应该改为写入原始的字符。
+     * </p>
+     */
+    public boolean writeEncoded(byte[] b, int off, int len) throws IOException {
+        ensureOpen();
+
+        if (off < 0 || len < 0 || off + len > b.length) {
+            throw new IndexOutOfBoundsException();
+        }
+
+        encodeChars(false);
+
+        if (chars.position() > 0) {
+            return false;
+        }
+
+        if (len >= bytes.remaining()) {
+            flushBytes();
+            out.write(b, off, len);
+        } else {
+            bytes.put(b, off, len);
+        }
+
+        return true;
+    }
+
+    @Override
+    public void flush() throws IOException {
+        ensureOpen();
+        encodeChars(false);
+        flushBytes();
+        out.flush();
+    }
+
+    @Override
+    public void close() throws IOException {
+        if (!closed) {
+            encodeChars(true);
+            flushBytes();
+            closed = true;
+            out.close();
+        }
+    }
+
+    private void encodeChars(boolean endOfInput) throws IOException {
+        // 以JDK9+编译时，避免调用CharBuffer.flip()的协变版本，否则在JDK6-8上运行时将出现NoSuchMethodError。
+        ((Buffer) chars).flip();
+
+        for (; ; ) {
+            CoderResult result = encoder.encode(chars, bytes, endOfInput);
+
+            if (result.isOverflow()) {
+                flushBytes();
+                continue;
+            }
+
+            if (endOfInput) {
+                while (encoder.flush(bytes).isOverflow()) {
+                    flushBytes();
+                }
+            }
+
+            break;
+        }
+
+        chars.compact();
+    }
+
+    private void flushBytes() throws IOException {
+        if (bytes.position() > 0) {
+            out.write(bytes.array(), 0, bytes.position());
+            ((Buffer) bytes).clear();
+        }
+    }
+
+    private void ensureOpen() throws IOException {
+        if (closed) {
+            throw new IOException("Writer closed");
+        }
+    }
+}
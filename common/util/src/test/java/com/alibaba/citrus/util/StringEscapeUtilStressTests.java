@@ -0,0 +1,373 @@
+/*
+ * Copyright (c) 2002-2012 Alibaba Group Holding Limited.
+ * All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.alibaba.citrus.util;
+
+import static com.alibaba.citrus.util.CollectionUtil.*;
+import static org.junit.Assert.*;
+
+import java.io.UnsupportedEncodingException;
+import java.util.List;
+import java.util.Random;
+
+import com.alibaba.citrus.util.internal.Entities;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.Parameterized;
+import org.junit.runners.Parameterized.Parameters;
+
+/**
+ * 比较查表实现的<code>StringEscapeUtil</code>和原先逐字符输出的实现，确保结果相同，并打印各自的耗时。
+ *
+ * @author Michael Zhou
+ */
+@RunWith(Parameterized.class)
+public class StringEscapeUtilStressTests {
+    private final String   name;
+    private final String[] data;
+
+    public StringEscapeUtilStressTests(String name, String[] data) {
+        this.name = name;
+        this.data = data;
+    }
+
+    @Parameters
+    public static List<Object[]> data() {
+        List<Object[]> list = createLinkedList();
+
+        add(list, "plain", new String[] { "hello", "screen_placeholder", "The quick brown fox jumps over the lazy dog",
+                                          "12345678901234567890" });
+
+        add(list, "markup", new String[] { "<a href=\"http://www.alibaba.com/?a=1&b=2\">Alibaba</a>",
+                                           "He didn't say, \"Stop!\"", "if (a < b && c > d) { return '/'; }",
+                                           "line1\r\nline2\ttabbed\\" });
+
+        add(list, "chinese", new String[] { "中华人民共和国", "<div class='name'>中国</div>", "你好，world！ 再见",
+                                            "© 2002-2012 Alibaba Group €" });
+
+        add(list, "random", randomStrings(new Random(20121017L), 20, 64));
+
+        return list;
+    }
+
+    private static void add(List<Object[]> list, String name, String[] data) {
+        list.add(new Object[] { name, data });
+    }
+
+    /** 生成随机字符串，包含ASCII、控制字符、Latin-1、希腊字母和中文，但不包括surrogate。 */
+    private static String[] randomStrings(Random random, int count, int maxLength) {
+        char[][] ranges = { { 0, 0x7f }, { 0x20, 0x7e }, { 0x20, 0x7e }, { 0xa0, 0xff }, { 0x391, 0x3c9 },
+                            { 0x4e00, 0x9fa5 }, { 0x2000, 0x20ac } };
+        String[] strings = new String[count];
+
+        for (int i = 0; i < count; i++) {
+            StringBuilder buf = new StringBuilder();
+            int length = random.nextInt(maxLength);
+
+            for (int j = 0; j < length; j++) {
+                char[] range = ranges[random.nextInt(ranges.length)];
+                buf.append((char) (range[0] + random.nextInt(range[1] - range[0] + 1)));
+            }
+
+            strings[i] = buf.toString();
+        }
+
+        return strings;
+    }
+
+    @Test
+    public void html() throws Exception {
+        test(new Escaper("escapeHtml") {
+            @Override
+            String escape(String str) {
+                return StringEscapeUtil.escapeHtml(str);
+            }
+
+            @Override
+            String escapeLegacy(String str) {
+                return LegacyEscapeUtil.escapeEntities(Entities.HTML40_MODIFIED, str);
+            }
+        }, 20000);
+    }
+
+    @Test
+    public void xml() throws Exception {
+        test(new Escaper("escapeXml") {
+            @Override
+            String escape(String str) {
+                return StringEscapeUtil.escapeXml(str);
+            }
+
+            @Override
+            String escapeLegacy(String str) {
+                return LegacyEscapeUtil.escapeEntities(Entities.XML, str);
+            }
+        }, 20000);
+    }
+
+    @Test
+    public void javaScript() throws Exception {
+        test(new Escaper("escapeJavaScript") {
+            @Override
+            String escape(String str) {
+                return StringEscapeUtil.escapeJavaScript(str);
+            }
+
+            @Override
+            String escapeLegacy(String str) {
+                return LegacyEscapeUtil.escapeJavaStyleString(str, true, false);
+            }
+        }, 20000);
+    }
+
+    @Test
+    public void javaStrict() throws Exception {
+        test(new Escaper("escapeJava(strict)") {
+            @Override
+            String escape(String str) {
+                return StringEscapeUtil.escapeJava(str, true);
+            }
+
+            @Override
+            String escapeLegacy(String str) {
+                return LegacyEscapeUtil.escapeJavaStyleString(str, false, true);
+            }
+        }, 20000);
+    }
+
+    @Test
+    public void url() throws Exception {
+        test(new Escaper("escapeURL") {
+            @Override
+            String escape(String str) throws Exception {
+                return StringEscapeUtil.escapeURL(str, "UTF-8");
+            }
+
+            @Override
+            String escapeLegacy(String str) throws Exception {
+                return LegacyEscapeUtil.escapeURL(str, "UTF-8", true);
+            }
+        }, 5000);
+    }
+
+    @Test
+    public void urlLoose() throws Exception {
+        test(new Escaper("escapeURL(loose)") {
+            @Override
+            String escape(String str) throws Exception {
+                return StringEscapeUtil.escapeURL(str, "UTF-8", false);
+            }
+
+            @Override
+            String escapeLegacy(String str) throws Exception {
+                return LegacyEscapeUtil.escapeURL(str, "UTF-8", false);
+            }
+        }, 5000);
+    }
+
+    private void test(Escaper escaper, int loop) throws Exception {
+        // 结果必须和原先的实现完全相同，不需要转义时，返回原字符串
+        for (String str : data) {
+            String result = escaper.escape(str);
+
+            assertEquals(str, escaper.escapeLegacy(str), result);
+
+            if (result.equals(str)) {
+                assertSame(str, result);
+            }
+        }
+
+        // 预热
+        escaper.run(data, loop / 10, false);
+        escaper.run(data, loop / 10, true);
+
+        long legacyDuration = escaper.run(data, loop, true);
+        long duration = escaper.run(data, loop, false);
+        int calls = loop * data.length;
+
+        System.out.printf("%s[%s] - legacy: %,d ms, table-driven: %,d ms for %,d calls%n", escaper, name,
+                          legacyDuration, duration, calls);
+    }
+
+    private abstract static class Escaper {
+        private final String desc;
+
+        Escaper(String desc) {
+            this.desc = desc;
+        }
+
+        abstract String escape(String str) throws Exception;
+
+        abstract String escapeLegacy(String str) throws Exception;
+
+        long run(String[] data, int loop, boolean legacy) throws Exception {
+            long start = System.currentTimeMillis();
+            int length = 0;
+
+            for (int i = 0; i < loop; i++) {
+                for (String str : data) {
+                    length += (legacy ? escapeLegacy(str) : escape(str)).length();
+                }
+            }
+
+            assertTrue(length >= 0);
+
+            return System.currentTimeMillis() - start;
+        }
+
+        @Override
+        public String toString() {
+            return desc;
+        }
+    }
+
+    /** 原先逐字符输出的实现，作为比较的基准。 */
+    private static class LegacyEscapeUtil {
+        private static final char[] HEXADECIMAL = "0123456789ABCDEF".toCharArray();
+
+        static String escapeEntities(Entities entities, String str) {
+            StringBuilder out = new StringBuilder(str.length());
+            boolean needToChange = false;
+
+            for (int i = 0; i < str.length(); ++i) {
+                char ch = str.charAt(i);
+                String entityName = entities.getEntityName(ch);
+
+                if (entityName == null) {
+                    out.append(ch);
+                } else {
+                    out.append('&').append(entityName).append(';');
+                    needToChange = true;
+                }
+            }
+
+            return needToChange ? out.toString() : str;
+        }
+
+        static String escapeJavaStyleString(String str, boolean javascript, boolean strict) {
+            StringBuilder out = new StringBuilder(str.length() * 2);
+            boolean needToChange = false;
+
+            for (int i = 0; i < str.length(); i++) {
+                char ch = str.charAt(i);
+
+                if (ch < 32) {
+                    switch (ch) {
+                        case '\b':
+                            out.append("\\b");
+                            break;
+
+                        case '\n':
+                            out.append("\\n");
+                            break;
+
+                        case '\t':
+                            out.append("\\t");
+                            break;
+
+                        case '\f':
+                            out.append("\\f");
+                            break;
+
+                        case '\r':
+                            out.append("\\r");
+                            break;
+
+                        default:
+                            if (ch > 0xf) {
+                                out.append("\\u00" + Integer.toHexString(ch).toUpperCase());
+                            } else {
+                                out.append("\\u000" + Integer.toHexString(ch).toUpperCase());
+                            }
+
+                            break;
+                    }
+
+                    needToChange = true;
+                } else if (strict && ch > 0xff) {
+                    if (ch > 0xfff) {
+                        out.append("\\u").append(Integer.toHexString(ch).toUpperCase());
+                    } else {
+                        out.append("\\u0").append(Integer.toHexString(ch).toUpperCase());
+                    }
+
+                    needToChange = true;
+                } else {
+                    switch (ch) {
+                        case '\'':
+                        case '/':
+                            if (javascript) {
+                                out.append('\\');
+                                needToChange = true;
+                            }
+
+                            out.append(ch);
+                            break;
+
+                        case '"':
+                            out.append("\\\"");
+                            needToChange = true;
+                            break;
+
+                        case '\\':
+                            out.append("\\\\");
+                            needToChange = true;
+                            break;
+
+                        default:
+                            out.append(ch);
+                            break;
+                    }
+                }
+            }
+
+            return needToChange ? out.toString() : str;
+        }
+
+        static String escapeURL(String str, String encoding, boolean strict) throws UnsupportedEncodingException {
+            StringBuilder out = new StringBuilder(64);
+            boolean needToChange = false;
+            char[] charArray = str.toCharArray();
+
+            for (char ch : charArray) {
+                boolean safe;
+
+                if (strict) {
+                    safe = ch >= 'a' && ch <= 'z' || ch >= 'A' && ch <= 'Z' || ch >= '0' && ch <= '9'
+                           || "-_.!~*'()".indexOf(ch) >= 0;
+                } else {
+                    safe = ch > ' ' && ";/?:@&=+$,".indexOf(ch) < 0 && !Character.isWhitespace(ch);
+                }
+
+                if (safe) {
+                    out.append(ch);
+                } else if (ch == ' ') {
+                    out.append('+');
+                    needToChange = true;
+                } else {
+                    for (byte toEscape : String.valueOf(ch).getBytes(encoding)) {
+                        out.append('%').append(HEXADECIMAL[(toEscape & 0xF0) >> 4]).append(HEXADECIMAL[toEscape & 0x0F]);
+                    }
+
+                    needToChange = true;
+                }
+            }
+
+            return needToChange ? out.toString() : str;
+        }
+    }
+}
@@ -559,6 +559,9 @@ public class StringEscapeUtilTests {
         writer = new StringWriter();
         StringEscapeUtil.escapeURL("中华人民共和国", "GBK", writer);
         assertEquals("%D6%D0%BB%AA%C8%CB%C3%F1%B9%B2%BA%CD%B9%FA", writer.toString());
+
+        // surrogate pair作为一个字符编码
+        assertEquals("a%F0%9F%98%80%3Cb", StringEscapeUtil.escapeURL("a\uD83D\uDE00<b", "UTF-8"));
     }
 
     @Test
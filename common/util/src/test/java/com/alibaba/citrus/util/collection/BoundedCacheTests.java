@@ -0,0 +1,234 @@
+/*
+ * Copyright (c) 2002-2012 Alibaba Group Holding Limited.
+ * All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.alibaba.citrus.util.collection;
+
+import static com.alibaba.citrus.util.CollectionUtil.*;
+import static org.junit.Assert.*;
+
+import java.lang.management.ManagementFactory;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * 测试<code>BoundedCache</code>类。
+ *
+ * @author Michael Zhou
+ */
+public class BoundedCacheTests {
+    private BoundedCache<String, String> cache;
+
+    @Before
+    public void init() {
+        cache = new BoundedCache<String, String>(5);
+    }
+
+    @Test
+    public void illegalArgs() {
+        try {
+            new BoundedCache<String, String>(0);
+            fail();
+        } catch (IllegalArgumentException e) {
+            assertTrue(e.getMessage().contains("maxSize must be > 0: 0"));
+        }
+    }
+
+    @Test
+    public void getAndPut() {
+        assertNull(cache.get("a"));
+        assertNull(cache.put("a", "1"));
+        assertEquals("1", cache.get("a"));
+        assertEquals("1", cache.put("a", "2"));
+        assertEquals("2", cache.get("a"));
+        assertEquals(1, cache.getSize());
+
+        assertEquals("2", cache.remove("a"));
+        assertNull(cache.remove("a"));
+        assertEquals(0, cache.getSize());
+
+        assertEquals(2, cache.getHitCount());
+        assertEquals(1, cache.getMissCount());
+        assertEquals(0.667, cache.getHitRate(), 0.001);
+
+        cache.resetStats();
+        assertEquals(0, cache.getHitCount());
+        assertEquals(0, cache.getMissCount());
+        assertEquals(0, cache.getHitRate(), 0.001);
+    }
+
+    @Test
+    public void eviction_scanResistant() {
+        // a、b被访问两次，进入保护区
+        for (String key : new String[] { "a", "b" }) {
+            cache.put(key, key);
+            cache.get(key);
+        }
+
+        // 只访问一次的项，不会挤掉a、b
+        for (int i = 0; i < 100; i++) {
+            cache.put("x" + i, "x");
+        }
+
+        assertEquals(5, cache.getSize());
+        assertEquals(97, cache.getEvictionCount());
+        assertEquals("a", cache.get("a"));
+        assertEquals("b", cache.get("b"));
+        assertEquals("x", cache.get("x99"));
+        assertNull(cache.get("x0"));
+    }
+
+    @Test
+    public void eviction_protectedOverflow() {
+        for (int i = 0; i < 10; i++) {
+            cache.put("k" + i, "v");
+            cache.get("k" + i);
+        }
+
+        assertEquals(5, cache.getSize());
+        assertEquals(5, cache.getEvictionCount());
+        assertEquals("v", cache.get("k9"));
+        assertNull(cache.get("k0"));
+    }
+
+    @Test
+    public void mbean() throws Exception {
+        MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+        BoundedCache<String, String> cache2 = new BoundedCache<String, String>(5);
+
+        cache.registerMBean("test");
+        cache2.registerMBean("test");
+
+        try {
+            ObjectName name = cache.getObjectName();
+
+            assertEquals(new ObjectName("com.alibaba.citrus:type=BoundedCache,name=\"test\""), name);
+            assertTrue(server.isRegistered(name));
+            assertTrue(server.isRegistered(cache2.getObjectName()));
+            assertFalse(name.equals(cache2.getObjectName()));
+
+            cache.put("a", "1");
+            cache.get("a");
+
+            assertEquals(1, server.getAttribute(name, "Size"));
+            assertEquals(1L, server.getAttribute(name, "HitCount"));
+        } finally {
+            cache.unregisterMBean();
+            cache2.unregisterMBean();
+        }
+
+        assertNull(cache.getObjectName());
+        assertEquals(0, server.queryNames(new ObjectName("com.alibaba.citrus:type=BoundedCache,*"), null).size());
+    }
+
+    @Test
+    public void segments() throws Exception {
+        final BoundedCache<String, String> cache = new BoundedCache<String, String>(1000);
+        Thread[] threads = new Thread[8];
+
+        for (int t = 0; t < threads.length; t++) {
+            final int id = t;
+
+            threads[t] = new Thread() {
+                @Override
+                public void run() {
+                    for (int i = 0; i < 2000; i++) {
+                        String key = id + "-" + i % 500;
+
+                        if (cache.get(key) == null) {
+                            cache.put(key, key);
+                        }
+                    }
+                }
+            };
+        }
+
+        for (Thread thread : threads) {
+            thread.start();
+        }
+
+        for (Thread thread : threads) {
+            thread.join();
+        }
+
+        // 每段独立淘汰，但总数不超过限制
+        assertTrue(cache.getSize() <= 1000);
+        assertTrue(cache.getSize() > 500);
+        assertEquals(16000, cache.getHitCount() + cache.getMissCount());
+        assertEquals(cache.getMissCount() - cache.getSize(), cache.getEvictionCount());
+
+        cache.put("a", "1");
+        assertEquals("1", cache.get("a"));
+
+        cache.clear();
+        assertEquals(0, cache.getSize());
+    }
+
+    @Test
+    public void mbean_noName() throws Exception {
+        BoundedCache<String, String> cache2 = new BoundedCache<String, String>(5);
+
+        cache.registerMBean(null);
+        cache2.registerMBean(null);
+
+        try {
+            assertEquals("\"anonymous\"", cache.getObjectName().getKeyProperty("name"));
+            assertNotNull(cache.getObjectName().getKeyProperty("id"));
+            assertFalse(cache.getObjectName().equals(cache2.getObjectName()));
+        } finally {
+            cache.unregisterMBean();
+            cache2.unregisterMBean();
+        }
+    }
+
+    @Test
+    public void mbean_context() throws Exception {
+        MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+        BoundedCache<String, String> cache2 = new BoundedCache<String, String>(5);
+        Object context1 = new Object();
+        Object context2 = new Object();
+
+        cache.registerMBean(context1, "test");
+        cache2.registerMBean(context2, "test");
+
+        try {
+            // 不同context中的同名cache互不冲突，且可以分别查询
+            assertNull(cache.getObjectName().getKeyProperty("id"));
+            assertNull(cache2.getObjectName().getKeyProperty("id"));
+
+            assertEquals(createHashSet(cache.getObjectName()),
+                         server.queryNames(BoundedCache.getObjectNamePattern(context1), null));
+            assertEquals(createHashSet(cache2.getObjectName()),
+                         server.queryNames(BoundedCache.getObjectNamePattern(context2), null));
+            assertEquals(2, server.queryNames(BoundedCache.getObjectNamePattern(null), null).size());
+        } finally {
+            cache.unregisterMBean();
+            cache2.unregisterMBean();
+        }
+    }
+
+    @Test
+    public void toString_() {
+        cache.put("a", "1");
+        cache.get("a");
+        cache.get("b");
+
+        assertTrue(cache.toString().contains("size      = 1/5"));
+        assertTrue(cache.toString().contains("hits      = 1"));
+    }
+}
@@ -81,4 +81,25 @@ public class EntitiesTests {
         assertEquals(3, map.getEntityValue("baz"));
         assertEquals("baz", map.getEntityName(3));
     }
+
+    @Test
+    public void escapeTable() {
+        String[] table = entities.getEscapeTable();
+
+        assertEquals(163, table.length);
+        assertEquals("&foo;", table[161]);
+        assertEquals("&bar;", table[162]);
+        assertNull(table['a']);
+
+        // 转义表将被重建
+        entities.addEntity("baz", 200);
+        table = entities.getEscapeTable();
+
+        assertEquals(201, table.length);
+        assertEquals("&baz;", table[200]);
+
+        assertEquals("&amp;", Entities.HTML40_MODIFIED.getEscapeTable()['&']);
+        assertEquals("&#39;", Entities.HTML40_MODIFIED.getEscapeTable()['\'']);
+        assertEquals("&euro;", Entities.HTML40_MODIFIED.getEscapeTable()[8364]);
+    }
 }
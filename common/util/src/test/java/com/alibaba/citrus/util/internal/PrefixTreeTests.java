@@ -0,0 +1,73 @@
+/*
+ * Copyright (c) 2002-2012 Alibaba Group Holding Limited.
+ * All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.alibaba.citrus.util.internal;
+
+import static org.junit.Assert.*;
+
+import org.junit.Test;
+
+public class PrefixTreeTests {
+    @Test
+    public void mark() {
+        PrefixTree tree = new PrefixTree();
+
+        tree.add("/a", 0);
+        tree.add("/a/b", 1);
+        tree.add("/a", 2);
+        tree.add("/c", 3);
+
+        assertMarks(tree, "/a/b/c", 3, true, true, true, false);
+        assertMarks(tree, "/a/x", 2, true, false, true, false);
+        assertMarks(tree, "/c", 1, false, false, false, true);
+        assertMarks(tree, "/", 0, false, false, false, false);
+        assertMarks(tree, "", 0, false, false, false, false);
+    }
+
+    @Test
+    public void mark_alreadyMarked() {
+        PrefixTree tree = new PrefixTree();
+
+        tree.add("/a", 0);
+        tree.add("/a/b", 1);
+
+        boolean[] marks = new boolean[] { true, false };
+
+        assertEquals(1, tree.mark("/a/b", marks));
+        assertTrue(marks[0]);
+        assertTrue(marks[1]);
+    }
+
+    @Test
+    public void emptyPrefix() {
+        PrefixTree tree = new PrefixTree();
+
+        tree.add("", 0);
+
+        // 空前缀不会被标记，调用者应自行处理
+        assertMarks(tree, "/a", 0, false);
+    }
+
+    private void assertMarks(PrefixTree tree, String str, int count, boolean... expected) {
+        boolean[] marks = new boolean[expected.length];
+
+        assertEquals(count, tree.mark(str, marks));
+
+        for (int i = 0; i < expected.length; i++) {
+            assertEquals(str + "[" + i + "]", expected[i], marks[i]);
+        }
+    }
+}
@@ -0,0 +1,134 @@
+/*
+ * Copyright (c) 2002-2012 Alibaba Group Holding Limited.
+ * All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.alibaba.citrus.util.io;
+
+import static com.alibaba.citrus.util.StringUtil.*;
+import static org.junit.Assert.*;
+
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.nio.charset.Charset;
+
+import org.junit.Test;
+
+/**
+ * 测试<code>EncodingWriter</code>类。
+ *
+ * @author Michael Zhou
+ */
+public class EncodingWriterTests {
+    private final String text = repeat("hello, 中华人民共和国𠀀！", 1000); // 包含surrogate pair
+
+    @Test
+    public void sameAsOutputStreamWriter() throws Exception {
+        for (String charset : new String[] { "UTF-8", "GBK", "ISO-8859-1", "UTF-16" }) {
+            java.io.ByteArrayOutputStream expected = new java.io.ByteArrayOutputStream();
+            OutputStreamWriter osw = new OutputStreamWriter(expected, charset);
+
+            java.io.ByteArrayOutputStream actual = new java.io.ByteArrayOutputStream();
+            EncodingWriter ew = new EncodingWriter(actual, charset);
+
+            // 以不同的方式、不同的长度写入，使surrogate pair跨越内部buffer的边界
+            for (int i = 0, step = 1; i < text.length(); i += step, step = step * 3 % 1021) {
+                String s = text.substring(i, Math.min(text.length(), i + step));
+
+                if (step % 3 == 0) {
+                    osw.write(s.toCharArray());
+                    ew.write(s.toCharArray());
+                } else if (s.length() == 1) {
+                    osw.write(s.charAt(0));
+                    ew.write(s.charAt(0));
+                } else {
+                    osw.write(s);
+                    ew.write(s);
+                }
+            }
+
+            osw.close();
+            ew.close();
+
+            assertArrayEquals(charset, expected.toByteArray(), actual.toByteArray());
+        }
+    }
+
+    @Test
+    public void writeEncoded() throws Exception {
+        Charset utf8 = Charset.forName("UTF-8");
+        byte[] encoded = EncodingWriter.preEncode("中华人民共和国", utf8);
+
+        java.io.ByteArrayOutputStream out = new java.io.ByteArrayOutputStream();
+        EncodingWriter ew = new EncodingWriter(out, utf8);
+
+        assertSame(utf8, ew.getCharset());
+
+        ew.write("<p>");
+        assertTrue(ew.writeEncoded(encoded, 0, encoded.length));
+        ew.write("</p>");
+
+        // 超过buffer的字节直接写入
+        byte[] big = EncodingWriter.preEncode(text, utf8);
+        assertTrue(ew.writeEncoded(big, 0, big.length));
+
+        ew.flush();
+
+        assertEquals("<p>中华人民共和国</p>" + text, new String(out.toByteArray(), "UTF-8"));
+    }
+
+    @Test
+    public void writeEncoded_pendingHighSurrogate() throws Exception {
+        Charset utf8 = Charset.forName("UTF-8");
+        byte[] encoded = EncodingWriter.preEncode("abc", utf8);
+
+        java.io.ByteArrayOutputStream out = new java.io.ByteArrayOutputStream();
+        EncodingWriter ew = new EncodingWriter(out, utf8);
+
+        ew.write('\uD840');
+        assertFalse(ew.writeEncoded(encoded, 0, encoded.length));
+
+        ew.write('\uDC00');
+        assertTrue(ew.writeEncoded(encoded, 0, encoded.length));
+        ew.flush();
+
+        assertEquals("𠀀abc", new String(out.toByteArray(), "UTF-8"));
+    }
+
+    @Test
+    public void preEncode() throws Exception {
+        assertArrayEquals("中国".getBytes("UTF-8"), EncodingWriter.preEncode("中国", Charset.forName("UTF-8")));
+        assertArrayEquals("中国".getBytes("GBK"), EncodingWriter.preEncode("中国", Charset.forName("GBK")));
+
+        // 有状态的字符集，不能预先编码
+        assertNull(EncodingWriter.preEncode("中国", Charset.forName("UTF-16")));
+        assertNull(EncodingWriter.preEncode("中国", Charset.forName("ISO-2022-JP")));
+    }
+
+    @Test
+    public void closed() throws Exception {
+        EncodingWriter ew = new EncodingWriter(new java.io.ByteArrayOutputStream(), "UTF-8");
+
+        ew.close();
+        ew.close();
+
+        try {
+            ew.write("abc");
+            fail();
+        } catch (IOException e) {
+            assertEquals("Writer closed", e.getMessage());
+        }
+    }
+}
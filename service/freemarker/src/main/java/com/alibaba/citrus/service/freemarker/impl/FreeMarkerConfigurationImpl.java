@@ -32,6 +32,8 @@ import com.alibaba.citrus.service.freemarker.FreeMarkerConfiguration;
 import com.alibaba.citrus.service.freemarker.FreeMarkerPlugin;
 import com.alibaba.citrus.service.freemarker.support.DefaultBeansWrapper;
 import com.alibaba.citrus.service.template.TemplateException;
+import com.alibaba.citrus.service.template.support.TemplateChangeListener;
+import com.alibaba.citrus.service.template.support.TemplateChangeWatcher;
 import com.alibaba.citrus.util.ToStringBuilder.MapBuilder;
 import freemarker.cache.StrongCacheStorage;
 import freemarker.cache.TemplateLoader;
@@ -45,6 +47,8 @@ import org.springframework.core.io.ResourceLoader;
  * @author Michael Zhou
  */
 public class FreeMarkerConfigurationImpl implements FreeMarkerConfiguration {
+    private final static int DEFAULT_WATCH_INTERVAL = 5;
+
     private final Logger log;
     private final Configuration       configuration  = new Configuration();
     private final Map<String, String> properties     = createHashMap();
@@ -54,6 +58,8 @@ public class FreeMarkerConfigurationImpl implements FreeMarkerConfiguration {
     private String             path;
     private String             charset;
     private FreeMarkerPlugin[] plugins;
+    private boolean            watchModifications;
+    private TemplateChangeWatcher watcher;
 
     /** 创建一个freemarker配置。 */
     public FreeMarkerConfigurationImpl(Logger log) {
@@ -102,6 +108,22 @@ public class FreeMarkerConfigurationImpl implements FreeMarkerConfiguration {
         this.charset = trimToNull(charset);
     }
 
+    /**
+     * 是否在后台线程中监视模板文件的改变，并主动清除freemarker中的模板cache。默认为<code>false</code>。
+     * <p>
+     * 打开此选项后，freemarker不再在请求中检查模板是否被修改，<code>template_update_delay</code>
+     * 成为后台线程检查的间隔。
+     * </p>
+     */
+    public void setWatchModifications(boolean watchModifications) {
+        this.watchModifications = watchModifications;
+    }
+
+    /** 取得监视模板改变的watcher，如果未打开监视功能，则返回<code>null</code>。 */
+    public TemplateChangeWatcher getTemplateChangeWatcher() {
+        return watcher;
+    }
+
     /** 设置高级配置。 */
     public void setAdvancedProperties(Map<String, String> configuration) {
         this.properties.clear();
@@ -147,7 +169,13 @@ public class FreeMarkerConfigurationImpl implements FreeMarkerConfiguration {
         }
 
         path = defaultIfNull(path, "/templates");
-        templateLoader = new SpringResourceLoaderAdapter(loader, path);
+
+        // 由后台线程监视模板的改变，freemarker本身不再检查
+        if (watchModifications) {
+            initWatcher();
+        }
+
+        templateLoader = new SpringResourceLoaderAdapter(loader, path, watcher);
 
         configuration.setTemplateLoader(templateLoader);
 
@@ -177,6 +205,33 @@ public class FreeMarkerConfigurationImpl implements FreeMarkerConfiguration {
         }
     }
 
+    private void initWatcher() {
+        int checkInterval = DEFAULT_WATCH_INTERVAL;
+        String delay = trimToNull(properties.get(TEMPLATE_UPDATE_DELAY_KEY));
+
+        if (delay != null) {
+            try {
+                checkInterval = Integer.parseInt(delay);
+            } catch (NumberFormatException e) {
+                throw new TemplateException("invalid key and value: " + TEMPLATE_UPDATE_DELAY_KEY + " = " + delay, e);
+            }
+        }
+
+        watcher = new TemplateChangeWatcher("freemarker:" + path, checkInterval);
+
+        watcher.addListener(new TemplateChangeListener() {
+            public void templateChanged(String templateName) {
+                configuration.clearTemplateCache();
+            }
+
+            public void templatesAddedOrRemoved() {
+                configuration.clearTemplateCache();
+            }
+        });
+
+        properties.put(TEMPLATE_UPDATE_DELAY_KEY, String.valueOf(Integer.MAX_VALUE));
+    }
+
     private void initPlugins() {
         if (plugins != null) {
             for (FreeMarkerPlugin plugin : plugins) {
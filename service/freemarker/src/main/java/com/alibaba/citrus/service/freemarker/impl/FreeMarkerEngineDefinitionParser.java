@@ -44,7 +44,7 @@ public class FreeMarkerEngineDefinitionParser extends AbstractSingleBeanDefiniti
 
     @Override
     protected void doParse(Element element, ParserContext parserContext, BeanDefinitionBuilder builder) {
-        attributesToProperties(element, "configuration.", builder, "path", "templateEncoding");
+        attributesToProperties(element, "configuration.", builder, "path", "templateEncoding", "watchModifications");
 
         ElementSelector plugins = and(sameNs(element), name("plugins"));
         ElementSelector advancedProperties = and(sameNs(element), name("advanced-properties"));
@@ -18,8 +18,10 @@
 package com.alibaba.citrus.service.freemarker.impl;
 
 import static com.alibaba.citrus.service.freemarker.FreeMarkerConfiguration.*;
+import static com.alibaba.citrus.service.template.support.TemplateResourceUtil.*;
 import static com.alibaba.citrus.util.StringUtil.*;
 
+import java.io.FileNotFoundException;
 import java.io.IOException;
 import java.io.OutputStream;
 import java.io.OutputStreamWriter;
@@ -32,6 +34,11 @@ import com.alibaba.citrus.service.configuration.ProductionModeAware;
 import com.alibaba.citrus.service.freemarker.FreeMarkerEngine;
 import com.alibaba.citrus.service.template.TemplateContext;
 import com.alibaba.citrus.service.template.TemplateException;
+import com.alibaba.citrus.service.template.TemplateNotFoundException;
+import com.alibaba.citrus.service.template.support.TemplateChangeListener;
+import com.alibaba.citrus.service.template.support.TemplateChangeSource;
+import com.alibaba.citrus.service.template.support.TemplateChangeWatcher;
+import com.alibaba.citrus.service.template.support.TemplatePrecompiler;
 import com.alibaba.citrus.util.i18n.LocaleUtil;
 import freemarker.core.Environment;
 import freemarker.core.ParseException;
@@ -46,7 +53,7 @@ import org.springframework.core.io.ResourceLoader;
  * @author Michael Zhou
  */
 public class FreeMarkerEngineImpl extends AbstractService<FreeMarkerEngine>
-        implements FreeMarkerEngine, ResourceLoaderAware, ProductionModeAware {
+        implements FreeMarkerEngine, ResourceLoaderAware, ProductionModeAware, TemplateChangeSource, TemplatePrecompiler {
     private final FreeMarkerConfigurationImpl configuration = new FreeMarkerConfigurationImpl(getLogger());
 
     // 初始化slf4j日志。
@@ -78,6 +85,23 @@ public class FreeMarkerEngineImpl extends AbstractService<FreeMarkerEngine>
         getLogger().debug("FreeMarker Engine Configurations: {}", configuration);
     }
 
+    @Override
+    protected void dispose() {
+        TemplateChangeWatcher watcher = configuration.getTemplateChangeWatcher();
+
+        if (watcher != null) {
+            watcher.stop();
+        }
+    }
+
+    public void addTemplateChangeListener(TemplateChangeListener listener) {
+        TemplateChangeWatcher watcher = configuration.getTemplateChangeWatcher();
+
+        if (watcher != null) {
+            watcher.addListener(listener);
+        }
+    }
+
     /**
      * 取得默认的模板名后缀列表。
      * <p>
@@ -97,6 +121,26 @@ public class FreeMarkerEngineImpl extends AbstractService<FreeMarkerEngine>
         }
     }
 
+    /** 列出所有模板。 */
+    public String[] getTemplateNames() {
+        SpringResourceLoaderAdapter templateLoader = (SpringResourceLoaderAdapter) configuration.getTemplateLoader();
+        return listTemplateNames(configuration.getResourceLoader(), templateLoader.getPath());
+    }
+
+    /** 装载并解析模板，将其放入freemarker的cache中。 */
+    public void precompileTemplate(String templateName) throws TemplateException, IOException {
+        Locale locale = LocaleUtil.getContext().getLocale();
+        String inputCharset = defaultIfEmpty(configuration.getConfiguration().getDefaultEncoding(), DEFAULT_CHARSET);
+
+        try {
+            configuration.getConfiguration().getTemplate(templateName, locale, inputCharset);
+        } catch (FileNotFoundException e) {
+            throw new TemplateNotFoundException("Could not find FreeMarker template: " + templateName, e);
+        } catch (ParseException e) {
+            throw new TemplateException("Error precompiling FreeMarker template: " + templateName, e);
+        }
+    }
+
     /** 渲染模板，并以字符串的形式取得渲染的结果。 */
     public String getText(String templateName, TemplateContext context) throws TemplateException, IOException {
         StringWriter out = new StringWriter();
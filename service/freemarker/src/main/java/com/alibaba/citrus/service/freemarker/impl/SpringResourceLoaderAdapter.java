@@ -26,6 +26,7 @@ import java.io.InputStream;
 import java.io.InputStreamReader;
 import java.io.Reader;
 
+import com.alibaba.citrus.service.template.support.TemplateChangeWatcher;
 import freemarker.cache.TemplateLoader;
 import org.springframework.core.io.Resource;
 import org.springframework.core.io.ResourceLoader;
@@ -38,9 +39,15 @@ import org.springframework.core.io.ResourceLoader;
 public class SpringResourceLoaderAdapter implements TemplateLoader {
     private final ResourceLoader springLoader;
     private final String         path;
+    private final TemplateChangeWatcher watcher;
 
     public SpringResourceLoaderAdapter(ResourceLoader springLoader, String path) {
+        this(springLoader, path, null);
+    }
+
+    public SpringResourceLoaderAdapter(ResourceLoader springLoader, String path, TemplateChangeWatcher watcher) {
         this.springLoader = assertNotNull(springLoader, "spring resource loader");
+        this.watcher = watcher;
 
         path = normalizeAbsolutePath(path, true);
 
@@ -60,6 +67,11 @@ public class SpringResourceLoaderAdapter implements TemplateLoader {
             return null;
         }
 
+        // 监视模板的改变，当模板被修改时，由watcher主动清除cache
+        if (watcher != null) {
+            watcher.watch(templateName, resource);
+        }
+
         return new TemplateSource(resource);
     }
 
@@ -25,6 +25,7 @@ import static org.junit.Assert.*;
 import java.io.ByteArrayOutputStream;
 import java.io.File;
 import java.io.StringWriter;
+import java.util.Arrays;
 import java.util.Map;
 
 import com.alibaba.citrus.service.freemarker.impl.FreeMarkerEngineImpl;
@@ -35,7 +36,9 @@ import com.alibaba.citrus.service.template.TemplateContext;
 import com.alibaba.citrus.service.template.TemplateException;
 import com.alibaba.citrus.service.template.TemplateNotFoundException;
 import com.alibaba.citrus.service.template.TemplateService;
+import com.alibaba.citrus.service.template.impl.TemplateServiceImpl;
 import com.alibaba.citrus.service.template.support.MappedTemplateContext;
+import com.alibaba.citrus.service.template.support.TemplateChangeWatcher;
 import freemarker.cache.SoftCacheStorage;
 import freemarker.cache.StrongCacheStorage;
 import freemarker.core.InvalidReferenceException;
@@ -141,6 +144,41 @@ public class FreeMarkerEngineTests {
         }
     }
 
+    @Test
+    public void withWatch() throws Exception {
+        getEngine("with_watch", factory);
+
+        // freemarker本身不再检查模板的改变
+        assertProperty("template_update_delay", String.valueOf(Integer.MAX_VALUE));
+
+        TemplateChangeWatcher watcher = freemarkerEngine.getConfiguration().getTemplateChangeWatcher();
+        assertNotNull(watcher);
+
+        assertEquals("test", freemarkerEngine.getText("test.ftl", new MappedTemplateContext()));
+        assertTrue(watcher.isWatched("test.ftl"));
+    }
+
+    @Test
+    public void withPrecompile() throws Exception {
+        getEngine("with_precompile", factory);
+
+        String[] names = freemarkerEngine.getTemplateNames();
+
+        assertThat(Arrays.asList(names).toString(), containsAll("/test.ftl", "/test2.ftl", "/test_render.ftl"));
+
+        // 模板已被预编译
+        Map<String, Long> times = ((TemplateServiceImpl) templateService).getPrecompiledTemplates();
+
+        assertTrue(times.containsKey("/test.ftl"));
+        assertTrue(times.containsKey("/test_render.ftl"));
+    }
+
+    @Test
+    public void withoutWatch() {
+        getEngine("default", factory);
+        assertNull(freemarkerEngine.getConfiguration().getTemplateChangeWatcher());
+    }
+
     @Test
     public void plugins() {
         getEngine("with_plugins", factory);
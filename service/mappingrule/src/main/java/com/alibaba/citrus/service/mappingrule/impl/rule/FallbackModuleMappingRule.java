@@ -93,6 +93,7 @@ public class FallbackModuleMappingRule extends AbstractModuleMappingRule {
 
             log.debug("Looking for module: " + moduleName);
 
+            // 在cache打开时，module loader service会记住不存在的module，所以重复的查找代价很小。
             try {
                 if (getModuleLoaderService().getModuleQuiet(getModuleType(), moduleName) != null) {
                     return moduleName;
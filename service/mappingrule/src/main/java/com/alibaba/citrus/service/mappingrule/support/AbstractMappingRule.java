@@ -17,29 +17,37 @@
 
 package com.alibaba.citrus.service.mappingrule.support;
 
-import static com.alibaba.citrus.util.CollectionUtil.*;
+import static com.alibaba.citrus.util.Assert.*;
+import static com.alibaba.citrus.util.ObjectUtil.*;
 import static com.alibaba.citrus.util.StringUtil.*;
 
-import java.util.Map;
-
 import com.alibaba.citrus.service.configuration.ProductionModeAware;
 import com.alibaba.citrus.service.mappingrule.MappingRule;
 import com.alibaba.citrus.service.mappingrule.MappingRuleException;
 import com.alibaba.citrus.springext.support.BeanSupport;
+import com.alibaba.citrus.util.collection.BoundedCache;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.springframework.context.ApplicationContext;
+import org.springframework.context.ApplicationContextAware;
 
-public abstract class AbstractMappingRule extends BeanSupport implements MappingRule, ProductionModeAware {
+public abstract class AbstractMappingRule extends BeanSupport implements MappingRule, ProductionModeAware,
+                                                                         ApplicationContextAware {
     /** 被转换的名称的分隔符。 */
     public static final String NAME_SEPARATOR = ",/";
 
     /** 被转换的名称的后缀分隔符。 */
     public static final String EXTENSION_SEPARATOR = ".";
 
+    /** 默认cache的最大项数。 */
+    public static final int DEFAULT_CACHE_SIZE = 1024;
+
     protected final Logger log = LoggerFactory.getLogger(getClass());
     private Boolean cacheEnabled;
+    private Integer cacheSize;
     private boolean productionMode = true;
-    private Map<String, String> cache;
+    private BoundedCache<String, String> cache;
+    private ApplicationContext           factory;
 
     public Boolean isCacheEnabled() {
         return cacheEnabled;
@@ -49,6 +57,15 @@ public abstract class AbstractMappingRule extends BeanSupport implements Mapping
         this.cacheEnabled = cacheEnabled;
     }
 
+    public int getCacheSize() {
+        return cacheSize == null ? DEFAULT_CACHE_SIZE : cacheSize;
+    }
+
+    /** 设置cache的最大项数，超出时，最少被访问的项将被清除。 */
+    public void setCacheSize(int cacheSize) {
+        this.cacheSize = cacheSize;
+    }
+
     /**
      * 取得默认的<code>cacheEnabled</code>值。
      * <p>
@@ -68,14 +85,22 @@ public abstract class AbstractMappingRule extends BeanSupport implements Mapping
         this.productionMode = productionMode;
     }
 
+    public void setApplicationContext(ApplicationContext factory) {
+        this.factory = factory;
+    }
+
     @Override
     protected final void init() throws Exception {
         if (cacheEnabled == null) {
             cacheEnabled = isCacheEnabledByDefault();
         }
 
+        cacheSize = defaultIfNull(cacheSize, DEFAULT_CACHE_SIZE);
+        assertTrue(cacheSize > 0, "cacheSize must be > 0: %d", cacheSize);
+
         if (cacheEnabled) {
-            cache = createConcurrentHashMap();
+            cache = new BoundedCache<String, String>(cacheSize);
+            cache.registerMBean(factory, "MappingRule." + defaultIfNull(getBeanName(), getClass().getSimpleName()));
         }
 
         initMappingRule();
@@ -83,6 +108,18 @@ public abstract class AbstractMappingRule extends BeanSupport implements Mapping
         log.info("Initialized {} with cache {}", getBeanDescription(), cacheEnabled ? "enabled" : "disabled");
     }
 
+    @Override
+    protected void dispose() {
+        if (cache != null) {
+            cache.unregisterMBean();
+        }
+    }
+
+    /** 取得cache，如果cache未打开，则返回<code>null</code>。 */
+    protected final BoundedCache<String, String> getCache() {
+        return cache;
+    }
+
     protected void initMappingRule() throws Exception {
     }
 
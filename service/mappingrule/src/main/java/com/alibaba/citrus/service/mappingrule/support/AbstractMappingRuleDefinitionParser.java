@@ -28,7 +28,7 @@ public abstract class AbstractMappingRuleDefinitionParser<M extends AbstractMapp
                                                                                          AbstractSingleBeanDefinitionParser<M> {
     @Override
     protected final void doParse(Element element, ParserContext parserContext, BeanDefinitionBuilder builder) {
-        attributesToProperties(element, builder, "cacheEnabled");
+        attributesToProperties(element, builder, "cacheEnabled", "cacheSize");
         doParseMappingRule(element, parserContext, builder);
     }
 
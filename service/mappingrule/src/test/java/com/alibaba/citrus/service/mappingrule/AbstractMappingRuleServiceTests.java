@@ -55,5 +55,6 @@ public abstract class AbstractMappingRuleServiceTests {
     public void destroy() {
         System.clearProperty("productionMode");
         System.clearProperty("cacheEnabled");
+        System.clearProperty("cacheSize");
     }
 }
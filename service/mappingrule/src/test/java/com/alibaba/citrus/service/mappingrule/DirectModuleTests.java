@@ -19,7 +19,14 @@ package com.alibaba.citrus.service.mappingrule;
 
 import static junit.framework.Assert.*;
 
+import java.lang.management.ManagementFactory;
+import java.util.Set;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+
+import com.alibaba.citrus.util.collection.BoundedCache;
 import org.junit.Test;
+import org.springframework.context.ApplicationContext;
 
 public class DirectModuleTests extends AbstractMappingRuleTests {
     @Override
@@ -48,4 +55,26 @@ public class DirectModuleTests extends AbstractMappingRuleTests {
         assertEquals("aaa.bbb.NonexistModule", result);
         assertNotSame(result, mappingRules.getMappedName("direct.module", "aaa,bbb,nonexistModule.vm")); // 不cache
     }
+
+    @Test
+    public void cacheSize() throws Exception {
+        System.setProperty("cacheEnabled", "true");
+        System.setProperty("cacheSize", "1");
+        ApplicationContext factory = createBeanFactory("services.xml");
+        mappingRules = (MappingRuleService) factory.getBean("cache");
+
+        String result = mappingRules.getMappedName("direct.module", "aaa/bbb/myOtherModule.vm");
+        assertSame(result, mappingRules.getMappedName("direct.module", "aaa/bbb/myOtherModule.vm"));
+
+        // 超出cacheSize，原来的项被清除
+        mappingRules.getMappedName("direct.module", "aaa/bbb/nonexistModule.vm");
+        assertNotSame(result, mappingRules.getMappedName("direct.module", "aaa/bbb/myOtherModule.vm"));
+
+        // 可通过JMX查看cache统计数据，并可只查看属于当前context的cache
+        MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+        Set<ObjectName> names = server.queryNames(BoundedCache.getObjectNamePattern(factory), null);
+
+        assertFalse(names.isEmpty());
+        assertTrue(server.queryNames(BoundedCache.getObjectNamePattern(new Object()), null).isEmpty());
+    }
 }
@@ -20,9 +20,8 @@ package com.alibaba.citrus.service.mappingrule;
 import static com.alibaba.citrus.test.TestUtil.*;
 import static junit.framework.Assert.*;
 
-import java.util.Map;
-
 import com.alibaba.citrus.service.mappingrule.support.AbstractMappingRule;
+import com.alibaba.citrus.util.collection.BoundedCache;
 import org.junit.Test;
 import org.springframework.context.ApplicationContext;
 
@@ -79,7 +78,8 @@ public class MappingRuleServiceTests extends AbstractMappingRuleServiceTests {
 
         assertNull(r.getMappedName("test"));
 
-        Map<?, ?> cache = getFieldValue(r, "cache", Map.class);
+        @SuppressWarnings("unchecked")
+        BoundedCache<String, String> cache = getFieldValue(r, "cache", BoundedCache.class);
         assertEquals("", cache.get("test"));
     }
 
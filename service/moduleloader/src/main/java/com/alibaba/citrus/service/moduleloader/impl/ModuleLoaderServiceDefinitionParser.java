@@ -51,7 +51,7 @@ public class ModuleLoaderServiceDefinitionParser extends AbstractNamedBeanDefini
     @Override
     protected void doParse(Element element, ParserContext parserContext, BeanDefinitionBuilder builder) {
         parseBeanDefinitionAttributes(element, parserContext, builder);
-        attributesToProperties(element, builder, "cacheEnabled");
+        attributesToProperties(element, builder, "cacheEnabled", "negativeCacheSize", "negativeCacheTTL");
 
         List<Object> factoryList = createManagedList(element, parserContext);
         List<Object> adapterList = createManagedList(element, parserContext);
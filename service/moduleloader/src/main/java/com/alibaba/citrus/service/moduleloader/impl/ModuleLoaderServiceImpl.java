@@ -19,9 +19,11 @@ package com.alibaba.citrus.service.moduleloader.impl;
 
 import static com.alibaba.citrus.util.Assert.*;
 import static com.alibaba.citrus.util.CollectionUtil.*;
+import static com.alibaba.citrus.util.ObjectUtil.*;
 
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.atomic.AtomicLong;
 
 import com.alibaba.citrus.service.AbstractService;
 import com.alibaba.citrus.service.configuration.ProductionModeAware;
@@ -42,9 +44,18 @@ import com.alibaba.citrus.util.ToStringBuilder.MapBuilder;
  */
 public class ModuleLoaderServiceImpl extends AbstractService<ModuleLoaderService> implements ModuleLoaderService,
                                                                                              ProductionModeAware {
-    private Map<ModuleKey, Module> moduleCache    = createConcurrentHashMap();
-    private boolean                productionMode = true;
+    public final static int DEFAULT_NEGATIVE_CACHE_SIZE = 1024;
+    public final static int DEFAULT_NEGATIVE_CACHE_TTL  = 60;
+
+    private Map<ModuleKey, Module> moduleCache       = createConcurrentHashMap();
+    private Map<ModuleKey, Long>   absentModuleCache = createConcurrentHashMap(); // 不存在的module，及其过期时间
+    private AtomicLong             cacheHits         = new AtomicLong();
+    private AtomicLong             cacheMisses       = new AtomicLong();
+    private AtomicLong             negativeCacheHits = new AtomicLong();
+    private boolean                productionMode    = true;
     private Boolean                cacheEnabled;
+    private Integer                negativeCacheSize;
+    private Integer                negativeCacheTTL;
     private ModuleFactory[]        factories;
     private ModuleAdapterFactory[] adapters;
 
@@ -64,6 +75,31 @@ public class ModuleLoaderServiceImpl extends AbstractService<ModuleLoaderService
         this.cacheEnabled = cacheEnabled;
     }
 
+    /** 设置最多记住多少个不存在的module。 */
+    public void setNegativeCacheSize(int negativeCacheSize) {
+        this.negativeCacheSize = negativeCacheSize;
+    }
+
+    /** 设置不存在的module被记住多少秒，<code>0</code>表示不记住。 */
+    public void setNegativeCacheTTL(int negativeCacheTTL) {
+        this.negativeCacheTTL = negativeCacheTTL;
+    }
+
+    /** 取得从cache中取得module的次数。 */
+    public long getCacheHits() {
+        return cacheHits.get();
+    }
+
+    /** 取得从factories中装载module的次数。 */
+    public long getCacheMisses() {
+        return cacheMisses.get();
+    }
+
+    /** 取得因为module已知不存在，而不去装载的次数。 */
+    public long getNegativeCacheHits() {
+        return negativeCacheHits.get();
+    }
+
     public boolean isProductionMode() {
         return productionMode;
     }
@@ -81,6 +117,12 @@ public class ModuleLoaderServiceImpl extends AbstractService<ModuleLoaderService
             cacheEnabled = productionMode; // 如果未指定cacheEnabled，则默认当productionMode时，打开cache。
         }
 
+        negativeCacheSize = defaultIfNull(negativeCacheSize, DEFAULT_NEGATIVE_CACHE_SIZE);
+        negativeCacheTTL = defaultIfNull(negativeCacheTTL, DEFAULT_NEGATIVE_CACHE_TTL);
+
+        assertTrue(negativeCacheSize > 0, "negativeCacheSize must be > 0: %d", negativeCacheSize);
+        assertTrue(negativeCacheTTL >= 0, "negativeCacheTTL must be >= 0: %d", negativeCacheTTL);
+
         getLogger().debug("Initialized {}", this);
     }
 
@@ -125,10 +167,19 @@ public class ModuleLoaderServiceImpl extends AbstractService<ModuleLoaderService
             Module module = moduleCache.get(moduleKey);
 
             if (module != null) {
+                cacheHits.incrementAndGet();
                 return module;
             }
+
+            // 最近已经确认module不存在，不必再找一遍factories
+            if (isKnownAbsent(moduleKey)) {
+                negativeCacheHits.incrementAndGet();
+                return null;
+            }
         }
 
+        cacheMisses.incrementAndGet();
+
         // 从factory中装载
         Object moduleObject = null;
         Module module = null;
@@ -164,19 +215,57 @@ public class ModuleLoaderServiceImpl extends AbstractService<ModuleLoaderService
         }
 
         // 保存到cache。
-        if (cacheEnabled && module != null) {
-            moduleCache.put(moduleKey, module);
+        if (cacheEnabled) {
+            if (module != null) {
+                moduleCache.put(moduleKey, module);
+            } else {
+                markAbsent(moduleKey);
+            }
         }
 
         return module;
     }
 
+    private boolean isKnownAbsent(ModuleKey moduleKey) {
+        Long expiry = absentModuleCache.get(moduleKey);
+
+        if (expiry == null) {
+            return false;
+        }
+
+        if (expiry > System.currentTimeMillis()) {
+            return true;
+        }
+
+        absentModuleCache.remove(moduleKey);
+
+        return false;
+    }
+
+    private void markAbsent(ModuleKey moduleKey) {
+        if (negativeCacheTTL <= 0) {
+            return;
+        }
+
+        // 超过上限时，清除所有的项，以防止无限增长。
+        if (absentModuleCache.size() >= negativeCacheSize) {
+            absentModuleCache.clear();
+        }
+
+        absentModuleCache.put(moduleKey, System.currentTimeMillis() + negativeCacheTTL * 1000L);
+    }
+
     @Override
     public String toString() {
         MapBuilder mb = new MapBuilder();
 
         mb.append("factories", factories);
         mb.append("adapters", adapters);
+        mb.append("cacheEnabled", cacheEnabled);
+        mb.append("negativeCacheTTL", negativeCacheTTL);
+        mb.append("cacheHits", cacheHits.get());
+        mb.append("cacheMisses", cacheMisses.get());
+        mb.append("negativeCacheHits", negativeCacheHits.get());
 
         return new ToStringBuilder().append(getBeanDescription()).append(mb).toString();
     }
@@ -128,6 +128,46 @@ public class ModuleLoaderServiceTests extends AbstractModuleLoaderTests {
         assertSame(action, moduleLoaderService.getModule("action", "myprod.MyAction"));
     }
 
+    @Test
+    public void negativeCache() throws Exception {
+        // productionMode=false, cacheEnabled=default
+        ModuleLoaderServiceImpl moduleLoaderService = (ModuleLoaderServiceImpl) factory.getBean("shortNegativeCache");
+
+        assertNull(moduleLoaderService.getModuleQuiet("action", "NotFound"));
+        assertNull(moduleLoaderService.getModuleQuiet("action", "NotFound"));
+        assertEquals(0, moduleLoaderService.getNegativeCacheHits());
+        assertEquals(2, moduleLoaderService.getCacheMisses());
+
+        // productionMode=true, cacheEnabled=default
+        ApplicationContext factory = createContext("services-module-loader.xml", true);
+        moduleLoaderService = (ModuleLoaderServiceImpl) factory.getBean("shortNegativeCache");
+
+        assertNull(moduleLoaderService.getModuleQuiet("action", "NotFound"));
+        assertNull(moduleLoaderService.getModuleQuiet("action", "notFound"));
+        assertNotNull(moduleLoaderService.getModuleQuiet("action", "myprod.MyAction"));
+        assertNotNull(moduleLoaderService.getModuleQuiet("action", "myprod.MyAction"));
+
+        assertEquals(1, moduleLoaderService.getNegativeCacheHits());
+        assertEquals(2, moduleLoaderService.getCacheMisses());
+        assertEquals(1, moduleLoaderService.getCacheHits());
+
+        // 过期后重新查找
+        Thread.sleep(1100);
+
+        assertNull(moduleLoaderService.getModuleQuiet("action", "NotFound"));
+        assertEquals(1, moduleLoaderService.getNegativeCacheHits());
+        assertEquals(3, moduleLoaderService.getCacheMisses());
+
+        try {
+            moduleLoaderService.getModule("action", "NotFound");
+            fail();
+        } catch (ModuleNotFoundException e) {
+            assertThat(e, exception("Module not found: type=action, name=NotFound"));
+        }
+
+        assertEquals(2, moduleLoaderService.getNegativeCacheHits());
+    }
+
     @Test
     public void productionMode_byDefault() {
         assertTrue(new ModuleLoaderServiceImpl().isProductionMode());
@@ -0,0 +1,54 @@
+/*
+ * Copyright (c) 2002-2012 Alibaba Group Holding Limited.
+ * All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.alibaba.citrus.service.pipeline;
+
+/**
+ * 监听pipeline中每个valve的执行，用来实现统计、监控等功能。
+ * <p>
+ * 对于一个pipeline所设置的listeners，同样会被应用于其所有的子pipeline，除非子pipeline自己设置了listeners。
+ * </p>
+ * <p>
+ * 注意，listener会在每个请求的每个valve执行时被调用，因此其实现必须是线程安全且高效的。
+ * listener抛出的异常只会被记录在日志中，而不会影响pipeline的执行。
+ * </p>
+ *
+ * @author Michael Zhou
+ */
+public interface PipelineListener {
+    /**
+     * 在valve被调用之前执行。
+     *
+     * @param states       当前pipeline的状态
+     * @param pipelineName 当前pipeline的label，或其bean name，可能为<code>null</code>
+     * @param valve        即将被执行的valve
+     */
+    void beforeValve(PipelineStates states, String pipelineName, Valve valve);
+
+    /**
+     * 在valve被调用之后执行。
+     *
+     * @param states       当前pipeline的状态
+     * @param pipelineName 当前pipeline的label，或其bean name，可能为<code>null</code>
+     * @param valve        已被执行的valve
+     * @param elapsedNanos valve执行的总时间，包括其调用<code>invokeNext()</code>所执行的后续valves的时间
+     * @param selfNanos    valve执行的时间，不包括后续valves的时间，但包括其执行子pipeline的时间
+     * @param exception    valve抛出的异常，如果成功，则为<code>null</code>
+     */
+    void afterValve(PipelineStates states, String pipelineName, Valve valve, long elapsedNanos, long selfNanos,
+                    Throwable exception);
+}
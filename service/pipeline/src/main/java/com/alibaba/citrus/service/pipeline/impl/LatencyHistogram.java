@@ -0,0 +1,150 @@
+/*
+ * Copyright (c) 2002-2012 Alibaba Group Holding Limited.
+ * All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.alibaba.citrus.service.pipeline.impl;
+
+import static com.alibaba.citrus.util.Assert.*;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * 一个无锁的延迟直方图，用来统计valve的执行时间。
+ * <p>
+ * 类似于HDR histogram，数值按2的幂次分段，每段再等分为32个子桶，因此任意数值的相对误差不超过约3%。 数值以微秒为单位记录，可记录的最大值约为12天。
+ * </p>
+ *
+ * @author Michael Zhou
+ */
+public class LatencyHistogram {
+    private final static int SUB_BUCKET_BITS  = 5;
+    private final static int SUB_BUCKET_COUNT = 1 << SUB_BUCKET_BITS;
+    private final static int LINEAR_LIMIT     = SUB_BUCKET_COUNT << 1;
+    private final static int MAX_SHIFT        = 36;
+    private final static int BUCKET_COUNT     = LINEAR_LIMIT + MAX_SHIFT * SUB_BUCKET_COUNT;
+    private final AtomicLongArray buckets = new AtomicLongArray(BUCKET_COUNT);
+    private final AtomicLong      count   = new AtomicLong();
+    private final AtomicLong      total   = new AtomicLong();
+    private final AtomicLong      max     = new AtomicLong();
+
+    /** 记录一个以纳秒为单位的值。 */
+    public void recordNanos(long nanos) {
+        long micros = nanos / 1000;
+
+        if (micros < 0) {
+            micros = 0;
+        }
+
+        buckets.incrementAndGet(indexOf(micros));
+        count.incrementAndGet();
+        total.addAndGet(micros);
+
+        for (long currentMax = max.get(); micros > currentMax; currentMax = max.get()) {
+            if (max.compareAndSet(currentMax, micros)) {
+                break;
+            }
+        }
+    }
+
+    /** 取得记录的次数。 */
+    public long getCount() {
+        return count.get();
+    }
+
+    /** 取得平均值，以微秒为单位。 */
+    public long getMeanMicros() {
+        long count = getCount();
+        return count == 0 ? 0 : total.get() / count;
+    }
+
+    /** 取得最大值，以微秒为单位。 */
+    public long getMaxMicros() {
+        return max.get();
+    }
+
+    /**
+     * 取得百分位数值，以微秒为单位。
+     *
+     * @param percentile 百分位，取值范围为<code>(0, 100]</code>
+     */
+    public long getPercentileMicros(double percentile) {
+        assertTrue(percentile > 0 && percentile <= 100, "percentile should be in range of (0, 100]: %s", percentile);
+
+        long count = getCount();
+
+        if (count == 0) {
+            return 0;
+        }
+
+        long threshold = (long) Math.ceil(count * percentile / 100);
+        long accumulated = 0;
+
+        for (int i = 0; i < BUCKET_COUNT; i++) {
+            accumulated += buckets.get(i);
+
+            if (accumulated >= threshold) {
+                return Math.min(highestValueOf(i), getMaxMicros());
+            }
+        }
+
+        return getMaxMicros();
+    }
+
+    /** 清除所有统计数据。 */
+    public void reset() {
+        for (int i = 0; i < BUCKET_COUNT; i++) {
+            buckets.set(i, 0);
+        }
+
+        count.set(0);
+        total.set(0);
+        max.set(0);
+    }
+
+    static int indexOf(long value) {
+        if (value < LINEAR_LIMIT) {
+            return (int) value;
+        }
+
+        int shift = 63 - Long.numberOfLeadingZeros(value) - SUB_BUCKET_BITS;
+
+        if (shift > MAX_SHIFT) {
+            return BUCKET_COUNT - 1;
+        }
+
+        // (value >> shift)的取值范围为[SUB_BUCKET_COUNT, 2 * SUB_BUCKET_COUNT)
+        return LINEAR_LIMIT + (shift - 1) * SUB_BUCKET_COUNT + (int) (value >> shift) - SUB_BUCKET_COUNT;
+    }
+
+    static long highestValueOf(int index) {
+        if (index < LINEAR_LIMIT) {
+            return index;
+        }
+
+        int shift = (index - LINEAR_LIMIT) / SUB_BUCKET_COUNT + 1;
+        long subBucket = (index - LINEAR_LIMIT) % SUB_BUCKET_COUNT + SUB_BUCKET_COUNT;
+
+        return ((subBucket + 1) << shift) - 1;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("count=%d, mean=%dus, p50=%dus, p90=%dus, p99=%dus, max=%dus", getCount(),
+                             getMeanMicros(), getPercentileMicros(50), getPercentileMicros(90),
+                             getPercentileMicros(99), getMaxMicros());
+    }
+}
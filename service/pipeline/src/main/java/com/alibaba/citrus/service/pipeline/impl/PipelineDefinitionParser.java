@@ -19,6 +19,7 @@ package com.alibaba.citrus.service.pipeline.impl;
 
 import static com.alibaba.citrus.springext.util.DomUtil.*;
 import static com.alibaba.citrus.springext.util.SpringExtUtil.*;
+import static com.alibaba.citrus.util.StringUtil.*;
 
 import java.util.List;
 
@@ -28,6 +29,7 @@ import com.alibaba.citrus.springext.Contribution;
 import com.alibaba.citrus.springext.ContributionAware;
 import com.alibaba.citrus.springext.support.parser.AbstractNamedProxyBeanDefinitionParser;
 import com.alibaba.citrus.springext.support.parser.AbstractSingleBeanDefinitionParser;
+import org.springframework.beans.factory.config.RuntimeBeanReference;
 import org.springframework.beans.factory.support.BeanDefinitionBuilder;
 import org.springframework.beans.factory.xml.AbstractBeanDefinitionParser;
 import org.springframework.beans.factory.xml.ParserContext;
@@ -57,7 +59,19 @@ public class PipelineDefinitionParser extends AbstractNamedProxyBeanDefinitionPa
             protected void doParse(Element element, ParserContext parserContext, BeanDefinitionBuilder builder) {
                 parseBeanDefinitionAttributes(element, parserContext, builder);
 
-                attributesToProperties(element, builder, "label");
+                attributesToProperties(element, builder, "label", "compiled");
+
+                String listenerRefs = trimToNull(element.getAttribute("listener-refs"));
+
+                if (listenerRefs != null) {
+                    List<Object> listeners = createManagedList(element, parserContext);
+
+                    for (String listenerRef : split(listenerRefs, ", ")) {
+                        listeners.add(new RuntimeBeanReference(listenerRef));
+                    }
+
+                    builder.addPropertyValue("listeners", listeners);
+                }
 
                 List<Object> valves = createManagedList(element, parserContext);
 
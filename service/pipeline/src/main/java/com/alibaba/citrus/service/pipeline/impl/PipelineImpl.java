@@ -25,6 +25,8 @@ import static com.alibaba.citrus.util.ObjectUtil.*;
 import static com.alibaba.citrus.util.StringUtil.*;
 
 import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
 
 import com.alibaba.citrus.service.AbstractService;
 import com.alibaba.citrus.service.pipeline.LabelNotDefinedException;
@@ -32,18 +34,46 @@ import com.alibaba.citrus.service.pipeline.Pipeline;
 import com.alibaba.citrus.service.pipeline.PipelineContext;
 import com.alibaba.citrus.service.pipeline.PipelineException;
 import com.alibaba.citrus.service.pipeline.PipelineInvocationHandle;
+import com.alibaba.citrus.service.pipeline.PipelineListener;
+import com.alibaba.citrus.service.pipeline.PipelineStates;
 import com.alibaba.citrus.service.pipeline.Valve;
+import com.alibaba.citrus.service.pipeline.impl.valve.ChooseValve;
+import com.alibaba.citrus.service.pipeline.impl.valve.IfValve;
+import com.alibaba.citrus.service.pipeline.impl.valve.LoopValve;
+import com.alibaba.citrus.service.pipeline.impl.valve.SubPipelineValve;
+import com.alibaba.citrus.service.pipeline.impl.valve.TryCatchFinallyValve;
 import com.alibaba.citrus.util.ToStringBuilder;
 import org.slf4j.Logger;
 
 /**
  * 对<code>Pipeline</code>的实现。
+ * <p>
+ * 当<code>compiled=true</code>时，pipeline会在初始化时被“编译”：
+ * </p>
+ * <ul>
+ * <li>pipeline本身以及<code>SubPipelineValve</code>、<code>IfValve</code>、<code>ChooseValve</code>、
+ * <code>LoopValve</code>、<code>TryCatchFinallyValve</code>所包含的子pipeline均被编译。</li>
+ * <li>attributes被保存在以slot编号索引的数组中，而不是每次执行都创建一个<code>HashMap</code>。</li>
+ * <li>通过{@link #invokeSubPipeline(Pipeline, PipelineContext)}执行的子pipeline，其context对象被当前线程复用。</li>
+ * </ul>
+ * <p>
+ * 注意，valve不应在<code>invoke()</code>返回以后继续持有子pipeline的<code>PipelineContext</code>。
+ * 通过<code>newInvocation(parentContext)</code>创建的子invocation会自动阻止其父context被复用。
+ * </p>
  *
  * @author Michael Zhou
  */
 public class PipelineImpl extends AbstractService<Pipeline> implements Pipeline {
-    private Valve[] valves;
-    private String  label;
+    private final static int MAX_ATTRIBUTE_SLOTS = 64;
+    private final static int MAX_POOLED_CONTEXTS = 8;
+
+    private Valve[]                            valves;
+    private String                             label;
+    private boolean                            compiled;
+    private PipelineListener[]                 listeners;
+    private String                             pipelineName;
+    private AttributeSlots                     attributeSlots;
+    private ThreadLocal<PipelineContextImpl[]> contextPool;
 
     public Valve[] getValves() {
         return valves;
@@ -59,6 +89,40 @@ public class PipelineImpl extends AbstractService<Pipeline> implements Pipeline
 
     public void setLabel(String label) {
         this.label = trimToNull(label);
+        updatePipelineName();
+    }
+
+    @Override
+    public void setBeanName(String beanName) {
+        super.setBeanName(beanName);
+        updatePipelineName();
+    }
+
+    /** 用来在listener中标识pipeline的名称：label或bean name。 */
+    private void updatePipelineName() {
+        String beanName = getBeanName();
+
+        if (label == null && beanName != null && !beanName.contains("(inner bean)")) {
+            pipelineName = beanName;
+        } else {
+            pipelineName = label;
+        }
+    }
+
+    public PipelineListener[] getListeners() {
+        return listeners;
+    }
+
+    public void setListeners(PipelineListener[] listeners) {
+        this.listeners = listeners;
+    }
+
+    public boolean isCompiled() {
+        return compiled;
+    }
+
+    public void setCompiled(boolean compiled) {
+        this.compiled = compiled;
     }
 
     @Override
@@ -70,14 +134,150 @@ public class PipelineImpl extends AbstractService<Pipeline> implements Pipeline
         for (int i = 0; i < valves.length; i++) {
             assertNotNull(valves[i], "valves[%d] == null", i);
         }
+
+        if (listeners != null) {
+            for (int i = 0; i < listeners.length; i++) {
+                assertNotNull(listeners[i], "listeners[%d] == null", i);
+            }
+
+            if (listeners.length == 0) {
+                listeners = null;
+            }
+        }
+
+        if (compiled) {
+            compile();
+        }
+    }
+
+    /** 编译pipeline及其所有的结构性子pipeline。 */
+    private void compile() {
+        compiled = true;
+
+        if (attributeSlots != null) {
+            return; // 已经编译过了
+        }
+
+        attributeSlots = new AttributeSlots();
+        contextPool = new ThreadLocal<PipelineContextImpl[]>();
+
+        for (Valve valve : valves) {
+            if (valve instanceof SubPipelineValve) {
+                compile(((SubPipelineValve) valve).getSubPipeline());
+            } else if (valve instanceof IfValve) {
+                compile(((IfValve) valve).getBlock());
+            } else if (valve instanceof ChooseValve) {
+                Pipeline[] whenBlocks = ((ChooseValve) valve).getWhenBlocks();
+
+                if (whenBlocks != null) {
+                    for (Pipeline whenBlock : whenBlocks) {
+                        compile(whenBlock);
+                    }
+                }
+
+                compile(((ChooseValve) valve).getOtherwiseBlock());
+            } else if (valve instanceof LoopValve) {
+                compile(((LoopValve) valve).getLoopBody());
+            } else if (valve instanceof TryCatchFinallyValve) {
+                compile(((TryCatchFinallyValve) valve).getTry());
+                compile(((TryCatchFinallyValve) valve).getCatch());
+                compile(((TryCatchFinallyValve) valve).getFinally());
+            }
+        }
+    }
+
+    /** 只编译内部pipeline，被引用的pipeline（可能是proxy）保持其原有的配置。 */
+    private static void compile(Pipeline pipeline) {
+        if (pipeline instanceof PipelineImpl) {
+            PipelineImpl pipelineImpl = (PipelineImpl) pipeline;
+
+            if (pipelineImpl.isInitialized()) {
+                pipelineImpl.compile();
+            } else {
+                pipelineImpl.setCompiled(true); // 初始化时编译
+            }
+        }
     }
 
     public PipelineInvocationHandle newInvocation() {
-        return new PipelineContextImpl(null);
+        return new PipelineContextImpl(null, false);
     }
 
     public PipelineInvocationHandle newInvocation(PipelineContext parentContext) {
-        return new PipelineContextImpl(assertNotNull(parentContext, "no parent PipelineContext"));
+        return new PipelineContextImpl(assertNotNull(parentContext, "no parent PipelineContext"), false);
+    }
+
+    /**
+     * 在指定的父context中执行子pipeline，并且不再需要其invocation handle。
+     * <p>
+     * 对于已编译的pipeline，context对象将从当前线程的池中取得，并在执行结束后归还。否则，相当于
+     * <code>pipeline.newInvocation(parentContext).invoke()</code>。
+     * </p>
+     */
+    public static void invokeSubPipeline(Pipeline pipeline, PipelineContext parentContext) {
+        if (pipeline instanceof PipelineImpl && ((PipelineImpl) pipeline).attributeSlots != null) {
+            ((PipelineImpl) pipeline).invokePooled(parentContext);
+        } else {
+            pipeline.newInvocation(parentContext).invoke();
+        }
+    }
+
+    /**
+     * 取得当前valve在pipeline嵌套结构中的位置，例如：<code>main#2/(anonymous)#1</code>，每一段为pipeline的名称和valve的序号。
+     * 如果取不到，则返回<code>null</code>。
+     */
+    static String getValvePath(PipelineStates states, String anonymousName) {
+        if (states instanceof PipelineContextImpl) {
+            return ((PipelineContextImpl) states).getValvePath(anonymousName);
+        } else {
+            return null;
+        }
+    }
+
+    private void invokePooled(PipelineContext parentContext) {
+        assertNotNull(parentContext, "no parent PipelineContext");
+
+        PipelineContextImpl[] pool = contextPool.get();
+        PipelineContextImpl context = null;
+
+        if (pool == null) {
+            pool = new PipelineContextImpl[MAX_POOLED_CONTEXTS];
+            contextPool.set(pool);
+        }
+
+        for (int i = pool.length - 1; i >= 0; i--) {
+            if (pool[i] != null) {
+                context = pool[i];
+                pool[i] = null;
+                break;
+            }
+        }
+
+        if (context == null) {
+            context = new PipelineContextImpl(parentContext, true);
+        } else {
+            context.reset(parentContext);
+        }
+
+        context.pooled = true;
+
+        try {
+            context.invoke();
+        } finally {
+            context.pooled = false;
+
+            // 被子invocation引用的context不能被复用
+            if (!context.pinned) {
+                context.reset(null);
+
+                for (int i = 0; i < pool.length; i++) {
+                    if (pool[i] == null) {
+                        pool[i] = context;
+                        break;
+                    }
+                }
+            }
+        }
     }
 
     @Override
@@ -85,17 +285,68 @@ public class PipelineImpl extends AbstractService<Pipeline> implements Pipeline
         return new ToStringBuilder().append(getBeanDescription()).append(valves).toString();
     }
 
+    /** 将attribute名称映射到slot编号，同一个pipeline的所有invocation共享这个映射表。 */
+    private static final class AttributeSlots {
+        private final ConcurrentMap<String, Integer> slots = new ConcurrentHashMap<String, Integer>();
+
+        public int size() {
+            return slots.size();
+        }
+
+        /** 取得slot编号，如果不存在，则返回<code>-1</code>。 */
+        public int get(String key) {
+            Integer index = slots.get(key);
+            return index == null ? -1 : index;
+        }
+
+        /** 取得或分配slot编号，如果slot数量超过上限，则返回<code>-1</code>。 */
+        public int getOrCreate(String key) {
+            Integer index = slots.get(key);
+
+            if (index == null) {
+                synchronized (this) {
+                    index = slots.get(key);
+
+                    if (index == null) {
+                        if (slots.size() >= MAX_ATTRIBUTE_SLOTS) {
+                            return -1;
+                        }
+
+                        index = slots.size();
+                        slots.put(key, index);
+                    }
+                }
+            }
+
+            return index;
+        }
+    }
+
     /** 实现<code>PipelineContext</code>。 */
     private final class PipelineContextImpl implements PipelineContext, PipelineInvocationHandle {
         private final Logger log = getLogger();
-        private final PipelineContext parentContext;
-        private final int             level;
+        private PipelineContext parentContext;
+        private int             level;
         private int executedIndex  = -1;
         private int executingIndex = -1;
         private boolean             broken;
         private Map<String, Object> attributes;
+        private Object[]            slotValues;
+        private boolean             pooled;
+        private boolean             pinned;
+        private PipelineListener[]  activeListeners;
+        private long                nestedNanos;
+
+        public PipelineContextImpl(PipelineContext parentContext, boolean fromPool) {
+            init(parentContext);
+
+            // 子invocation的handle可能被valve长期持有，因此它所依赖的父context不能被复用。
+            if (!fromPool && parentContext instanceof PipelineContextImpl) {
+                ((PipelineContextImpl) parentContext).pin();
+            }
+        }
 
-        public PipelineContextImpl(PipelineContext parentContext) {
+        private void init(PipelineContext parentContext) {
             this.parentContext = parentContext;
 
             if (parentContext == null) {
@@ -103,6 +354,43 @@ public class PipelineImpl extends AbstractService<Pipeline> implements Pipeline
             } else {
                 this.level = parentContext.level() + 1;
             }
+
+            // 子pipeline继承父pipeline的listeners，除非它自己设置了listeners
+            if (listeners == null && parentContext instanceof PipelineContextImpl) {
+                this.activeListeners = ((PipelineContextImpl) parentContext).activeListeners;
+            } else {
+                this.activeListeners = listeners;
+            }
+        }
+
+        private void reset(PipelineContext parentContext) {
+            init(parentContext);
+
+            executingIndex = executedIndex = -1;
+            broken = false;
+            pinned = false;
+            nestedNanos = 0;
+            attributes = null;
+
+            if (slotValues != null) {
+                for (int i = 0; i < slotValues.length; i++) {
+                    slotValues[i] = null;
+                }
+            }
+        }
+
+        private void pin() {
+            for (PipelineContextImpl context = this; context != null; ) {
+                if (context.pooled) {
+                    context.pinned = true;
+                }
+
+                if (context.parentContext instanceof PipelineContextImpl) {
+                    context = (PipelineContextImpl) context.parentContext;
+                } else {
+                    context = null;
+                }
+            }
         }
 
         public int level() {
@@ -148,6 +436,24 @@ public class PipelineImpl extends AbstractService<Pipeline> implements Pipeline
 
                 if (executingIndex < valves.length) {
                     Valve valve = valves[executingIndex];
+                    PipelineListener[] listeners = activeListeners;
+                    Throwable exception = null;
+                    long startTime = 0;
+                    long outerNestedNanos = 0;
+
+                    if (listeners != null) {
+                        for (PipelineListener listener : listeners) {
+                            try {
+                                listener.beforeValve(this, pipelineName, valve);
+                            } catch (Exception e) {
+                                log.warn("Failed to notify " + listener + " before " + descCurrentValve(), e);
+                            }
+                        }
+
+                        outerNestedNanos = nestedNanos;
+                        nestedNanos = 0;
+                        startTime = System.nanoTime();
+                    }
 
                     try {
                         if (log.isTraceEnabled()) {
@@ -156,13 +462,35 @@ public class PipelineImpl extends AbstractService<Pipeline> implements Pipeline
 
                         valve.invoke(this);
                     } catch (PipelineException e) {
+                        exception = e;
                         throw e;
                     } catch (Exception e) {
+                        exception = e;
                         throw new PipelineException("Failed to invoke " + descCurrentValve() + ": " + valve, e);
+                    } catch (Error e) {
+                        exception = e;
+                        throw e;
                     } finally {
                         if (log.isTraceEnabled()) {
                             log.trace("...Exited {}: {}", descCurrentValve(), valve);
                         }
+
+                        if (listeners != null) {
+                            // nestedNanos为当前valve调用invokeNext()所花的时间，即后续valves的执行时间
+                            long elapsedNanos = System.nanoTime() - startTime;
+                            long selfNanos = elapsedNanos - nestedNanos;
+
+                            nestedNanos = outerNestedNanos + elapsedNanos;
+
+                            // listener的异常不能掩盖valve本身的异常
+                            for (PipelineListener listener : listeners) {
+                                try {
+                                    listener.afterValve(this, pipelineName, valve, elapsedNanos, selfNanos, exception);
+                                } catch (Exception e) {
+                                    log.warn("Failed to notify " + listener + " after " + descCurrentValve(), e);
+                                }
+                            }
+                        }
                     }
 
                     if (executedIndex < valves.length && executedIndex == executingIndex) {
@@ -213,7 +541,15 @@ public class PipelineImpl extends AbstractService<Pipeline> implements Pipeline
         public Object getAttribute(String key) {
             Object value = null;
 
-            if (attributes != null) {
+            if (slotValues != null) {
+                int index = attributeSlots.get(key);
+
+                if (index >= 0 && index < slotValues.length) {
+                    value = slotValues[index];
+                }
+            }
+
+            if (value == null && attributes != null) {
                 value = attributes.get(key);
             }
 
@@ -225,6 +561,25 @@ public class PipelineImpl extends AbstractService<Pipeline> implements Pipeline
         }
 
         public void setAttribute(String key, Object value) {
+            if (attributeSlots != null) {
+                int index = attributeSlots.getOrCreate(key);
+
+                if (index >= 0) {
+                    if (slotValues == null || index >= slotValues.length) {
+                        Object[] newSlotValues = new Object[Math.max(index + 1, attributeSlots.size())];
+
+                        if (slotValues != null) {
+                            System.arraycopy(slotValues, 0, newSlotValues, 0, slotValues.length);
+                        }
+
+                        slotValues = newSlotValues;
+                    }
+
+                    slotValues[index] = defaultIfNull(value, NULL_PLACEHOLDER);
+                    return;
+                }
+            }
+
             if (attributes == null) {
                 attributes = createHashMap();
             }
@@ -244,5 +599,15 @@ public class PipelineImpl extends AbstractService<Pipeline> implements Pipeline
         private String descCurrentValve() {
             return "Valve[#" + index() + "/" + valves.length + ", level " + level() + "]";
         }
+
+        private String getValvePath(String anonymousName) {
+            String path = defaultIfNull(pipelineName, anonymousName) + "#" + index();
+
+            if (parentContext instanceof PipelineContextImpl) {
+                path = ((PipelineContextImpl) parentContext).getValvePath(anonymousName) + "/" + path;
+            }
+
+            return path;
+        }
     }
 }
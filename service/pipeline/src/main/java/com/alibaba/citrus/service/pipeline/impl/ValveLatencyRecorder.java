@@ -0,0 +1,377 @@
+/*
+ * Copyright (c) 2002-2012 Alibaba Group Holding Limited.
+ * All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.alibaba.citrus.service.pipeline.impl;
+
+import static com.alibaba.citrus.util.ClassUtil.*;
+import static com.alibaba.citrus.util.CollectionUtil.*;
+import static com.alibaba.citrus.util.ObjectUtil.*;
+
+import java.lang.management.ManagementFactory;
+import java.lang.ref.WeakReference;
+import java.util.Map;
+import java.util.WeakHashMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+
+import com.alibaba.citrus.service.pipeline.PipelineListener;
+import com.alibaba.citrus.service.pipeline.PipelineStates;
+import com.alibaba.citrus.service.pipeline.Valve;
+import com.alibaba.citrus.springext.support.BeanSupport;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * 统计每个valve、每个pipeline以及每个嵌套层次的执行时间。
+ * <p>
+ * 每个valve的时间不包括它所调用的后续valves的时间，但包括其子pipeline的时间；每个pipeline的时间为其完整执行的时间；
+ * 每个嵌套层次的时间为该层次上所有valves的时间。统计结果可通过JMX或开发模式的explorer页面查看。
+ * </p>
+ * <p>
+ * 每个valve以其在pipeline嵌套结构中的位置来标识，例如：<code>main#2/(anonymous)#1 LogValve</code>。
+ * 假如两个不同的valve位置相同（例如<code>&lt;choose&gt;</code>中不同分支的匿名pipeline），则后者被加上序号以示区别。
+ * </p>
+ * <p>
+ * 统计结果只以位置为key，对valve对象本身只保持弱引用，因此动态创建的pipeline不会造成内存泄漏：当旧的valve被回收后，
+ * 相同位置上新的valve将沿用原来的统计。valve和pipeline的统计数量各不超过1024个，超出的valve被合并统计在
+ * <code>(others)</code>中，超出的pipeline则不再统计。
+ * </p>
+ * <p>
+ * 用法：
+ * </p>
+ * <pre>
+ * &lt;beans:bean id="valveLatencyRecorder" class="com.alibaba.citrus.service.pipeline.impl.ValveLatencyRecorder" /&gt;
+ *
+ * &lt;services:pipeline listener-refs="valveLatencyRecorder"&gt;
+ *     ...
+ * &lt;/services:pipeline&gt;
+ * </pre>
+ *
+ * @author Michael Zhou
+ */
+public class ValveLatencyRecorder extends BeanSupport implements PipelineListener, ValveLatencyRecorderMBean {
+    private final static Logger log              = LoggerFactory.getLogger(ValveLatencyRecorder.class);
+    private final static String ANONYMOUS_NAME   = "(anonymous)";
+    private final static int    MAX_LEVELS       = 32;
+    private final static int    MAX_ENTRIES      = 1024;
+    private final static int    CACHE_SEGMENTS   = 16;
+    private final static String OVERFLOW_KEY     = "(others)";
+    private final static String OBJECT_NAME_TYPE = "com.alibaba.citrus.service.pipeline:type=ValveLatencyRecorder";
+    private final ConcurrentMap<String, ValveEntry>       valves     = new ConcurrentHashMap<String, ValveEntry>();
+    private final Map<Valve, ValveEntry>[]                valveCache = createValveCache();
+    private final ConcurrentMap<String, LatencyHistogram> pipelines  = new ConcurrentHashMap<String, LatencyHistogram>();
+    private final AtomicReferenceArray<LatencyHistogram>  levels     = new AtomicReferenceArray<LatencyHistogram>(MAX_LEVELS);
+    private boolean    registerMBean = true;
+    private ObjectName objectName;
+
+    public boolean isRegisterMBean() {
+        return registerMBean;
+    }
+
+    /** 是否将统计结果注册到platform MBean server中，默认为<code>true</code>。 */
+    public void setRegisterMBean(boolean registerMBean) {
+        this.registerMBean = registerMBean;
+    }
+
+    @Override
+    protected void init() throws Exception {
+        if (registerMBean) {
+            ObjectName name = new ObjectName(OBJECT_NAME_TYPE + ",name="
+                                             + ObjectName.quote(defaultIfNull(getBeanName(), "default")));
+
+            try {
+                ManagementFactory.getPlatformMBeanServer().registerMBean(this, name);
+                objectName = name;
+            } catch (Exception e) {
+                log.warn("Could not register MBean " + name, e);
+            }
+        }
+    }
+
+    @Override
+    protected void dispose() {
+        if (objectName != null) {
+            MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+
+            try {
+                server.unregisterMBean(objectName);
+            } catch (Exception e) {
+                log.warn("Could not unregister MBean " + objectName, e);
+            }
+
+            objectName = null;
+        }
+    }
+
+    public void beforeValve(PipelineStates states, String pipelineName, Valve valve) {
+    }
+
+    public void afterValve(PipelineStates states, String pipelineName, Valve valve, long elapsedNanos,
+                           long selfNanos, Throwable exception) {
+        int level = states.level();
+        ValveEntry entry = getValveEntry(states, pipelineName, valve);
+
+        entry.histogram.recordNanos(selfNanos);
+
+        // 第一个valve的执行时间即为整个pipeline的执行时间
+        if (entry.pipelineHistogram != null) {
+            entry.pipelineHistogram.recordNanos(elapsedNanos);
+        }
+
+        if (level > 0 && level <= MAX_LEVELS) {
+            LatencyHistogram histogram = levels.get(level - 1);
+
+            if (histogram == null) {
+                levels.compareAndSet(level - 1, null, new LatencyHistogram());
+                histogram = levels.get(level - 1);
+            }
+
+            histogram.recordNanos(selfNanos);
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    private static Map<Valve, ValveEntry>[] createValveCache() {
+        Map<Valve, ValveEntry>[] cache = new Map[CACHE_SEGMENTS];
+
+        for (int i = 0; i < cache.length; i++) {
+            cache[i] = new WeakHashMap<Valve, ValveEntry>();
+        }
+
+        return cache;
+    }
+
+    /** 从valve对象到entry的缓存，以弱引用保存valve，并分段加锁以减少竞争。 */
+    private ValveEntry getValveEntry(PipelineStates states, String pipelineName, Valve valve) {
+        Map<Valve, ValveEntry> cache = valveCache[System.identityHashCode(valve) & (CACHE_SEGMENTS - 1)];
+        ValveEntry entry;
+
+        synchronized (cache) {
+            entry = cache.get(valve);
+        }
+
+        if (entry == null) {
+            entry = createValveEntry(states, pipelineName, valve);
+
+            synchronized (cache) {
+                cache.put(valve, entry);
+            }
+        }
+
+        return entry;
+    }
+
+    /** 每个valve只会被查找一次entry，因此可以加锁。 */
+    private ValveEntry createValveEntry(PipelineStates states, String pipelineName, Valve valve) {
+        int index = states.index();
+        String path = PipelineImpl.getValvePath(states, ANONYMOUS_NAME);
+
+        if (path == null) {
+            path = defaultIfNull(pipelineName, ANONYMOUS_NAME) + "#" + index;
+        }
+
+        // 有名称的pipeline以名称为key，匿名的pipeline则以其所在的位置为key
+        LatencyHistogram pipelineHistogram = null;
+
+        if (index == 1) {
+            String pipelineKey = pipelineName;
+
+            if (pipelineKey == null) {
+                pipelineKey = path.substring(0, path.length() - "#1".length());
+            }
+
+            pipelineHistogram = getHistogram(pipelines, pipelineKey);
+        }
+
+        String baseKey = path + " " + getSimpleClassName(valve.getClass());
+
+        synchronized (valves) {
+            String key = baseKey;
+
+            for (int i = 2; ; i++) {
+                ValveEntry entry = valves.get(key);
+
+                // 相同位置上的valve已被回收（例如动态创建的pipeline），则沿用其统计
+                if (entry == null || entry.takeOver(valve)) {
+                    if (entry == null) {
+                        if (valves.size() >= MAX_ENTRIES) {
+                            return getOverflowEntry();
+                        }
+
+                        entry = new ValveEntry(key, valve, pipelineHistogram);
+                        valves.put(key, entry);
+                    }
+
+                    return entry;
+                }
+
+                key = baseKey + " (" + i + ")";
+            }
+        }
+    }
+
+    private ValveEntry getOverflowEntry() {
+        ValveEntry entry = valves.get(OVERFLOW_KEY);
+
+        if (entry == null) {
+            log.warn("Too many valves to record, the rest will be recorded as \"{}\"", OVERFLOW_KEY);
+            entry = new ValveEntry(OVERFLOW_KEY, null, null);
+            valves.put(OVERFLOW_KEY, entry);
+        }
+
+        return entry;
+    }
+
+    private static LatencyHistogram getHistogram(ConcurrentMap<String, LatencyHistogram> histograms, String key) {
+        LatencyHistogram histogram = histograms.get(key);
+
+        if (histogram == null) {
+            if (histograms.size() >= MAX_ENTRIES) {
+                return null;
+            }
+
+            histograms.putIfAbsent(key, new LatencyHistogram());
+            histogram = histograms.get(key);
+        }
+
+        return histogram;
+    }
+
+    /** 取得每个valve的统计，key的格式为：<code>pipelineName#index/.../pipelineName#index ValveClassName</code>。 */
+    public Map<String, LatencyHistogram> getValveHistograms() {
+        Map<String, LatencyHistogram> result = createTreeMap();
+
+        for (ValveEntry entry : valves.values()) {
+            result.put(entry.key, entry.histogram);
+        }
+
+        return result;
+    }
+
+    /** 取得每个pipeline的统计，key为pipeline的label或bean name。匿名的pipeline以其所在的位置为key。 */
+    public Map<String, LatencyHistogram> getPipelineHistograms() {
+        Map<String, LatencyHistogram> result = createTreeMap();
+        result.putAll(pipelines);
+        return result;
+    }
+
+    /** 取得每个嵌套层次的统计，key为层次，从<code>1</code>开始计数。 */
+    public Map<Integer, LatencyHistogram> getLevelHistograms() {
+        Map<Integer, LatencyHistogram> result = createTreeMap();
+
+        for (int i = 0; i < MAX_LEVELS; i++) {
+            LatencyHistogram histogram = levels.get(i);
+
+            if (histogram != null) {
+                result.put(i + 1, histogram);
+            }
+        }
+
+        return result;
+    }
+
+    /** 取得所有的统计，key的格式为：<code>valve: ...</code>、<code>pipeline: ...</code>或<code>level: ...</code>。 */
+    public Map<String, LatencyHistogram> getHistograms() {
+        Map<String, LatencyHistogram> result = createLinkedHashMap();
+
+        for (Map.Entry<String, LatencyHistogram> entry : getPipelineHistograms().entrySet()) {
+            result.put("pipeline: " + entry.getKey(), entry.getValue());
+        }
+
+        for (Map.Entry<String, LatencyHistogram> entry : getValveHistograms().entrySet()) {
+            result.put("valve: " + entry.getKey(), entry.getValue());
+        }
+
+        for (Map.Entry<Integer, LatencyHistogram> entry : getLevelHistograms().entrySet()) {
+            result.put("level: " + entry.getKey(), entry.getValue());
+        }
+
+        return result;
+    }
+
+    public String[] getKeys() {
+        return getHistograms().keySet().toArray(new String[0]);
+    }
+
+    public long getCount(String key) {
+        LatencyHistogram histogram = getHistograms().get(key);
+        return histogram == null ? 0 : histogram.getCount();
+    }
+
+    public long getPercentileMicros(String key, double percentile) {
+        LatencyHistogram histogram = getHistograms().get(key);
+        return histogram == null ? 0 : histogram.getPercentileMicros(percentile);
+    }
+
+    public String[] getSummary() {
+        Map<String, LatencyHistogram> histograms = getHistograms();
+        String[] summary = new String[histograms.size()];
+        int i = 0;
+
+        for (Map.Entry<String, LatencyHistogram> entry : histograms.entrySet()) {
+            summary[i++] = entry.getKey() + ": " + entry.getValue();
+        }
+
+        return summary;
+    }
+
+    public void reset() {
+        for (ValveEntry entry : valves.values()) {
+            entry.histogram.reset();
+        }
+
+        for (LatencyHistogram histogram : pipelines.values()) {
+            histogram.reset();
+        }
+
+        for (int i = 0; i < MAX_LEVELS; i++) {
+            LatencyHistogram histogram = levels.get(i);
+
+            if (histogram != null) {
+                histogram.reset();
+            }
+        }
+    }
+
+    private static class ValveEntry {
+        private final String               key;
+        private final LatencyHistogram     histogram = new LatencyHistogram();
+        private final LatencyHistogram     pipelineHistogram; // 仅当valve是pipeline中的第一个valve时才有值
+        private       WeakReference<Valve> owner;
+
+        public ValveEntry(String key, Valve owner, LatencyHistogram pipelineHistogram) {
+            this.key = key;
+            this.owner = owner == null ? null : new WeakReference<Valve>(owner);
+            this.pipelineHistogram = pipelineHistogram;
+        }
+
+        /** 假如entry所属的valve已被回收，则改由指定valve使用。必须在锁内调用。 */
+        public boolean takeOver(Valve valve) {
+            Valve current = owner.get();
+
+            if (current == null) {
+                owner = new WeakReference<Valve>(valve);
+                return true;
+            }
+
+            return current == valve;
+        }
+    }
+}
@@ -0,0 +1,40 @@
+/*
+ * Copyright (c) 2002-2012 Alibaba Group Holding Limited.
+ * All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.alibaba.citrus.service.pipeline.impl;
+
+/**
+ * <code>ValveLatencyRecorder</code>的JMX接口。
+ *
+ * @author Michael Zhou
+ */
+public interface ValveLatencyRecorderMBean {
+    /** 取得所有统计项的名称。 */
+    String[] getKeys();
+
+    /** 取得指定统计项的记录次数。 */
+    long getCount(String key);
+
+    /** 取得指定统计项的百分位数值，以微秒为单位。 */
+    long getPercentileMicros(String key, double percentile);
+
+    /** 取得所有统计项的摘要。 */
+    String[] getSummary();
+
+    /** 清除所有统计数据。 */
+    void reset();
+}
@@ -17,6 +17,7 @@
 
 package com.alibaba.citrus.service.pipeline.impl.valve;
 
+import static com.alibaba.citrus.service.pipeline.impl.PipelineImpl.*;
 import static com.alibaba.citrus.springext.util.DomUtil.*;
 import static com.alibaba.citrus.springext.util.SpringExtUtil.*;
 import static com.alibaba.citrus.util.Assert.*;
@@ -95,13 +96,13 @@ public class ChooseValve extends AbstractValve {
         for (int i = 0; i < whenConditions.length; i++) {
             if (whenConditions[i].isSatisfied(pipelineContext)) {
                 satisfied = true;
-                whenBlocks[i].newInvocation(pipelineContext).invoke();
+                invokeSubPipeline(whenBlocks[i], pipelineContext);
                 break;
             }
         }
 
         if (!satisfied && otherwiseBlock != null) {
-            otherwiseBlock.newInvocation(pipelineContext).invoke();
+            invokeSubPipeline(otherwiseBlock, pipelineContext);
         }
 
         pipelineContext.invokeNext();
@@ -17,6 +17,7 @@
 
 package com.alibaba.citrus.service.pipeline.impl.valve;
 
+import static com.alibaba.citrus.service.pipeline.impl.PipelineImpl.*;
 import static com.alibaba.citrus.util.Assert.*;
 
 import com.alibaba.citrus.service.pipeline.Condition;
@@ -63,7 +64,7 @@ public class IfValve extends AbstractValve {
 
     public void invoke(PipelineContext pipelineContext) throws Exception {
         if (condition.isSatisfied(pipelineContext)) {
-            block.newInvocation(pipelineContext).invoke();
+            invokeSubPipeline(block, pipelineContext);
         }
 
         pipelineContext.invokeNext();
@@ -17,6 +17,7 @@
 
 package com.alibaba.citrus.service.pipeline.impl.valve;
 
+import static com.alibaba.citrus.service.pipeline.impl.PipelineImpl.*;
 import static com.alibaba.citrus.util.Assert.*;
 
 import com.alibaba.citrus.service.pipeline.Pipeline;
@@ -50,7 +51,7 @@ public class SubPipelineValve extends AbstractValve {
     }
 
     public void invoke(PipelineContext pipelineContext) throws Exception {
-        subPipeline.newInvocation(pipelineContext).invoke();
+        invokeSubPipeline(subPipeline, pipelineContext);
         pipelineContext.invokeNext();
     }
 
@@ -17,6 +17,7 @@
 
 package com.alibaba.citrus.service.pipeline.impl.valve;
 
+import static com.alibaba.citrus.service.pipeline.impl.PipelineImpl.*;
 import static com.alibaba.citrus.springext.util.DomUtil.*;
 import static com.alibaba.citrus.springext.util.SpringExtUtil.*;
 import static com.alibaba.citrus.util.ObjectUtil.*;
@@ -80,7 +81,7 @@ public class TryCatchFinallyValve extends AbstractValve {
     public void invoke(PipelineContext pipelineContext) throws Exception {
         try {
             if (tryPipeline != null) {
-                tryPipeline.newInvocation(pipelineContext).invoke();
+                invokeSubPipeline(tryPipeline, pipelineContext);
             }
         } catch (Exception e) {
             if (catchPipeline != null) {
@@ -92,7 +93,7 @@ public class TryCatchFinallyValve extends AbstractValve {
             }
         } finally {
             if (finallyPipeline != null) {
-                finallyPipeline.newInvocation(pipelineContext).invoke();
+                invokeSubPipeline(finallyPipeline, pipelineContext);
             }
         }
 
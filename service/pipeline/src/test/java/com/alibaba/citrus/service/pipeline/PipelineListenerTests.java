@@ -0,0 +1,365 @@
+/*
+ * Copyright (c) 2002-2012 Alibaba Group Holding Limited.
+ * All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.alibaba.citrus.service.pipeline;
+
+import static com.alibaba.citrus.test.TestUtil.*;
+import static com.alibaba.citrus.util.CollectionUtil.*;
+import static org.junit.Assert.*;
+
+import java.lang.management.ManagementFactory;
+import java.lang.ref.WeakReference;
+import java.util.List;
+import java.util.Map;
+import javax.management.ObjectName;
+
+import com.alibaba.citrus.service.pipeline.impl.LatencyHistogram;
+import com.alibaba.citrus.service.pipeline.impl.PipelineImpl;
+import com.alibaba.citrus.service.pipeline.impl.ValveLatencyRecorder;
+import com.alibaba.citrus.service.pipeline.valve.LogAndInvokeSubValve;
+import com.alibaba.citrus.service.pipeline.valve.LogValve;
+import org.junit.Test;
+
+/**
+ * 测试<code>PipelineListener</code>以及<code>ValveLatencyRecorder</code>。
+ *
+ * @author Michael Zhou
+ */
+public class PipelineListenerTests extends AbstractPipelineTests {
+    private final List<String> events = createLinkedList();
+
+    @Test
+    public void listener_events() throws Exception {
+        PipelineImpl p2 = createPipeline(new LogValve(), new LogValve());
+        pipeline = createPipeline(new RecordingListener(), new LogValve(), new LogAndInvokeSubValve(p2));
+
+        assertInvoke(pipeline, false);
+        assertLog("1-1", "1-2", "2-1", "2-2");
+
+        // 子pipeline继承父pipeline的listeners
+        assertArrayEquals(new String[] { "before main 1-1", //
+                                         "before main 1-2", //
+                                         "before null 2-1", "before null 2-2", "after null 2-2", "after null 2-1", //
+                                         "after main 1-2", //
+                                         "after main 1-1" }, events.toArray());
+    }
+
+    @Test
+    public void listener_subPipelineWithOwnListeners() throws Exception {
+        PipelineImpl p2 = createPipeline(new RecordingListener("sub"), new LogValve());
+        p2.setLabel("sub");
+        pipeline = createPipeline(new RecordingListener(), new LogAndInvokeSubValve(p2));
+
+        assertInvoke(pipeline, false);
+        assertLog("1-1", "2-1");
+
+        assertArrayEquals(new String[] { "before main 1-1", //
+                                         "sub: before sub 2-1", "sub: after sub 2-1", //
+                                         "after main 1-1" }, events.toArray());
+    }
+
+    @Test
+    public void listener_exception() throws Exception {
+        final IllegalArgumentException exception = new IllegalArgumentException("test");
+        final Throwable[] caught = new Throwable[1];
+
+        pipeline = createPipeline(new PipelineListener() {
+            public void beforeValve(PipelineStates states, String pipelineName, Valve valve) {
+            }
+
+            public void afterValve(PipelineStates states, String pipelineName, Valve valve, long elapsedNanos,
+                                   long selfNanos, Throwable e) {
+                caught[0] = e;
+            }
+        }, new Valve() {
+            public void invoke(PipelineContext pipelineContext) throws Exception {
+                throw exception;
+            }
+        });
+
+        try {
+            pipeline.newInvocation().invoke();
+            fail();
+        } catch (PipelineException e) {
+            assertThat(e, exception(IllegalArgumentException.class, "Failed to invoke Valve[#1/1, level 1]"));
+        }
+
+        assertSame(exception, caught[0]);
+    }
+
+    @Test
+    public void listener_failure() throws Exception {
+        final IllegalArgumentException exception = new IllegalArgumentException("test");
+
+        pipeline = createPipeline(new PipelineListener() {
+            public void beforeValve(PipelineStates states, String pipelineName, Valve valve) {
+                throw new IllegalStateException("before");
+            }
+
+            public void afterValve(PipelineStates states, String pipelineName, Valve valve, long elapsedNanos,
+                                   long selfNanos, Throwable e) {
+                throw new IllegalStateException("after");
+            }
+        }, new LogValve(), new Valve() {
+            public void invoke(PipelineContext pipelineContext) throws Exception {
+                throw exception;
+            }
+        });
+
+        // listener的异常不会掩盖valve的异常
+        try {
+            pipeline.newInvocation().invoke();
+            fail();
+        } catch (PipelineException e) {
+            assertThat(e, exception(IllegalArgumentException.class, "Failed to invoke Valve[#2/2, level 1]"));
+        }
+
+        assertLog("1-1");
+    }
+
+    @Test
+    public void listener_selfTime() throws Exception {
+        final Map<Integer, long[]> times = createHashMap();
+
+        pipeline = createPipeline(new PipelineListener() {
+            public void beforeValve(PipelineStates states, String pipelineName, Valve valve) {
+            }
+
+            public void afterValve(PipelineStates states, String pipelineName, Valve valve, long elapsedNanos,
+                                   long selfNanos, Throwable exception) {
+                times.put(states.index(), new long[] { elapsedNanos, selfNanos });
+            }
+        }, new SleepValve(10), new SleepValve(50));
+
+        assertInvoke(pipeline, false);
+
+        long[] first = times.get(1);
+        long[] second = times.get(2);
+
+        // 第一个valve的总时间包括第二个valve的时间，而自身时间则不包括
+        assertEquals(second[0], second[1]);
+        assertTrue(first[0] >= second[0] + 10 * 1000000L);
+        assertTrue(first[1] < 50 * 1000000L);
+        assertEquals(first[0], first[1] + second[0]);
+    }
+
+    @Test
+    public void recorder() throws Exception {
+        ValveLatencyRecorder recorder = new ValveLatencyRecorder();
+        recorder.setRegisterMBean(false);
+        recorder.afterPropertiesSet();
+
+        PipelineImpl p2 = createPipeline(new SleepValve(5));
+        pipeline = createPipeline(recorder, new SleepValve(1), new LogAndInvokeSubValve(p2));
+
+        for (int i = 0; i < 3; i++) {
+            assertInvoke(pipeline, false);
+        }
+
+        assertArrayEquals(new String[] { "main#1 PipelineListenerTests.SleepValve", "main#2 LogAndInvokeSubValve",
+                                         "main#2/(anonymous)#1 PipelineListenerTests.SleepValve" },
+                          recorder.getValveHistograms().keySet().toArray());
+
+        assertArrayEquals(new String[] { "main", "main#2/(anonymous)" }, recorder.getPipelineHistograms().keySet()
+                                                                                .toArray());
+        assertArrayEquals(new Integer[] { 1, 2 }, recorder.getLevelHistograms().keySet().toArray());
+
+        assertEquals(3, recorder.getCount("valve: main#1 PipelineListenerTests.SleepValve"));
+        assertEquals(3, recorder.getCount("pipeline: main"));
+        assertEquals(6, recorder.getCount("level: 1"));
+        assertTrue(recorder.getPercentileMicros("pipeline: main", 99) >= 6000);
+        assertTrue(recorder.getPercentileMicros("valve: main#2 LogAndInvokeSubValve", 50) >= 5000);
+        assertEquals(7, recorder.getSummary().length);
+
+        recorder.reset();
+        assertEquals(0, recorder.getCount("pipeline: main"));
+    }
+
+    @Test
+    public void recorder_nestedAnonymousPipelines() throws Exception {
+        ValveLatencyRecorder recorder = new ValveLatencyRecorder();
+        recorder.setRegisterMBean(false);
+        recorder.afterPropertiesSet();
+
+        PipelineImpl p3 = createPipeline(new SleepValve(1));
+        PipelineImpl p2 = createPipeline(new SleepValve(1), new LogAndInvokeSubValve(p3));
+        pipeline = createPipeline(recorder, new LogAndInvokeSubValve(p2));
+
+        assertInvoke(pipeline, false);
+
+        assertArrayEquals(new String[] { "main#1 LogAndInvokeSubValve", //
+                                         "main#1/(anonymous)#1 PipelineListenerTests.SleepValve", //
+                                         "main#1/(anonymous)#2 LogAndInvokeSubValve", //
+                                         "main#1/(anonymous)#2/(anonymous)#1 PipelineListenerTests.SleepValve" },
+                          recorder.getValveHistograms().keySet().toArray());
+
+        assertArrayEquals(new String[] { "main", "main#1/(anonymous)", "main#1/(anonymous)#2/(anonymous)" },
+                          recorder.getPipelineHistograms().keySet().toArray());
+    }
+
+    @Test
+    public void recorder_samePosition() throws Exception {
+        ValveLatencyRecorder recorder = new ValveLatencyRecorder();
+        recorder.setRegisterMBean(false);
+        recorder.afterPropertiesSet();
+
+        // 同一个valve调用两个不同的匿名pipeline，如同<choose>中的不同分支
+        final PipelineImpl p2 = createPipeline(new SleepValve(1));
+        final PipelineImpl p3 = createPipeline(new SleepValve(1));
+
+        pipeline = createPipeline(recorder, new Valve() {
+            public void invoke(PipelineContext pipelineContext) throws Exception {
+                p2.newInvocation(pipelineContext).invoke();
+                p3.newInvocation(pipelineContext).invoke();
+                pipelineContext.invokeNext();
+            }
+        });
+
+        assertInvoke(pipeline, false);
+        assertInvoke(pipeline, false);
+
+        Map<String, LatencyHistogram> histograms = recorder.getValveHistograms();
+
+        assertEquals(3, histograms.size());
+        assertEquals(2, histograms.get("main#1/(anonymous)#1 PipelineListenerTests.SleepValve").getCount());
+        assertEquals(2, histograms.get("main#1/(anonymous)#1 PipelineListenerTests.SleepValve (2)").getCount());
+    }
+
+    @Test
+    public void recorder_dynamicPipelines() throws Exception {
+        ValveLatencyRecorder recorder = new ValveLatencyRecorder();
+        recorder.setRegisterMBean(false);
+        recorder.afterPropertiesSet();
+
+        // 每次创建新的pipeline和valve，旧的valve被回收后，新的valve沿用其统计，而不是增加新的key
+        WeakReference<Valve> oldValve = invokeNewPipeline(recorder);
+
+        for (int i = 0; i < 100 && oldValve.get() != null; i++) {
+            System.gc();
+            Thread.sleep(10);
+        }
+
+        assertNull(oldValve.get());
+
+        invokeNewPipeline(recorder);
+
+        Map<String, LatencyHistogram> histograms = recorder.getValveHistograms();
+
+        assertEquals(1, histograms.size());
+        assertEquals(2, histograms.get("main#1 PipelineListenerTests.SleepValve").getCount());
+    }
+
+    private WeakReference<Valve> invokeNewPipeline(ValveLatencyRecorder recorder) throws Exception {
+        Valve valve = new SleepValve(1);
+        assertInvoke(createPipeline(recorder, valve), false);
+        return new WeakReference<Valve>(valve);
+    }
+
+    @Test
+    public void recorder_mbean() throws Exception {
+        ValveLatencyRecorder recorder = new ValveLatencyRecorder();
+        recorder.setBeanName("testRecorder");
+        recorder.afterPropertiesSet();
+
+        ObjectName name = new ObjectName(
+                "com.alibaba.citrus.service.pipeline:type=ValveLatencyRecorder,name=\"testRecorder\"");
+
+        try {
+            assertTrue(ManagementFactory.getPlatformMBeanServer().isRegistered(name));
+            assertArrayEquals(new String[0], (String[]) ManagementFactory.getPlatformMBeanServer()
+                                                                         .getAttribute(name, "Keys"));
+        } finally {
+            recorder.destroy();
+        }
+
+        assertFalse(ManagementFactory.getPlatformMBeanServer().isRegistered(name));
+    }
+
+    @Test
+    public void histogram() {
+        LatencyHistogram histogram = new LatencyHistogram();
+
+        assertEquals(0, histogram.getCount());
+        assertEquals(0, histogram.getPercentileMicros(99));
+
+        for (int i = 1; i <= 1000; i++) {
+            histogram.recordNanos(i * 1000L * 1000L); // 1ms - 1000ms
+        }
+
+        assertEquals(1000, histogram.getCount());
+        assertEquals(500500, histogram.getMeanMicros());
+        assertEquals(1000000, histogram.getMaxMicros());
+        assertEquals(500000, histogram.getPercentileMicros(50), 500000 * 0.04);
+        assertEquals(990000, histogram.getPercentileMicros(99), 990000 * 0.04);
+        assertEquals(1000000, histogram.getPercentileMicros(100));
+
+        try {
+            histogram.getPercentileMicros(0);
+            fail();
+        } catch (IllegalArgumentException e) {
+            assertThat(e, exception("percentile should be in range of (0, 100]"));
+        }
+
+        histogram.reset();
+        assertEquals(0, histogram.getCount());
+        assertEquals(0, histogram.getMaxMicros());
+    }
+
+    private PipelineImpl createPipeline(PipelineListener listener, Valve... valves) throws Exception {
+        PipelineImpl pipeline = new PipelineImpl();
+        pipeline.setValves(valves);
+        pipeline.setListeners(new PipelineListener[] { listener });
+        pipeline.setLabel("main");
+        pipeline.afterPropertiesSet();
+        return pipeline;
+    }
+
+    private class RecordingListener implements PipelineListener {
+        private final String prefix;
+
+        public RecordingListener() {
+            this("");
+        }
+
+        public RecordingListener(String name) {
+            this.prefix = name.length() == 0 ? "" : name + ": ";
+        }
+
+        public void beforeValve(PipelineStates states, String pipelineName, Valve valve) {
+            events.add(prefix + "before " + pipelineName + " " + states.level() + "-" + states.index());
+        }
+
+        public void afterValve(PipelineStates states, String pipelineName, Valve valve, long elapsedNanos,
+                               long selfNanos, Throwable exception) {
+            assertTrue(elapsedNanos >= selfNanos);
+            events.add(prefix + "after " + pipelineName + " " + states.level() + "-" + states.index());
+        }
+    }
+
+    private static class SleepValve implements Valve {
+        private final long millis;
+
+        public SleepValve(long millis) {
+            this.millis = millis;
+        }
+
+        public void invoke(PipelineContext pipelineContext) throws Exception {
+            Thread.sleep(millis);
+            pipelineContext.invokeNext();
+        }
+    }
+}
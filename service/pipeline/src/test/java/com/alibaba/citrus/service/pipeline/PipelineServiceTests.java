@@ -26,6 +26,10 @@ import java.lang.reflect.Method;
 import java.lang.reflect.Proxy;
 import java.util.Map;
 
+import com.alibaba.citrus.service.pipeline.impl.PipelineImpl;
+import com.alibaba.citrus.service.pipeline.impl.ValveLatencyRecorder;
+import com.alibaba.citrus.service.pipeline.impl.valve.SubPipelineValve;
+
 import org.junit.BeforeClass;
 import org.junit.Test;
 import org.springframework.beans.factory.FactoryBean;
@@ -53,6 +57,34 @@ public class PipelineServiceTests extends AbstractPipelineTests {
         assertLog("1-1", "1-2", "1-3");
     }
 
+    @Test
+    public void compiled_pipeline() {
+        pipeline = getPipelineImplFromFactory("compiled");
+
+        assertTrue(pipeline.isCompiled());
+        assertTrue(((PipelineImpl) ((SubPipelineValve) pipeline.getValves()[1]).getSubPipeline()).isCompiled());
+        assertFalse(getPipelineImplFromFactory("simple").isCompiled());
+
+        assertInvoke(pipeline, false);
+        assertInvoke(pipeline, false);
+        assertLog("1-1", "2-1", "2-2", "1-3", "1-1", "2-1", "2-2", "1-3");
+    }
+
+    @Test
+    public void instrumented_pipeline() {
+        pipeline = getPipelineImplFromFactory("instrumented");
+        ValveLatencyRecorder recorder = (ValveLatencyRecorder) factory.getBean("recorder");
+
+        assertArrayEquals(new PipelineListener[] { recorder }, pipeline.getListeners());
+
+        assertInvoke(pipeline, false);
+        assertLog("1-1", "2-1");
+
+        assertArrayEquals(new String[] { "instrumented", "instrumented#2/(anonymous)" }, recorder
+                .getPipelineHistograms().keySet().toArray());
+        assertEquals(1, recorder.getCount("valve: instrumented#2 SubPipelineValve"));
+    }
+
     @Test
     public void scoped_pipeline() {
         Pipeline pipelineProxy = assertProxy(getPipelineFromFactory("scoped"));
@@ -17,10 +17,15 @@
 
 package com.alibaba.citrus.service.pipeline;
 
+import static com.alibaba.citrus.service.pipeline.impl.PipelineImpl.*;
 import static com.alibaba.citrus.test.TestUtil.*;
+import static com.alibaba.citrus.util.CollectionUtil.*;
 import static org.junit.Assert.*;
 
+import java.util.List;
+
 import com.alibaba.citrus.service.pipeline.impl.PipelineImpl;
+import com.alibaba.citrus.service.pipeline.impl.valve.SubPipelineValve;
 import com.alibaba.citrus.service.pipeline.valve.LogAndBreakValve;
 import com.alibaba.citrus.service.pipeline.valve.LogAndInvokeSubValve;
 import com.alibaba.citrus.service.pipeline.valve.LogAndReturnValve;
@@ -492,4 +497,145 @@ public class PipelineTests extends AbstractPipelineTests {
         assertInvoke(pipeline, true);
         assertLog("1-1", "1-2", "2-1", "2-2", "3-1", "3-2"/* break */);
     }
+
+    @Test
+    public void compiled_propagate() throws Exception {
+        PipelineImpl p2 = createPipeline(new LogValve());
+        SubPipelineValve subPipelineValve = new SubPipelineValve();
+        subPipelineValve.setSubPipeline(p2);
+        subPipelineValve.afterPropertiesSet();
+
+        assertFalse(p2.isCompiled());
+
+        pipeline = createCompiledPipeline(new LogValve(), subPipelineValve, new LogValve());
+
+        assertTrue(pipeline.isCompiled());
+        assertTrue(p2.isCompiled());
+
+        assertInvoke(pipeline, false);
+        assertLog("1-1", "2-1", "1-3");
+    }
+
+    @Test
+    public void compiled_getAttribute() throws Exception {
+        pipeline = createCompiledPipeline(new LogValve(), new LogAndBreakValve(), new LogValve());
+        PipelineInvocationHandle handle = assertInvoke(pipeline, true);
+
+        assertNull(handle.getAttribute("test"));
+        assertNull(getFieldValue(handle, "slotValues", null));
+
+        // setAttribute，保存在slot中，而不创建attributes
+        handle.setAttribute("test", null);
+        assertNotNull(getFieldValue(handle, "slotValues", null));
+        assertNull(getFieldValue(handle, "attributes", null));
+        assertNull(handle.getAttribute("test"));
+
+        handle.setAttribute("test", "value");
+        handle.setAttribute("test2", "value2");
+        assertEquals("value", handle.getAttribute("test"));
+        assertEquals("value2", handle.getAttribute("test2"));
+        assertNull(getFieldValue(handle, "attributes", null));
+
+        // 再次invoke，context不同
+        handle = assertInvoke(pipeline, true);
+        assertNull(handle.getAttribute("test"));
+    }
+
+    @Test
+    public void compiled_getAttribute_tooManySlots() throws Exception {
+        pipeline = createCompiledPipeline(new LogValve());
+        PipelineInvocationHandle handle = assertInvoke(pipeline, false);
+
+        for (int i = 0; i < 100; i++) {
+            handle.setAttribute("key" + i, i);
+        }
+
+        for (int i = 0; i < 100; i++) {
+            assertEquals(i, handle.getAttribute("key" + i));
+        }
+
+        assertNotNull(getFieldValue(handle, "attributes", null)); // 超出slot上限的attributes
+    }
+
+    @Test
+    public void compiled_reuseContexts() throws Exception {
+        final List<PipelineContext> contexts = createLinkedList();
+
+        final PipelineImpl p2 = createCompiledPipeline(new Valve() {
+            public void invoke(PipelineContext pipelineContext) throws Exception {
+                contexts.add(pipelineContext);
+                assertEquals("parent", pipelineContext.getAttribute("name"));
+                assertNull(pipelineContext.getAttribute("count"));
+                pipelineContext.setAttribute("count", 1);
+                pipelineContext.invokeNext();
+            }
+        }, new LogValve());
+
+        pipeline = createPipeline(new Valve() {
+            public void invoke(PipelineContext pipelineContext) throws Exception {
+                pipelineContext.setAttribute("name", "parent");
+                invokeSubPipeline(p2, pipelineContext);
+                invokeSubPipeline(p2, pipelineContext);
+                assertNull(pipelineContext.getAttribute("count"));
+                pipelineContext.invokeNext();
+            }
+        });
+
+        assertInvoke(pipeline, false);
+        assertInvoke(pipeline, false);
+        assertLog("2-2", "2-2", "2-2", "2-2");
+
+        assertEquals(4, contexts.size());
+
+        for (PipelineContext context : contexts) {
+            assertSame(contexts.get(0), context);
+        }
+
+        // 已归还的context不再引用父context
+        assertNull(getFieldValue(contexts.get(0), "parentContext", null));
+    }
+
+    @Test
+    public void compiled_pinnedContexts() throws Exception {
+        final List<PipelineContext> contexts = createLinkedList();
+        final List<PipelineInvocationHandle> handles = createLinkedList();
+        final PipelineImpl p3 = createPipeline(new LogValve());
+
+        final PipelineImpl p2 = createCompiledPipeline(new Valve() {
+            public void invoke(PipelineContext pipelineContext) throws Exception {
+                contexts.add(pipelineContext);
+                handles.add(p3.newInvocation(pipelineContext)); // handle被保留，context不能被复用
+                pipelineContext.invokeNext();
+            }
+        });
+
+        pipeline = createPipeline(new Valve() {
+            public void invoke(PipelineContext pipelineContext) throws Exception {
+                pipelineContext.setAttribute("name", "parent");
+                invokeSubPipeline(p2, pipelineContext);
+                invokeSubPipeline(p2, pipelineContext);
+                pipelineContext.invokeNext();
+            }
+        });
+
+        assertInvoke(pipeline, false);
+
+        assertEquals(2, contexts.size());
+        assertNotSame(contexts.get(0), contexts.get(1));
+
+        for (PipelineInvocationHandle handle : handles) {
+            assertEquals("parent", handle.getAttribute("name"));
+            handle.invoke();
+        }
+
+        assertLog("3-1", "3-1");
+    }
+
+    private PipelineImpl createCompiledPipeline(Valve... valves) throws Exception {
+        PipelineImpl pipeline = new PipelineImpl();
+        pipeline.setValves(valves);
+        pipeline.setCompiled(true);
+        pipeline.afterPropertiesSet();
+        return pipeline;
+    }
 }
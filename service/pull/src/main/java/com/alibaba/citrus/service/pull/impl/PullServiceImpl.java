@@ -24,7 +24,6 @@ import static com.alibaba.citrus.util.StringUtil.*;
 import static java.util.Collections.*;
 import static org.springframework.web.context.request.RequestAttributes.*;
 
-import java.util.Iterator;
 import java.util.Map;
 import java.util.Set;
 import java.util.concurrent.atomic.AtomicInteger;
@@ -84,6 +83,18 @@ public class PullServiceImpl extends AbstractService<PullService> implements Pul
     // 1. singleton or non-singleton tools in set
     private Set<ToolName> toolNames;
 
+    // 所有非runtime tools的简单名称，已排序
+    private Set<String> simpleToolNames;
+
+    // toolName -> slot，所有非runtime tools的索引，初始化后不再改变，被所有的context共享。
+    // 每个context只需要用一个数组来保存已被pull的tools。
+    private Map<String, ToolSlot> toolSlots;
+    private int                   slotCount;
+
+    // 按名称排序的runtime tool-set factories，以保证单元测试的确定性
+    private String[]                runtimeToolSetNames;
+    private RuntimeToolSetFactory[] runtimeToolSetFactories;
+
     public void setApplicationContext(ApplicationContext factory) {
         this.beanFactory = factory;
     }
@@ -248,6 +259,43 @@ public class PullServiceImpl extends AbstractService<PullService> implements Pul
         }
 
         toolFactories = null;
+
+        initToolSlots();
+    }
+
+    /** 为所有非runtime tools建立索引，被所有的context共享。 */
+    private void initToolSlots() {
+        toolSlots = createHashMap();
+        slotCount = 0;
+
+        // 当名称重复时，优先级依次为：pre-pulled tools、tools、tools in set
+        for (Map.Entry<String, ToolSetInfo<ToolSetFactory>> e : toolsInSet.entrySet()) {
+            toolSlots.put(e.getKey(), new ToolSlot(slotCount++, null, null, e.getValue()));
+        }
+
+        for (Map.Entry<String, ToolFactory> e : tools.entrySet()) {
+            toolSlots.put(e.getKey(), new ToolSlot(slotCount++, null, e.getValue(), null));
+        }
+
+        for (Map.Entry<String, Object> e : prePulledTools.entrySet()) {
+            toolSlots.put(e.getKey(), new ToolSlot(-1, e.getValue(), null, null));
+        }
+
+        Map<String, RuntimeToolSetFactory> sortedToolsRuntime = createTreeMap();
+        sortedToolsRuntime.putAll(toolsRuntime);
+
+        runtimeToolSetNames = sortedToolsRuntime.keySet().toArray(new String[sortedToolsRuntime.size()]);
+        runtimeToolSetFactories = sortedToolsRuntime.values().toArray(
+                new RuntimeToolSetFactory[sortedToolsRuntime.size()]);
+
+        Set<String> names = createTreeSet();
+
+        for (ToolName toolName : toolNames) {
+            names.add(toolName.getName());
+        }
+
+        toolNames = unmodifiableSet(toolNames);
+        simpleToolNames = unmodifiableSet(names);
     }
 
     public PullContext getContext() {
@@ -344,6 +392,27 @@ public class PullServiceImpl extends AbstractService<PullService> implements Pul
         }
     }
 
+    /**
+     * 代表一个非runtime tool在context中的位置。
+     * <p>
+     * Pre-pulled tool的<code>index</code>为<code>-1</code>，其值被所有的context共享。
+     * </p>
+     */
+    private static final class ToolSlot {
+        private final int                         index;
+        private final Object                      prePulledTool;
+        private final ToolFactory                 toolFactory;
+        private final ToolSetInfo<ToolSetFactory> toolSetInfo;
+
+        private ToolSlot(int index, Object prePulledTool, ToolFactory toolFactory,
+                         ToolSetInfo<ToolSetFactory> toolSetInfo) {
+            this.index = index;
+            this.prePulledTool = prePulledTool;
+            this.toolFactory = toolFactory;
+            this.toolSetInfo = toolSetInfo;
+        }
+    }
+
     static class ToolSetInfo<F> {
         private final String toolSetName;
         private final F      factory;
@@ -370,10 +439,11 @@ public class PullServiceImpl extends AbstractService<PullService> implements Pul
 
     private class PullContextImpl implements PullContext {
         private final PullContext                                     parentContext;
-        private final Map<String, Object>                             pulledTools;
-        private final Map<String, RuntimeToolSetFactory>              toolsRuntime;
-        private final Map<String, ToolSetInfo<RuntimeToolSetFactory>> toolsInRuntimeSet;
-        private final Set<ToolName>                                   toolNames;
+        private final Object[]                                        pulledTools; // slot -> encoded tool
+        private       int                                             runtimeToolSetIndex;
+        private       Map<String, ToolSetInfo<RuntimeToolSetFactory>> toolsInRuntimeSet;
+        private       Map<String, Object>                             pulledRuntimeTools;
+        private       Set<ToolName>                                   runtimeToolNames;
         private       Set<String>                                     toolNamesIncludingParent;
         private       Map<String, Object>                             toolsIncludingParent;
 
@@ -384,16 +454,8 @@ public class PullServiceImpl extends AbstractService<PullService> implements Pul
                 parentContext = parent.getContext();
             }
 
-            pulledTools = createHashMap();
-            toolsRuntime = createTreeMap(); // 排序以保证单元测试的确定性
-            toolsInRuntimeSet = createHashMap();
-            toolNames = createHashSet();
-
-            // copy runtime tools
-            toolsRuntime.putAll(PullServiceImpl.this.toolsRuntime);
-
-            // copy tool names and sort
-            toolNames.addAll(PullServiceImpl.this.toolNames);
+            // 只创建一个数组，而不复制任何tool表，以减少每个请求的开销
+            pulledTools = slotCount == 0 ? EMPTY_OBJECT_ARRAY : new Object[slotCount];
         }
 
         public Object pull(String name) {
@@ -404,21 +466,23 @@ public class PullServiceImpl extends AbstractService<PullService> implements Pul
             }
 
             Object tool;
+            ToolSlot slot = toolSlots.get(name);
 
-            // 如果name已经被pre-pulled，则直接返回
-            tool = prePulledTools.get(name);
-
-            if (tool == null) {
-                // 检查本地缓存，如果name早已存在，则直接返回
-                tool = pulledTools.get(name);
+            if (slot != null) {
+                // 如果name已经被pre-pulled，则直接返回
+                tool = slot.prePulledTool;
 
                 if (tool == null) {
-                    tool = doPulling(name); // encoded tool
+                    // 检查本地缓存，如果name早已存在，则直接返回
+                    tool = pulledTools[slot.index];
 
-                    if (tool != null) {
-                        pulledTools.put(name, tool);
+                    if (tool == null) {
+                        tool = doPulling(slot, name); // encoded tool
+                        pulledTools[slot.index] = tool;
                     }
                 }
+            } else {
+                tool = pullRuntimeTool(name);
             }
 
             // 如果有parent context，则试着从parent中取得
@@ -429,15 +493,13 @@ public class PullServiceImpl extends AbstractService<PullService> implements Pul
             }
         }
 
-        private Object doPulling(String name) {
+        private Object doPulling(ToolSlot slot, String name) {
             // 如果存在于tools中，则pull之。
-            ToolFactory toolFactory = tools.get(name);
-
-            if (toolFactory != null) {
+            if (slot.toolFactory != null) {
                 Object tool;
 
                 try {
-                    tool = toolFactory.createTool();
+                    tool = slot.toolFactory.createTool();
                 } catch (Exception ex) {
                     throw new PullException("Could not create tool: \"" + name + "\"", ex);
                 }
@@ -449,64 +511,78 @@ public class PullServiceImpl extends AbstractService<PullService> implements Pul
                 return encode(tool);
             }
 
-            // 如果存在于toolsInSet中，则pull之。
-            ToolSetInfo<ToolSetFactory> toolSetInfo = toolsInSet.get(name);
+            // 否则必然存在于toolsInSet中，pull之。
+            ToolSetInfo<ToolSetFactory> toolSetInfo = slot.toolSetInfo;
+            Object tool;
 
-            if (toolSetInfo != null) {
-                Object tool;
+            try {
+                tool = toolSetInfo.getFactory().createTool(name);
+            } catch (Exception ex) {
+                throw new PullException("Could not create tool: \"" + toolSetInfo.getToolSetName() + "." + name
+                                        + "\"", ex);
+            }
 
-                try {
-                    tool = toolSetInfo.getFactory().createTool(name);
-                } catch (Exception ex) {
-                    throw new PullException("Could not create tool: \"" + toolSetInfo.getToolSetName() + "." + name
-                                            + "\"", ex);
-                }
+            if (getLogger().isDebugEnabled()) {
+                getLogger().debug("Pulled tool: {}.{} = {}", new Object[] { toolSetInfo.getToolSetName(), name, tool });
+            }
 
-                if (getLogger().isDebugEnabled()) {
-                    getLogger().debug("Pulled tool: {}.{} = {}",
-                                      new Object[] { toolSetInfo.getToolSetName(), name, tool });
-                }
+            return encode(tool);
+        }
 
-                return encode(tool);
+        private Object pullRuntimeTool(String name) {
+            if (runtimeToolSetFactories.length == 0) {
+                return null;
+            }
+
+            // 检查本地缓存，如果name早已存在，则直接返回
+            Object tool = pulledRuntimeTools == null ? null : pulledRuntimeTools.get(name);
+
+            if (tool != null) {
+                return tool;
             }
 
             // 如果存在于toolsInRuntimeSet中，则pull之。
             pullToolsRuntime(name);
 
-            ToolSetInfo<RuntimeToolSetFactory> runtimeToolSetInfo = toolsInRuntimeSet.get(name);
+            ToolSetInfo<RuntimeToolSetFactory> runtimeToolSetInfo = toolsInRuntimeSet == null ? null
+                                                                                              : toolsInRuntimeSet.get(name);
 
-            if (runtimeToolSetInfo != null) {
-                Object tool;
+            if (runtimeToolSetInfo == null) {
+                return null;
+            }
 
-                try {
-                    tool = runtimeToolSetInfo.getFactory().createTool(runtimeToolSetInfo.getTool(), name);
-                } catch (Exception ex) {
-                    throw new PullException("Could not create tool: \"" + runtimeToolSetInfo.getToolSetName() + "."
-                                            + name + "\"", ex);
-                }
+            try {
+                tool = runtimeToolSetInfo.getFactory().createTool(runtimeToolSetInfo.getTool(), name);
+            } catch (Exception ex) {
+                throw new PullException("Could not create tool: \"" + runtimeToolSetInfo.getToolSetName() + "."
+                                        + name + "\"", ex);
+            }
 
-                if (getLogger().isDebugEnabled()) {
-                    getLogger().debug("Pulled tool: {}.{} = {}",
-                                      new Object[] { runtimeToolSetInfo.getToolSetName(), name, tool });
-                }
+            if (getLogger().isDebugEnabled()) {
+                getLogger().debug("Pulled tool: {}.{} = {}",
+                                  new Object[] { runtimeToolSetInfo.getToolSetName(), name, tool });
+            }
 
-                return encode(tool);
+            tool = encode(tool);
+
+            if (pulledRuntimeTools == null) {
+                pulledRuntimeTools = createHashMap();
             }
 
-            return null;
+            pulledRuntimeTools.put(name, tool);
+
+            return tool;
         }
 
         private void pullToolsRuntime(String stopOnName) {
-            if (stopOnName != null && toolsInRuntimeSet.containsKey(stopOnName)) {
+            if (stopOnName != null && toolsInRuntimeSet != null && toolsInRuntimeSet.containsKey(stopOnName)) {
                 return;
             }
 
-            for (Iterator<Map.Entry<String, RuntimeToolSetFactory>> i = toolsRuntime.entrySet().iterator(); i.hasNext(); ) {
-                Map.Entry<String, RuntimeToolSetFactory> entry = i.next();
-
-                i.remove();
-                String toolSetName = entry.getKey();
-                RuntimeToolSetFactory factory = entry.getValue();
+            while (runtimeToolSetIndex < runtimeToolSetFactories.length) {
+                int index = runtimeToolSetIndex++;
+                String toolSetName = runtimeToolSetNames[index];
+                RuntimeToolSetFactory factory = runtimeToolSetFactories[index];
 
                 int count = 0;
                 Object tool;
@@ -522,9 +598,14 @@ public class PullServiceImpl extends AbstractService<PullService> implements Pul
                 if (names != null) {
                     for (String nameInSet : names) {
                         if (nameInSet != null) {
+                            if (toolsInRuntimeSet == null) {
+                                toolsInRuntimeSet = createHashMap();
+                                runtimeToolNames = createHashSet();
+                            }
+
                             toolsInRuntimeSet.put(nameInSet, new ToolSetInfo<RuntimeToolSetFactory>(toolSetName,
                                                                                                     factory, tool));
-                            toolNames.add(new ToolName(toolSetName, nameInSet, false));
+                            runtimeToolNames.add(new ToolName(toolSetName, nameInSet, false));
                             count++;
                         }
                     }
@@ -533,7 +614,7 @@ public class PullServiceImpl extends AbstractService<PullService> implements Pul
                 getLogger().debug("Queued {} tools for runtime tool-set \"{}\"", count, toolSetName);
 
                 // 假如已经找到了stopOnName，则立即返回
-                if (stopOnName != null && toolsInRuntimeSet.containsKey(stopOnName)) {
+                if (stopOnName != null && toolsInRuntimeSet != null && toolsInRuntimeSet.containsKey(stopOnName)) {
                     break;
                 }
             }
@@ -551,13 +632,18 @@ public class PullServiceImpl extends AbstractService<PullService> implements Pul
 
         public Set<String> getToolNames() {
             if (toolNamesIncludingParent == null) {
-                Set<String> names = createTreeSet();
+                if (parentContext == null && runtimeToolSetFactories.length == 0) {
+                    // 无需复制，直接返回共享的名称表
+                    toolNamesIncludingParent = simpleToolNames;
+                } else {
+                    Set<String> names = createTreeSet();
 
-                for (ToolName toolName : populateToolNames()) {
-                    names.add(toolName.getName());
-                }
+                    for (ToolName toolName : populateToolNames()) {
+                        names.add(toolName.getName());
+                    }
 
-                toolNamesIncludingParent = unmodifiableSet(names);
+                    toolNamesIncludingParent = unmodifiableSet(names);
+                }
             }
 
             return toolNamesIncludingParent;
@@ -568,16 +654,22 @@ public class PullServiceImpl extends AbstractService<PullService> implements Pul
 
             pullToolsRuntime(null);
 
-            if (parentContext == null) {
+            if (parentContext == null && runtimeToolNames == null) {
                 toolNamesIncludingParent = toolNames;
             } else {
                 toolNamesIncludingParent = createHashSet();
 
-                for (String parentToolName : parentContext.getQualifiedToolNames()) {
-                    toolNamesIncludingParent.add(new ToolName("_parent", parentToolName, true));
+                if (parentContext != null) {
+                    for (String parentToolName : parentContext.getQualifiedToolNames()) {
+                        toolNamesIncludingParent.add(new ToolName("_parent", parentToolName, true));
+                    }
                 }
 
                 toolNamesIncludingParent.addAll(toolNames);
+
+                if (runtimeToolNames != null) {
+                    toolNamesIncludingParent.addAll(runtimeToolNames);
+                }
             }
 
             return toolNamesIncludingParent;
@@ -585,18 +677,16 @@ public class PullServiceImpl extends AbstractService<PullService> implements Pul
 
         public Map<String, Object> getTools() {
             if (toolsIncludingParent == null) {
-                for (String name : tools.keySet()) {
-                    pull(name);
-                }
-
-                for (String name : toolsInSet.keySet()) {
+                for (String name : toolSlots.keySet()) {
                     pull(name);
                 }
 
                 pullToolsRuntime(null);
 
-                for (String name : toolsInRuntimeSet.keySet()) {
-                    pull(name);
+                if (toolsInRuntimeSet != null) {
+                    for (String name : toolsInRuntimeSet.keySet()) {
+                        pull(name);
+                    }
                 }
 
                 toolsIncludingParent = createHashMap();
@@ -605,8 +695,11 @@ public class PullServiceImpl extends AbstractService<PullService> implements Pul
                     toolsIncludingParent.putAll(parentContext.getTools());
                 }
 
-                putAll(toolsIncludingParent, pulledTools);
-                putAll(toolsIncludingParent, prePulledTools);
+                if (pulledRuntimeTools != null) {
+                    putAll(toolsIncludingParent, pulledRuntimeTools);
+                }
+
+                putAll(toolsIncludingParent, getSlotTools(true));
 
                 toolsIncludingParent = unmodifiableMap(toolsIncludingParent);
             }
@@ -614,6 +707,28 @@ public class PullServiceImpl extends AbstractService<PullService> implements Pul
             return toolsIncludingParent;
         }
 
+        /** 取得slots中已被pull的tools。 */
+        private Map<String, Object> getSlotTools(boolean includePrePulled) {
+            Map<String, Object> slotTools = createHashMap();
+
+            for (Map.Entry<String, ToolSlot> entry : toolSlots.entrySet()) {
+                ToolSlot slot = entry.getValue();
+                Object tool = slot.prePulledTool;
+
+                if (tool == null) {
+                    tool = pulledTools[slot.index];
+                } else if (!includePrePulled) {
+                    continue;
+                }
+
+                if (tool != null) {
+                    slotTools.put(entry.getKey(), tool);
+                }
+            }
+
+            return slotTools;
+        }
+
         private void putAll(Map<String, Object> tools, Map<String, Object> objects) {
             for (Map.Entry<String, Object> entry : objects.entrySet()) {
                 tools.put(entry.getKey(), decode(entry.getValue()));
@@ -623,10 +738,15 @@ public class PullServiceImpl extends AbstractService<PullService> implements Pul
         @Override
         public String toString() {
             MapBuilder mb = new MapBuilder();
+            Map<String, Object> pulled = getSlotTools(false);
+
+            if (pulledRuntimeTools != null) {
+                pulled.putAll(pulledRuntimeTools);
+            }
 
             mb.append("prePulledTools", new MapBuilder().appendAll(prePulledTools).setSortKeys(true)
                                                         .setPrintCount(true));
-            mb.append("pulledTools", new MapBuilder().appendAll(pulledTools).setSortKeys(true).setPrintCount(true));
+            mb.append("pulledTools", new MapBuilder().appendAll(pulled).setSortKeys(true).setPrintCount(true));
 
             ToStringBuilder sb = new ToStringBuilder().append("PullContext").append(mb);
 
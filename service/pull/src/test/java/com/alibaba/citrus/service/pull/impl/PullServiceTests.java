@@ -58,11 +58,8 @@ public class PullServiceTests extends AbstractPullServiceTests {
     private Map<String, Object>                      prePulledTools;
     private Set<ToolName>                            toolNames;
 
-    // context instance vars
-    private Map<String, Object>                             context_pulledTools;
-    private Map<String, RuntimeToolSetFactory>              context_toolsRuntime;
-    private Map<String, ToolSetInfo<RuntimeToolSetFactory>> context_toolsInRuntimeSet;
-    private Set<ToolName>                                   context_toolNames;
+    // context instance
+    private PullContext context_impl;
 
     @Before
     public void init() {
@@ -156,15 +153,9 @@ public class PullServiceTests extends AbstractPullServiceTests {
         context = service.getContext();
         assertNotNull(context);
 
-        context_pulledTools = getFieldValue(context, "pulledTools", Map.class);
-        context_toolsRuntime = getFieldValue(context, "toolsRuntime", Map.class);
-        context_toolsInRuntimeSet = getFieldValue(context, "toolsInRuntimeSet", Map.class);
-        context_toolNames = getFieldValue(context, "toolNames", Set.class);
+        context_impl = context;
 
-        assertNotNull(context_pulledTools);
-        assertNotNull(context_toolsRuntime);
-        assertNotNull(context_toolsInRuntimeSet);
-        assertNotNull(context_toolNames);
+        assertNotNull(getFieldValue(context, "pulledTools", Object[].class));
     }
 
     private <T> Map<String, T> sort(Map<String, T> map) {
@@ -790,45 +781,27 @@ public class PullServiceTests extends AbstractPullServiceTests {
         setRequestAttrs(); // 确保每次取得同一个context，以便于测试
 
         // init parent context
-        Map<String, Object> parent_pulledTools;
-        Map<String, RuntimeToolSetFactory> parent_toolsRuntime;
-        Map<String, ToolSetInfo<RuntimeToolSetFactory>> parent_toolsInRuntimeSet;
-        Set<ToolName> parent_toolNames;
+        PullContext parent_impl;
 
         populateService();
         initService();
-        parent_pulledTools = context_pulledTools;
-        parent_toolsRuntime = context_toolsRuntime;
-        parent_toolsInRuntimeSet = context_toolsInRuntimeSet;
-        parent_toolNames = context_toolNames;
+        parent_impl = context_impl;
 
         // init this context
-        Map<String, Object> this_pulledTools;
-        Map<String, RuntimeToolSetFactory> this_toolsRuntime;
-        Map<String, ToolSetInfo<RuntimeToolSetFactory>> this_toolsInRuntimeSet;
-        Set<ToolName> this_toolNames;
+        PullContext this_impl;
 
         initServiceWithParent();
-        this_pulledTools = context_pulledTools;
-        this_toolsRuntime = context_toolsRuntime;
-        this_toolsInRuntimeSet = context_toolsInRuntimeSet;
-        this_toolNames = context_toolNames;
+        this_impl = context_impl;
 
         assertContext(/* pulledTools */0, /* toolsRuntime */1, /* toolsInRuntimeSet */0, /* toolNames */7);
 
         // restore parent context and test it
-        context_pulledTools = parent_pulledTools;
-        context_toolsRuntime = parent_toolsRuntime;
-        context_toolsInRuntimeSet = parent_toolsInRuntimeSet;
-        context_toolNames = parent_toolNames;
+        context_impl = parent_impl;
 
         context_pull();
 
         // restore this context and test it
-        context_pulledTools = this_pulledTools;
-        context_toolsRuntime = this_toolsRuntime;
-        context_toolsInRuntimeSet = this_toolsInRuntimeSet;
-        context_toolNames = this_toolNames;
+        context_impl = this_impl;
 
         assertContext(/* pulledTools */0, /* toolsRuntime */0, /* toolsInRuntimeSet */1, /* toolNames */8);
 
@@ -853,10 +826,26 @@ public class PullServiceTests extends AbstractPullServiceTests {
     }
 
     private void assertContext(int pulledTools, int toolsRuntime, int toolsInRuntimeSet, int toolNames) {
-        assertEquals(pulledTools, context_pulledTools.size());
-        assertEquals(toolsRuntime, context_toolsRuntime.size());
-        assertEquals(toolsInRuntimeSet, context_toolsInRuntimeSet.size());
-        assertEquals(toolNames, context_toolNames.size());
+        PullServiceImpl service = getFieldValue(context_impl, "this$0", PullServiceImpl.class);
+        Object[] context_pulledTools = getFieldValue(context_impl, "pulledTools", Object[].class);
+        Map<?, ?> context_pulledRuntimeTools = getFieldValue(context_impl, "pulledRuntimeTools", Map.class);
+        Map<?, ?> context_toolsInRuntimeSet = getFieldValue(context_impl, "toolsInRuntimeSet", Map.class);
+        Set<?> context_runtimeToolNames = getFieldValue(context_impl, "runtimeToolNames", Set.class);
+        int runtimeToolSetIndex = getFieldValue(context_impl, "runtimeToolSetIndex", Integer.class);
+        int runtimeToolSetCount = getFieldValue(service, "runtimeToolSetFactories", Object[].class).length;
+        int pulledToolsCount = context_pulledRuntimeTools == null ? 0 : context_pulledRuntimeTools.size();
+
+        for (Object tool : context_pulledTools) {
+            if (tool != null) {
+                pulledToolsCount++;
+            }
+        }
+
+        assertEquals(pulledTools, pulledToolsCount);
+        assertEquals(toolsRuntime, runtimeToolSetCount - runtimeToolSetIndex);
+        assertEquals(toolsInRuntimeSet, context_toolsInRuntimeSet == null ? 0 : context_toolsInRuntimeSet.size());
+        assertEquals(toolNames, getFieldValue(service, "toolNames", Set.class).size()
+                                + (context_runtimeToolNames == null ? 0 : context_runtimeToolNames.size()));
     }
 
     @Test
@@ -1031,6 +1020,32 @@ public class PullServiceTests extends AbstractPullServiceTests {
         assertEquals(str, context.toString());
     }
 
+    @Test
+    public void context_toolIndex() throws Exception {
+        PullServiceImpl service = new PullServiceImpl();
+
+        Map<String, Object> factories = createHashMap();
+        factories.put("singleton", new MyToolFactory(true));
+        factories.put("prototype", new MyToolFactory(false));
+        service.setToolFactories(factories);
+        service.afterPropertiesSet();
+
+        // 非web环境，每次取得新的context，但共享同一个tool索引
+        PullContext c1 = service.getContext();
+        PullContext c2 = service.getContext();
+
+        assertNotSame(c1, c2);
+        assertEquals(1, getFieldValue(c1, "pulledTools", Object[].class).length);
+
+        assertSameAndNotNull(c1.pull("singleton"), c2.pull("singleton"));
+        assertNotSame(c1.pull("prototype"), c2.pull("prototype"));
+        assertSame(c1.pull("prototype"), c1.pull("prototype"));
+
+        // 没有parent和runtime tools时，名称表被所有context共享
+        assertSame(c1.getToolNames(), c2.getToolNames());
+        assertArrayEquals(new Object[] { "prototype", "singleton" }, c1.getToolNames().toArray());
+    }
+
     @Test
     public void context_sharing() throws Exception {
         setRequestAttrs();
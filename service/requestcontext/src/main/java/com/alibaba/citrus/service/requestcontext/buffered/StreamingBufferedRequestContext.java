@@ -0,0 +1,56 @@
+/*
+ * Copyright (c) 2002-2012 Alibaba Group Holding Limited.
+ * All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.alibaba.citrus.service.requestcontext.buffered;
+
+/**
+ * 支持streaming模式的<code>BufferedRequestContext</code>。
+ * <p>
+ * 在streaming模式下，最外层buffer中的内容可以在页面渲染完成之前，逐步提交给servlet容器。
+ * </p>
+ *
+ * @author Michael Zhou
+ */
+public interface StreamingBufferedRequestContext extends BufferedRequestContext {
+    /**
+     * 是否为streaming模式。
+     *
+     * @return 如果是，则返回<code>true</code>
+     */
+    boolean isStreaming();
+
+    /**
+     * 设置streaming模式。在streaming模式下，{@link #flush()}方法会将最外层buffer中的内容提交给servlet容器。
+     *
+     * @param streaming 是否为streaming模式
+     */
+    void setStreaming(boolean streaming);
+
+    /**
+     * 在streaming模式下，将最外层buffer中已有的内容提交给servlet容器，并清空之。
+     * 此后，每当最外层buffer中的内容超过一定大小，都将被自动提交。
+     * <p>
+     * 嵌套的buffer（通过<code>pushBuffer()</code>创建的）不受影响。
+     * 在有内容被提交之前，所有内容仍保存在内存中，因此出错时仍可以清除buffer并显示错误页面；
+     * 此后，<code>resetBuffer()</code>将抛出<code>IllegalStateException</code>。
+     * 如果不是streaming模式，则该方法不做任何事情。
+     * </p>
+     *
+     * @throws BufferCommitFailedException 如果提交失败
+     */
+    void flush() throws BufferCommitFailedException;
+}
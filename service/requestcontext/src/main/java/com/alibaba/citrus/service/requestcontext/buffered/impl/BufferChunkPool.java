@@ -0,0 +1,95 @@
+/*
+ * Copyright (c) 2002-2012 Alibaba Group Holding Limited.
+ * All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.alibaba.citrus.service.requestcontext.buffered.impl;
+
+/**
+ * 每个线程一个的buffer块池，用来回收{@link ChunkedByteBuffer}和{@link ChunkedCharBuffer}所用的定长块。
+ * <p>
+ * 每个池中最多保留{@link #MAX_POOLED_CHUNKS}个字节块和同样多个字符块，超出的部分交给GC回收。
+ * 池是线程独占的，因此无需同步；即使一个块在另一个线程中被回收，也只是换了一个池而已，不会有问题。
+ * </p>
+ *
+ * @author Michael Zhou
+ */
+final class BufferChunkPool {
+    /** 每个块的大小（字节数或字符数）。 */
+    static final int CHUNK_SIZE = 4096;
+
+    /** 每个线程中每种块最多保留的个数。 */
+    static final int MAX_POOLED_CHUNKS = 32;
+
+    private static final ThreadLocal<BufferChunkPool> pools = new ThreadLocal<BufferChunkPool>() {
+        @Override
+        protected BufferChunkPool initialValue() {
+            return new BufferChunkPool();
+        }
+    };
+
+    private final byte[][] byteChunks = new byte[MAX_POOLED_CHUNKS][];
+    private final char[][] charChunks = new char[MAX_POOLED_CHUNKS][];
+    private int byteChunkCount;
+    private int charChunkCount;
+
+    private BufferChunkPool() {
+    }
+
+    /** 取得当前线程的池。 */
+    static BufferChunkPool getPool() {
+        return pools.get();
+    }
+
+    byte[] allocateBytes() {
+        if (byteChunkCount > 0) {
+            byte[] chunk = byteChunks[--byteChunkCount];
+            byteChunks[byteChunkCount] = null;
+            return chunk;
+        }
+
+        return new byte[CHUNK_SIZE];
+    }
+
+    void recycle(byte[] chunk) {
+        if (chunk.length == CHUNK_SIZE && byteChunkCount < MAX_POOLED_CHUNKS) {
+            byteChunks[byteChunkCount++] = chunk;
+        }
+    }
+
+    char[] allocateChars() {
+        if (charChunkCount > 0) {
+            char[] chunk = charChunks[--charChunkCount];
+            charChunks[charChunkCount] = null;
+            return chunk;
+        }
+
+        return new char[CHUNK_SIZE];
+    }
+
+    void recycle(char[] chunk) {
+        if (chunk.length == CHUNK_SIZE && charChunkCount < MAX_POOLED_CHUNKS) {
+            charChunks[charChunkCount++] = chunk;
+        }
+    }
+
+    int getPooledByteChunks() {
+        return byteChunkCount;
+    }
+
+    int getPooledCharChunks() {
+        return charChunkCount;
+    }
+}
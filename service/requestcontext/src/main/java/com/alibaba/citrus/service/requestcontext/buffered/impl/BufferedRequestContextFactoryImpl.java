@@ -27,6 +27,27 @@ import com.alibaba.citrus.service.requestcontext.support.AbstractRequestContextF
  * @author Michael Zhou
  */
 public class BufferedRequestContextFactoryImpl extends AbstractRequestContextFactory<BufferedRequestContext> {
+    private boolean streaming;
+    private int flushThreshold = BufferedResponseImpl.DEFAULT_FLUSH_THRESHOLD;
+
+    /** 是否默认开启streaming模式。 */
+    public boolean isStreaming() {
+        return streaming;
+    }
+
+    public void setStreaming(boolean streaming) {
+        this.streaming = streaming;
+    }
+
+    /** 在streaming模式下，自动提交最外层buffer的阈值。 */
+    public int getFlushThreshold() {
+        return flushThreshold;
+    }
+
+    public void setFlushThreshold(int flushThreshold) {
+        this.flushThreshold = flushThreshold;
+    }
+
     /**
      * 包装一个request context。
      *
@@ -34,7 +55,12 @@ public class BufferedRequestContextFactoryImpl extends AbstractRequestContextFac
      * @return request context
      */
     public BufferedRequestContext getRequestContextWrapper(RequestContext wrappedContext) {
-        return new BufferedRequestContextImpl(wrappedContext);
+        BufferedRequestContextImpl requestContext = new BufferedRequestContextImpl(wrappedContext);
+
+        requestContext.setStreaming(streaming);
+        requestContext.setFlushThreshold(flushThreshold);
+
+        return requestContext;
     }
 
     /** 本类提供了延迟提交content的功能。 */
@@ -21,7 +21,7 @@ import java.io.IOException;
 
 import com.alibaba.citrus.service.requestcontext.RequestContext;
 import com.alibaba.citrus.service.requestcontext.buffered.BufferCommitFailedException;
-import com.alibaba.citrus.service.requestcontext.buffered.BufferedRequestContext;
+import com.alibaba.citrus.service.requestcontext.buffered.StreamingBufferedRequestContext;
 import com.alibaba.citrus.service.requestcontext.support.AbstractRequestContextWrapper;
 import com.alibaba.citrus.util.io.ByteArray;
 
@@ -31,7 +31,7 @@ import com.alibaba.citrus.util.io.ByteArray;
  *
  * @author Michael Zhou
  */
-public class BufferedRequestContextImpl extends AbstractRequestContextWrapper implements BufferedRequestContext {
+public class BufferedRequestContextImpl extends AbstractRequestContextWrapper implements StreamingBufferedRequestContext {
     /**
      * 包装一个<code>RequestContext</code>对象。
      *
@@ -99,6 +99,42 @@ public class BufferedRequestContextImpl extends AbstractRequestContextWrapper im
         return getBufferedResponse().popCharBuffer();
     }
 
+    /**
+     * 是否为streaming模式。
+     *
+     * @return 如果是，则返回<code>true</code>
+     */
+    public boolean isStreaming() {
+        return getBufferedResponse().isStreaming();
+    }
+
+    /**
+     * 设置streaming模式。在streaming模式下，{@link #flush()}方法会将最外层buffer中的内容提交给servlet容器。
+     *
+     * @param streaming 是否为streaming模式
+     */
+    public void setStreaming(boolean streaming) {
+        getBufferedResponse().setStreaming(streaming);
+    }
+
+    /** 设置自动提交最外层buffer的阈值（字节数或字符数）。 */
+    public void setFlushThreshold(int flushThreshold) {
+        getBufferedResponse().setFlushThreshold(flushThreshold);
+    }
+
+    /**
+     * 在streaming模式下，将最外层buffer中已有的内容提交给servlet容器，并清空之。
+     *
+     * @throws BufferCommitFailedException 如果提交失败
+     */
+    public void flush() throws BufferCommitFailedException {
+        try {
+            getBufferedResponse().flush();
+        } catch (IOException e) {
+            throw new BufferCommitFailedException(e);
+        }
+    }
+
     /**
      * 将buffer中的内容提交到真正的servlet输出流中。
      * <p>
@@ -26,7 +26,6 @@ import java.io.InputStreamReader;
 import java.io.OutputStream;
 import java.io.OutputStreamWriter;
 import java.io.PrintWriter;
-import java.io.StringWriter;
 import java.io.Writer;
 import java.util.EmptyStackException;
 import java.util.LinkedList;
@@ -45,18 +44,33 @@ import org.slf4j.LoggerFactory;
 
 /**
  * 包裹<code>HttpServletResponse</code>，使之输出到内存中。
+ * <p>
+ * 内存buffer由定长的块组成，块在线程内部的池中循环使用（参见{@link BufferChunkPool}），
+ * 这样，即使一个页面中包含很多control，每次<code>pushBuffer()</code>也不会产生新的大块内存。
+ * </p>
+ * <p>
+ * 在streaming模式下，调用{@link #flush()}会将最外层buffer中的内容提交给servlet容器。
+ * 此后，每当最外层buffer中的内容超过<code>flushThreshold</code>时，都会被自动提交，而嵌套的buffer不受影响。
+ * 在第一次调用<code>flush()</code>之前，所有内容仍然保存在内存中，因此出错时仍可以清除buffer并显示错误页面；
+ * 一旦有内容被提交，<code>resetBuffer()</code>将抛出<code>IllegalStateException</code>。
+ * </p>
  *
  * @author Michael Zhou
  */
 public class BufferedResponseImpl extends AbstractResponseWrapper {
-    private static final Logger  log       = LoggerFactory.getLogger(BufferedResponseImpl.class);
-    private              boolean buffering = true;
-    private Stack<ByteArrayOutputStream> bytesStack;
-    private Stack<StringWriter>          charsStack;
-    private ServletOutputStream          stream;
-    private PrintWriter                  streamAdapter;
-    private PrintWriter                  writer;
-    private ServletOutputStream          writerAdapter;
+    public static final  int     DEFAULT_FLUSH_THRESHOLD = 8192;
+    private static final Logger  log                     = LoggerFactory.getLogger(BufferedResponseImpl.class);
+    private              boolean buffering               = true;
+    private              boolean streaming;
+    private              int     flushThreshold          = DEFAULT_FLUSH_THRESHOLD;
+    private              boolean flushed;
+    private              boolean flushedContent;
+    private Stack<ChunkedByteBuffer> bytesStack;
+    private Stack<ChunkedCharBuffer> charsStack;
+    private ServletOutputStream      stream;
+    private PrintWriter              streamAdapter;
+    private PrintWriter              writer;
+    private ServletOutputStream      writerAdapter;
 
     /**
      * 创建一个<code>BufferedResponseImpl</code>。
@@ -97,10 +111,10 @@ public class BufferedResponseImpl extends AbstractResponseWrapper {
             // 注意，servletStream一旦创建，就不改变，
             // 如果需要改变，只需要改变其下面的bytes流即可。
             if (bytesStack == null) {
-                bytesStack = new Stack<ByteArrayOutputStream>();
+                bytesStack = new Stack<ChunkedByteBuffer>();
             }
 
-            ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+            ChunkedByteBuffer bytes = newBottomByteBuffer();
 
             bytesStack.push(bytes);
             stream = new BufferedServletOutputStream(bytes);
@@ -142,10 +156,10 @@ public class BufferedResponseImpl extends AbstractResponseWrapper {
             // 注意，servletWriter一旦创建，就不改变，
             // 如果需要改变，只需要改变其下面的chars流即可。
             if (charsStack == null) {
-                charsStack = new Stack<StringWriter>();
+                charsStack = new Stack<ChunkedCharBuffer>();
             }
 
-            StringWriter chars = new StringWriter();
+            ChunkedCharBuffer chars = newBottomCharBuffer();
 
             charsStack.push(chars);
             writer = new BufferedServletWriter(chars);
@@ -193,22 +207,33 @@ public class BufferedResponseImpl extends AbstractResponseWrapper {
     /**
      * 清除所有buffers，常用于显示出错信息。
      *
-     * @throws IllegalStateException 如果response已经commit
+     * @throws IllegalStateException 如果response已经commit，或在streaming模式下已有内容被提交
      */
     @Override
     public void resetBuffer() {
+        if (flushedContent) {
+            throw new IllegalStateException("Unable to resetBuffer() since some content has been flushed in streaming mode");
+        }
+
         if (buffering) {
             flushBufferAdapter();
+            flushed = false;
 
             if (stream != null) {
-                bytesStack.clear();
-                bytesStack.add(new ByteArrayOutputStream());
+                while (bytesStack.size() > 0) {
+                    bytesStack.pop().release();
+                }
+
+                bytesStack.add(newBottomByteBuffer());
                 ((BufferedServletOutputStream) stream).updateOutputStream(bytesStack.peek());
             }
 
             if (writer != null) {
-                charsStack.clear();
-                charsStack.add(new StringWriter());
+                while (charsStack.size() > 0) {
+                    charsStack.pop().release();
+                }
+
+                charsStack.add(newBottomCharBuffer());
                 ((BufferedServletWriter) writer).updateWriter(charsStack.peek());
             }
         }
@@ -250,6 +275,125 @@ public class BufferedResponseImpl extends AbstractResponseWrapper {
         }
     }
 
+    /** 是否为streaming模式。 */
+    public boolean isStreaming() {
+        return streaming;
+    }
+
+    /**
+     * 设置streaming模式。在streaming模式下，{@link #flush()}方法会将最外层buffer中的内容提交给servlet容器。
+     *
+     * @param streaming 是否为streaming模式
+     */
+    public void setStreaming(boolean streaming) {
+        this.streaming = streaming;
+    }
+
+    /** 取得自动提交最外层buffer的阈值（字节数或字符数）。 */
+    public int getFlushThreshold() {
+        return flushThreshold;
+    }
+
+    /** 设置自动提交最外层buffer的阈值（字节数或字符数）。 */
+    public void setFlushThreshold(int flushThreshold) {
+        this.flushThreshold = flushThreshold;
+    }
+
+    /** 在streaming模式下，是否已经调用过<code>flush()</code>。 */
+    public boolean isFlushed() {
+        return flushed;
+    }
+
+    /** 在streaming模式下，是否已有内容被提交给servlet容器。此后将不能再<code>resetBuffer()</code>。 */
+    public boolean isFlushedContent() {
+        return flushedContent;
+    }
+
+    /**
+     * 在streaming模式下，将最外层buffer中的内容提交到servlet输出流中，并清空最外层buffer。
+     * 此后，当最外层buffer中的内容超过<code>flushThreshold</code>时，将被自动提交。
+     * <p>
+     * 嵌套的buffer（通过<code>pushBuffer()</code>创建的）不受影响。如果不是streaming模式，则该方法不做任何事情。
+     * </p>
+     *
+     * @throws IOException 如果输入输出失败
+     */
+    public void flush() throws IOException {
+        if (!buffering || !streaming) {
+            return;
+        }
+
+        flushed = true;
+        flushBottomBuffer();
+    }
+
+    /** 将最外层buffer中的内容提交到servlet输出流中。 */
+    private void flushBottomBuffer() throws IOException {
+        flushBufferAdapter();
+
+        if (stream != null) {
+            ChunkedByteBuffer bytes = bytesStack.bottom();
+
+            if (bytes.size() > 0) {
+                OutputStream ostream = super.getOutputStream();
+
+                flushedContent = true;
+
+                try {
+                    bytes.writeTo(ostream);
+                } finally {
+                    bytes.release();
+                }
+
+                ostream.flush();
+
+                log.debug("Flushed the bottom byte buffer to the Servlet output stream");
+            }
+        } else if (writer != null) {
+            ChunkedCharBuffer chars = charsStack.bottom();
+
+            if (chars.size() > 0) {
+                PrintWriter writer = super.getWriter();
+
+                flushedContent = true;
+
+                try {
+                    chars.writeTo(writer);
+                } finally {
+                    chars.release();
+                }
+
+                writer.flush();
+
+                log.debug("Flushed the bottom character buffer to the Servlet writer");
+            }
+        }
+    }
+
+    /** 创建最外层的字节buffer，在streaming模式下，当内容超过阈值时自动提交。 */
+    private ChunkedByteBuffer newBottomByteBuffer() {
+        return new ChunkedByteBuffer() {
+            @Override
+            protected void chunkFilled() throws IOException {
+                if (streaming && flushed && size() >= flushThreshold) {
+                    flushBottomBuffer();
+                }
+            }
+        };
+    }
+
+    /** 创建最外层的字符buffer，在streaming模式下，当内容超过阈值时自动提交。 */
+    private ChunkedCharBuffer newBottomCharBuffer() {
+        return new ChunkedCharBuffer() {
+            @Override
+            protected void chunkFilled() throws IOException {
+                if (streaming && flushed && size() >= flushThreshold) {
+                    flushBottomBuffer();
+                }
+            }
+        };
+    }
+
     /**
      * 创建新的buffer，保存老的buffer。
      *
@@ -269,7 +413,7 @@ public class BufferedResponseImpl extends AbstractResponseWrapper {
 
         // 向stream或writer stack中压入新的buffer。
         if (stream != null) {
-            ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+            ChunkedByteBuffer bytes = new ChunkedByteBuffer();
 
             bytesStack.push(bytes);
 
@@ -277,7 +421,7 @@ public class BufferedResponseImpl extends AbstractResponseWrapper {
 
             log.debug("Pushed new byte buffer (stack size is " + bytesStack.size() + ")");
         } else {
-            StringWriter chars = new StringWriter();
+            ChunkedCharBuffer chars = new ChunkedCharBuffer();
 
             charsStack.push(chars);
 
@@ -305,19 +449,12 @@ public class BufferedResponseImpl extends AbstractResponseWrapper {
         if (stream == null) {
             return new ByteArray(EMPTY_BYTE_ARRAY, 0, 0);
         } else {
-            flushBufferAdapter();
+            ChunkedByteBuffer block = popByteBlock();
+            ByteArray bytes = block.toByteArray();
 
-            ByteArrayOutputStream block = bytesStack.pop();
+            block.release();
 
-            if (bytesStack.size() == 0) {
-                bytesStack.push(new ByteArrayOutputStream());
-            }
-
-            ((BufferedServletOutputStream) stream).updateOutputStream(bytesStack.peek());
-
-            log.debug("Popped the last byte buffer (stack size is " + bytesStack.size() + ")");
-
-            return block.toByteArray();
+            return bytes;
         }
     }
 
@@ -341,20 +478,47 @@ public class BufferedResponseImpl extends AbstractResponseWrapper {
         if (writer == null) {
             return EMPTY_STRING;
         } else {
-            flushBufferAdapter();
+            ChunkedCharBuffer block = popCharBlock();
+            String chars = block.toString();
 
-            StringWriter block = charsStack.pop();
+            block.release();
 
-            if (charsStack.size() == 0) {
-                charsStack.push(new StringWriter());
-            }
+            return chars;
+        }
+    }
 
-            ((BufferedServletWriter) writer).updateWriter(charsStack.peek());
+    /** 弹出最近的字节buffer，如果堆栈中只有一个buffer，则弹出后再创建一个新的。 */
+    private ChunkedByteBuffer popByteBlock() {
+        flushBufferAdapter();
 
-            log.debug("Popped the last character buffer (stack size is " + charsStack.size() + ")");
+        ChunkedByteBuffer block = bytesStack.pop();
 
-            return block.toString();
+        if (bytesStack.size() == 0) {
+            bytesStack.push(newBottomByteBuffer());
         }
+
+        ((BufferedServletOutputStream) stream).updateOutputStream(bytesStack.peek());
+
+        log.debug("Popped the last byte buffer (stack size is " + bytesStack.size() + ")");
+
+        return block;
+    }
+
+    /** 弹出最近的字符buffer，如果堆栈中只有一个buffer，则弹出后再创建一个新的。 */
+    private ChunkedCharBuffer popCharBlock() {
+        flushBufferAdapter();
+
+        ChunkedCharBuffer block = charsStack.pop();
+
+        if (charsStack.size() == 0) {
+            charsStack.push(newBottomCharBuffer());
+        }
+
+        ((BufferedServletWriter) writer).updateWriter(charsStack.peek());
+
+        log.debug("Popped the last character buffer (stack size is " + charsStack.size() + ")");
+
+        return block;
     }
 
     /**
@@ -384,10 +548,15 @@ public class BufferedResponseImpl extends AbstractResponseWrapper {
 
             flushBufferAdapter();
 
+            // 直接将各个块写到servlet输出流中，而不是先合并成一个大的数组。
             OutputStream ostream = super.getOutputStream();
-            ByteArray bytes = popByteBuffer();
+            ChunkedByteBuffer block = popByteBlock();
 
-            bytes.writeTo(ostream);
+            try {
+                block.writeTo(ostream);
+            } finally {
+                block.release();
+            }
 
             log.debug("Committed buffered bytes to the Servlet output stream");
         }
@@ -401,9 +570,13 @@ public class BufferedResponseImpl extends AbstractResponseWrapper {
             flushBufferAdapter();
 
             PrintWriter writer = super.getWriter();
-            String chars = popCharBuffer();
+            ChunkedCharBuffer block = popCharBlock();
 
-            writer.write(chars);
+            try {
+                block.writeTo(writer);
+            } finally {
+                block.release();
+            }
 
             log.debug("Committed buffered characters to the Servlet writer");
         }
@@ -442,6 +615,14 @@ public class BufferedResponseImpl extends AbstractResponseWrapper {
             list.addLast(object);
         }
 
+        public T bottom() {
+            if (list.isEmpty()) {
+                throw new EmptyStackException();
+            }
+
+            return list.getFirst();
+        }
+
         public T pop() {
             if (list.isEmpty()) {
                 throw new EmptyStackException();
@@ -465,14 +646,14 @@ public class BufferedResponseImpl extends AbstractResponseWrapper {
 
     /** 代表一个将内容保存在内存中的<code>ServletOutputStream</code>。 */
     private static class BufferedServletOutputStream extends Servlet3OutputStream {
-        private ByteArrayOutputStream bytes;
+        private ChunkedByteBuffer bytes;
 
-        public BufferedServletOutputStream(ByteArrayOutputStream bytes) {
+        public BufferedServletOutputStream(ChunkedByteBuffer bytes) {
             super(null);
             this.bytes = bytes;
         }
 
-        public void updateOutputStream(ByteArrayOutputStream bytes) {
+        public void updateOutputStream(ChunkedByteBuffer bytes) {
             this.bytes = bytes;
         }
 
@@ -505,11 +686,11 @@ public class BufferedResponseImpl extends AbstractResponseWrapper {
 
     /** 代表一个将内容保存在内存中的<code>PrintWriter</code>。 */
     private static class BufferedServletWriter extends PrintWriter {
-        public BufferedServletWriter(StringWriter chars) {
+        public BufferedServletWriter(ChunkedCharBuffer chars) {
             super(chars);
         }
 
-        public void updateWriter(StringWriter chars) {
+        public void updateWriter(ChunkedCharBuffer chars) {
             this.out = chars;
         }
     }
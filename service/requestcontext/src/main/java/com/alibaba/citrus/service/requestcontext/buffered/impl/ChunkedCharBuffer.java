@@ -0,0 +1,171 @@
+/*
+ * Copyright (c) 2002-2012 Alibaba Group Holding Limited.
+ * All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.alibaba.citrus.service.requestcontext.buffered.impl;
+
+import static com.alibaba.citrus.util.BasicConstant.*;
+import static com.alibaba.citrus.util.CollectionUtil.*;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.util.ArrayList;
+
+/**
+ * 由定长块组成的字符buffer。
+ * <p>
+ * 和<code>StringWriter</code>不同，扩展时只需追加一个新块，无需复制已有的内容。
+ * 块是从{@link BufferChunkPool}中取得的，调用{@link #release()}之后归还给池。
+ * 第一次写入之前不分配任何块，因此空的buffer几乎没有开销。
+ * </p>
+ *
+ * @author Michael Zhou
+ */
+class ChunkedCharBuffer extends Writer {
+    private final ArrayList<char[]> chunks = createArrayList();
+    private char[] current;
+    private int    pos;
+    private int    size;
+
+    @Override
+    public void write(int c) throws IOException {
+        if (current == null || pos == current.length) {
+            nextChunk();
+        }
+
+        current[pos++] = (char) c;
+        size++;
+    }
+
+    @Override
+    public void write(char[] cbuf, int off, int len) throws IOException {
+        if (off < 0 || len < 0 || off + len > cbuf.length) {
+            throw new IndexOutOfBoundsException();
+        }
+
+        while (len > 0) {
+            if (current == null || pos == current.length) {
+                nextChunk();
+            }
+
+            int n = Math.min(len, current.length - pos);
+
+            System.arraycopy(cbuf, off, current, pos, n);
+            pos += n;
+            off += n;
+            len -= n;
+            size += n;
+        }
+    }
+
+    @Override
+    public void write(String str, int off, int len) throws IOException {
+        if (off < 0 || len < 0 || off + len > str.length()) {
+            throw new IndexOutOfBoundsException();
+        }
+
+        while (len > 0) {
+            if (current == null || pos == current.length) {
+                nextChunk();
+            }
+
+            int n = Math.min(len, current.length - pos);
+
+            str.getChars(off, off + n, current, pos);
+            pos += n;
+            off += n;
+            len -= n;
+            size += n;
+        }
+    }
+
+    @Override
+    public void flush() {
+    }
+
+    @Override
+    public void close() {
+    }
+
+    /** 取得buffer中的字符数。 */
+    public int size() {
+        return size;
+    }
+
+    /** 取得buffer的内容。 */
+    @Override
+    public String toString() {
+        if (size == 0) {
+            return EMPTY_STRING;
+        }
+
+        if (chunks.size() == 1) {
+            return new String(current, 0, pos);
+        }
+
+        StringBuilder buf = new StringBuilder(size);
+
+        for (int i = 0; i < chunks.size(); i++) {
+            buf.append(chunks.get(i), 0, getChunkLength(i));
+        }
+
+        return buf.toString();
+    }
+
+    /** 将所有块依次写到writer中，不复制内容。 */
+    public void writeTo(Writer out) throws IOException {
+        for (int i = 0; i < chunks.size(); i++) {
+            out.write(chunks.get(i), 0, getChunkLength(i));
+        }
+    }
+
+    /** 将所有块归还给池，并清空buffer。 */
+    public void release() {
+        if (!chunks.isEmpty()) {
+            BufferChunkPool pool = BufferChunkPool.getPool();
+
+            for (char[] chunk : chunks) {
+                pool.recycle(chunk);
+            }
+
+            chunks.clear();
+        }
+
+        current = null;
+        pos = 0;
+        size = 0;
+    }
+
+    private int getChunkLength(int index) {
+        return index == chunks.size() - 1 ? pos : chunks.get(index).length;
+    }
+
+    /**
+     * 当前块已写满、即将分配新块时被调用。子类可以在此时将已有的内容输出并调用{@link #release()}。
+     */
+    protected void chunkFilled() throws IOException {
+    }
+
+    private void nextChunk() throws IOException {
+        if (current != null) {
+            chunkFilled();
+        }
+
+        current = BufferChunkPool.getPool().allocateChars();
+        pos = 0;
+        chunks.add(current);
+    }
+}
@@ -88,6 +88,9 @@ public interface ParserRequestContext extends RequestContext {
     /** 是否对输入参数进行trimming。默认为<code>true</code>。 */
     boolean isTrimming();
 
+    /** 是否推迟对参数值的解码和过滤，直到第一次取得该参数时才进行。默认为<code>false</code>。 */
+    boolean isLazyParsing();
+
     /**
      * 取得所有query参数。第一次执行此方法时，将会解析request，从中取得所有的参数。
      *
@@ -0,0 +1,604 @@
+/*
+ * Copyright (c) 2002-2012 Alibaba Group Holding Limited.
+ * All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.alibaba.citrus.service.requestcontext.parser.filter;
+
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * 用单遍扫描的状态机代替正则表达式实现的<code>HTMLInputFilter</code>。
+ * <p>
+ * 过滤的语义（允许的tag、属性、协议、实体，以及闭合、补全尖括号、删除空tag等规则）和
+ * <code>HTMLInputFilter</code>完全相同，对于同样的输入和配置，两者的输出保持一致。
+ * 不同之处在于：
+ * </p>
+ * <ul>
+ * <li>补全尖括号只需扫描一遍输入，而不是反复执行多个正则表达式替换。</li>
+ * <li>tag、属性和实体均在扫描过程中直接解析，不需要在每次调用时编译正则表达式。</li>
+ * <li>删除空tag时，先用<code>indexOf</code>定位，对于大多数不含空tag的输入几乎没有开销。</li>
+ * </ul>
+ *
+ * @author Michael Zhou
+ */
+@SuppressWarnings({ "unchecked", "rawtypes" })
+public class FastHTMLInputFilter extends HTMLInputFilter {
+    public FastHTMLInputFilter() {
+        super();
+    }
+
+    public FastHTMLInputFilter(Map allowed, String[] deniedTags, String[] selfClosingTags, String[] needClosingTags,
+                               String[] allowedProtocols, String[] protocolAtts, String[] removeBlanks,
+                               String[] allowedEntities) {
+        super(allowed, deniedTags, selfClosingTags, needClosingTags, allowedProtocols, protocolAtts, removeBlanks,
+              allowedEntities);
+    }
+
+    @Override
+    public String filter(String input, boolean isHtml) {
+        String s = input;
+
+        if (isHtml) {
+            s = escapeComments(s);
+            s = balanceHTML(s);
+        }
+
+        s = checkTags(s, isHtml);
+
+        if (isHtml) {
+            s = processRemoveBlanks(s);
+            s = validateEntities(s);
+        }
+
+        return s;
+    }
+
+    /** 转义第一个注释中的特殊字符。 */
+    private String escapeComments(String s) {
+        int start = s.indexOf("<!--");
+
+        if (start < 0) {
+            return s;
+        }
+
+        int end = s.indexOf("-->", start + 4);
+
+        if (end < 0) {
+            return s;
+        }
+
+        StringBuilder buf = new StringBuilder(s.length() + 16);
+
+        buf.append(s, 0, start + 4);
+
+        for (int i = start + 4; i < end; i++) {
+            char c = s.charAt(i);
+
+            switch (c) {
+                case '&':
+                    buf.append("&amp;");
+                    break;
+
+                case '"':
+                    buf.append("&quot;");
+                    break;
+
+                case '<':
+                    buf.append("&lt;");
+                    break;
+
+                case '>':
+                    buf.append("&gt;");
+                    break;
+
+                default:
+                    buf.append(c);
+                    break;
+            }
+        }
+
+        buf.append(s, end, s.length());
+
+        return buf.toString();
+    }
+
+    /**
+     * 补全尖括号：去掉开头的<code>&gt;</code>，为未闭合的<code>&lt;</code>补上<code>&gt;</code>，
+     * 为孤立的<code>&gt;</code>补上<code>&lt;</code>。
+     */
+    private String balanceHTML(String s) {
+        int len = s.length();
+        int start = len > 0 && s.charAt(0) == '>' ? 1 : 0;
+        StringBuilder buf = new StringBuilder(len + 16);
+
+        // 为未闭合的'<'补上'>'，'>'被插在下一个'<'或结尾之前。
+        for (int i = start; i < len; i++) {
+            char c = s.charAt(i);
+
+            buf.append(c);
+
+            if (c == '<') {
+                for (int j = i + 1; ; j++) {
+                    if (j < len && s.charAt(j) == '<' || isEnd(s, start, j)) {
+                        buf.append(s, i + 1, j).append('>');
+                        i = j - 1;
+                        break;
+                    }
+
+                    if (s.charAt(j) == '>') {
+                        break;
+                    }
+                }
+            }
+        }
+
+        // 为孤立的'>'补上'<'，'<'被插在开头或前一个'>'之后。
+        String t = buf.toString();
+        int tlen = t.length();
+        int copied = 0;
+        int from = 1;
+
+        buf.setLength(0);
+
+        int next = nextAngleBracket(t, 0);
+
+        if (next >= 0 && t.charAt(next) == '>') {
+            buf.append('<').append(t, 0, next);
+            copied = next;
+            from = next == 0 ? 1 : next;
+        }
+
+        for (int gt; (gt = t.indexOf('>', from)) >= 0; ) {
+            next = nextAngleBracket(t, gt + 1);
+
+            if (next >= 0 && t.charAt(next) == '>') {
+                buf.append(t, copied, gt + 1).append('<').append(t, gt + 1, next);
+                copied = next;
+                from = next;
+            } else {
+                from = gt + 1;
+            }
+        }
+
+        if (copied == 0 && buf.length() == 0) {
+            return t;
+        }
+
+        return buf.append(t, copied, tlen).toString();
+    }
+
+    private String checkTags(String s, boolean isHtml) {
+        Map tagCounts = new HashMap(); // <String, Integer>
+        StringBuilder buf = new StringBuilder(s.length() + 16);
+        int len = s.length();
+        int copied = 0;
+
+        for (int lt; (lt = s.indexOf('<', copied)) >= 0; ) {
+            int gt = s.indexOf('>', lt + 1);
+
+            if (gt < 0) {
+                break;
+            }
+
+            buf.append(s, copied, lt);
+            processTag(buf, s.substring(lt + 1, gt), isHtml, tagCounts);
+            copied = gt + 1;
+        }
+
+        buf.append(s, copied, len);
+
+        if (isHtml) {
+            for (Iterator i = tagCounts.entrySet().iterator(); i.hasNext(); ) {
+                Map.Entry entry = (Map.Entry) i.next();
+                int count = ((Integer) entry.getValue()).intValue();
+
+                for (int j = 0; j < count; j++) {
+                    buf.append("</").append(entry.getKey()).append(">");
+                }
+            }
+        }
+
+        return buf.toString();
+    }
+
+    private void processTag(StringBuilder buf, String s, boolean isHtml, Map tagCounts) {
+        int len = s.length();
+
+        // ending tags
+        if (len > 1 && s.charAt(0) == '/' && isNameChar(s.charAt(1))) {
+            String name = s.substring(1, nameEnd(s, 1)).toLowerCase();
+
+            if ((!isHtml || vAllowed.containsKey(name)) && !vSelfClosingTags.contains(name)
+                && tagCounts.containsKey(name)) {
+                tagCounts.put(name, ((Integer) tagCounts.get(name)).intValue() - 1);
+                buf.append("</").append(name).append(">");
+            }
+
+            return;
+        }
+
+        // starting tags
+        if (len > 0 && isNameChar(s.charAt(0))) {
+            int nameEnd = nameEnd(s, 0);
+            String name = s.substring(0, nameEnd).toLowerCase();
+
+            // 删除被拒绝的tag
+            if (vDeniedTags.contains(name)) {
+                return;
+            }
+
+            if (vAllowed.containsKey(name)) {
+                // body止于结尾或结尾的换行符之前，末尾的'/'表示自闭合
+                int bodyEnd = nameEnd;
+                boolean selfClosing = false;
+
+                for (; ; bodyEnd++) {
+                    if (bodyEnd < len && s.charAt(bodyEnd) == '/' && isEnd(s, 0, bodyEnd + 1)) {
+                        selfClosing = true;
+                        break;
+                    }
+
+                    if (isEnd(s, 0, bodyEnd)) {
+                        break;
+                    }
+                }
+
+                buf.append("<").append(name);
+                appendParams(buf, name, s, nameEnd, bodyEnd);
+
+                if (vSelfClosingTags.contains(name)) {
+                    selfClosing = true;
+                }
+
+                if (vNeedClosingTags.contains(name)) {
+                    selfClosing = false;
+                }
+
+                if (selfClosing) {
+                    buf.append(" />");
+                } else {
+                    increase(tagCounts, name);
+                    buf.append(">");
+                }
+            } else if (!isHtml) {
+                increase(tagCounts, name);
+                buf.append("<").append(s).append(">");
+            }
+
+            return;
+        }
+
+        // comments
+        if (s.startsWith("!--")) {
+            for (int i = len - 2; i >= 3; i--) {
+                if (s.startsWith("--", i) && isEnd(s, 0, i + 2)) {
+                    buf.append("<").append(s, 0, i + 2).append(">");
+                    return;
+                }
+            }
+        }
+
+        if (!isHtml || len > 0) {
+            buf.append("<").append(s).append(">");
+        }
+    }
+
+    /**
+     * 解析属性，并输出允许的属性。
+     * <p>
+     * 先依次取得所有带引号的属性值，再依次取得所有不带引号的属性值。
+     * </p>
+     */
+    private void appendParams(StringBuilder buf, String name, String s, int start, int end) {
+        Set allowedAttrs = (Set) vAllowed.get(name);
+
+        // name="value" or name='value'
+        for (int i = start; i < end; ) {
+            if (!isNameChar(s.charAt(i))) {
+                i++;
+                continue;
+            }
+
+            int eq = nameEnd(s, i, end);
+            int valueEnd;
+
+            if (eq + 1 < end && s.charAt(eq) == '=' && isQuote(s.charAt(eq + 1))
+                && (valueEnd = s.indexOf(s.charAt(eq + 1), eq + 2)) >= 0 && valueEnd < end) {
+                appendParam(buf, allowedAttrs, s.substring(i, eq), s.substring(eq + 2, valueEnd));
+                i = valueEnd + 1;
+            } else {
+                i = eq + 1;
+            }
+        }
+
+        // name=value
+        for (int i = start; i < end; ) {
+            if (!isNameChar(s.charAt(i))) {
+                i++;
+                continue;
+            }
+
+            int eq = nameEnd(s, i, end);
+
+            if (eq + 1 < end && s.charAt(eq) == '=' && isUnquotedValueChar(s.charAt(eq + 1))) {
+                int valueEnd = eq + 2;
+
+                while (valueEnd < end && isUnquotedValueChar(s.charAt(valueEnd))) {
+                    valueEnd++;
+                }
+
+                appendParam(buf, allowedAttrs, s.substring(i, eq), s.substring(eq + 1, valueEnd));
+                i = valueEnd;
+            } else {
+                i = eq + 1;
+            }
+        }
+    }
+
+    private void appendParam(StringBuilder buf, Set allowedAttrs, String paramName, String paramValue) {
+        paramName = paramName.toLowerCase();
+
+        if (allowedAttrs.contains(paramName)) {
+            if (vProtocolAtts.contains(paramName)) {
+                paramValue = processParamProtocol(paramValue);
+            }
+
+            buf.append(" ").append(paramName).append("=\"").append(paramValue).append("\"");
+        }
+    }
+
+    private String processParamProtocol(String s) {
+        s = decodeEntities(s);
+
+        int colon = s.indexOf(':');
+
+        if (colon > 0 && !vAllowedProtocols.contains(s.substring(0, colon))) {
+            // bad protocol, turn into local anchor link instead
+            s = "#" + s.substring(colon + 1);
+
+            if (s.startsWith("#//")) {
+                s = "#" + s.substring(3);
+            }
+        }
+
+        return s;
+    }
+
+    /** 依次解码<code>&amp;#nnn;</code>、<code>&amp;#xhh;</code>和<code>%hh</code>。 */
+    private String decodeEntities(String s) {
+        s = decodeEntities(s, "&#", false, -1);
+        s = decodeEntities(s, "&#x", true, -1);
+        s = decodeEntities(s, "%", true, 2);
+        s = validateEntities(s);
+        return s;
+    }
+
+    private String decodeEntities(String s, String prefix, boolean hex, int digits) {
+        int start = s.indexOf(prefix);
+
+        if (start < 0) {
+            return s;
+        }
+
+        StringBuilder buf = new StringBuilder(s.length());
+        int len = s.length();
+        int copied = 0;
+
+        for (; start >= 0; start = s.indexOf(prefix, start + 1)) {
+            int numStart = start + prefix.length();
+            int numEnd = numStart;
+
+            while (numEnd < len && (digits < 0 || numEnd - numStart < digits)
+                   && (hex ? isLowerHexChar(s.charAt(numEnd)) : isDigit(s.charAt(numEnd)))) {
+                numEnd++;
+            }
+
+            if (numEnd == numStart || digits > 0 && numEnd - numStart < digits) {
+                continue;
+            }
+
+            // 和HTMLInputFilter一样，用Integer.decode()解析数字。
+            int decimal = Integer.decode(s.substring(numStart, numEnd)).intValue();
+
+            buf.append(s, copied, start).append((char) decimal);
+            copied = numEnd < len && s.charAt(numEnd) == ';' ? numEnd + 1 : numEnd;
+            start = copied - 1;
+        }
+
+        if (copied == 0) {
+            return s;
+        }
+
+        return buf.append(s, copied, len).toString();
+    }
+
+    /** 删除空的tag，如：<code>&lt;b&gt;&lt;/b&gt;</code>和<code>&lt;b /&gt;</code>。 */
+    private String processRemoveBlanks(String s) {
+        for (Iterator i = vRemoveBlanks.iterator(); i.hasNext(); ) {
+            String tag = (String) i.next();
+
+            s = removeBlanks(s, tag, false);
+            s = removeBlanks(s, tag, true);
+        }
+
+        return s;
+    }
+
+    private String removeBlanks(String s, String tag, boolean selfClosing) {
+        String open = "<" + tag;
+        String close = "></" + tag + ">";
+        int start = s.indexOf(open);
+
+        if (start < 0) {
+            return s;
+        }
+
+        StringBuilder buf = null;
+        int copied = 0;
+
+        for (; start >= 0; ) {
+            int p = start + open.length();
+            int end = -1;
+
+            if (p < s.length() && isWhitespace(s.charAt(p))) {
+                int gt = s.indexOf('>', p + 1);
+
+                if (gt >= 0) {
+                    if (selfClosing) {
+                        if (gt - 1 > p && s.charAt(gt - 1) == '/') {
+                            end = gt + 1;
+                        }
+                    } else if (s.startsWith(close, gt)) {
+                        end = gt + close.length();
+                    }
+                }
+            } else if (selfClosing ? s.startsWith("/>", p) : s.startsWith(close, p)) {
+                end = p + (selfClosing ? 2 : close.length());
+            }
+
+            if (end < 0) {
+                start = s.indexOf(open, start + 1);
+            } else {
+                if (buf == null) {
+                    buf = new StringBuilder(s.length());
+                }
+
+                buf.append(s, copied, start);
+                copied = end;
+                start = s.indexOf(open, end);
+            }
+        }
+
+        if (buf == null) {
+            return s;
+        }
+
+        return buf.append(s, copied, s.length()).toString();
+    }
+
+    /** 检查第一个实体，不合法的实体被转义成<code>&amp;amp;</code>。 */
+    private String validateEntities(String s) {
+        int amp = s.indexOf('&');
+
+        if (amp < 0) {
+            return s;
+        }
+
+        int len = s.length();
+        int end = amp + 1;
+        boolean semicolon = false;
+
+        for (; ; end++) {
+            if (end < len && s.charAt(end) == ';') {
+                semicolon = true;
+                break;
+            }
+
+            if (end < len && s.charAt(end) == '&' || isEnd(s, 0, end)) {
+                break;
+            }
+        }
+
+        String preamble = s.substring(amp + 1, end);
+
+        if (semicolon && vAllowedEntities.contains(preamble)) {
+            return s;
+        }
+
+        return new StringBuilder(len + 4).append(s, 0, amp).append("&amp;").append(s, amp + 1, len).toString();
+    }
+
+    private static void increase(Map tagCounts, String name) {
+        Integer count = (Integer) tagCounts.get(name);
+        tagCounts.put(name, count == null ? 1 : count.intValue() + 1);
+    }
+
+    /**
+     * 判断<code>s</code>从<code>start</code>开始的部分是否在<code>index</code>处结束，
+     * 和正则表达式<code>$</code>一样，结尾处的换行符之前也被看作是结尾。
+     */
+    private static boolean isEnd(String s, int start, int index) {
+        int len = s.length();
+
+        if (index == len) {
+            return true;
+        }
+
+        if (index == len - 1) {
+            char c = s.charAt(index);
+
+            if (c == '\n') {
+                return index == start || s.charAt(index - 1) != '\r';
+            }
+
+            return c == '\r' || c == '\u0085' || (c | 1) == '\u2029';
+        }
+
+        return index == len - 2 && s.charAt(index) == '\r' && s.charAt(index + 1) == '\n';
+    }
+
+    private static int nextAngleBracket(String s, int from) {
+        for (int i = from; i < s.length(); i++) {
+            char c = s.charAt(i);
+
+            if (c == '<' || c == '>') {
+                return i;
+            }
+        }
+
+        return -1;
+    }
+
+    private static int nameEnd(String s, int start) {
+        return nameEnd(s, start, s.length());
+    }
+
+    private static int nameEnd(String s, int start, int end) {
+        int i = start;
+
+        while (i < end && isNameChar(s.charAt(i))) {
+            i++;
+        }
+
+        return i;
+    }
+
+    private static boolean isNameChar(char c) {
+        return c >= 'a' && c <= 'z' || c >= 'A' && c <= 'Z' || isDigit(c);
+    }
+
+    private static boolean isDigit(char c) {
+        return c >= '0' && c <= '9';
+    }
+
+    private static boolean isLowerHexChar(char c) {
+        return isDigit(c) || c >= 'a' && c <= 'f';
+    }
+
+    private static boolean isQuote(char c) {
+        return c == '"' || c == '\'';
+    }
+
+    private static boolean isWhitespace(char c) {
+        return c == ' ' || c == '\t' || c == '\n' || c == '\u000B' || c == '\f' || c == '\r';
+    }
+
+    private static boolean isUnquotedValueChar(char c) {
+        return !isQuote(c) && !isWhitespace(c);
+    }
+}
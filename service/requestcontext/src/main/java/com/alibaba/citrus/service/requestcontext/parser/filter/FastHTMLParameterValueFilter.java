@@ -0,0 +1,37 @@
+/*
+ * Copyright (c) 2002-2012 Alibaba Group Holding Limited.
+ * All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.alibaba.citrus.service.requestcontext.parser.filter;
+
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * 过滤参数，和<code>HTMLParameterValueFilter</code>的过滤规则相同，但使用基于状态机的
+ * <code>FastHTMLInputFilter</code>来过滤HTML。
+ *
+ * @author Michael Zhou
+ */
+public class FastHTMLParameterValueFilter extends HTMLParameterValueFilter {
+    @Override
+    protected HTMLInputFilter createHTMLInputFilter(Map<String, Set<String>> allowed, String[] deniedTags,
+                                                    String[] selfClosingTags, String[] needClosingTags,
+                                                    String[] allowedProtocols, String[] protocolAtts,
+                                                    String[] removeBlanks, String[] allowedEntities) {
+        return new FastHTMLInputFilter(allowed, deniedTags, selfClosingTags, needClosingTags, allowedProtocols,
+                                       protocolAtts, removeBlanks, allowedEntities);
+    }
+}
@@ -55,8 +55,17 @@ public class HTMLParameterValueFilter extends BeanSupport implements ParameterVa
         removeBlanks = defaultIfNull(removeBlanks, EMPTY_STRING_ARRAY);
         allowedEntities = defaultIfNull(allowedEntities, EMPTY_STRING_ARRAY);
 
-        filter = new HTMLInputFilter(allowed, deniedTags, selfClosingTags, needClosingTags, allowedProtocols,
-                                     protocolAtts, removeBlanks, allowedEntities);
+        filter = createHTMLInputFilter(allowed, deniedTags, selfClosingTags, needClosingTags, allowedProtocols,
+                                       protocolAtts, removeBlanks, allowedEntities);
+    }
+
+    /** 创建用来过滤HTML的filter，子类可以覆盖此方法，以提供不同的实现。 */
+    protected HTMLInputFilter createHTMLInputFilter(Map<String, Set<String>> allowed, String[] deniedTags,
+                                                    String[] selfClosingTags, String[] needClosingTags,
+                                                    String[] allowedProtocols, String[] protocolAtts,
+                                                    String[] removeBlanks, String[] allowedEntities) {
+        return new HTMLInputFilter(allowed, deniedTags, selfClosingTags, needClosingTags, allowedProtocols,
+                                   protocolAtts, removeBlanks, allowedEntities);
     }
 
     public boolean isFiltering(HttpServletRequest request) {
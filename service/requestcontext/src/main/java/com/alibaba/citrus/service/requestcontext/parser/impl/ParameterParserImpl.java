@@ -21,10 +21,12 @@ import static com.alibaba.citrus.service.requestcontext.parser.ParserRequestCont
 import static com.alibaba.citrus.util.ArrayUtil.*;
 import static com.alibaba.citrus.util.BasicConstant.*;
 import static com.alibaba.citrus.util.CollectionUtil.*;
+import static com.alibaba.citrus.util.ObjectUtil.*;
 import static com.alibaba.citrus.util.StringUtil.*;
 
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
 import javax.servlet.http.HttpServletRequest;
 import javax.servlet.http.HttpServletRequestWrapper;
 
@@ -54,6 +56,12 @@ public class ParameterParserImpl extends AbstractValueParser implements Paramete
     private       boolean                 uploadProcessed;
     private final ParameterParserFilter[] filters;
     private final String                  htmlFieldSuffix;
+    private final boolean                 lazyParsing;
+    private final Set<String>             encodedKeys     = createHashSet();
+    private final Set<String>             unprocessedKeys = createHashSet();
+    private final Set<String>             htmlFields      = createHashSet();
+    private       boolean[]               filtering;
+    private       boolean                 parsing;
 
     /** 从request中创建新的parameters，如果是multipart-form，则自动解析之。 */
     public ParameterParserImpl(ParserRequestContext requestContext, UploadService upload, boolean trimming,
@@ -64,6 +72,7 @@ public class ParameterParserImpl extends AbstractValueParser implements Paramete
         this.trimming = trimming;
         this.filters = filters;
         this.htmlFieldSuffix = htmlFieldSuffix;
+        this.lazyParsing = requestContext.isLazyParsing();
 
         HttpServletRequestWrapper wrapper = (HttpServletRequestWrapper) requestContext.getRequest();
         HttpServletRequest wrappedRequest = (HttpServletRequest) wrapper.getRequest();
@@ -113,11 +122,17 @@ public class ParameterParserImpl extends AbstractValueParser implements Paramete
             //
             // 为了使应用对服务器的配置依赖较少，对所有非POST/PUT请求（一般是GET请求）进行手工解码，而不依赖于servlet engine的解码机制，
             // 除非你设置了useServletEngineParser=true。
-            if (requestContext.isUseServletEngineParser() || "post".equalsIgnoreCase(method)
-                || "put".equalsIgnoreCase(method)) {
-                parseByServletEngine(wrappedRequest);
-            } else {
-                parseQueryString(requestContext, wrappedRequest);
+            parsing = true;
+
+            try {
+                if (requestContext.isUseServletEngineParser() || "post".equalsIgnoreCase(method)
+                    || "put".equalsIgnoreCase(method)) {
+                    parseByServletEngine(wrappedRequest);
+                } else {
+                    parseQueryString(requestContext, wrappedRequest);
+                }
+            } finally {
+                parsing = false;
             }
 
             postProcessParams();
@@ -159,6 +174,17 @@ public class ParameterParserImpl extends AbstractValueParser implements Paramete
             protected void add(String key, String value) {
                 ParameterParserImpl.this.add(key, value);
             }
+
+            @Override
+            protected void addEncoded(String key, String encodedValue) {
+                if (lazyParsing) {
+                    // 推迟对参数值的解码，直到第一次取得该参数时。
+                    getValueList(key, true).addValue(new EncodedValue(this, encodedValue));
+                    encodedKeys.add(convert(key));
+                } else {
+                    super.addEncoded(key, encodedValue);
+                }
+            }
         };
 
         parser.parse(wrappedRequest.getQueryString());
@@ -169,11 +195,15 @@ public class ParameterParserImpl extends AbstractValueParser implements Paramete
      * <p>
      * 如果参数名为.~html结尾的，则按HTML规则处理，否则按普通规则处理。
      * </p>
+     * <p>
+     * 如果设置了<code>lazyParsing</code>，则只记录需要处理的参数名，直到第一次取得该参数时才处理。
+     * </p>
      */
     private void postProcessParams() {
         HttpServletRequestWrapper wrapper = (HttpServletRequestWrapper) requestContext.getRequest();
         HttpServletRequest wrappedRequest = (HttpServletRequest) wrapper.getRequest();
-        boolean[] filtering = null;
+
+        filtering = null;
 
         if (!isEmptyArray(filters)) {
             filtering = new boolean[filters.length];
@@ -198,15 +228,46 @@ public class ParameterParserImpl extends AbstractValueParser implements Paramete
                 continue;
             }
 
-            boolean isHtml = !StringUtil.isBlank(getString(key + htmlFieldSuffix));
-            setObjects(key, processValues(key, isHtml, filtering));
+            if (lazyParsing) {
+                unprocessedKeys.add(convert(key));
+            } else {
+                boolean isHtml = !StringUtil.isBlank(getString(key + htmlFieldSuffix));
+                setObjects(key, processValues(key, isHtml, filtering));
+            }
         }
 
         for (String key : keysToRemove) {
+            if (lazyParsing && !StringUtil.isBlank(getString(key))) {
+                htmlFields.add(convert(key));
+            }
+
             remove(key);
         }
     }
 
+    /** 解码并处理指定参数的值，每个参数只处理一次。 */
+    private void resolve(String key) {
+        if (encodedKeys.remove(key)) {
+            ValueList container = (ValueList) parameters.get(key);
+            Object[] values = container.getValues();
+
+            for (int i = 0; i < values.length; i++) {
+                if (values[i] instanceof EncodedValue) {
+                    values[i] = ((EncodedValue) values[i]).decode();
+                }
+            }
+
+            container.setValues(values);
+        }
+
+        if (unprocessedKeys.remove(key)) {
+            String originalKey = parameterKeys.get(key);
+            boolean isHtml = htmlFields.contains(convert(originalKey + htmlFieldSuffix));
+
+            setObjects(originalKey, processValues(originalKey, isHtml, filtering));
+        }
+    }
+
     private Object[] processValues(String key, boolean isHtmlField, boolean[] filtering) {
         Object[] values = getObjects(key);
 
@@ -248,6 +309,30 @@ public class ParameterParserImpl extends AbstractValueParser implements Paramete
         return values;
     }
 
+    @Override
+    protected ValueList getValueList(String key, boolean create) {
+        if (!parsing && !(encodedKeys.isEmpty() && unprocessedKeys.isEmpty())) {
+            resolve(convert(key));
+        }
+
+        return super.getValueList(key, create);
+    }
+
+    /** 删除参数。被删除的参数值不会再被过滤，但仍会被解码，以免返回未解码的值。 */
+    @Override
+    public Object remove(String key) {
+        unprocessedKeys.remove(convert(key));
+        getValueList(key, false);
+        return super.remove(key);
+    }
+
+    @Override
+    public void clear() {
+        encodedKeys.clear();
+        unprocessedKeys.clear();
+        super.clear();
+    }
+
     /**
      * 取得指定名称的<code>FileItem</code>对象，如果不存在，则返回<code>null</code>。
      *
@@ -342,8 +427,14 @@ public class ParameterParserImpl extends AbstractValueParser implements Paramete
 
         FileItem[] items = upload.parseRequest(requestContext.getRequest(), params);
 
-        for (FileItem item : items) {
-            add(item.getFieldName(), item);
+        parsing = true;
+
+        try {
+            for (FileItem item : items) {
+                add(item.getFieldName(), item);
+            }
+        } finally {
+            parsing = false;
         }
 
         uploadProcessed = true;
@@ -392,4 +483,20 @@ public class ParameterParserImpl extends AbstractValueParser implements Paramete
 
         return parser.toQueryString();
     }
+
+    /** 代表尚未解码的参数值。 */
+    private class EncodedValue {
+        private final QueryStringParser parser;
+        private final String            encodedValue;
+
+        public EncodedValue(QueryStringParser parser, String encodedValue) {
+            this.parser = parser;
+            this.encodedValue = encodedValue;
+        }
+
+        public String decode() {
+            String value = defaultIfNull(parser.decode(encodedValue), EMPTY_STRING);
+            return trimming ? trimToEmpty(value) : value;
+        }
+    }
 }
@@ -58,7 +58,8 @@ public class ParserRequestContextFactoryDefinitionParser extends
 
         // other settings
         attributesToProperties(element, builder, "converterQuiet", "caseFolding", "autoUpload", "unescapeParameters",
-                               "useServletEngineParser", "useBodyEncodingForURI", "URIEncoding", "trimming", "htmlFieldSuffix");
+                               "useServletEngineParser", "useBodyEncodingForURI", "URIEncoding", "trimming", "htmlFieldSuffix",
+                               "lazyParsing");
 
         // upload service
         String uploadServiceName = trimToNull(element.getAttribute("uploadServiceRef"));
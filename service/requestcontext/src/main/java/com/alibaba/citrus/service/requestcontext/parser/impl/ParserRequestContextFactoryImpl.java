@@ -45,6 +45,7 @@ public class ParserRequestContextFactoryImpl extends AbstractRequestContextFacto
     private final static boolean USE_BODY_ENCODING_FOR_URI_DEFAULT = true;
     private final static String  URI_ENCODING_DEFAULT              = "UTF-8";
     private final static boolean TRIMMING_DEFAULT                  = true;
+    private final static boolean LAZY_PARSING_DEFAULT              = false;
     private final static String  HTML_FIELD_SUFFIX_DEFAULT         = ".~html";
 
     private PropertyEditorRegistrarsSupport propertyEditorRegistrars = new PropertyEditorRegistrarsSupport();
@@ -56,6 +57,7 @@ public class ParserRequestContextFactoryImpl extends AbstractRequestContextFacto
     private Boolean                 useBodyEncodingForURI;
     private String                  uriEncoding;
     private Boolean                 trimming;
+    private Boolean                 lazyParsing;
     private ParameterParserFilter[] filters;
     private String                  htmlFieldSuffix;
     private UploadService           uploadService;
@@ -96,6 +98,10 @@ public class ParserRequestContextFactoryImpl extends AbstractRequestContextFacto
         this.trimming = trimming;
     }
 
+    public void setLazyParsing(boolean lazyParsing) {
+        this.lazyParsing = lazyParsing;
+    }
+
     public void setParameterParserFilters(ParameterParserFilter[] filters) {
         this.filters = filters;
     }
@@ -134,6 +140,9 @@ public class ParserRequestContextFactoryImpl extends AbstractRequestContextFacto
         // 是否对参数值进行trimming
         trimming = defaultIfNull(trimming, TRIMMING_DEFAULT);
 
+        // 是否推迟对参数值的解码和过滤
+        lazyParsing = defaultIfNull(lazyParsing, LAZY_PARSING_DEFAULT);
+
         // HTML类型的字段名后缀
         htmlFieldSuffix = defaultIfEmpty(htmlFieldSuffix, HTML_FIELD_SUFFIX_DEFAULT);
     }
@@ -156,6 +165,7 @@ public class ParserRequestContextFactoryImpl extends AbstractRequestContextFacto
         requestContext.setUseBodyEncodingForURI(useBodyEncodingForURI);
         requestContext.setURIEncoding(uriEncoding);
         requestContext.setTrimming(trimming);
+        requestContext.setLazyParsing(lazyParsing);
 
         if (autoUpload) {
             requestContext.setUploadService(uploadService);
@@ -192,6 +202,7 @@ public class ParserRequestContextFactoryImpl extends AbstractRequestContextFacto
         mb.append("Use body encoding for URI", useBodyEncodingForURI);
         mb.append("URI encoding if not use body encoding for URI", uriEncoding);
         mb.append("Trimming", trimming);
+        mb.append("Lazy parsing", lazyParsing);
         mb.append("HTML field suffix", htmlFieldSuffix);
         mb.append("Upload Service", uploadService);
         mb.append("Parameter Parser Filters", filters);
@@ -50,6 +50,7 @@ public class ParserRequestContextImpl extends AbstractRequestContextWrapper impl
     private boolean                 useBodyEncodingForURI;
     private String                  uriEncoding;
     private boolean                 trimming;
+    private boolean                 lazyParsing;
     private UploadService           upload;
     private ParameterParser         parameters;
     private ParameterParserFilter[] filters;
@@ -162,6 +163,16 @@ public class ParserRequestContextImpl extends AbstractRequestContextWrapper impl
         this.trimming = trimming;
     }
 
+    /** 是否推迟对参数值的解码和过滤，直到第一次取得该参数时才进行。默认为<code>false</code>。 */
+    public boolean isLazyParsing() {
+        return lazyParsing;
+    }
+
+    /** 是否推迟对参数值的解码和过滤，直到第一次取得该参数时才进行。默认为<code>false</code>。 */
+    public void setLazyParsing(boolean lazyParsing) {
+        this.lazyParsing = lazyParsing;
+    }
+
     /**
      * 设置upload service。
      *
@@ -52,6 +52,8 @@ public class RewriteRequestContextFactoryDefinitionParser extends
         }
 
         builder.addPropertyValue("rules", rules);
+
+        attributesToProperties(element, builder, "pathCacheSize");
     }
 
     /** 解析rule。 */
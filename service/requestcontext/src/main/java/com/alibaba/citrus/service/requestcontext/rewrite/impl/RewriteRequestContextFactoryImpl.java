@@ -18,6 +18,8 @@
 package com.alibaba.citrus.service.requestcontext.rewrite.impl;
 
 import static com.alibaba.citrus.util.ArrayUtil.*;
+import static com.alibaba.citrus.util.Assert.*;
+import static com.alibaba.citrus.util.ObjectUtil.*;
 
 import com.alibaba.citrus.service.requestcontext.RequestContext;
 import com.alibaba.citrus.service.requestcontext.rewrite.RewriteRequestContext;
@@ -26,14 +28,30 @@ import com.alibaba.citrus.util.ToStringBuilder.CollectionBuilder;
 
 /** 创建<code>RewriteRequestContext</code>的工厂。 */
 public class RewriteRequestContextFactoryImpl extends AbstractRequestContextFactory<RewriteRequestContext> {
-    private RewriteRule[] rules;
+    private RewriteRule[]  rules;
+    private Integer        pathCacheSize;
+    private RewriteRuleSet ruleSet;
 
     public void setRules(RewriteRule[] rules) {
         this.rules = rules;
     }
 
+    public void setPathCacheSize(int pathCacheSize) {
+        this.pathCacheSize = pathCacheSize;
+    }
+
+    @Override
+    protected void init() {
+        pathCacheSize = defaultIfNull(pathCacheSize, RewriteRuleSet.DEFAULT_PATH_CACHE_SIZE);
+
+        assertTrue(pathCacheSize >= 0, "pathCacheSize must be >= 0: %d", pathCacheSize);
+
+        // 预先分析所有规则，并创建共享的path缓存
+        ruleSet = new RewriteRuleSet(rules, pathCacheSize);
+    }
+
     public RewriteRequestContext getRequestContextWrapper(RequestContext wrappedContext) {
-        return new RewriteRequestContextImpl(wrappedContext, rules);
+        return new RewriteRequestContextImpl(wrappedContext, ruleSet);
     }
 
     /** 本类提供了重写request参数和URL的功能。 */
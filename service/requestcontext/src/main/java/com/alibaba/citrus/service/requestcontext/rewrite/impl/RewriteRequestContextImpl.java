@@ -19,14 +19,15 @@ package com.alibaba.citrus.service.requestcontext.rewrite.impl;
 
 import static com.alibaba.citrus.service.requestcontext.rewrite.impl.RewriteUtil.*;
 import static com.alibaba.citrus.service.requestcontext.util.RequestContextUtil.*;
-import static com.alibaba.citrus.util.ArrayUtil.*;
 import static com.alibaba.citrus.util.Assert.*;
 import static com.alibaba.citrus.util.BasicConstant.*;
+import static com.alibaba.citrus.util.CollectionUtil.*;
 import static com.alibaba.citrus.util.ObjectUtil.*;
 import static com.alibaba.citrus.util.ServletUtil.*;
 import static com.alibaba.citrus.util.StringUtil.*;
 
 import java.io.IOException;
+import java.util.List;
 import java.util.regex.MatchResult;
 import javax.servlet.http.HttpServletRequest;
 import javax.servlet.http.HttpServletResponse;
@@ -53,6 +54,7 @@ public class RewriteRequestContextImpl extends AbstractRequestContextWrapper imp
     public static final  String SERVER_SCHEME_HTTPS = "https";
     public static final  int    SERVER_PORT_HTTP    = 80;
     public static final  int    SERVER_PORT_HTTPS   = 443;
+    private final RewriteRuleSet       ruleSet;
     private final RewriteRule[]        rules;
     private       ParserRequestContext parserRequestContext;
     private       HttpServletRequest   wrappedRequest;
@@ -64,9 +66,20 @@ public class RewriteRequestContextImpl extends AbstractRequestContextWrapper imp
      * @param rewriteConfig  rewrite的配置文件信息
      */
     public RewriteRequestContextImpl(RequestContext wrappedContext, RewriteRule[] rules) {
+        this(wrappedContext, new RewriteRuleSet(rules, 0));
+    }
+
+    /**
+     * 包装一个<code>RequestContext</code>对象。
+     *
+     * @param wrappedContext 被包装的<code>RequestContext</code>
+     * @param ruleSet        预编译的rewrite规则集
+     */
+    public RewriteRequestContextImpl(RequestContext wrappedContext, RewriteRuleSet ruleSet) {
         super(wrappedContext);
 
-        this.rules = defaultIfEmptyArray(rules, null);
+        this.ruleSet = assertNotNull(ruleSet, "ruleSet");
+        this.rules = ruleSet.isEmpty() ? null : ruleSet.getRules();
 
         // 取得parser request context，以便修改参数
         this.parserRequestContext = assertNotNull(findRequestContext(wrappedContext, ParserRequestContext.class),
@@ -93,17 +106,46 @@ public class RewriteRequestContextImpl extends AbstractRequestContextWrapper imp
             log.debug("Starting rewrite engine: path=\"{}\"", StringEscapeUtil.escapeJava(path));
         }
 
+        // 如果结果只依赖于path，并且已经被缓存，则直接使用缓存的结果
+        RewriteRuleSet.CachedResult cachedResult = ruleSet.getCachedResult(originalPath);
+
+        if (cachedResult != null) {
+            if (log.isDebugEnabled()) {
+                log.debug("Using cached rewrite result: path=\"{}\"",
+                          StringEscapeUtil.escapeJava(cachedResult.getPath()));
+            }
+
+            MatchResultSubstitution emptySubs = getMatchResultSubstitution(MatchResultSubstitution.EMPTY_MATCH_RESULT,
+                                                                           MatchResultSubstitution.EMPTY_MATCH_RESULT);
+
+            // 这些规则不设置参数，但仍可能清除参数（未指定QSA标志时）
+            for (RewriteRule rule : cachedResult.getMatchedRules()) {
+                parameterSubstituted |= rule.getSubstitution().substituteParameters(
+                        parserRequestContext.getParameters(), emptySubs);
+            }
+
+            applyPath(originalPath, cachedResult.getPath(), cachedResult.getRedirectCode(), parameterSubstituted);
+            return;
+        }
+
         // 开始匹配
+        boolean[] candidates = ruleSet.getCandidates(path);
+        boolean cacheable = true;
+        List<RewriteRule> matchedRules = createLinkedList();
         int redirectCode = 0;
 
-        for (RewriteRule rule : rules) {
-            MatchResult ruleMatchResult = rule.match(path);
+        for (int i = 0; i < rules.length; i++) {
+            RewriteRule rule = rules[i];
+
+            // 预先排除的规则一定不匹配，不必执行正则表达式
+            MatchResult ruleMatchResult = candidates[i] ? rule.match(path) : null;
             MatchResult conditionMatchResult = null;
             RewriteSubstitution subs = rule.getSubstitution();
 
             // 如果匹配，则查看conditions
             if (ruleMatchResult != null) {
                 conditionMatchResult = rule.matchConditions(ruleMatchResult, wrappedRequest);
+                cacheable &= ruleSet.isPathOnly(i);
             }
 
             // 如果C标志被指定，则除非匹配，否则不去判断余下的规则
@@ -123,18 +165,27 @@ public class RewriteRequestContextImpl extends AbstractRequestContextWrapper imp
             // 替换path
             log.debug("Rule conditions have been satisfied, starting substitution to uri");
 
+            String oldPath = path;
+
             path = subs.substitute(path, resultSubs);
 
             if (!isFullURL(path)) {
                 path = FileUtil.normalizeAbsolutePath(path);
             }
 
+            matchedRules.add(rule);
+
             // 处理parameters
             parameterSubstituted |= subs.substituteParameters(parserRequestContext.getParameters(), resultSubs);
 
             // post substitution处理
             path = firePostSubstitutionEvent(rule, path, parserRequestContext, resultSubs);
 
+            // path被改变后，重新筛选规则
+            if (!isEquals(oldPath, path)) {
+                candidates = ruleSet.getCandidates(path);
+            }
+
             // 查看重定向标志
             redirectCode = subs.getFlags().getRedirectCode();
 
@@ -146,6 +197,15 @@ public class RewriteRequestContextImpl extends AbstractRequestContextWrapper imp
             }
         }
 
+        if (cacheable) {
+            ruleSet.cacheResult(originalPath, path, redirectCode, matchedRules);
+        }
+
+        applyPath(originalPath, path, redirectCode, parameterSubstituted);
+    }
+
+    /** 如果path被改变了，则替换request或重定向。 */
+    private void applyPath(String originalPath, String path, int redirectCode, boolean parameterSubstituted) {
         // 如果path被改变了，则替换request或重定向
         if (!isEquals(originalPath, path)) {
             // 如果是重定向，则组合出新的URL
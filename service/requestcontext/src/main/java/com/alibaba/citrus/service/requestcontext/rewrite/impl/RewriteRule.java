@@ -184,6 +184,11 @@ public class RewriteRule implements InitializingBean {
         return substitution;
     }
 
+    /** 判断规则的结果是否只依赖于path，即：没有conditions和handlers，也不设置参数。 */
+    public boolean isPathOnly() {
+        return isEmptyArray(conditions) && isEmptyArray(handlers) && !substitution.hasParameters();
+    }
+
     @Override
     public String toString() {
         MapBuilder mb = new MapBuilder();
@@ -0,0 +1,293 @@
+/*
+ * Copyright (c) 2002-2012 Alibaba Group Holding Limited.
+ * All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.alibaba.citrus.service.requestcontext.rewrite.impl;
+
+import static com.alibaba.citrus.util.ObjectUtil.*;
+
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+import com.alibaba.citrus.util.ToStringBuilder;
+import com.alibaba.citrus.util.ToStringBuilder.MapBuilder;
+import com.alibaba.citrus.util.internal.PrefixTree;
+
+/**
+ * 预编译的rewrite规则集。
+ * <p>
+ * 规则集在创建时分析每个规则的pattern，以便在匹配前排除那些不可能匹配的规则：
+ * </p>
+ * <ul>
+ * <li>以<code>^</code>开头的pattern，取其字面前缀，建立前缀树。只有当path以该前缀开头时，才可能匹配。</li>
+ * <li>其它的pattern，取其中必须出现的最长一段字面字符串。只有当path包含该字符串时，才可能匹配。</li>
+ * <li>否定的pattern，以及无法分析的pattern，总是需要执行正则表达式。</li>
+ * </ul>
+ * <p>
+ * 此外，如果一个path所匹配的规则均不依赖于request（没有conditions和handlers，也不设置参数），
+ * 那么重写的结果只取决于path，可以被缓存起来，直接用于后续的请求。
+ * </p>
+ *
+ * @author Michael Zhou
+ */
+public class RewriteRuleSet {
+    public final static int DEFAULT_PATH_CACHE_SIZE = 1024;
+
+    private final RewriteRule[]                       rules;
+    private final String[]                            literals;
+    private final boolean[]                           prefixed;
+    private final boolean[]                           pathOnly;
+    private final PrefixTree                          prefixTree;
+    private final int                                 pathCacheSize;
+    private final ConcurrentMap<String, CachedResult> pathCache;
+
+    public RewriteRuleSet(RewriteRule[] rules) {
+        this(rules, DEFAULT_PATH_CACHE_SIZE);
+    }
+
+    /**
+     * 创建规则集。
+     *
+     * @param rules         规则
+     * @param pathCacheSize 最多缓存多少个path的重写结果，<code>0</code>表示不缓存
+     */
+    public RewriteRuleSet(RewriteRule[] rules, int pathCacheSize) {
+        this.rules = defaultIfNull(rules, new RewriteRule[0]);
+        this.literals = new String[this.rules.length];
+        this.prefixed = new boolean[this.rules.length];
+        this.pathOnly = new boolean[this.rules.length];
+        this.prefixTree = new PrefixTree();
+        this.pathCacheSize = pathCacheSize;
+        this.pathCache = pathCacheSize > 0 ? new ConcurrentHashMap<String, CachedResult>() : null;
+
+        for (int i = 0; i < this.rules.length; i++) {
+            RewriteRule rule = this.rules[i];
+            String pattern = rule.getPattern();
+
+            pathOnly[i] = rule.isPathOnly();
+
+            // 否定的规则匹配所有不包含pattern的path，无法预先排除。
+            if (pattern.startsWith("!")) {
+                continue;
+            }
+
+            if (pattern.startsWith("^")) {
+                String prefix = getLiteralPrefix(pattern);
+
+                if (prefix != null) {
+                    prefixTree.add(prefix, i);
+                    prefixed[i] = true;
+                    continue;
+                }
+            }
+
+            literals[i] = getRequiredLiteral(pattern);
+        }
+    }
+
+    public RewriteRule[] getRules() {
+        return rules;
+    }
+
+    public boolean isEmpty() {
+        return rules.length == 0;
+    }
+
+    public int getPathCacheSize() {
+        return pathCacheSize;
+    }
+
+    /** 规则的匹配结果是否只依赖于path，而不依赖于request的其它内容。 */
+    public boolean isPathOnly(int ruleIndex) {
+        return pathOnly[ruleIndex];
+    }
+
+    /** 取得可能和path相匹配的规则。不在其中的规则一定不匹配，无须执行正则表达式。 */
+    public boolean[] getCandidates(String path) {
+        boolean[] candidates = new boolean[rules.length];
+
+        for (int i = 0; i < rules.length; i++) {
+            if (!prefixed[i]) {
+                candidates[i] = literals[i] == null || path.indexOf(literals[i]) >= 0;
+            }
+        }
+
+        prefixTree.mark(path, candidates);
+
+        return candidates;
+    }
+
+    /** 取得缓存的重写结果，如果不存在，则返回<code>null</code>。 */
+    public CachedResult getCachedResult(String originalPath) {
+        return pathCache == null ? null : pathCache.get(originalPath);
+    }
+
+    /** 缓存只依赖于path的重写结果。 */
+    public void cacheResult(String originalPath, String path, int redirectCode, List<RewriteRule> matchedRules) {
+        if (pathCache == null) {
+            return;
+        }
+
+        // 缓存满时，清除所有的结果，避免无限增长。
+        if (pathCache.size() >= pathCacheSize) {
+            pathCache.clear();
+        }
+
+        pathCache.put(originalPath, new CachedResult(path, redirectCode,
+                                                     matchedRules.toArray(new RewriteRule[matchedRules.size()])));
+    }
+
+    /** 取得被缓存的path的数量。 */
+    public int getCachedPathCount() {
+        return pathCache == null ? 0 : pathCache.size();
+    }
+
+    /** 取得<code>^</code>之后的字面前缀。如果不存在或无法分析，则返回<code>null</code>。 */
+    static String getLiteralPrefix(String regex) {
+        return scanLiteral(regex, true);
+    }
+
+    /** 取得正则表达式中必须出现的最长的一段字面字符串。如果不存在或无法分析，则返回<code>null</code>。 */
+    static String getRequiredLiteral(String regex) {
+        return scanLiteral(regex, false);
+    }
+
+    private static String scanLiteral(String regex, boolean prefixOnly) {
+        // 包含分组、字符类或“或”的表达式，不去分析。
+        if (regex.indexOf('|') >= 0 || regex.indexOf('(') >= 0 || regex.indexOf('[') >= 0) {
+            return null;
+        }
+
+        if (prefixOnly && !regex.startsWith("^")) {
+            return null;
+        }
+
+        int length = regex.length();
+        StringBuilder run = new StringBuilder();
+        String longest = null;
+
+        for (int i = prefixOnly ? 1 : 0; i < length; ) {
+            char c = regex.charAt(i);
+            boolean literal;
+            boolean endOfRun = false;
+            int next = i + 1;
+
+            if (c == '\\') {
+                // 以x、u、0、c、p、P、N、k开头的转义后面还跟着参数，Q...E则引用一段字符，均不去分析。
+                if (next >= length || "xu0cpPNkQE".indexOf(regex.charAt(next)) >= 0) {
+                    return null;
+                }
+
+                // \d、\w、\1等均不是字面字符
+                literal = !Character.isLetterOrDigit(regex.charAt(next));
+                c = regex.charAt(next);
+                next++;
+            } else if (c == '{') {
+                next = regex.indexOf('}', i) + 1;
+
+                if (next <= 0) {
+                    return null;
+                }
+
+                literal = false;
+            } else {
+                literal = ".^$?*+".indexOf(c) < 0;
+            }
+
+            if (literal && next < length) {
+                switch (regex.charAt(next)) {
+                    case '?':
+                    case '*':
+                    case '{':
+                        // 可选的字符，不是必须的
+                        literal = false;
+                        break;
+
+                    case '+':
+                        // 至少出现一次
+                        run.append(c);
+                        literal = false;
+                        break;
+
+                    default:
+                        break;
+                }
+            }
+
+            if (literal) {
+                run.append(c);
+            } else {
+                endOfRun = true;
+            }
+
+            if (endOfRun) {
+                if (prefixOnly) {
+                    break;
+                }
+
+                longest = longer(longest, run);
+                run.setLength(0);
+            }
+
+            i = next;
+        }
+
+        longest = longer(longest, run);
+
+        return longest == null || longest.length() == 0 ? null : longest;
+    }
+
+    private static String longer(String longest, StringBuilder run) {
+        return longest == null || run.length() > longest.length() ? run.toString() : longest;
+    }
+
+    @Override
+    public String toString() {
+        MapBuilder mb = new MapBuilder();
+
+        mb.append("rules", rules.length);
+        mb.append("pathCacheSize", pathCacheSize);
+        mb.append("cachedPaths", getCachedPathCount());
+
+        return new ToStringBuilder().append("RewriteRuleSet").append(mb).toString();
+    }
+
+    /** 代表只依赖于path的重写结果。 */
+    public static class CachedResult {
+        private final String        path;
+        private final int           redirectCode;
+        private final RewriteRule[] matchedRules;
+
+        private CachedResult(String path, int redirectCode, RewriteRule[] matchedRules) {
+            this.path = path;
+            this.redirectCode = redirectCode;
+            this.matchedRules = matchedRules;
+        }
+
+        public String getPath() {
+            return path;
+        }
+
+        public int getRedirectCode() {
+            return redirectCode;
+        }
+
+        /** 取得被匹配的规则，用来重新处理参数。 */
+        public RewriteRule[] getMatchedRules() {
+            return matchedRules;
+        }
+    }
+}
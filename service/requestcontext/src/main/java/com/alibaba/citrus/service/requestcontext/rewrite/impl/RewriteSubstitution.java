@@ -72,6 +72,11 @@ public class RewriteSubstitution implements InitializingBean {
         }
     }
 
+    /** 是否设置了参数。 */
+    public boolean hasParameters() {
+        return !isEmptyArray(parameters);
+    }
+
     public String substitute(String path, MatchResultSubstitution resultSubs) {
         if (uri == null) {
             if (log.isTraceEnabled()) {
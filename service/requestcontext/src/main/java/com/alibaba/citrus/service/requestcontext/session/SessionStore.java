@@ -102,5 +102,12 @@ public interface SessionStore {
          * @return <code>HttpSession</code>对象
          */
         HttpSession getHttpSession();
+
+        /**
+         * 取得当前session的model。
+         *
+         * @return <code>SessionModel</code>对象，如果model尚未被装载，则返回<code>null</code>
+         */
+        SessionModel getSessionModel();
     }
 }
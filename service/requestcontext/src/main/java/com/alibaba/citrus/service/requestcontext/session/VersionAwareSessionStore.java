@@ -0,0 +1,30 @@
+/*
+ * Copyright (c) 2002-2012 Alibaba Group Holding Limited.
+ * All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.alibaba.citrus.service.requestcontext.session;
+
+/**
+ * 从这个接口实现的session store，依赖于session model中的数据版本。
+ * <p>
+ * 当配置了这种store时，每个修改session的请求都会更新session model的版本，并保存session model。
+ * </p>
+ *
+ * @author Michael Zhou
+ * @see VersionedSessionModel
+ */
+public interface VersionAwareSessionStore extends SessionStore {
+}
@@ -0,0 +1,36 @@
+/*
+ * Copyright (c) 2002-2012 Alibaba Group Holding Limited.
+ * All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.alibaba.citrus.service.requestcontext.session;
+
+/**
+ * 带有数据版本的session model。
+ * <p>
+ * 当配置了<code>VersionAwareSessionStore</code>时，每当一个请求修改了session的attributes，版本都会被更新。因此，当session model保存在客户端（如cookie）中时，
+ * 服务端可以通过比较版本来判断本地缓存的session数据是否仍然有效，而不必访问远程存储。
+ * </p>
+ *
+ * @author Michael Zhou
+ */
+public interface VersionedSessionModel extends SessionModel {
+    /**
+     * 取得session数据的版本。
+     *
+     * @return 版本，<code>0</code>表示版本未知
+     */
+    long getVersion();
+}
@@ -21,11 +21,14 @@ import static com.alibaba.citrus.util.ArrayUtil.*;
 import static com.alibaba.citrus.util.Assert.*;
 
 import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
 import java.io.IOException;
 import java.io.UnsupportedEncodingException;
 import java.net.URLDecoder;
 import java.net.URLEncoder;
 import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
 import java.util.zip.Deflater;
 import java.util.zip.DeflaterOutputStream;
 import java.util.zip.Inflater;
@@ -36,7 +39,6 @@ import com.alibaba.citrus.service.requestcontext.session.encrypter.Encrypter;
 import com.alibaba.citrus.service.requestcontext.session.serializer.Serializer;
 import com.alibaba.citrus.service.requestcontext.session.serializer.impl.HessianSerializer;
 import com.alibaba.citrus.springext.support.BeanSupport;
-import com.alibaba.citrus.util.io.ByteArrayOutputStream;
 import org.apache.commons.codec.binary.Base64;
 
 /**
@@ -46,72 +48,139 @@ import org.apache.commons.codec.binary.Base64;
  * </p>
  * <ul>
  * <li>用<code>Serializer</code>序列化，默认使用<code>HessianSerializer</code>。</li>
- * <li>压缩。</li>
+ * <li>压缩，压缩级别由<code>compressionLevel</code>指定，默认为最高级别。</li>
  * <li>如果<code>Encrypter</code>存在，用它加密，否则，不加密。</li>
  * <li>Base64编码。</li>
- * <li>URL encoding，以确保所有字符都符合HTTP header的要求。</li>
+ * <li>URL encoding，以确保所有字符都符合HTTP header的要求。如果<code>urlSafe</code>为<code>true</code>
+ * ，则改用URL安全的Base64字符集（不带填充字符），其结果本身就符合要求，因此省略这一步。</li>
  * </ul>
  * <p>
- * 解码步骤相反。
+ * 解码步骤相反。解码时会自动识别两种格式，因此打开<code>urlSafe</code>以后，仍然可以读取原有格式的cookie。
+ * </p>
+ * <p>
+ * 压缩器和缓冲区被缓存在有限大小的池中重复使用，以降低每次提交session的开销。
  * </p>
  *
  * @author Michael Zhou
  */
 public abstract class AbstractSerializationEncoder extends BeanSupport implements SessionEncoder {
-    protected Serializer serializer;
-    protected Encrypter  encrypter;
+    private static final int    POOL_SIZE       = 16;
+    private static final char[] URL_SAFE_BASE64 = "ABCDEFGHIJKLMNOPQRSTUVWXYZabcdefghijklmnopqrstuvwxyz0123456789-_"
+            .toCharArray();
+
+    private final BlockingQueue<EncodeBuffer> encodeBuffers    = new ArrayBlockingQueue<EncodeBuffer>(POOL_SIZE);
+    private final BlockingQueue<Inflater>     inflaters        = new ArrayBlockingQueue<Inflater>(POOL_SIZE);
+    protected     Serializer                  serializer;
+    protected     Encrypter                   encrypter;
+    protected     int                         compressionLevel = Deflater.BEST_COMPRESSION;
+    protected     boolean                     urlSafe;
 
     @Override
     protected void init() throws Exception {
         if (serializer == null) {
             serializer = new HessianSerializer();
         }
+
+        assertTrue(compressionLevel >= Deflater.DEFAULT_COMPRESSION && compressionLevel <= Deflater.BEST_COMPRESSION,
+                   "compressionLevel: %d", compressionLevel);
+    }
+
+    @Override
+    protected void dispose() {
+        EncodeBuffer buffer;
+        Inflater inf;
+
+        while ((buffer = encodeBuffers.poll()) != null) {
+            buffer.deflater.end();
+        }
+
+        while ((inf = inflaters.poll()) != null) {
+            inf.end();
+        }
     }
 
     /** 编码。 */
     public String encode(Map<String, Object> attrs, StoreContext storeContext) throws SessionEncoderException {
-        ByteArrayOutputStream baos = new ByteArrayOutputStream();
+        EncodeBuffer buffer = encodeBuffers.poll();
 
-        // 1. 序列化
-        // 2. 压缩
-        Deflater def = new Deflater(Deflater.BEST_COMPRESSION, false);
-        DeflaterOutputStream dos = new DeflaterOutputStream(baos, def);
+        if (buffer == null) {
+            buffer = new EncodeBuffer(compressionLevel);
+        }
 
         try {
-            serializer.serialize(assertNotNull(attrs, "objectToEncode is null"), dos);
-        } catch (Exception e) {
-            throw new SessionEncoderException("Failed to encode session state", e);
-        } finally {
+            // 1. 序列化
+            // 2. 压缩
+            DeflaterOutputStream dos = new DeflaterOutputStream(buffer.bytes, buffer.deflater);
+
             try {
-                dos.close();
-            } catch (IOException e) {
+                serializer.serialize(assertNotNull(attrs, "objectToEncode is null"), dos);
+                dos.finish();
+            } catch (Exception e) {
+                throw new SessionEncoderException("Failed to encode session state", e);
             }
 
-            def.end();
+            // 3. 加密
+            // 4. base64编码
+            if (encrypter == null) {
+                return encodeBase64(buffer.bytes.getRawBytes(), buffer.bytes.size(), buffer);
+            } else {
+                byte[] cryptotext = encrypter.encrypt(buffer.bytes.toByteArray());
+
+                return encodeBase64(cryptotext, cryptotext.length, buffer);
+            }
+        } finally {
+            buffer.reset();
+
+            if (!encodeBuffers.offer(buffer)) {
+                buffer.deflater.end();
+            }
         }
+    }
+
+    private String encodeBase64(byte[] data, int length, EncodeBuffer buffer) throws SessionEncoderException {
+        if (!urlSafe) {
+            try {
+                String encodedValue = new String(Base64.encodeBase64(data.length == length ? data : copy(data, length),
+                                                                     false), "ISO-8859-1");
 
-        byte[] plaintext = baos.toByteArray().toByteArray();
+                return URLEncoder.encode(encodedValue, "ISO-8859-1");
+            } catch (UnsupportedEncodingException e) {
+                throw new SessionEncoderException("Failed to encode session state", e);
+            }
+        }
 
-        // 3. 加密
-        byte[] cryptotext = encrypt(plaintext);
+        // URL安全的base64编码，不带填充字符，直接写入可重用的缓冲区
+        char[] chars = buffer.chars((length + 2) / 3 * 4);
+        int i = 0;
+        int j = 0;
 
-        // 4. base64编码
-        try {
-            String encodedValue = new String(Base64.encodeBase64(cryptotext, false), "ISO-8859-1");
+        for (int end = length - length % 3; i < end; i += 3) {
+            int bits = (data[i] & 0xff) << 16 | (data[i + 1] & 0xff) << 8 | data[i + 2] & 0xff;
 
-            return URLEncoder.encode(encodedValue, "ISO-8859-1");
-        } catch (UnsupportedEncodingException e) {
-            throw new SessionEncoderException("Failed to encode session state", e);
+            chars[j++] = URL_SAFE_BASE64[bits >>> 18];
+            chars[j++] = URL_SAFE_BASE64[bits >>> 12 & 0x3f];
+            chars[j++] = URL_SAFE_BASE64[bits >>> 6 & 0x3f];
+            chars[j++] = URL_SAFE_BASE64[bits & 0x3f];
         }
-    }
 
-    /** 加密。 */
-    private byte[] encrypt(byte[] plaintext) throws SessionEncoderException {
-        if (encrypter != null) {
-            return encrypter.encrypt(plaintext);
+        if (i < length) {
+            int bits = (data[i] & 0xff) << 16 | (i + 1 < length ? (data[i + 1] & 0xff) << 8 : 0);
+
+            chars[j++] = URL_SAFE_BASE64[bits >>> 18];
+            chars[j++] = URL_SAFE_BASE64[bits >>> 12 & 0x3f];
+
+            if (i + 1 < length) {
+                chars[j++] = URL_SAFE_BASE64[bits >>> 6 & 0x3f];
+            }
         }
 
-        return plaintext;
+        return new String(chars, 0, j);
+    }
+
+    private static byte[] copy(byte[] data, int length) {
+        byte[] copy = new byte[length];
+        System.arraycopy(data, 0, copy, 0, length);
+        return copy;
     }
 
     /** 解码。 */
@@ -120,8 +189,15 @@ public abstract class AbstractSerializationEncoder extends BeanSupport implement
         byte[] cryptotext = null;
 
         try {
-            encodedValue = URLDecoder.decode(assertNotNull(encodedValue, "encodedValue is null"), "ISO-8859-1");
-            cryptotext = Base64.decodeBase64(encodedValue.getBytes("ISO-8859-1"));
+            assertNotNull(encodedValue, "encodedValue is null");
+
+            // 原有格式经过URL encoding，而URL安全的格式不包含需要解码的字符
+            if (encodedValue.indexOf('%') >= 0 || encodedValue.indexOf('+') >= 0) {
+                encodedValue = URLDecoder.decode(encodedValue, "ISO-8859-1");
+            }
+
+            // 同时支持标准的和URL安全的base64字符集
+            cryptotext = Base64.decodeBase64(encodedValue);
 
             if (isEmptyArray(cryptotext)) {
                 throw new SessionEncoderException("Session state is empty: " + encodedValue);
@@ -138,9 +214,13 @@ public abstract class AbstractSerializationEncoder extends BeanSupport implement
         }
 
         // 3. 解压缩
-        ByteArrayInputStream bais = new ByteArrayInputStream(plaintext);
-        Inflater inf = new Inflater(false);
-        InflaterInputStream iis = new InflaterInputStream(bais, inf);
+        Inflater inf = inflaters.poll();
+
+        if (inf == null) {
+            inf = new Inflater(false);
+        }
+
+        InflaterInputStream iis = new InflaterInputStream(new ByteArrayInputStream(plaintext), inf);
 
         // 4. 反序列化
         try {
@@ -150,12 +230,11 @@ public abstract class AbstractSerializationEncoder extends BeanSupport implement
         } catch (Exception e) {
             throw new SessionEncoderException("Failed to parse session state", e);
         } finally {
-            try {
-                iis.close();
-            } catch (IOException e) {
-            }
+            inf.reset();
 
-            inf.end();
+            if (!inflaters.offer(inf)) {
+                inf.end();
+            }
         }
     }
 
@@ -170,7 +249,54 @@ public abstract class AbstractSerializationEncoder extends BeanSupport implement
 
     @Override
     public String toString() {
-        return getClass().getSimpleName() + "[" + serializer + ", " + (encrypter == null ? "no encrypter" : encrypter)
-               + "]";
+        StringBuilder buf = new StringBuilder();
+
+        buf.append(getClass().getSimpleName()).append("[").append(serializer).append(", ");
+        buf.append(encrypter == null ? "no encrypter" : encrypter);
+
+        if (compressionLevel != Deflater.BEST_COMPRESSION) {
+            buf.append(", compressionLevel=").append(compressionLevel);
+        }
+
+        if (urlSafe) {
+            buf.append(", urlSafe");
+        }
+
+        return buf.append("]").toString();
+    }
+
+    /** 可重用的压缩器和缓冲区。 */
+    private static class EncodeBuffer {
+        private final Deflater  deflater;
+        private final RawBuffer bytes = new RawBuffer();
+        private       char[]    chars = new char[0];
+
+        private EncodeBuffer(int compressionLevel) {
+            this.deflater = new Deflater(compressionLevel, false);
+        }
+
+        private char[] chars(int length) {
+            if (chars.length < length) {
+                chars = new char[length];
+            }
+
+            return chars;
+        }
+
+        private void reset() {
+            deflater.reset();
+            bytes.reset();
+        }
+    }
+
+    /** 可直接访问内部数组的<code>ByteArrayOutputStream</code>，<code>close()</code>之后仍可重用。 */
+    private static class RawBuffer extends ByteArrayOutputStream {
+        private RawBuffer() {
+            super(1024);
+        }
+
+        private byte[] getRawBytes() {
+            return buf;
+        }
     }
 }
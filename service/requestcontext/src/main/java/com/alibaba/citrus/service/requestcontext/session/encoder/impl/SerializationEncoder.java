@@ -38,6 +38,9 @@ import org.w3c.dom.Element;
  * 可设置<code>Serializer</code>和<code>Encrypter</code>， <code>Serializer</code>
  * 的默认值为<code>HessianSerializer</code>。
  * </p>
+ * <p>
+ * 当session提交频繁时，可以降低<code>compressionLevel</code>，并打开<code>urlSafe</code>，以减少编码的开销。
+ * </p>
  *
  * @author Michael Zhou
  */
@@ -58,6 +61,24 @@ public class SerializationEncoder extends AbstractSerializationEncoder {
         this.encrypter = encrypter;
     }
 
+    public int getCompressionLevel() {
+        return compressionLevel;
+    }
+
+    /** 设置压缩级别，<code>0-9</code>，或<code>-1</code>表示默认级别。默认为最高级别<code>9</code>。 */
+    public void setCompressionLevel(int compressionLevel) {
+        this.compressionLevel = compressionLevel;
+    }
+
+    public boolean isUrlSafe() {
+        return urlSafe;
+    }
+
+    /** 如果为<code>true</code>，则使用URL安全的base64字符集，而不再进行URL encoding。解码时兼容两种格式。 */
+    public void setUrlSafe(boolean urlSafe) {
+        this.urlSafe = urlSafe;
+    }
+
     public static class DefinitionParser extends AbstractSingleBeanDefinitionParser<SerializationEncoder> implements
                                                                                                           ContributionAware {
         private ConfigurationPoint serializerConfigurationPoint;
@@ -73,6 +94,8 @@ public class SerializationEncoder extends AbstractSerializationEncoder {
 
         @Override
         protected void doParse(Element element, ParserContext parserContext, BeanDefinitionBuilder builder) {
+            attributesToProperties(element, builder, "compressionLevel", "urlSafe");
+
             for (Element subElement : subElements(element)) {
                 BeanDefinitionHolder serializer = parseConfigurationPointBean(subElement, serializerConfigurationPoint,
                                                                               parserContext, builder);
@@ -17,18 +17,28 @@
 
 package com.alibaba.citrus.service.requestcontext.session.encrypter;
 
-import java.util.Queue;
-import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicReferenceArray;
 import javax.crypto.Cipher;
 
 import com.alibaba.citrus.service.requestcontext.session.encoder.SessionEncoderException;
 import com.alibaba.citrus.springext.support.BeanSupport;
 
+/**
+ * 基于JCE的加密器。
+ * <p>
+ * <code>Cipher</code>对象创建的代价较高，且非线程安全，因此被缓存在一个分段的池中重复使用。
+ * 每个线程从和它对应的若干个槽位中取得或归还<code>Cipher</code>，取得和归还都是常数时间的无锁操作。
+ * 如果槽位已满，则归还的<code>Cipher</code>被丢弃。
+ * </p>
+ *
+ * @author Michael Zhou
+ */
 public abstract class AbstractJceEncrypter extends BeanSupport implements Encrypter {
-    public static final int           DEFAULT_POOL_SIZE = 256;
-    private final       Queue<Cipher> eciphers          = new ConcurrentLinkedQueue<Cipher>();
-    private final       Queue<Cipher> dciphers          = new ConcurrentLinkedQueue<Cipher>();
-    private int poolSize;
+    public static final  int DEFAULT_POOL_SIZE = 256;
+    private static final int PROBES            = 4;
+    private AtomicReferenceArray<Cipher> eciphers;
+    private AtomicReferenceArray<Cipher> dciphers;
+    private int                          poolSize;
 
     public int getPoolSize() {
         return poolSize <= 0 ? DEFAULT_POOL_SIZE : poolSize;
@@ -38,37 +48,79 @@ public abstract class AbstractJceEncrypter extends BeanSupport implements Encryp
         this.poolSize = poolSize;
     }
 
+    @Override
+    protected void preInit() throws Exception {
+        eciphers = new AtomicReferenceArray<Cipher>(getPoolSize());
+        dciphers = new AtomicReferenceArray<Cipher>(getPoolSize());
+    }
+
     protected final Cipher getCipher(int mode) throws Exception {
-        Queue<Cipher> pool = mode == Cipher.ENCRYPT_MODE ? eciphers : dciphers;
-        Cipher cipher = pool.poll();
+        AtomicReferenceArray<Cipher> pool = getPool(mode);
+        int length = pool.length();
+        int home = getHomeSlot(length);
 
-        if (cipher == null) {
-            cipher = createCipher(mode);
+        for (int i = 0; i < PROBES && i < length; i++) {
+            int slot = (home + i) % length;
+
+            if (pool.get(slot) != null) {
+                Cipher cipher = pool.getAndSet(slot, null);
+
+                if (cipher != null) {
+                    return cipher;
+                }
+            }
         }
 
-        return cipher;
+        return createCipher(mode);
     }
 
     protected final void returnCipher(int mode, Cipher cipher) {
-        Queue<Cipher> pool = mode == Cipher.ENCRYPT_MODE ? eciphers : dciphers;
-
-        if (cipher != null) {
-            pool.offer(cipher);
+        if (cipher == null) {
+            return;
         }
 
-        while (pool.size() > getPoolSize()) {
-            pool.poll();
+        AtomicReferenceArray<Cipher> pool = getPool(mode);
+        int length = pool.length();
+        int home = getHomeSlot(length);
+
+        for (int i = 0; i < PROBES && i < length; i++) {
+            if (pool.compareAndSet((home + i) % length, null, cipher)) {
+                return;
+            }
         }
     }
 
+    private AtomicReferenceArray<Cipher> getPool(int mode) {
+        assertInitialized();
+        return mode == Cipher.ENCRYPT_MODE ? eciphers : dciphers;
+    }
+
+    /** 取得当前线程对应的槽位。 */
+    private int getHomeSlot(int length) {
+        long id = Thread.currentThread().getId();
+        int hash = (int) (id ^ id >>> 32) * 0x9E3779B9;
+
+        return (hash >>> 1) % length;
+    }
+
     protected abstract Cipher createCipher(int mode) throws Exception;
 
+    /** 用取得的<code>Cipher</code>加密。子类可覆盖此方法，以便在加密前初始化<code>Cipher</code>。 */
+    protected byte[] encrypt(Cipher cipher, byte[] plaintext) throws Exception {
+        return cipher.doFinal(plaintext);
+    }
+
+    /** 用取得的<code>Cipher</code>解密。子类可覆盖此方法，以便在解密前初始化<code>Cipher</code>。 */
+    protected byte[] decrypt(Cipher cipher, byte[] cryptotext) throws Exception {
+        return cipher.doFinal(cryptotext);
+    }
+
     public byte[] encrypt(byte[] plaintext) throws SessionEncrypterException {
         Cipher cipher = null;
 
         try {
             cipher = getCipher(Cipher.ENCRYPT_MODE);
-            return cipher.doFinal(plaintext);
+            return encrypt(cipher, plaintext);
         } catch (Exception e) {
             throw new SessionEncoderException("Failed to encrypt object", e);
         } finally {
@@ -81,7 +133,7 @@ public abstract class AbstractJceEncrypter extends BeanSupport implements Encryp
 
         try {
             cipher = getCipher(Cipher.DECRYPT_MODE);
-            return cipher.doFinal(cryptotext);
+            return decrypt(cipher, cryptotext);
         } catch (Exception e) {
             throw new SessionEncoderException("Failed to decrypt object", e);
         } finally {
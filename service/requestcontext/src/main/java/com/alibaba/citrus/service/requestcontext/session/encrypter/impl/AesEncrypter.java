@@ -17,25 +17,60 @@
 
 package com.alibaba.citrus.service.requestcontext.session.encrypter.impl;
 
+import static com.alibaba.citrus.springext.util.DomUtil.*;
 import static com.alibaba.citrus.springext.util.SpringExtUtil.*;
 import static com.alibaba.citrus.util.Assert.*;
 import static com.alibaba.citrus.util.StringUtil.*;
 
+import java.lang.reflect.Constructor;
+import java.security.SecureRandom;
+import java.security.spec.AlgorithmParameterSpec;
+import java.util.Map;
 import javax.crypto.Cipher;
 import javax.crypto.spec.SecretKeySpec;
 
 import com.alibaba.citrus.service.requestcontext.session.encrypter.AbstractJceEncrypter;
 import com.alibaba.citrus.springext.support.parser.AbstractSingleBeanDefinitionParser;
+import com.alibaba.citrus.springext.util.DomUtil.ElementSelector;
 import org.springframework.beans.factory.support.BeanDefinitionBuilder;
 import org.springframework.beans.factory.xml.ParserContext;
 import org.w3c.dom.Element;
 
+/**
+ * 用AES加密。
+ * <p>
+ * 支持两种模式：
+ * </p>
+ * <ul>
+ * <li><code>ECB</code>：默认模式，和以前的版本兼容。</li>
+ * <li><code>GCM</code>：带认证的加密模式，每次加密使用随机的IV，被篡改或截断的数据将无法解密，
+ * 因此cookie store无需再使用checksum cookie。密文的格式为：<code>keyId(1 byte) + IV(12 bytes) + 密文和认证码</code>。
+ * 该模式需要JDK 7或更高版本。</li>
+ * </ul>
+ * <p>
+ * 在<code>GCM</code>模式下，支持密钥轮换：总是使用<code>key</code>加密，并将<code>keyId</code>写入密文；
+ * 解密时根据密文中的<code>keyId</code>，从<code>key</code>和<code>previousKeys</code>中选择密钥。
+ * </p>
+ *
+ * @author Michael Zhou
+ */
 public class AesEncrypter extends AbstractJceEncrypter {
-    public final static String ALG_NAME         = "AES";
-    public final static int    DEFAULT_KEY_SIZE = 128;
-    private String        key;
-    private int           keySize;
-    private SecretKeySpec keySpec;
+    public final static  String ALG_NAME           = "AES";
+    public final static  String MODE_ECB           = "ECB";
+    public final static  String MODE_GCM           = "GCM";
+    public final static  int    DEFAULT_KEY_SIZE   = 128;
+    private final static String GCM_TRANSFORMATION = "AES/GCM/NoPadding";
+    private final static int    GCM_IV_LENGTH      = 12;
+    private final static int    GCM_TAG_LENGTH     = 128;
+    private String                                        key;
+    private int                                           keySize;
+    private String                                        mode;
+    private int                                           keyId;
+    private Map<Integer, String>                          previousKeys;
+    private SecretKeySpec                                 keySpec;
+    private SecretKeySpec[]                               keySpecs;
+    private SecureRandom                                  random;
+    private Constructor<? extends AlgorithmParameterSpec> gcmSpecConstructor;
 
     public String getKey() {
         return key;
@@ -53,9 +88,41 @@ public class AesEncrypter extends AbstractJceEncrypter {
         this.keySize = keySize;
     }
 
+    public String getMode() {
+        return mode == null ? MODE_ECB : mode;
+    }
+
+    /** 设置加密模式：<code>ECB</code>（默认）或<code>GCM</code>。 */
+    public void setMode(String mode) {
+        this.mode = toUpperCase(trimToNull(mode));
+    }
+
+    public int getKeyId() {
+        return keyId;
+    }
+
+    /** 设置当前密钥的ID（0-255），仅用于<code>GCM</code>模式。 */
+    public void setKeyId(int keyId) {
+        this.keyId = keyId;
+    }
+
+    public Map<Integer, String> getPreviousKeys() {
+        return previousKeys;
+    }
+
+    /** 设置以前使用过的密钥，仅用于解密，key为密钥的ID。仅用于<code>GCM</code>模式。 */
+    public void setPreviousKeys(Map<Integer, String> previousKeys) {
+        this.previousKeys = previousKeys;
+    }
+
+    public boolean isGcm() {
+        return MODE_GCM.equals(getMode());
+    }
+
     @Override
     protected void init() throws Exception {
         assertNotNull(key, "no key");
+        assertTrue(MODE_ECB.equals(getMode()) || MODE_GCM.equals(getMode()), "unsupported mode: %s", mode);
 
         byte[] raw = key.getBytes("UTF-8");
         int keySize = getKeySize();
@@ -64,24 +131,127 @@ public class AesEncrypter extends AbstractJceEncrypter {
         assertTrue(keySize == actualKeySize, "Illegal key: expected size=%d, actual size is %d", keySize, actualKeySize);
 
         keySpec = new SecretKeySpec(raw, ALG_NAME);
+
+        if (isGcm()) {
+            assertTrue(keyId >= 0 && keyId <= 255, "keyId out of range: %d", keyId);
+
+            keySpecs = new SecretKeySpec[256];
+            keySpecs[keyId] = keySpec;
+
+            if (previousKeys != null) {
+                for (Map.Entry<Integer, String> entry : previousKeys.entrySet()) {
+                    int id = entry.getKey();
+                    byte[] previousRaw = assertNotNull(trimToNull(entry.getValue()), "no key for keyId %d", id)
+                            .getBytes("UTF-8");
+                    int previousKeySize = previousRaw.length * 8;
+
+                    assertTrue(id >= 0 && id <= 255, "keyId out of range: %d", id);
+                    assertTrue(keySpecs[id] == null, "duplicated keyId: %d", id);
+                    assertTrue(previousKeySize == 128 || previousKeySize == 192 || previousKeySize == 256,
+                               "Illegal key for keyId %d: size is %d", id, previousKeySize);
+
+                    keySpecs[id] = new SecretKeySpec(previousRaw, ALG_NAME);
+                }
+            }
+
+            // GCMParameterSpec始于JDK 7
+            try {
+                gcmSpecConstructor = Class.forName("javax.crypto.spec.GCMParameterSpec")
+                                          .asSubclass(AlgorithmParameterSpec.class)
+                                          .getConstructor(int.class, byte[].class);
+            } catch (ClassNotFoundException e) {
+                throw new IllegalArgumentException("AES/GCM mode requires JDK 7 or later", e);
+            }
+
+            random = new SecureRandom();
+        } else {
+            assertTrue(previousKeys == null || previousKeys.isEmpty(), "previousKeys are only supported in GCM mode");
+        }
     }
 
     @Override
     protected Cipher createCipher(int mode) throws Exception {
+        if (isGcm()) {
+            // 每次加密、解密前初始化
+            return Cipher.getInstance(GCM_TRANSFORMATION);
+        }
+
         Cipher cipher = Cipher.getInstance(ALG_NAME);
         cipher.init(mode, keySpec);
         return cipher;
     }
 
+    @Override
+    protected byte[] encrypt(Cipher cipher, byte[] plaintext) throws Exception {
+        if (!isGcm()) {
+            return super.encrypt(cipher, plaintext);
+        }
+
+        byte[] iv = new byte[GCM_IV_LENGTH];
+
+        random.nextBytes(iv);
+
+        cipher.init(Cipher.ENCRYPT_MODE, keySpec, gcmSpecConstructor.newInstance(GCM_TAG_LENGTH, iv));
+
+        byte[] cryptotext = new byte[1 + GCM_IV_LENGTH + cipher.getOutputSize(plaintext.length)];
+
+        cryptotext[0] = (byte) keyId;
+        System.arraycopy(iv, 0, cryptotext, 1, GCM_IV_LENGTH);
+
+        int length = 1 + GCM_IV_LENGTH + cipher.doFinal(plaintext, 0, plaintext.length, cryptotext, 1 + GCM_IV_LENGTH);
+
+        if (length == cryptotext.length) {
+            return cryptotext;
+        }
+
+        byte[] result = new byte[length];
+        System.arraycopy(cryptotext, 0, result, 0, length);
+        return result;
+    }
+
+    @Override
+    protected byte[] decrypt(Cipher cipher, byte[] cryptotext) throws Exception {
+        if (!isGcm()) {
+            return super.decrypt(cipher, cryptotext);
+        }
+
+        assertTrue(cryptotext.length >= 1 + GCM_IV_LENGTH + GCM_TAG_LENGTH / 8, "cryptotext is too short");
+
+        int id = cryptotext[0] & 0xff;
+        SecretKeySpec spec = assertNotNull(keySpecs[id], "unknown keyId: %d", id);
+        byte[] iv = new byte[GCM_IV_LENGTH];
+
+        System.arraycopy(cryptotext, 1, iv, 0, GCM_IV_LENGTH);
+
+        cipher.init(Cipher.DECRYPT_MODE, spec, gcmSpecConstructor.newInstance(GCM_TAG_LENGTH, iv));
+
+        return cipher.doFinal(cryptotext, 1 + GCM_IV_LENGTH, cryptotext.length - 1 - GCM_IV_LENGTH);
+    }
+
     @Override
     public String toString() {
-        return "AES(keySize=" + getKeySize() + ")";
+        if (isGcm()) {
+            return "AES(keySize=" + getKeySize() + ", mode=GCM, keyId=" + keyId + ")";
+        } else {
+            return "AES(keySize=" + getKeySize() + ")";
+        }
     }
 
     public static class DefinitionParser extends AbstractSingleBeanDefinitionParser<AesEncrypter> {
         @Override
         protected void doParse(Element element, ParserContext parserContext, BeanDefinitionBuilder builder) {
-            attributesToProperties(element, builder, "keySize", "key");
+            attributesToProperties(element, builder, "keySize", "key", "mode", "keyId");
+
+            ElementSelector previousKeySelector = and(sameNs(element), name("previous-key"));
+            Map<Object, Object> previousKeys = createManagedMap(element, parserContext);
+
+            for (Element subElement : subElements(element, previousKeySelector)) {
+                previousKeys.put(subElement.getAttribute("keyId"), subElement.getAttribute("key"));
+            }
+
+            if (!previousKeys.isEmpty()) {
+                builder.addPropertyValue("previousKeys", previousKeys);
+            }
         }
     }
 }
@@ -0,0 +1,163 @@
+/*
+ * Copyright (c) 2002-2012 Alibaba Group Holding Limited.
+ * All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.alibaba.citrus.service.requestcontext.session.idgen.random.impl;
+
+import static com.alibaba.citrus.util.Assert.*;
+import static com.alibaba.citrus.util.ObjectUtil.*;
+
+import java.security.NoSuchAlgorithmException;
+import java.security.SecureRandom;
+
+import com.alibaba.citrus.service.requestcontext.session.SessionIDGenerator;
+import com.alibaba.citrus.springext.support.BeanSupport;
+import com.alibaba.citrus.util.ToStringBuilder;
+
+/**
+ * 用随机数生成session ID的机制，适用于高并发的场景。
+ * <p>
+ * 和<code>RandomIDGenerator</code>共享同一个<code>SecureRandom</code>不同，该生成器将随机数发生器分成若干段，
+ * 每个线程使用和它对应的那一段，从而避免在同一个锁上竞争。每一段都是独立的<code>SHA1PRNG</code>，其种子取自共享的
+ * <code>SecureRandom</code>，并定期补充新的种子。
+ * </p>
+ * <p>
+ * 生成的ID和<code>RandomIDGenerator</code>使用相同的字符集。
+ * </p>
+ *
+ * @author Michael Zhou
+ */
+public class StripedRandomIDGenerator extends BeanSupport implements SessionIDGenerator {
+    private static final char[] ENCODE_TABLE    = "ABCDEFGHIJKLMNOPQRSTUVWXYZabcdefghijklmnopqrstuvwxyz0123456789-$"
+            .toCharArray();
+    private static final int    SEED_LENGTH     = 32;
+    private static final int    RESEED_INTERVAL = 1 << 16;
+    private Integer      length;
+    private Integer      stripes;
+    private SecureRandom seedSource;
+    private Stripe[]     stripeArray;
+
+    public int getLength() {
+        return length;
+    }
+
+    public void setLength(int length) {
+        this.length = length;
+    }
+
+    public int getStripes() {
+        return stripes;
+    }
+
+    /** 设置随机数发生器的段数，默认为CPU数量的两倍。 */
+    public void setStripes(int stripes) {
+        this.stripes = stripes;
+    }
+
+    @Override
+    protected void init() throws Exception {
+        length = defaultIfNull(length, SESSION_ID_LENGTH_DEFAULT);
+        stripes = defaultIfNull(stripes, Runtime.getRuntime().availableProcessors() * 2);
+
+        assertTrue(length > 0, "length");
+        assertTrue(stripes > 0, "stripes");
+
+        seedSource = new SecureRandom();
+        stripeArray = new Stripe[stripes];
+
+        for (int i = 0; i < stripes; i++) {
+            stripeArray[i] = new Stripe(createRandom(), (length * 6 + 7) / 8 + 2);
+        }
+    }
+
+    private SecureRandom createRandom() {
+        SecureRandom rnd;
+
+        try {
+            rnd = SecureRandom.getInstance("SHA1PRNG");
+        } catch (NoSuchAlgorithmException e) {
+            rnd = new SecureRandom();
+        }
+
+        rnd.setSeed(nextSeed());
+
+        return rnd;
+    }
+
+    private byte[] nextSeed() {
+        byte[] seed = new byte[SEED_LENGTH];
+        seedSource.nextBytes(seed);
+        return seed;
+    }
+
+    public String generateSessionID() {
+        assertInitialized();
+
+        long id = Thread.currentThread().getId();
+        int hash = (int) (id ^ id >>> 32) * 0x9E3779B9;
+        Stripe stripe = stripeArray[(hash >>> 1) % stripeArray.length];
+        char[] chars = new char[length];
+
+        synchronized (stripe) {
+            if (++stripe.count >= RESEED_INTERVAL) {
+                stripe.count = 0;
+                stripe.rnd.setSeed(nextSeed()); // 补充新的种子，而不是替换原有的种子
+            }
+
+            byte[] bytes = stripe.bytes;
+
+            stripe.rnd.nextBytes(bytes);
+
+            // 每3个字节生成4个字符
+            for (int i = 0, j = 0; j < length; i += 3) {
+                int bits = (bytes[i] & 0xff) << 16 | (bytes[i + 1] & 0xff) << 8 | bytes[i + 2] & 0xff;
+
+                chars[j++] = ENCODE_TABLE[bits >>> 18];
+
+                if (j < length) {
+                    chars[j++] = ENCODE_TABLE[bits >>> 12 & 0x3f];
+                }
+
+                if (j < length) {
+                    chars[j++] = ENCODE_TABLE[bits >>> 6 & 0x3f];
+                }
+
+                if (j < length) {
+                    chars[j++] = ENCODE_TABLE[bits & 0x3f];
+                }
+            }
+        }
+
+        return new String(chars);
+    }
+
+    @Override
+    public String toString() {
+        return new ToStringBuilder().append("StripedRandomSessionIDGenerator[length=").append(length)
+                                    .append(", stripes=").append(stripes).append("]").toString();
+    }
+
+    /** 一段随机数发生器。 */
+    private static class Stripe {
+        private final SecureRandom rnd;
+        private final byte[]       bytes;
+        private       int          count;
+
+        private Stripe(SecureRandom rnd, int byteLength) {
+            this.rnd = rnd;
+            this.bytes = new byte[(byteLength + 2) / 3 * 3];
+        }
+    }
+}
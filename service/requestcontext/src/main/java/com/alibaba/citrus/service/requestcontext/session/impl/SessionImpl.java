@@ -34,6 +34,7 @@ import javax.servlet.http.HttpSession;
 import com.alibaba.citrus.service.requestcontext.session.HttpHeaderSessionStore;
 import com.alibaba.citrus.service.requestcontext.session.SessionAttributeInterceptor;
 import com.alibaba.citrus.service.requestcontext.session.SessionConfig;
+import com.alibaba.citrus.service.requestcontext.session.SessionConfig.StoresConfig;
 import com.alibaba.citrus.service.requestcontext.session.SessionInterceptor;
 import com.alibaba.citrus.service.requestcontext.session.SessionLifecycleListener;
 import com.alibaba.citrus.service.requestcontext.session.SessionModel;
@@ -41,6 +42,7 @@ import com.alibaba.citrus.service.requestcontext.session.SessionModelEncoder;
 import com.alibaba.citrus.service.requestcontext.session.SessionRequestContext;
 import com.alibaba.citrus.service.requestcontext.session.SessionStore;
 import com.alibaba.citrus.service.requestcontext.session.SessionStore.StoreContext;
+import com.alibaba.citrus.service.requestcontext.session.VersionAwareSessionStore;
 import com.alibaba.citrus.util.ToStringBuilder;
 import com.alibaba.citrus.util.ToStringBuilder.MapBuilder;
 import org.slf4j.Logger;
@@ -65,6 +67,7 @@ public class SessionImpl implements HttpSession {
     private Map<String, Object>           storeStates    = createHashMap();
     private boolean                       invalidated    = false;
     private boolean                       cleared        = false;
+    private boolean                       versionUpdated = false;
     private Set<String>                   clearingStores = createHashSet();
 
     /** 创建一个session对象。 */
@@ -312,6 +315,7 @@ public class SessionImpl implements HttpSession {
         assertValid("setAttribute");
         assertAttributeNameForModification("setAttribute", name);
         sessionInternal.setAttribute(name, value);
+        updateVersion();
     }
 
     /**
@@ -365,6 +369,26 @@ public class SessionImpl implements HttpSession {
         return isNew;
     }
 
+    /** 如果配置了<code>VersionAwareSessionStore</code>，则在每个请求中第一次修改session时，更新model的版本。 */
+    private void updateVersion() {
+        if (!versionUpdated && isVersionRequired()) {
+            model.updateVersion();
+            versionUpdated = true;
+        }
+    }
+
+    private boolean isVersionRequired() {
+        StoresConfig stores = requestContext.getSessionConfig().getStores();
+
+        for (String storeName : stores.getStoreNames()) {
+            if (stores.getStore(storeName) instanceof VersionAwareSessionStore) {
+                return true;
+            }
+        }
+
+        return false;
+    }
+
     /**
      * 确保model已经被取得，即session已被初始化。
      *
@@ -442,6 +466,9 @@ public class SessionImpl implements HttpSession {
                     if (attrValue instanceof SessionModel) {
                         attrValue = requestContext.getSessionConfig().getSessionModelEncoders()[0]
                                 .encode((SessionModel) attrValue);
+
+                        // 版本改变的model必须被保存
+                        modified |= versionUpdated;
                     } else {
                         // 只检查非session model对象的modified状态
                         modified = true;
@@ -640,6 +667,10 @@ public class SessionImpl implements HttpSession {
         public HttpSession getHttpSession() {
             return sessionInternal;
         }
+
+        public SessionModel getSessionModel() {
+            return model;
+        }
     }
 
     /** 内部使用的session对象，不会抛出<code>IllegalStateException</code>异常。 */
@@ -793,6 +824,8 @@ public class SessionImpl implements HttpSession {
             }
 
             // 清除model
+            versionUpdated = false;
+
             if (model == null) {
                 model = new SessionModelImpl(SessionImpl.this);
             } else {
@@ -22,31 +22,40 @@ import static com.alibaba.citrus.util.ObjectUtil.*;
 import static com.alibaba.citrus.util.StringUtil.*;
 
 import java.text.MessageFormat;
+import java.text.ParseException;
 
 import com.alibaba.citrus.service.requestcontext.session.SessionModel;
 import com.alibaba.citrus.service.requestcontext.session.SessionModel.Factory;
 import com.alibaba.citrus.service.requestcontext.session.SessionModelEncoder;
+import com.alibaba.citrus.service.requestcontext.session.VersionedSessionModel;
 import com.alibaba.citrus.springext.support.parser.AbstractSingleBeanDefinitionParser;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 /**
  * <code>SessionModelEncoder</code>的默认实现：将model内容保存成字符串。
+ * <p>
+ * 只有当model的版本不为<code>0</code>时，才会保存版本，因此未使用版本的model和以前的格式完全相同。
+ * </p>
  *
  * @author Michael Zhou
  */
 public class SessionModelEncoderImpl implements SessionModelEncoder {
-    private static final Logger log     = LoggerFactory.getLogger(SessionModelEncoderImpl.class);
-    private static final String pattern = "'{'id:\"{0}\",ct:{1,number,#},ac:{2,number,#},mx:{3,number,#}'}'";
+    private static final Logger log              = LoggerFactory.getLogger(SessionModelEncoderImpl.class);
+    private static final String pattern          = "'{'id:\"{0}\",ct:{1,number,#},ac:{2,number,#},mx:{3,number,#}'}'";
+    private static final String versionedPattern = "'{'id:\"{0}\",ct:{1,number,#},ac:{2,number,#},mx:{3,number,#},vs:{4,number,#}'}'";
 
     public Object encode(SessionModel model) {
+        long version = model instanceof VersionedSessionModel ? ((VersionedSessionModel) model).getVersion() : 0;
+
         Object[] args = { defaultIfNull(model.getSessionID(), EMPTY_STRING), //
                           model.getCreationTime(), //
                           model.getLastAccessedTime(), //
-                          model.getMaxInactiveInterval() //
+                          model.getMaxInactiveInterval(), //
+                          version //
         };
 
-        String data = new MessageFormat(pattern).format(args);
+        String data = new MessageFormat(version == 0 ? pattern : versionedPattern).format(args);
 
         if (log.isDebugEnabled()) {
             log.debug("Stored session model data: {}", data);
@@ -62,7 +71,13 @@ public class SessionModelEncoderImpl implements SessionModelEncoder {
             log.trace("Trying to parse session model data: {}", data);
 
             try {
-                Object[] values = new MessageFormat(pattern).parse((String) data);
+                Object[] values;
+
+                try {
+                    values = new MessageFormat(versionedPattern).parse((String) data);
+                } catch (ParseException e) {
+                    values = new MessageFormat(pattern).parse((String) data);
+                }
 
                 String sessionID = trimToNull((String) values[0]);
                 long creationTime = (Long) values[1];
@@ -70,6 +85,10 @@ public class SessionModelEncoderImpl implements SessionModelEncoder {
                 int maxInactiveInterval = ((Long) values[3]).intValue();
 
                 model = factory.newInstance(sessionID, creationTime, lastAccessedTime, maxInactiveInterval);
+
+                if (values.length > 4 && model instanceof SessionModelImpl) {
+                    ((SessionModelImpl) model).setVersion((Long) values[4]);
+                }
             } catch (Exception e) {
                 if (log.isDebugEnabled()) {
                     log.debug("Could not parse session model data: " + data, e);
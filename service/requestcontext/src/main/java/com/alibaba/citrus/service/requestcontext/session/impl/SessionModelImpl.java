@@ -22,10 +22,11 @@ import static com.alibaba.citrus.util.Assert.*;
 import java.text.DateFormat;
 import java.util.Date;
 import java.util.Locale;
+import java.util.Random;
 import java.util.TimeZone;
 
 import com.alibaba.citrus.service.requestcontext.session.SessionConfig;
-import com.alibaba.citrus.service.requestcontext.session.SessionModel;
+import com.alibaba.citrus.service.requestcontext.session.VersionedSessionModel;
 import com.alibaba.citrus.util.ToStringBuilder;
 import com.alibaba.citrus.util.ToStringBuilder.MapBuilder;
 
@@ -34,12 +35,16 @@ import com.alibaba.citrus.util.ToStringBuilder.MapBuilder;
  *
  * @author Michael Zhou
  */
-public class SessionModelImpl implements SessionModel {
+public class SessionModelImpl implements VersionedSessionModel {
+    private static final int    VERSION_RANDOM_BITS = 20;
+    private static final Random versionRandom       = new Random();
+
     private transient SessionConfig sessionConfig;
     private           String        sessionID;
     private           long          creationTime;
     private           long          lastAccessedTime;
     private           int           maxInactiveInterval;
+    private           long          version;
 
     public SessionModelImpl(SessionImpl session) {
         setSession(session);
@@ -72,6 +77,7 @@ public class SessionModelImpl implements SessionModel {
         this.creationTime = System.currentTimeMillis();
         this.lastAccessedTime = creationTime;
         this.maxInactiveInterval = sessionConfig.getMaxInactiveInterval();
+        this.version = 0;
     }
 
     /** 设置model所在的session。 */
@@ -125,6 +131,37 @@ public class SessionModelImpl implements SessionModel {
         this.maxInactiveInterval = maxInactiveInterval;
     }
 
+    /**
+     * 取得session数据的版本。
+     *
+     * @return 版本，<code>0</code>表示版本未知
+     */
+    public long getVersion() {
+        return version;
+    }
+
+    /**
+     * 设置session数据的版本。
+     *
+     * @param version 版本
+     */
+    public void setVersion(long version) {
+        this.version = version;
+    }
+
+    /**
+     * 更新session数据的版本。
+     * <p>
+     * 新的版本由当前时间和一个随机数组成，并确保大于原来的版本。即使不同节点（或同一节点上的不同请求）
+     * 在同一时刻从同一版本更新session，也几乎不可能得到相同的版本，从而避免本地缓存误用其它请求的数据。
+     * </p>
+     */
+    public void updateVersion() {
+        long time = Math.max(System.currentTimeMillis(), (version >>> VERSION_RANDOM_BITS) + 1);
+
+        version = time << VERSION_RANDOM_BITS | versionRandom.nextInt(1 << VERSION_RANDOM_BITS);
+    }
+
     /**
      * 判断session有没有过期。
      *
@@ -173,6 +210,10 @@ public class SessionModelImpl implements SessionModel {
         mb.append("lastAccessedTime", lastAccessedTime <= 0 ? "n/a" : fmt.format(new Date(lastAccessedTime)));
         mb.append("maxInactiveInterval", maxInactiveInterval);
 
+        if (version != 0) {
+            mb.append("version", version);
+        }
+
         return new ToStringBuilder().append("SessionModel").append(mb).toString();
     }
 }
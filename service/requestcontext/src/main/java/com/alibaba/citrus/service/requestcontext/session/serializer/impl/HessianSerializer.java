@@ -20,6 +20,8 @@ package com.alibaba.citrus.service.requestcontext.session.serializer.impl;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.OutputStream;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
 
 import com.alibaba.citrus.hessian.io.Hessian2Input;
 import com.alibaba.citrus.hessian.io.Hessian2Output;
@@ -28,39 +30,59 @@ import com.alibaba.citrus.springext.support.parser.AbstractSingleBeanDefinitionP
 
 /**
  * Hessian序列化。
+ * <p>
+ * <code>Hessian2Output</code>和<code>Hessian2Input</code>自带缓冲区和引用表，创建的代价较高，因此被缓存在一个有限大小的池中重复使用。
+ * </p>
  *
  * @author Michael Zhou
  */
 public class HessianSerializer implements Serializer {
+    private static final int POOL_SIZE = 16;
+
+    private final BlockingQueue<Hessian2Output> outputPool = new ArrayBlockingQueue<Hessian2Output>(POOL_SIZE);
+    private final BlockingQueue<Hessian2Input>  inputPool  = new ArrayBlockingQueue<Hessian2Input>(POOL_SIZE);
+
     public void serialize(Object objectToEncode, OutputStream os) throws Exception {
-        Hessian2Output ho = null;
+        Hessian2Output ho = outputPool.poll();
 
-        try {
+        if (ho == null) {
             ho = new Hessian2Output(os);
+        } else {
+            ho.init(os);
+        }
+
+        try {
             ho.writeObject(objectToEncode);
         } finally {
-            if (ho != null) {
-                try {
-                    ho.close();
-                } catch (IOException e) {
-                }
+            try {
+                ho.close();
+            } catch (IOException e) {
             }
+
+            ho.free();
+            outputPool.offer(ho);
         }
     }
 
     public Object deserialize(InputStream is) throws Exception {
-        Hessian2Input hi = null;
+        Hessian2Input hi = inputPool.poll();
 
-        try {
+        if (hi == null) {
             hi = new Hessian2Input(is);
+        } else {
+            hi.init(is);
+        }
+
+        try {
             return hi.readObject();
         } finally {
-            if (hi != null) {
-                try {
-                    hi.close();
-                } catch (IOException e) {
-                }
+            try {
+                hi.close();
+            } catch (IOException e) {
             }
+
+            hi.init(null);
+            inputPool.offer(hi);
         }
     }
 
@@ -42,7 +42,7 @@ public class CookieStoreDefinitionParser extends AbstractSingleBeanDefinitionPar
 
     @Override
     protected void doParse(Element element, ParserContext parserContext, BeanDefinitionBuilder builder) {
-        attributesToProperties(element, builder, "maxLength", "maxCount", "checksum");
+        attributesToProperties(element, builder, "maxLength", "maxCount", "checksum", "skipUnchanged");
 
         ElementSelector cookieSelector = and(sameNs(element), name("cookie")); // request-contexts:cookie
         ElementSelector encodersSelector = and(sameNs(element), name("encoders")); // request-contexts:encoders
@@ -22,6 +22,9 @@ import static com.alibaba.citrus.util.CollectionUtil.*;
 import static com.alibaba.citrus.util.ObjectUtil.*;
 import static com.alibaba.citrus.util.StringUtil.*;
 
+import java.io.OutputStream;
+import java.security.MessageDigest;
+import java.util.Arrays;
 import java.util.Collections;
 import java.util.List;
 import java.util.Map;
@@ -32,6 +35,8 @@ import javax.servlet.http.HttpServletRequest;
 
 import com.alibaba.citrus.service.requestcontext.session.encoder.SessionEncoder;
 import com.alibaba.citrus.service.requestcontext.session.encoder.impl.SerializationEncoder;
+import com.alibaba.citrus.service.requestcontext.session.serializer.Serializer;
+import com.alibaba.citrus.service.requestcontext.session.serializer.impl.HessianSerializer;
 import com.alibaba.citrus.service.requestcontext.session.store.SessionStoreException;
 import com.alibaba.citrus.service.requestcontext.session.store.cookie.AbstractCookieStore;
 import com.alibaba.citrus.util.ObjectUtil;
@@ -47,6 +52,10 @@ import com.alibaba.citrus.util.ToStringBuilder.MapBuilder;
  * <code>cookieNameN</code>。</li>
  * <li>可选生成checksum cookie：<code>cookieNamesum</code>。
  * </ul>
+ * <p>
+ * 装载cookie时，会记录session数据的指纹（序列化后的摘要）。提交时，如果数据的指纹没有改变，
+ * 则不必重新编码，也不必重写cookie。如果cookie设置了<code>maxAge</code>，为了延长cookie的有效期，仍然会重写cookie。
+ * </p>
  *
  * @author Michael Zhou
  */
@@ -57,12 +66,15 @@ public class CookieStoreImpl extends AbstractCookieStore {
     private static final Boolean CHECKSUM_DEFAULT    = false;
     private static final String  CHECKSUM_SEPARATOR  = "|";
     private static final int     CHECKSUM_LENGTH     = 15;
-    private Pattern          namePattern;
-    private Integer          maxLength;
-    private Integer          maxCount;
-    private Boolean          checksum;
-    private String           checksumName;
-    private SessionEncoder[] encoders;
+    private static final Boolean SKIP_UNCHANGED_DEFAULT = true;
+    private final Serializer       fingerprintSerializer = new HessianSerializer();
+    private       Pattern          namePattern;
+    private       Integer          maxLength;
+    private       Integer          maxCount;
+    private       Boolean          checksum;
+    private       Boolean          skipUnchanged;
+    private       String           checksumName;
+    private       SessionEncoder[] encoders;
 
     public void setMaxLength(int maxLength) {
         this.maxLength = maxLength;
@@ -76,6 +88,11 @@ public class CookieStoreImpl extends AbstractCookieStore {
         this.checksum = checksum;
     }
 
+    /** 如果session数据未改变，是否跳过编码和写cookie。默认为<code>true</code>。 */
+    public void setSkipUnchanged(boolean skipUnchanged) {
+        this.skipUnchanged = skipUnchanged;
+    }
+
     public void setEncoders(SessionEncoder[] encoders) {
         this.encoders = encoders;
     }
@@ -93,6 +110,9 @@ public class CookieStoreImpl extends AbstractCookieStore {
         checksum = defaultIfNull(checksum, CHECKSUM_DEFAULT);
         checksumName = getName() + "sum";
 
+        // 如果cookie有maxAge，则每次都需要重写cookie，以延长其有效期
+        skipUnchanged = defaultIfNull(skipUnchanged, SKIP_UNCHANGED_DEFAULT) && getMaxAge() <= 0;
+
         // 取得cookie encoder
         if (isEmptyArray(encoders)) {
             encoders = new SessionEncoder[] { createDefaultSessionEncoder() };
@@ -166,6 +186,12 @@ public class CookieStoreImpl extends AbstractCookieStore {
             }
         }
 
+        // 如果数据未改变，则保留request中原有的cookie
+        if (state.fingerprint != null && Arrays.equals(state.fingerprint, fingerprint(state.attributes))) {
+            log.debug("[{}] Session state unchanged, skip writing cookies", getStoreName());
+            return;
+        }
+
         String cookieState = null;
 
         if (!state.attributes.isEmpty()) {
@@ -257,7 +283,56 @@ public class CookieStoreImpl extends AbstractCookieStore {
         state.mergedCookieValue = mergeCookies(cookiesInfo.cookieList, cookiesInfo.checksumList);
 
         // 依次使用所有encoders，试着对cookieState解码，如果失败，则返回空表
-        state.attributes = decodeCookieValue(state.mergedCookieValue, storeContext);
+        state.attributes = decodeCookieValue(state, storeContext);
+
+        // 如果cookie是由当前的配置写入的，则记录数据的指纹，以便提交时判断数据是否改变
+        if (skipUnchanged && state.decodedByPrimaryEncoder && state.checksumValid && state.hasChecksum == checksum
+            && isWellFormed(cookiesInfo)) {
+            state.fingerprint = fingerprint(state.attributes);
+        }
+    }
+
+    /** 检查cookies是否连续、完整，并符合当前长度和个数的限制。 */
+    private boolean isWellFormed(CookiesInfo cookiesInfo) {
+        if (cookiesInfo.cookieList.size() > maxCount) {
+            return false;
+        }
+
+        int index = 0;
+
+        for (CookieInfo cookieInfo : cookiesInfo.cookieList) {
+            if (cookieInfo.index != index || cookieInfo.value == null || cookieInfo.value.length() > maxLength) {
+                return false;
+            }
+
+            index++;
+        }
+
+        return true;
+    }
+
+    /** 计算session数据序列化以后的摘要。如果不能计算，则返回<code>null</code>。 */
+    private byte[] fingerprint(Map<String, Object> attrs) {
+        try {
+            final MessageDigest digest = MessageDigest.getInstance("MD5");
+
+            fingerprintSerializer.serialize(attrs, new OutputStream() {
+                @Override
+                public void write(int b) {
+                    digest.update((byte) b);
+                }
+
+                @Override
+                public void write(byte[] b, int off, int len) {
+                    digest.update(b, off, len);
+                }
+            });
+
+            return digest.digest();
+        } catch (Exception e) {
+            log.debug("Could not compute fingerprint of session state: {}", e.toString());
+            return null;
+        }
     }
 
     /** 读取cookies。 */
@@ -384,7 +459,8 @@ public class CookieStoreImpl extends AbstractCookieStore {
         return trimToNull(buf.toString());
     }
 
-    private Map<String, Object> decodeCookieValue(String cookieValue, StoreContext storeContext) {
+    private Map<String, Object> decodeCookieValue(State state, StoreContext storeContext) {
+        String cookieValue = state.mergedCookieValue;
         Map<String, Object> attrs = null;
 
         if (cookieValue == null) {
@@ -396,6 +472,7 @@ public class CookieStoreImpl extends AbstractCookieStore {
         for (SessionEncoder encoder : encoders) {
             try {
                 attrs = encoder.decode(cookieValue, storeContext);
+                state.decodedByPrimaryEncoder = encoder == encoders[0];
                 log.debug("Succeeded decoding cookieValues using {}", encoder);
                 break;
             } catch (Exception e) {
@@ -451,6 +528,7 @@ public class CookieStoreImpl extends AbstractCookieStore {
         mb.append("maxLength", maxLength);
         mb.append("maxCount", maxCount);
         mb.append("checksum", checksum);
+        mb.append("skipUnchanged", skipUnchanged);
         mb.append("encoders", encoders);
     }
 
@@ -470,9 +548,9 @@ public class CookieStoreImpl extends AbstractCookieStore {
         private Map<String, CookieInfo> requestCookies;
         private String                  mergedCookieValue;
         private Map<String, Object>     attributes;
-
-        @SuppressWarnings("unused")
-        private boolean checksumValid; // used by testcase
+        private boolean                 decodedByPrimaryEncoder;
+        private byte[]                  fingerprint;
+        private boolean                 checksumValid;
     }
 
     /** 保存一个cookie的信息。 */
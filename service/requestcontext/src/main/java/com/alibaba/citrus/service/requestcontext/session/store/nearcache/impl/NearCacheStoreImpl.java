@@ -0,0 +1,396 @@
+/*
+ * Copyright (c) 2002-2012 Alibaba Group Holding Limited.
+ * All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.alibaba.citrus.service.requestcontext.session.store.nearcache.impl;
+
+import static com.alibaba.citrus.util.Assert.*;
+import static com.alibaba.citrus.util.CollectionUtil.*;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import javax.servlet.http.HttpSession;
+
+import com.alibaba.citrus.service.requestcontext.session.HttpHeaderSessionStore;
+import com.alibaba.citrus.service.requestcontext.session.SessionConfig;
+import com.alibaba.citrus.service.requestcontext.session.SessionModel;
+import com.alibaba.citrus.service.requestcontext.session.SessionRequestContext;
+import com.alibaba.citrus.service.requestcontext.session.SessionStore;
+import com.alibaba.citrus.service.requestcontext.session.VersionAwareSessionStore;
+import com.alibaba.citrus.service.requestcontext.session.VersionedSessionModel;
+import com.alibaba.citrus.service.requestcontext.session.serializer.Serializer;
+import com.alibaba.citrus.service.requestcontext.session.serializer.impl.JavaSerializer;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * 为另一个store提供本地缓存的store。
+ * <p>
+ * 缓存以session ID和session model中的版本为键。当请求中的session model的版本和缓存中的版本相同时，
+ * 直接使用缓存的数据，而不必访问被缓存的store；否则，从被缓存的store中重新装载所有attributes。
+ * 版本在每个修改session的请求中被更新，并随session model一起保存，因此，只有当session model保存在请求本身
+ * （例如cookie store）中时，该store才能避免远程访问。如果版本未知，则总是从被缓存的store中装载。
+ * </p>
+ * <p>
+ * 注意：
+ * </p>
+ * <ul>
+ * <li>缓存中保存的是attributes序列化以后的数据，每个请求都会得到独立的attribute对象，不会互相影响。
+ * 不能被序列化的session将不被缓存。序列化和反序列化都在锁外进行。</li>
+ * <li>缓存被分成若干段，每段独立加锁并按LRU排序，因此淘汰的顺序只是近似的LRU。</li>
+ * <li>在response提交以后修改session，将导致数据已改变，而session model中的版本无法被更新。此时，其它节点上的缓存可能会过期。</li>
+ * </ul>
+ *
+ * @author Michael Zhou
+ */
+public class NearCacheStoreImpl implements VersionAwareSessionStore {
+    public static final  int    DEFAULT_MAX_SESSIONS = 1000;
+    private static final int    SEGMENTS             = 16;
+    private static final Logger log                  = LoggerFactory.getLogger(NearCacheStoreImpl.class);
+
+    private final Segment[]     segments    = new Segment[SEGMENTS];
+    private final AtomicInteger cachedCount = new AtomicInteger();
+    private final AtomicLong    hitCount    = new AtomicLong();
+    private final AtomicLong    missCount   = new AtomicLong();
+    private final Serializer    serializer  = new JavaSerializer();
+    private       String        storeName;
+    private       SessionStore  store;
+    private       int           maxSessions = DEFAULT_MAX_SESSIONS;
+
+    public NearCacheStoreImpl() {
+        for (int i = 0; i < SEGMENTS; i++) {
+            segments[i] = new Segment();
+        }
+    }
+
+    public SessionStore getStore() {
+        return store;
+    }
+
+    /** 设置被缓存的store。 */
+    public void setStore(SessionStore store) {
+        this.store = store;
+    }
+
+    public int getMaxSessions() {
+        return maxSessions;
+    }
+
+    /** 设置最多缓存的session数量，超过时按LRU淘汰。 */
+    public void setMaxSessions(int maxSessions) {
+        this.maxSessions = maxSessions;
+    }
+
+    /** 初始化SessionStore。 */
+    public void init(String storeName, SessionConfig sessionConfig) throws Exception {
+        this.storeName = storeName;
+
+        assertNotNull(store, "no store specified for near-cache store: %s", storeName);
+        assertTrue(!(store instanceof HttpHeaderSessionStore), "could not cache HttpHeaderSessionStore: %s", store);
+        assertTrue(maxSessions > 0, "maxSessions");
+
+        store.init(storeName, sessionConfig);
+    }
+
+    /** 取得缓存命中的次数。 */
+    public long getHitCount() {
+        return hitCount.get();
+    }
+
+    /** 取得缓存未命中的次数。 */
+    public long getMissCount() {
+        return missCount.get();
+    }
+
+    /** 取得当前缓存的session数量。 */
+    public int getCachedSessionCount() {
+        return cachedCount.get();
+    }
+
+    /** 取得指定session的所有attribute名称。 */
+    public Iterable<String> getAttributeNames(String sessionID, StoreContext storeContext) {
+        return createArrayList(getState(sessionID, storeContext).attrs.keySet());
+    }
+
+    /** 装载指定session的某个attribute。 */
+    public Object loadAttribute(String attrName, String sessionID, StoreContext storeContext) {
+        return getState(sessionID, storeContext).attrs.get(attrName);
+    }
+
+    /** 丢弃指定session ID的所有内容。 */
+    public void invalidate(String sessionID, StoreContext storeContext) {
+        State state = getOrCreateState(sessionID, storeContext);
+
+        store.invalidate(sessionID, state.storeContext);
+        state.attrs = createHashMap();
+
+        remove(sessionID);
+    }
+
+    /** 保存指定session的attributes。attrs为<code>null</code>表示删除。 */
+    public void commit(Map<String, Object> modifiedAttrs, String sessionID, StoreContext storeContext) {
+        State state = getOrCreateState(sessionID, storeContext);
+
+        store.commit(modifiedAttrs, sessionID, state.storeContext);
+
+        long version = getVersion(storeContext);
+
+        if (state.attrs == null || version == 0) {
+            remove(sessionID);
+            return;
+        }
+
+        Map<String, Object> attrs = createHashMap();
+
+        attrs.putAll(state.attrs);
+
+        for (Map.Entry<String, Object> entry : modifiedAttrs.entrySet()) {
+            if (entry.getValue() == null) {
+                attrs.remove(entry.getKey());
+            } else {
+                attrs.put(entry.getKey(), entry.getValue());
+            }
+        }
+
+        state.attrs = attrs;
+        put(sessionID, version, attrs);
+    }
+
+    /** 取得当前请求的状态。第一次访问时，从缓存或被缓存的store中取得所有attributes。 */
+    private State getState(String sessionID, StoreContext storeContext) {
+        State state = getOrCreateState(sessionID, storeContext);
+
+        if (state.attrs == null) {
+            long version = getVersion(storeContext);
+            CacheEntry entry = null;
+
+            if (version != 0) {
+                Segment segment = getSegment(sessionID);
+
+                synchronized (segment) {
+                    entry = segment.entries.get(sessionID);
+                }
+
+                if (entry != null && entry.version != version) {
+                    entry = null;
+                }
+            }
+
+            if (entry == null) {
+                missCount.incrementAndGet();
+            } else {
+                hitCount.incrementAndGet();
+            }
+
+            if (entry != null) {
+                state.attrs = entry.getAttributes();
+            }
+
+            if (state.attrs == null) {
+                Map<String, Object> attrs = createHashMap();
+
+                for (String attrName : store.getAttributeNames(sessionID, state.storeContext)) {
+                    Object value = store.loadAttribute(attrName, sessionID, state.storeContext);
+
+                    if (value != null) {
+                        attrs.put(attrName, value);
+                    }
+                }
+
+                state.attrs = attrs;
+
+                if (version != 0) {
+                    put(sessionID, version, attrs);
+                }
+            }
+        }
+
+        return state;
+    }
+
+    private State getOrCreateState(String sessionID, StoreContext storeContext) {
+        State state = (State) storeContext.getState();
+
+        if (state == null || !sessionID.equals(state.sessionID)) {
+            state = new State(sessionID, new DelegatedStoreContext(storeContext));
+            storeContext.setState(state);
+        }
+
+        return state;
+    }
+
+    /** 取得当前请求中session model的版本，<code>0</code>表示版本未知。 */
+    private long getVersion(StoreContext storeContext) {
+        SessionModel model = storeContext.getSessionModel();
+
+        if (model instanceof VersionedSessionModel) {
+            return ((VersionedSessionModel) model).getVersion();
+        } else {
+            return 0;
+        }
+    }
+
+    private void put(String sessionID, long version, Map<String, Object> attrs) {
+        byte[] data;
+
+        try {
+            ByteArrayOutputStream baos = new ByteArrayOutputStream();
+
+            serializer.serialize(attrs, baos);
+            data = baos.toByteArray();
+        } catch (Exception e) {
+            log.warn("Could not cache session " + sessionID + " in near-cache store: " + storeName, e);
+            remove(sessionID);
+            return;
+        }
+
+        int index = getSegmentIndex(sessionID);
+        Segment segment = segments[index];
+
+        synchronized (segment) {
+            if (segment.entries.put(sessionID, new CacheEntry(version, data)) == null) {
+                cachedCount.incrementAndGet();
+            }
+        }
+
+        evict(index, sessionID);
+    }
+
+    private void remove(String sessionID) {
+        Segment segment = getSegment(sessionID);
+
+        synchronized (segment) {
+            if (segment.entries.remove(sessionID) != null) {
+                cachedCount.decrementAndGet();
+            }
+        }
+    }
+
+    /** 当缓存的session数量超过上限时，从当前段开始，依次淘汰各段中最久未被访问的session，但不淘汰刚加入的session。 */
+    private void evict(int index, String sessionID) {
+        for (int i = 0; i < SEGMENTS && cachedCount.get() > maxSessions; ) {
+            Segment victimSegment = segments[(index + i) & SEGMENTS - 1];
+            boolean evicted = false;
+
+            synchronized (victimSegment) {
+                Iterator<String> keys = victimSegment.entries.keySet().iterator();
+
+                if (keys.hasNext() && !keys.next().equals(sessionID)) {
+                    keys.remove();
+                    cachedCount.decrementAndGet();
+                    evicted = true;
+                }
+            }
+
+            if (!evicted) {
+                i++;
+            }
+        }
+    }
+
+    private Segment getSegment(String sessionID) {
+        return segments[getSegmentIndex(sessionID)];
+    }
+
+    private int getSegmentIndex(String sessionID) {
+        int hash = sessionID.hashCode();
+        return (hash ^ hash >>> 16) & SEGMENTS - 1;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("NearCacheStore[%s, %d sessions, %d hits, %d misses]", store, cachedCount.get(),
+                             hitCount.get(), missCount.get());
+    }
+
+    /** 一段按访问顺序排列的缓存，对其中的访问均在该对象的锁保护下进行。 */
+    private static class Segment {
+        private final LinkedHashMap<String, CacheEntry> entries = new LinkedHashMap<String, CacheEntry>(16, 0.75f, true);
+    }
+
+    /** 代表一个请求中store的状态。 */
+    private static class State {
+        private final String              sessionID;
+        private final StoreContext        storeContext;
+        private       Map<String, Object> attrs;
+
+        private State(String sessionID, StoreContext storeContext) {
+            this.sessionID = sessionID;
+            this.storeContext = storeContext;
+        }
+    }
+
+    /** 缓存的session数据。每次读取时反序列化，使各请求得到独立的attribute对象。 */
+    private class CacheEntry {
+        private final long   version;
+        private final byte[] data;
+
+        private CacheEntry(long version, byte[] data) {
+            this.version = version;
+            this.data = data;
+        }
+
+        /** 取得attributes的副本，如果失败，则返回<code>null</code>。 */
+        @SuppressWarnings("unchecked")
+        private Map<String, Object> getAttributes() {
+            try {
+                return (Map<String, Object>) serializer.deserialize(new ByteArrayInputStream(data));
+            } catch (Exception e) {
+                log.warn("Could not read cached session in near-cache store: " + storeName, e);
+                return null;
+            }
+        }
+    }
+
+    /** 供被缓存的store使用的<code>StoreContext</code>，保存其独立的状态。 */
+    private static class DelegatedStoreContext implements StoreContext {
+        private final StoreContext storeContext;
+        private       Object       state;
+
+        private DelegatedStoreContext(StoreContext storeContext) {
+            this.storeContext = storeContext;
+        }
+
+        public Object getState() {
+            return state;
+        }
+
+        public void setState(Object stateObject) {
+            this.state = stateObject;
+        }
+
+        public StoreContext getStoreContext(String storeName) {
+            return storeContext.getStoreContext(storeName);
+        }
+
+        public SessionRequestContext getSessionRequestContext() {
+            return storeContext.getSessionRequestContext();
+        }
+
+        public HttpSession getHttpSession() {
+            return storeContext.getHttpSession();
+        }
+
+        public SessionModel getSessionModel() {
+            return storeContext.getSessionModel();
+        }
+    }
+}
@@ -0,0 +1,58 @@
+/*
+ * Copyright (c) 2002-2012 Alibaba Group Holding Limited.
+ * All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.alibaba.citrus.service.requestcontext.session.store.remote;
+
+import java.util.Map;
+
+/**
+ * 访问远程session存储服务（例如分布式缓存）的客户端。
+ * <p>
+ * 每个方法代表一次远程调用。<code>RemoteStoreImpl</code>会将一个请求中对同一session的多次读取合并成一次
+ * <code>getAttributes()</code>调用，并将一个请求中所有修改的attributes合并成一次<code>setAttributes()</code>调用。
+ * </p>
+ * <p>
+ * attribute的值已经被序列化成<code>byte[]</code>，实现者只需负责传输和保存。
+ * </p>
+ *
+ * @author Michael Zhou
+ */
+public interface RemoteSessionClient {
+    /**
+     * 取得指定session的所有attributes。
+     *
+     * @param sessionID session ID
+     * @return 所有attributes，如果session不存在，则返回<code>null</code>或空表
+     */
+    Map<String, byte[]> getAttributes(String sessionID) throws Exception;
+
+    /**
+     * 保存指定session的attributes。
+     *
+     * @param sessionID     session ID
+     * @param attrs         要保存的attributes，如果值为<code>null</code>表示删除
+     * @param expireSeconds session数据在远程存储中的存活时间（秒），<code>0</code>表示不过期
+     */
+    void setAttributes(String sessionID, Map<String, byte[]> attrs, int expireSeconds) throws Exception;
+
+    /**
+     * 删除指定session的所有attributes。
+     *
+     * @param sessionID session ID
+     */
+    void removeSession(String sessionID) throws Exception;
+}
@@ -0,0 +1,127 @@
+/*
+ * Copyright (c) 2002-2012 Alibaba Group Holding Limited.
+ * All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.alibaba.citrus.service.requestcontext.session.store.remote.impl;
+
+import static com.alibaba.citrus.util.CollectionUtil.*;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+import com.alibaba.citrus.service.requestcontext.session.store.remote.RemoteSessionClient;
+
+/**
+ * 在当前JVM中模拟远程存储服务的<code>RemoteSessionClient</code>，用于开发和测试。
+ * <p>
+ * 可以通过<code>latency</code>模拟每次远程调用的延迟。数据不会过期。
+ * </p>
+ *
+ * @author Michael Zhou
+ */
+public class LocalRemoteSessionClient implements RemoteSessionClient {
+    private final ConcurrentMap<String, Map<String, byte[]>> sessions    = createConcurrentHashMap();
+    private final AtomicLong                                 getCount    = new AtomicLong();
+    private final AtomicLong                                 setCount    = new AtomicLong();
+    private final AtomicLong                                 removeCount = new AtomicLong();
+    private       long                                       latency;
+
+    /** 取得模拟的远程调用延迟（毫秒）。 */
+    public long getLatency() {
+        return latency;
+    }
+
+    /** 设置模拟的远程调用延迟（毫秒）。 */
+    public void setLatency(long latency) {
+        this.latency = latency;
+    }
+
+    /** 取得<code>getAttributes()</code>被调用的次数。 */
+    public long getGetCount() {
+        return getCount.get();
+    }
+
+    /** 取得<code>setAttributes()</code>被调用的次数。 */
+    public long getSetCount() {
+        return setCount.get();
+    }
+
+    /** 取得<code>removeSession()</code>被调用的次数。 */
+    public long getRemoveCount() {
+        return removeCount.get();
+    }
+
+    public Map<String, byte[]> getAttributes(String sessionID) throws InterruptedException {
+        getCount.incrementAndGet();
+        simulateLatency();
+
+        Map<String, byte[]> attrs = sessions.get(sessionID);
+
+        if (attrs == null) {
+            return null;
+        }
+
+        synchronized (attrs) {
+            return new HashMap<String, byte[]>(attrs);
+        }
+    }
+
+    public void setAttributes(String sessionID, Map<String, byte[]> attrs, int expireSeconds)
+            throws InterruptedException {
+        setCount.incrementAndGet();
+        simulateLatency();
+
+        Map<String, byte[]> sessionData = sessions.get(sessionID);
+
+        if (sessionData == null) {
+            Map<String, byte[]> newSessionData = createHashMap();
+            sessionData = sessions.putIfAbsent(sessionID, newSessionData);
+
+            if (sessionData == null) {
+                sessionData = newSessionData;
+            }
+        }
+
+        synchronized (sessionData) {
+            for (Map.Entry<String, byte[]> entry : attrs.entrySet()) {
+                if (entry.getValue() == null) {
+                    sessionData.remove(entry.getKey());
+                } else {
+                    sessionData.put(entry.getKey(), entry.getValue());
+                }
+            }
+        }
+    }
+
+    public void removeSession(String sessionID) throws InterruptedException {
+        removeCount.incrementAndGet();
+        simulateLatency();
+        sessions.remove(sessionID);
+    }
+
+    private void simulateLatency() throws InterruptedException {
+        if (latency > 0) {
+            Thread.sleep(latency);
+        }
+    }
+
+    @Override
+    public String toString() {
+        return "LocalRemoteSessionClient[" + sessions.size() + " sessions]";
+    }
+}
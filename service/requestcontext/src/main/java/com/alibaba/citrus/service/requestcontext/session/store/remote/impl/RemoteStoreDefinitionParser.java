@@ -0,0 +1,62 @@
+/*
+ * Copyright (c) 2002-2012 Alibaba Group Holding Limited.
+ * All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.alibaba.citrus.service.requestcontext.session.store.remote.impl;
+
+import static com.alibaba.citrus.springext.util.DomUtil.*;
+import static com.alibaba.citrus.springext.util.SpringExtUtil.*;
+import static com.alibaba.citrus.util.StringUtil.*;
+
+import com.alibaba.citrus.springext.ConfigurationPoint;
+import com.alibaba.citrus.springext.Contribution;
+import com.alibaba.citrus.springext.ContributionAware;
+import com.alibaba.citrus.springext.support.parser.AbstractSingleBeanDefinitionParser;
+import org.springframework.beans.factory.config.BeanDefinitionHolder;
+import org.springframework.beans.factory.config.RuntimeBeanReference;
+import org.springframework.beans.factory.support.BeanDefinitionBuilder;
+import org.springframework.beans.factory.xml.ParserContext;
+import org.w3c.dom.Element;
+
+public class RemoteStoreDefinitionParser extends AbstractSingleBeanDefinitionParser<RemoteStoreImpl> implements
+                                                                                                  ContributionAware {
+    private ConfigurationPoint serializerConfigurationPoint;
+
+    public void setContribution(Contribution contrib) {
+        this.serializerConfigurationPoint = getSiblingConfigurationPoint("services/request-contexts/session/"
+                                                                         + "serializers", contrib);
+    }
+
+    @Override
+    protected void doParse(Element element, ParserContext parserContext, BeanDefinitionBuilder builder) {
+        attributesToProperties(element, builder, "writeBehind", "writeBehindThreads");
+
+        String clientRef = trimToNull(element.getAttribute("clientRef"));
+
+        if (clientRef != null) {
+            builder.addPropertyValue("client", new RuntimeBeanReference(clientRef));
+        }
+
+        for (Element subElement : subElements(element)) {
+            BeanDefinitionHolder serializer = parseConfigurationPointBean(subElement, serializerConfigurationPoint,
+                                                                          parserContext, builder);
+
+            if (serializer != null) {
+                builder.addPropertyValue("serializer", serializer);
+            }
+        }
+    }
+}
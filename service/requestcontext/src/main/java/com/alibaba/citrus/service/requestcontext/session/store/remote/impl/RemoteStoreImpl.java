@@ -0,0 +1,500 @@
+/*
+ * Copyright (c) 2002-2012 Alibaba Group Holding Limited.
+ * All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.alibaba.citrus.service.requestcontext.session.store.remote.impl;
+
+import static com.alibaba.citrus.util.Assert.*;
+import static com.alibaba.citrus.util.CollectionUtil.*;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+
+import com.alibaba.citrus.service.requestcontext.session.SessionConfig;
+import com.alibaba.citrus.service.requestcontext.session.SessionStore;
+import com.alibaba.citrus.service.requestcontext.session.serializer.Serializer;
+import com.alibaba.citrus.service.requestcontext.session.serializer.impl.HessianSerializer;
+import com.alibaba.citrus.service.requestcontext.session.store.SessionStoreException;
+import com.alibaba.citrus.service.requestcontext.session.store.remote.RemoteSessionClient;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.DisposableBean;
+
+/**
+ * 将session attributes保存在远程存储服务中的store。
+ * <p>
+ * 远程访问通过<code>RemoteSessionClient</code>完成，因而可以接入任意的存储服务。为了减少请求路径上的远程调用：
+ * </p>
+ * <ul>
+ * <li>一个请求中对同一session的所有读取，只在第一次读取时调用一次<code>getAttributes()</code>，取得所有attributes。</li>
+ * <li>提交时，只有序列化后的值和读取时不同的attributes才会被写回，且所有attributes合并成一次<code>setAttributes()</code>调用。</li>
+ * <li>如果打开<code>writeBehind</code>，提交和删除操作将在后台线程中执行。在写入之前，同一session的多次提交会被合并成一次写入。
+ * 同一session的写入总是由同一个线程按顺序执行，而本节点上的读取总能看到尚未写入的修改。</li>
+ * </ul>
+ * <p>
+ * 注意，<code>writeBehind</code>模式下，写入失败只会被记录在日志中，而不会影响请求。
+ * </p>
+ *
+ * @author Michael Zhou
+ */
+public class RemoteStoreImpl implements SessionStore, DisposableBean {
+    public static final  int    DEFAULT_WRITE_BEHIND_THREADS = 2;
+    private static final Logger log                          = LoggerFactory.getLogger(RemoteStoreImpl.class);
+
+    private final Map<String, PendingWrite> pendingWrites = createHashMap();
+    private String              storeName;
+    private RemoteSessionClient client;
+    private Serializer          serializer;
+    private boolean             writeBehind;
+    private int                 writeBehindThreads = DEFAULT_WRITE_BEHIND_THREADS;
+    private int                 expireSeconds;
+    private ExecutorService[]   writers;
+
+    public RemoteSessionClient getClient() {
+        return client;
+    }
+
+    public void setClient(RemoteSessionClient client) {
+        this.client = client;
+    }
+
+    public Serializer getSerializer() {
+        return serializer;
+    }
+
+    public void setSerializer(Serializer serializer) {
+        this.serializer = serializer;
+    }
+
+    public boolean isWriteBehind() {
+        return writeBehind;
+    }
+
+    /** 是否在后台线程中写入远程存储，默认为<code>false</code>。 */
+    public void setWriteBehind(boolean writeBehind) {
+        this.writeBehind = writeBehind;
+    }
+
+    public int getWriteBehindThreads() {
+        return writeBehindThreads;
+    }
+
+    /** 后台写入的线程数。 */
+    public void setWriteBehindThreads(int writeBehindThreads) {
+        this.writeBehindThreads = writeBehindThreads;
+    }
+
+    /** 初始化SessionStore。 */
+    public void init(String storeName, SessionConfig sessionConfig) {
+        this.storeName = storeName;
+        this.expireSeconds = sessionConfig.getMaxInactiveInterval();
+
+        assertNotNull(client, "no RemoteSessionClient specified for store: %s", storeName);
+
+        if (serializer == null) {
+            serializer = new HessianSerializer();
+        }
+
+        if (writeBehind) {
+            assertTrue(writeBehindThreads > 0, "writeBehindThreads");
+
+            writers = new ExecutorService[writeBehindThreads];
+
+            for (int i = 0; i < writers.length; i++) {
+                final String threadName = "RemoteStore-writer-" + storeName + "-" + i;
+
+                writers[i] = Executors.newSingleThreadExecutor(new ThreadFactory() {
+                    public Thread newThread(Runnable r) {
+                        Thread thread = new Thread(r, threadName);
+                        thread.setDaemon(true);
+                        return thread;
+                    }
+                });
+            }
+        }
+    }
+
+    /** 写入所有尚未写入的修改，并停止后台线程。 */
+    public void destroy() throws InterruptedException {
+        if (writers != null) {
+            flush();
+
+            for (ExecutorService writer : writers) {
+                writer.shutdown();
+            }
+
+            for (ExecutorService writer : writers) {
+                writer.awaitTermination(10, TimeUnit.SECONDS);
+            }
+
+            writers = null;
+        }
+    }
+
+    /** 等待所有尚未写入的修改被写入远程存储。 */
+    public void flush() throws InterruptedException {
+        if (writers == null) {
+            return;
+        }
+
+        while (true) {
+            synchronized (pendingWrites) {
+                if (pendingWrites.isEmpty()) {
+                    return;
+                }
+            }
+
+            List<Future<?>> barriers = createArrayList(writers.length);
+
+            for (ExecutorService writer : writers) {
+                barriers.add(writer.submit(new Callable<Object>() {
+                    public Object call() {
+                        return null;
+                    }
+                }));
+            }
+
+            for (Future<?> barrier : barriers) {
+                try {
+                    barrier.get();
+                } catch (ExecutionException e) {
+                    // 不可能发生
+                }
+            }
+        }
+    }
+
+    /** 取得指定session的所有attribute名称。 */
+    public Iterable<String> getAttributeNames(String sessionID, StoreContext storeContext) {
+        return createArrayList(getState(sessionID, storeContext).rawValues.keySet());
+    }
+
+    /** 装载指定session的某个attribute。 */
+    public Object loadAttribute(String attrName, String sessionID, StoreContext storeContext) {
+        State state = getState(sessionID, storeContext);
+
+        if (state.values.containsKey(attrName)) {
+            return state.values.get(attrName);
+        }
+
+        byte[] rawValue = state.rawValues.get(attrName);
+        Object value = rawValue == null ? null : deserialize(attrName, rawValue);
+
+        state.values.put(attrName, value);
+
+        return value;
+    }
+
+    /** 丢弃指定session ID的所有内容。 */
+    public void invalidate(String sessionID, StoreContext storeContext) {
+        // 当前请求不必再从远程存储中读取数据
+        storeContext.setState(new State(sessionID, new HashMap<String, byte[]>()));
+
+        if (writeBehind) {
+            enqueue(sessionID, null);
+        } else {
+            try {
+                client.removeSession(sessionID);
+            } catch (Exception e) {
+                throw new SessionStoreException("Failed to remove session " + sessionID + " from " + this, e);
+            }
+        }
+    }
+
+    /** 保存指定session的attributes。attrs为<code>null</code>表示删除。 */
+    public void commit(Map<String, Object> modifiedAttrs, String sessionID, StoreContext storeContext) {
+        State state = (State) storeContext.getState();
+        boolean loaded = state != null && sessionID.equals(state.sessionID);
+        Map<String, byte[]> dirtyAttrs = createLinkedHashMap();
+
+        // 如果当前请求尚未读取远程存储（例如数据来自near-cache），则不必为了比较而读取，直接写入所有修改。
+        if (!loaded) {
+            state = new State(sessionID, new HashMap<String, byte[]>());
+        }
+
+        for (Map.Entry<String, Object> entry : modifiedAttrs.entrySet()) {
+            String attrName = entry.getKey();
+            Object attrValue = entry.getValue();
+            byte[] oldRawValue = state.rawValues.get(attrName);
+
+            if (attrValue == null) {
+                if (oldRawValue != null || !loaded) {
+                    dirtyAttrs.put(attrName, null);
+                    state.rawValues.remove(attrName);
+                }
+            } else {
+                byte[] rawValue = serialize(attrName, attrValue);
+
+                if (!Arrays.equals(rawValue, oldRawValue)) {
+                    dirtyAttrs.put(attrName, rawValue);
+                    state.rawValues.put(attrName, rawValue);
+                }
+            }
+
+            state.values.put(attrName, attrValue);
+        }
+
+        if (dirtyAttrs.isEmpty()) {
+            return;
+        }
+
+        if (writeBehind) {
+            enqueue(sessionID, dirtyAttrs);
+        } else {
+            try {
+                client.setAttributes(sessionID, dirtyAttrs, expireSeconds);
+            } catch (Exception e) {
+                throw new SessionStoreException("Failed to save session " + sessionID + " to " + this, e);
+            }
+        }
+    }
+
+    /** 取得当前请求的状态。第一次访问时，从远程存储中取得所有attributes。 */
+    private State getState(String sessionID, StoreContext storeContext) {
+        State state = (State) storeContext.getState();
+
+        if (state == null || !sessionID.equals(state.sessionID)) {
+            state = new State(sessionID, load(sessionID));
+            storeContext.setState(state);
+        }
+
+        return state;
+    }
+
+    private Map<String, byte[]> load(String sessionID) {
+        Map<String, byte[]> rawValues = createHashMap();
+        Map<String, byte[]> remoteValues;
+
+        // 在读取远程存储之前，先取得尚未写入的修改的快照。
+        // 否则，假如在读取之后、合并之前，后台线程恰好完成写入，读到的旧值将覆盖当前节点自己的修改。
+        Changes pendingChanges = getPendingChanges(sessionID);
+
+        try {
+            remoteValues = client.getAttributes(sessionID);
+        } catch (Exception e) {
+            throw new SessionStoreException("Failed to load session " + sessionID + " from " + this, e);
+        }
+
+        if (remoteValues != null) {
+            rawValues.putAll(remoteValues);
+        }
+
+        // 合并读取前尚未写入的修改，以及读取期间新产生的修改
+        if (pendingChanges != null) {
+            pendingChanges.applyTo(rawValues);
+        }
+
+        pendingChanges = getPendingChanges(sessionID);
+
+        if (pendingChanges != null) {
+            pendingChanges.applyTo(rawValues);
+        }
+
+        return rawValues;
+    }
+
+    /** 取得指定session尚未写入远程存储的修改的副本，如果没有，则返回<code>null</code>。 */
+    private Changes getPendingChanges(String sessionID) {
+        if (!writeBehind) {
+            return null;
+        }
+
+        synchronized (pendingWrites) {
+            PendingWrite pendingWrite = pendingWrites.get(sessionID);
+
+            if (pendingWrite == null) {
+                return null;
+            }
+
+            Changes changes = new Changes();
+
+            if (pendingWrite.writing != null) {
+                changes.merge(pendingWrite.writing);
+            }
+
+            changes.merge(pendingWrite.waiting);
+
+            return changes;
+        }
+    }
+
+    /** 将修改加入等待写入的队列。<code>attrs</code>为<code>null</code>表示删除整个session。 */
+    private void enqueue(final String sessionID, Map<String, byte[]> attrs) {
+        boolean submit = false;
+
+        synchronized (pendingWrites) {
+            PendingWrite pendingWrite = pendingWrites.get(sessionID);
+
+            if (pendingWrite == null) {
+                pendingWrite = new PendingWrite();
+                pendingWrites.put(sessionID, pendingWrite);
+                submit = true;
+            }
+
+            pendingWrite.waiting.merge(attrs);
+        }
+
+        if (submit) {
+            submitWrite(sessionID);
+        }
+    }
+
+    private void submitWrite(final String sessionID) {
+        writers[(sessionID.hashCode() & Integer.MAX_VALUE) % writers.length].execute(new Runnable() {
+            public void run() {
+                write(sessionID);
+            }
+        });
+    }
+
+    /** 写入指定session的修改。写入期间产生的新修改，将在写入完成后再次提交。 */
+    private void write(String sessionID) {
+        Changes changes;
+
+        synchronized (pendingWrites) {
+            PendingWrite pendingWrite = pendingWrites.get(sessionID);
+
+            changes = pendingWrite.waiting;
+            pendingWrite.writing = changes;
+            pendingWrite.waiting = new Changes();
+        }
+
+        try {
+            if (changes.removeSession) {
+                client.removeSession(sessionID);
+            }
+
+            if (!changes.attrs.isEmpty()) {
+                client.setAttributes(sessionID, changes.attrs, expireSeconds);
+            }
+        } catch (Throwable e) {
+            log.error("Failed to write session " + sessionID + " to " + this, e);
+        }
+
+        boolean resubmit = false;
+
+        synchronized (pendingWrites) {
+            PendingWrite pendingWrite = pendingWrites.get(sessionID);
+
+            pendingWrite.writing = null;
+
+            if (pendingWrite.waiting.isEmpty()) {
+                pendingWrites.remove(sessionID);
+            } else {
+                resubmit = true;
+            }
+        }
+
+        if (resubmit) {
+            submitWrite(sessionID);
+        }
+    }
+
+    private byte[] serialize(String attrName, Object value) {
+        ByteArrayOutputStream baos = new ByteArrayOutputStream();
+
+        try {
+            serializer.serialize(value, baos);
+        } catch (Exception e) {
+            throw new SessionStoreException("Failed to serialize session attribute: " + attrName, e);
+        }
+
+        return baos.toByteArray();
+    }
+
+    private Object deserialize(String attrName, byte[] rawValue) {
+        try {
+            return serializer.deserialize(new ByteArrayInputStream(rawValue));
+        } catch (Exception e) {
+            throw new SessionStoreException("Failed to deserialize session attribute: " + attrName, e);
+        }
+    }
+
+    @Override
+    public String toString() {
+        return "RemoteStore[" + storeName + ", client=" + client + (writeBehind ? ", writeBehind" : "") + "]";
+    }
+
+    /** 代表一个请求中store的状态。 */
+    private static class State {
+        private final String              sessionID;
+        private final Map<String, byte[]> rawValues;
+        private final Map<String, Object> values = createHashMap();
+
+        private State(String sessionID, Map<String, byte[]> rawValues) {
+            this.sessionID = sessionID;
+            this.rawValues = rawValues;
+        }
+    }
+
+    /** 代表一个session等待写入和正在写入的修改。 */
+    private static class PendingWrite {
+        private Changes waiting = new Changes();
+        private Changes writing;
+    }
+
+    /** 被合并的修改。 */
+    private static class Changes {
+        private final Map<String, byte[]> attrs = createLinkedHashMap();
+        private boolean removeSession;
+
+        private void merge(Map<String, byte[]> attrs) {
+            if (attrs == null) {
+                this.removeSession = true;
+                this.attrs.clear();
+            } else {
+                this.attrs.putAll(attrs);
+            }
+        }
+
+        private void merge(Changes changes) {
+            if (changes.removeSession) {
+                merge((Map<String, byte[]>) null);
+            }
+
+            merge(changes.attrs);
+        }
+
+        private void applyTo(Map<String, byte[]> rawValues) {
+            if (removeSession) {
+                rawValues.clear();
+            }
+
+            for (Map.Entry<String, byte[]> entry : attrs.entrySet()) {
+                if (entry.getValue() == null) {
+                    rawValues.remove(entry.getKey());
+                } else {
+                    rawValues.put(entry.getKey(), entry.getValue());
+                }
+            }
+        }
+
+        private boolean isEmpty() {
+            return !removeSession && attrs.isEmpty();
+        }
+    }
+}
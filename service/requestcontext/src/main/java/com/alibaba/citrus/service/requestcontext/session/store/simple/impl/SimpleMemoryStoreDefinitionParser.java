@@ -17,7 +17,17 @@
 
 package com.alibaba.citrus.service.requestcontext.session.store.simple.impl;
 
+import static com.alibaba.citrus.springext.util.SpringExtUtil.*;
+
 import com.alibaba.citrus.springext.support.parser.AbstractSingleBeanDefinitionParser;
+import org.springframework.beans.factory.support.BeanDefinitionBuilder;
+import org.springframework.beans.factory.xml.ParserContext;
+import org.w3c.dom.Element;
 
 public class SimpleMemoryStoreDefinitionParser extends AbstractSingleBeanDefinitionParser<SimpleMemoryStoreImpl> {
+    @Override
+    protected void doParse(Element element, ParserContext parserContext, BeanDefinitionBuilder builder) {
+        attributesToProperties(element, builder, "maxInactiveInterval", "forceExpirationPeriod", "maxSessions",
+                               "maxMemorySize", "sweepInterval");
+    }
 }
@@ -21,83 +21,564 @@ import static com.alibaba.citrus.util.Assert.*;
 import static com.alibaba.citrus.util.CollectionUtil.*;
 import static java.util.Collections.*;
 
+import java.lang.reflect.Array;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.List;
 import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
 import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
 
 import com.alibaba.citrus.service.requestcontext.session.SessionConfig;
 import com.alibaba.citrus.service.requestcontext.session.SessionStore;
+import com.alibaba.citrus.util.HumanReadableSize;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.DisposableBean;
 
 /**
  * 存放在内存中的session attribute的机制。
+ * <p>
+ * 该store支持以下特性，因此可作为sticky session节点上的本地（L1）store使用：
+ * </p>
+ * <ul>
+ * <li>空闲过期：超过<code>maxInactiveInterval</code>秒未被访问的session将被清除。</li>
+ * <li>绝对过期：创建后超过<code>forceExpirationPeriod</code>秒的session将被清除。</li>
+ * <li>容量限制：session数量超过<code>maxSessions</code>，或估算的内存占用超过<code>maxMemorySize</code>字节时，按LRU淘汰最久未访问的session。</li>
+ * <li>后台清理：按<code>sweepInterval</code>秒的间隔，以时间轮的方式清理到期的session，每次只检查到期的槽。</li>
+ * </ul>
+ * <p>
+ * sessions按ID的hash值分散在若干个段中，每个段是一个独立加锁、按访问顺序排列的map，因此不同session的访问不会互相阻塞。
+ * 淘汰时比较各段中最久未访问的session，取其中最旧的一个。
+ * </p>
+ * <p>
+ * 如果未指定过期时间，则取自session的配置，并额外保留<code>INHERITED_EXPIRY_GRACE_PERIOD</code>秒。
+ * 这样，已过期的session仍能被session框架读到，从而正确地触发<code>invalidated</code>事件，而store只负责回收那些不再被访问的session。
+ * </p>
+ * <p>
+ * 注意，store只能感知到针对其自身的访问。如果session model不保存在本store中，那么一个活跃的session，
+ * 若长时间未读写本store中的attribute，其数据仍可能因空闲而过期。
+ * </p>
  *
  * @author Michael Zhou
  */
-public class SimpleMemoryStoreImpl implements SessionStore {
-    private final ConcurrentMap<String, Map<String, Object>> sessions = createConcurrentHashMap();
+public class SimpleMemoryStoreImpl implements SessionStore, DisposableBean {
+    public static final  int    DEFAULT_SWEEP_INTERVAL        = 60;
+    public static final  int    INHERITED_EXPIRY_GRACE_PERIOD = 60;
+    private static final int    WHEEL_SIZE                    = 64;
+    private static final int    SEGMENTS                      = 16;
+    private static final int    OBJECT_OVERHEAD               = 16;
+    private static final int    DEFAULT_OBJECT_SIZE           = 64;
+    private static final int    MAX_ESTIMATE_DEPTH            = 3;
+    private static final Logger log                           = LoggerFactory.getLogger(SimpleMemoryStoreImpl.class);
+
+    private final Segment[]     segments        = new Segment[SEGMENTS];
+    private final AtomicInteger sessionCount    = new AtomicInteger();
+    private final AtomicLong    memorySize      = new AtomicLong();
+    private final AtomicLong    evictionCount   = new AtomicLong();
+    private final AtomicLong    expirationCount = new AtomicLong();
+    private final Object        sweepLock       = new Object();
+
+    private String                   storeName;
+    private Integer                  maxInactiveInterval;
+    private Long                     forceExpirationPeriod;
+    private int                      maxSessions;
+    private long                     maxMemorySize;
+    private int                      sweepInterval = DEFAULT_SWEEP_INTERVAL;
+    private long                     idleMillis;
+    private long                     forceMillis;
+    private Queue<MemorySession>[]   wheel;
+    private long                     tickMillis;
+    private volatile long            lastTick;
+    private ScheduledExecutorService sweeper;
+
+    public SimpleMemoryStoreImpl() {
+        for (int i = 0; i < SEGMENTS; i++) {
+            segments[i] = new Segment();
+        }
+    }
+
+    /** 取得session空闲过期的时间（秒），<code>0</code>表示不过期。 */
+    public int getMaxInactiveInterval() {
+        return maxInactiveInterval == null ? 0 : maxInactiveInterval;
+    }
+
+    /** 设置session空闲过期的时间（秒），<code>0</code>表示不过期。默认值取自session配置。 */
+    public void setMaxInactiveInterval(int maxInactiveInterval) {
+        this.maxInactiveInterval = maxInactiveInterval;
+    }
+
+    /** 取得session绝对过期的时间（秒），<code>0</code>表示不过期。 */
+    public long getForceExpirationPeriod() {
+        return forceExpirationPeriod == null ? 0 : forceExpirationPeriod;
+    }
+
+    /** 设置session绝对过期的时间（秒），<code>0</code>表示不过期。默认值取自session配置。 */
+    public void setForceExpirationPeriod(long forceExpirationPeriod) {
+        this.forceExpirationPeriod = forceExpirationPeriod;
+    }
+
+    /** 取得最多保存的session数量，<code>0</code>表示不限制。 */
+    public int getMaxSessions() {
+        return maxSessions;
+    }
+
+    /** 设置最多保存的session数量，<code>0</code>表示不限制。 */
+    public void setMaxSessions(int maxSessions) {
+        this.maxSessions = maxSessions;
+    }
+
+    /** 取得最多占用的内存字节数（估算值），<code>0</code>表示不限制。 */
+    public HumanReadableSize getMaxMemorySize() {
+        return new HumanReadableSize(maxMemorySize);
+    }
+
+    /** 设置最多占用的内存字节数（估算值，支持K/M/G），<code>0</code>表示不限制。 */
+    public void setMaxMemorySize(HumanReadableSize maxMemorySize) {
+        this.maxMemorySize = maxMemorySize.getValue();
+    }
+
+    /** 取得后台清理的间隔（秒），<code>0</code>表示不启动后台清理，仅在访问时检查过期。 */
+    public int getSweepInterval() {
+        return sweepInterval;
+    }
+
+    /** 设置后台清理的间隔（秒），<code>0</code>表示不启动后台清理，仅在访问时检查过期。 */
+    public void setSweepInterval(int sweepInterval) {
+        this.sweepInterval = sweepInterval;
+    }
 
     /** 初始化SessionStore。 */
+    @SuppressWarnings("unchecked")
     public void init(String storeName, SessionConfig sessionConfig) {
+        this.storeName = storeName;
+
+        long idleGrace = 0;
+        long forceGrace = 0;
+
+        if (maxInactiveInterval == null) {
+            maxInactiveInterval = sessionConfig.getMaxInactiveInterval();
+            idleGrace = INHERITED_EXPIRY_GRACE_PERIOD;
+        }
+
+        if (forceExpirationPeriod == null) {
+            forceExpirationPeriod = sessionConfig.getForceExpirationPeriod();
+            forceGrace = INHERITED_EXPIRY_GRACE_PERIOD;
+        }
+
+        assertTrue(maxInactiveInterval >= 0, "maxInactiveInterval");
+        assertTrue(forceExpirationPeriod >= 0, "forceExpirationPeriod");
+        assertTrue(maxSessions >= 0, "maxSessions");
+        assertTrue(maxMemorySize >= 0, "maxMemorySize");
+        assertTrue(sweepInterval >= 0, "sweepInterval");
+
+        idleMillis = maxInactiveInterval > 0 ? (maxInactiveInterval + idleGrace) * 1000L : 0;
+        forceMillis = forceExpirationPeriod > 0 ? (forceExpirationPeriod + forceGrace) * 1000L : 0;
+
+        if (sweepInterval > 0 && (idleMillis > 0 || forceMillis > 0)) {
+            wheel = new Queue[WHEEL_SIZE];
+
+            for (int i = 0; i < WHEEL_SIZE; i++) {
+                wheel[i] = new ConcurrentLinkedQueue<MemorySession>();
+            }
+
+            tickMillis = sweepInterval * 1000L;
+            lastTick = currentTimeMillis() / tickMillis;
+
+            sweeper = Executors.newSingleThreadScheduledExecutor(new ThreadFactory() {
+                public Thread newThread(Runnable r) {
+                    Thread thread = new Thread(r, "SimpleMemoryStore-sweeper-" + SimpleMemoryStoreImpl.this.storeName);
+                    thread.setDaemon(true);
+                    return thread;
+                }
+            });
+
+            sweeper.scheduleWithFixedDelay(new Runnable() {
+                public void run() {
+                    try {
+                        sweep();
+                    } catch (Throwable e) {
+                        log.warn("Failed to sweep expired sessions in " + SimpleMemoryStoreImpl.this, e);
+                    }
+                }
+            }, sweepInterval, sweepInterval, TimeUnit.SECONDS);
+        }
+    }
+
+    /** 停止后台清理线程。 */
+    public void destroy() {
+        if (sweeper != null) {
+            sweeper.shutdownNow();
+            sweeper = null;
+        }
     }
 
     /** 取得指定session ID的所有值。 */
     public Map<String, Object> getSession(String sessionID) {
-        return sessions.get(sessionID);
+        Segment segment = getSegment(sessionID);
+
+        synchronized (segment) {
+            MemorySession session = getValidSession(segment, sessionID);
+            return session == null ? null : session.attrs;
+        }
     }
 
     /** 取得指定session的所有attribute名称。 */
     public Iterable<String> getAttributeNames(String sessionID, StoreContext storeContext) {
-        Map<String, Object> sessionData = sessions.get(sessionID);
+        Segment segment = getSegment(sessionID);
 
-        if (sessionData == null) {
-            return emptyList();
-        } else {
-            return sessionData.keySet();
+        synchronized (segment) {
+            MemorySession session = getValidSession(segment, sessionID);
+
+            if (session == null) {
+                return emptyList();
+            } else {
+                return createArrayList(session.attrs.keySet());
+            }
         }
     }
 
     /** 装载指定session的某个attribute。 */
     public Object loadAttribute(String attrName, String sessionID, StoreContext storeContext) {
-        Map<String, Object> sessionData = sessions.get(sessionID);
+        Segment segment = getSegment(sessionID);
 
-        if (sessionData == null) {
-            return null;
-        } else {
-            return sessionData.get(attrName);
+        synchronized (segment) {
+            MemorySession session = getValidSession(segment, sessionID);
+
+            if (session == null) {
+                return null;
+            } else {
+                return session.attrs.get(attrName);
+            }
         }
     }
 
     /** 丢弃指定session ID的所有内容。 */
     public void invalidate(String sessionID, StoreContext storeContext) {
-        sessions.remove(sessionID);
+        Segment segment = getSegment(sessionID);
+
+        synchronized (segment) {
+            remove(segment, segment.sessions.get(sessionID));
+        }
     }
 
     /** 保存指定session的attributes。attrs为<code>null</code>表示删除。 */
     public void commit(Map<String, Object> modifiedAttrs, String sessionID, StoreContext storeContext) {
-        Map<String, Object> sessionData = null;
+        Segment segment = getSegment(sessionID);
+        MemorySession session;
+        long sizeDelta = 0;
+
+        synchronized (segment) {
+            session = getValidSession(segment, sessionID);
+
+            if (session == null) {
+                session = new MemorySession(sessionID, currentTimeMillis());
+                segment.sessions.put(sessionID, session);
+                sessionCount.incrementAndGet();
+                schedule(session, lastTick);
+            }
+
+            for (Map.Entry<String, Object> entry : modifiedAttrs.entrySet()) {
+                String attrName = entry.getKey();
+                Object attrValue = entry.getValue();
+                Integer oldSize;
+
+                if (attrValue == null) {
+                    session.attrs.remove(attrName);
+                    oldSize = session.attrSizes.remove(attrName);
+                } else {
+                    int size = estimateSize(attrName, 0) + estimateSize(attrValue, 0);
+
+                    session.attrs.put(attrName, attrValue);
+                    oldSize = session.attrSizes.put(attrName, size);
+                    sizeDelta += size;
+                }
+
+                if (oldSize != null) {
+                    sizeDelta -= oldSize;
+                }
+            }
+
+            session.size += sizeDelta;
+            memorySize.addAndGet(sizeDelta);
+        }
+
+        evictIfNecessary(session);
+    }
+
+    /** 取得当前保存的session数量。 */
+    public int getSessionCount() {
+        return sessionCount.get();
+    }
+
+    /** 取得当前所有session所占用的内存字节数（估算值）。 */
+    public long getMemorySize() {
+        return memorySize.get();
+    }
 
-        if (!sessions.containsKey(sessionID)) {
-            sessionData = createConcurrentHashMap();
-            sessions.putIfAbsent(sessionID, sessionData);
+    /** 取得因超出容量而被淘汰的session数量。 */
+    public long getEvictionCount() {
+        return evictionCount.get();
+    }
+
+    /** 取得因过期而被清除的session数量。 */
+    public long getExpirationCount() {
+        return expirationCount.get();
+    }
+
+    /**
+     * 清除所有已经到期的session。通常由后台线程定期调用。
+     *
+     * @return 被清除的session数量
+     */
+    public int sweep() {
+        if (wheel == null) {
+            return 0;
+        }
+
+        long now = currentTimeMillis();
+        long currentTick = now / tickMillis;
+        int count = 0;
+
+        synchronized (sweepLock) {
+            long fromTick = Math.max(lastTick + 1, currentTick - WHEEL_SIZE + 1);
+
+            lastTick = currentTick;
+
+            for (long tick = fromTick; tick <= currentTick; tick++) {
+                Queue<MemorySession> slot = wheel[(int) (tick % WHEEL_SIZE)];
+                List<MemorySession> due = createLinkedList();
+
+                for (MemorySession session; (session = slot.poll()) != null; ) {
+                    due.add(session);
+                }
+
+                for (MemorySession session : due) {
+                    Segment segment = getSegment(session.sessionID);
+
+                    synchronized (segment) {
+                        if (session.removed) {
+                            continue;
+                        }
+
+                        if (isExpired(session, now)) {
+                            remove(segment, session);
+                            expirationCount.incrementAndGet();
+                            count++;
+                        } else {
+                            schedule(session, currentTick);
+                        }
+                    }
+                }
+            }
         }
 
-        sessionData = sessions.get(sessionID);
+        if (count > 0 && log.isDebugEnabled()) {
+            log.debug("Swept {} expired sessions from {}", count, this);
+        }
 
-        assertNotNull(sessionData, "sessionData for ID: %s", sessionID);
+        return count;
+    }
 
-        for (Map.Entry<String, Object> entry : modifiedAttrs.entrySet()) {
-            String attrName = entry.getKey();
-            Object attrValue = entry.getValue();
+    /** 取得当前时间，子类可覆盖此方法。 */
+    protected long currentTimeMillis() {
+        return System.currentTimeMillis();
+    }
 
-            if (attrValue == null) {
-                sessionData.remove(attrName);
+    private Segment getSegment(String sessionID) {
+        int hash = sessionID.hashCode();
+        return segments[(hash ^ hash >>> 16) & SEGMENTS - 1];
+    }
+
+    /** 取得未过期的session，并更新其访问时间。过期的session将被立即清除。必须在段的锁内调用。 */
+    private MemorySession getValidSession(Segment segment, String sessionID) {
+        MemorySession session = segment.sessions.get(sessionID);
+
+        if (session != null) {
+            long now = currentTimeMillis();
+
+            if (isExpired(session, now)) {
+                remove(segment, session);
+                expirationCount.incrementAndGet();
+                session = null;
             } else {
-                sessionData.put(attrName, attrValue);
+                session.lastAccessedTime = now;
+            }
+        }
+
+        return session;
+    }
+
+    private boolean isExpired(MemorySession session, long now) {
+        long expiry = getExpiryTime(session);
+        return expiry > 0 && now >= expiry;
+    }
+
+    /** 取得session的到期时间，<code>0</code>表示永不过期。 */
+    private long getExpiryTime(MemorySession session) {
+        long expiry = 0;
+
+        if (idleMillis > 0) {
+            expiry = session.lastAccessedTime + idleMillis;
+        }
+
+        if (forceMillis > 0) {
+            long forceExpiry = session.creationTime + forceMillis;
+            expiry = expiry > 0 ? Math.min(expiry, forceExpiry) : forceExpiry;
+        }
+
+        return expiry;
+    }
+
+    /**
+     * 将session放入其到期时间所对应的槽中。
+     * <p>
+     * 访问session时并不移动其位置，而是由sweeper在检查该槽时，根据最新的到期时间重新放置，从而使访问的代价为常量。
+     * </p>
+     */
+    private void schedule(MemorySession session, long currentTick) {
+        if (wheel != null) {
+            long tick = Math.max(getExpiryTime(session) / tickMillis, currentTick + 1);
+            wheel[(int) (tick % WHEEL_SIZE)].add(session);
+        }
+    }
+
+    /**
+     * 按LRU顺序淘汰session，直到满足容量限制。当前正在提交的session不会被淘汰。
+     * <p>
+     * 每次比较各段中最久未访问的session，淘汰其中最旧的一个。各段依次加锁，不会同时持有多个锁。
+     * </p>
+     */
+    private void evictIfNecessary(MemorySession current) {
+        while (isOverflow()) {
+            Segment victimSegment = null;
+            MemorySession victim = null;
+            long victimAccessedTime = 0;
+
+            for (Segment segment : segments) {
+                synchronized (segment) {
+                    for (MemorySession session : segment.sessions.values()) {
+                        if (session != current) {
+                            if (victim == null || session.lastAccessedTime < victimAccessedTime) {
+                                victimSegment = segment;
+                                victim = session;
+                                victimAccessedTime = session.lastAccessedTime;
+                            }
+
+                            break;
+                        }
+                    }
+                }
+            }
+
+            if (victim == null) {
+                break;
+            }
+
+            synchronized (victimSegment) {
+                if (!victim.removed) {
+                    remove(victimSegment, victim);
+                    evictionCount.incrementAndGet();
+                }
             }
         }
     }
 
+    private boolean isOverflow() {
+        return maxSessions > 0 && sessionCount.get() > maxSessions
+               || maxMemorySize > 0 && memorySize.get() > maxMemorySize;
+    }
+
+    /** 从段中删除session，并扣除其内存占用。必须在段的锁内调用。 */
+    private void remove(Segment segment, MemorySession session) {
+        if (session != null && !session.removed) {
+            segment.sessions.remove(session.sessionID);
+            session.removed = true;
+            sessionCount.decrementAndGet();
+            memorySize.addAndGet(-session.size);
+        }
+    }
+
+    /** 粗略估算对象所占用的内存字节数。 */
+    private static int estimateSize(Object value, int depth) {
+        if (value == null) {
+            return 0;
+        } else if (value instanceof CharSequence) {
+            return OBJECT_OVERHEAD * 2 + ((CharSequence) value).length() * 2;
+        } else if (value instanceof Number || value instanceof Boolean || value instanceof Character) {
+            return OBJECT_OVERHEAD;
+        } else if (value instanceof byte[]) {
+            return OBJECT_OVERHEAD + ((byte[]) value).length;
+        } else if (depth >= MAX_ESTIMATE_DEPTH) {
+            return DEFAULT_OBJECT_SIZE;
+        } else if (value instanceof Map<?, ?>) {
+            int size = OBJECT_OVERHEAD * 3;
+
+            for (Map.Entry<?, ?> entry : ((Map<?, ?>) value).entrySet()) {
+                size += OBJECT_OVERHEAD * 2 + estimateSize(entry.getKey(), depth + 1)
+                        + estimateSize(entry.getValue(), depth + 1);
+            }
+
+            return size;
+        } else if (value instanceof Collection<?>) {
+            int size = OBJECT_OVERHEAD * 3;
+
+            for (Object element : (Collection<?>) value) {
+                size += OBJECT_OVERHEAD / 2 + estimateSize(element, depth + 1);
+            }
+
+            return size;
+        } else if (value.getClass().isArray()) {
+            int length = Array.getLength(value);
+            int size = OBJECT_OVERHEAD + length * 8;
+
+            if (!value.getClass().getComponentType().isPrimitive()) {
+                for (int i = 0; i < length; i++) {
+                    size += estimateSize(Array.get(value, i), depth + 1);
+                }
+            }
+
+            return size;
+        } else {
+            return DEFAULT_OBJECT_SIZE;
+        }
+    }
+
     @Override
     public String toString() {
-        return "SimpleMemoryStore[" + sessions.size() + " sessions]";
+        return String.format("SimpleMemoryStore[%d sessions, %,d bytes, %d evictions, %d expirations]",
+                             sessionCount.get(), memorySize.get(), evictionCount.get(), expirationCount.get());
+    }
+
+    /** 一段按访问顺序排列的sessions，对其中的访问均在该对象的锁保护下进行。 */
+    private static class Segment {
+        private final LinkedHashMap<String, MemorySession> sessions;
+
+        private Segment() {
+            this.sessions = new LinkedHashMap<String, MemorySession>(16, 0.75f, true);
+        }
+    }
+
+    private static class MemorySession {
+        private final String                        sessionID;
+        private final long                          creationTime;
+        private final ConcurrentMap<String, Object> attrs     = createConcurrentHashMap();
+        private final Map<String, Integer>          attrSizes = createHashMap();
+        private long    lastAccessedTime;
+        private long    size;
+        private boolean removed;
+
+        private MemorySession(String sessionID, long creationTime) {
+            this.sessionID = sessionID;
+            this.creationTime = creationTime;
+            this.lastAccessedTime = creationTime;
+        }
     }
 }
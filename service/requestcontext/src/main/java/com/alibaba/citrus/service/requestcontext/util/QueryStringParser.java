@@ -150,14 +150,22 @@ public class QueryStringParser {
         }
 
         if (!StringUtil.isEmpty(key)) {
-            key = decode(key);
-            value = decode(value);
-
-            add(key, defaultIfNull(value, EMPTY_STRING));
+            addEncoded(decode(key), value);
         }
     }
 
-    private String decode(String str) {
+    /**
+     * 添加未解码的参数值。默认将值解码以后，调用<code>add(String, String)</code>。
+     * <p>
+     * 子类可以覆盖此方法，以便推迟对参数值的解码，此时可以调用<code>decode(String)</code>来解码。
+     * </p>
+     */
+    protected void addEncoded(String key, String encodedValue) {
+        add(key, defaultIfNull(decode(encodedValue), EMPTY_STRING));
+    }
+
+    /** 用当前的字符集解码字符串。 */
+    public String decode(String str) {
         try {
             return StringEscapeUtil.unescapeURL(str, charset);
         } catch (UnsupportedEncodingException e) {
@@ -17,6 +17,7 @@
 
 package com.alibaba.citrus.service.requestcontext.buffered;
 
+import static com.alibaba.citrus.util.StringUtil.*;
 import static org.junit.Assert.*;
 
 import java.io.OutputStream;
@@ -120,6 +121,144 @@ public class BufferedRequestContextTests extends AbstractRequestContextsTests<Bu
         assertEquals("abc", chars);
     }
 
+    @Test
+    public void largeByteBuffer() throws Exception {
+        OutputStream ostream = newResponse.getOutputStream();
+        String content = repeat("0123456789", 3000); // 跨越多个块
+
+        ostream.write(content.getBytes());
+        requestContext.pushBuffer();
+        ostream.write("abc".getBytes());
+
+        assertEquals("abc", new String(requestContext.popByteBuffer().toByteArray()));
+        assertEquals(content, new String(requestContext.popByteBuffer().toByteArray()));
+        assertEquals(0, requestContext.popByteBuffer().getLength());
+    }
+
+    @Test
+    public void largeCharBuffer() throws Exception {
+        PrintWriter writer = newResponse.getWriter();
+        String content = repeat("中华人民共和国", 3000); // 跨越多个块
+
+        writer.write(content);
+        requestContext.pushBuffer();
+        writer.write("abc");
+
+        assertEquals("abc", requestContext.popCharBuffer());
+        assertEquals(content, requestContext.popCharBuffer());
+        assertEquals("", requestContext.popCharBuffer());
+    }
+
+    @Test
+    public void streaming_disabled() throws Exception {
+        assertFalse(streaming().isStreaming());
+
+        PrintWriter writer = newResponse.getWriter();
+
+        writer.write("abc");
+        streaming().flush();
+
+        assertEquals("abc", requestContext.popCharBuffer());
+    }
+
+    @Test
+    public void streaming_chars() throws Exception {
+        initRequestContext("buffered_streaming");
+        assertTrue(streaming().isStreaming());
+
+        PrintWriter writer = newResponse.getWriter();
+        String bigContent = repeat("0123456789", 2000); // 超过flushThreshold
+
+        // 第一次flush之前，即使超过阈值也不提交，出错时仍可以reset
+        writer.write(bigContent);
+        assertEquals(bigContent, requestContext.popCharBuffer());
+
+        writer.write(bigContent);
+        newResponse.resetBuffer();
+        assertEquals("", requestContext.popCharBuffer());
+
+        // flush之后，嵌套的buffer不受影响
+        writer.write("<head>");
+        requestContext.pushBuffer();
+        writer.write("control");
+
+        streaming().flush();
+
+        String control = requestContext.popCharBuffer();
+        assertEquals("control", control);
+        assertEquals("", requestContext.popCharBuffer()); // 已被提交
+
+        // 超过阈值时，自动提交
+        writer.write(control);
+        writer.write(bigContent);
+
+        String rest = requestContext.popCharBuffer();
+
+        assertTrue(rest.length() < bigContent.length());
+        assertTrue(bigContent.endsWith(rest));
+
+        writer.write(rest);
+        writer.write("</html>");
+
+        requestContext.commit();
+        commitToClient();
+
+        assertEquals("<head>control" + bigContent + "</html>", clientResponse.getText());
+    }
+
+    @Test
+    public void streaming_resetBuffer() throws Exception {
+        initRequestContext("buffered_streaming");
+
+        PrintWriter writer = newResponse.getWriter();
+
+        // 没有内容被提交，仍可以reset
+        streaming().flush();
+        newResponse.resetBuffer();
+
+        writer.write("<head>");
+        streaming().flush();
+
+        // 已有内容被提交，不能再reset
+        try {
+            newResponse.resetBuffer();
+            fail();
+        } catch (IllegalStateException e) {
+        }
+
+        writer.write("</html>");
+        requestContext.commit();
+        commitToClient();
+
+        assertEquals("<head></html>", clientResponse.getText());
+    }
+
+    @Test
+    public void streaming_bytes() throws Exception {
+        initRequestContext("buffered_streaming");
+
+        OutputStream ostream = newResponse.getOutputStream();
+
+        ostream.write("<head>".getBytes());
+        requestContext.pushBuffer();
+        ostream.write("control".getBytes());
+
+        streaming().flush();
+
+        assertEquals("control", new String(requestContext.popByteBuffer().toByteArray()));
+        assertEquals(0, requestContext.popByteBuffer().getLength()); // 已被提交
+
+        ostream.write("</html>".getBytes());
+        requestContext.commit();
+        commitToClient();
+
+        assertEquals("<head></html>", clientResponse.getText());
+    }
+
+    private StreamingBufferedRequestContext streaming() {
+        return (StreamingBufferedRequestContext) requestContext;
+    }
+
     /** 先getWriter，再getOutputStream，此时将创建一个适配器。 */
     @Test
     public void writeBytesAndReadChars() throws Exception {
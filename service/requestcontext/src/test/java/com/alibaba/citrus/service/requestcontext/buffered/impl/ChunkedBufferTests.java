@@ -0,0 +1,145 @@
+/*
+ * Copyright (c) 2002-2012 Alibaba Group Holding Limited.
+ * All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.alibaba.citrus.service.requestcontext.buffered.impl;
+
+import static com.alibaba.citrus.service.requestcontext.buffered.impl.BufferChunkPool.*;
+import static com.alibaba.citrus.util.StringUtil.*;
+import static org.junit.Assert.*;
+
+import java.io.StringWriter;
+
+import com.alibaba.citrus.util.io.ByteArrayOutputStream;
+import org.junit.Before;
+import org.junit.Test;
+
+public class ChunkedBufferTests {
+    private BufferChunkPool pool;
+
+    @Before
+    public void init() {
+        pool = getPool();
+
+        // 清空当前线程的池
+        while (pool.getPooledByteChunks() > 0) {
+            pool.allocateBytes();
+        }
+
+        while (pool.getPooledCharChunks() > 0) {
+            pool.allocateChars();
+        }
+    }
+
+    @Test
+    public void bytes_empty() throws Exception {
+        ChunkedByteBuffer buffer = new ChunkedByteBuffer();
+
+        assertEquals(0, buffer.size());
+        assertEquals(0, buffer.toByteArray().getLength());
+
+        buffer.release();
+        assertEquals(0, pool.getPooledByteChunks());
+    }
+
+    @Test
+    public void bytes_multipleChunks() throws Exception {
+        ChunkedByteBuffer buffer = new ChunkedByteBuffer();
+        byte[] data = repeat("0123456789", 1000).getBytes(); // 10000 bytes
+
+        buffer.write('a');
+        buffer.write(data, 0, data.length);
+        buffer.write('b');
+
+        String expected = "a" + new String(data) + "b";
+
+        assertEquals(expected.length(), buffer.size());
+        assertEquals(expected, new String(buffer.toByteArray().toByteArray()));
+
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        buffer.writeTo(out);
+        assertEquals(expected, new String(out.toByteArray().toByteArray()));
+
+        // 归还给池，然后重用
+        buffer.release();
+        assertEquals(0, buffer.size());
+        assertEquals(3, pool.getPooledByteChunks());
+
+        buffer.write(data, 0, 5);
+        assertEquals("01234", new String(buffer.toByteArray().toByteArray()));
+        assertEquals(2, pool.getPooledByteChunks());
+    }
+
+    @Test
+    public void bytes_chunkBoundary() throws Exception {
+        ChunkedByteBuffer buffer = new ChunkedByteBuffer();
+        byte[] data = new byte[CHUNK_SIZE];
+
+        buffer.write(data, 0, data.length);
+        buffer.release();
+
+        assertEquals(1, pool.getPooledByteChunks());
+    }
+
+    @Test
+    public void chars_multipleChunks() throws Exception {
+        ChunkedCharBuffer buffer = new ChunkedCharBuffer();
+        String data = repeat("中华人民共和国", 1000);
+
+        buffer.write('a');
+        buffer.write(data);
+        buffer.write(data.toCharArray(), 0, 3);
+        buffer.write('b');
+
+        String expected = "a" + data + "中华人b";
+
+        assertEquals(expected.length(), buffer.size());
+        assertEquals(expected, buffer.toString());
+
+        StringWriter out = new StringWriter();
+        buffer.writeTo(out);
+        assertEquals(expected, out.toString());
+
+        buffer.release();
+        assertEquals("", buffer.toString());
+        assertEquals(2, pool.getPooledCharChunks());
+    }
+
+    @Test
+    public void poolIsBounded() throws Exception {
+        ChunkedCharBuffer buffer = new ChunkedCharBuffer();
+
+        buffer.write(new char[CHUNK_SIZE * (MAX_POOLED_CHUNKS + 10)]);
+        buffer.release();
+
+        assertEquals(MAX_POOLED_CHUNKS, pool.getPooledCharChunks());
+    }
+
+    @Test
+    public void illegalArguments() throws Exception {
+        try {
+            new ChunkedByteBuffer().write(new byte[10], 5, 6);
+            fail();
+        } catch (IndexOutOfBoundsException e) {
+        }
+
+        try {
+            new ChunkedCharBuffer().write("abc", 1, 3);
+            fail();
+        } catch (IndexOutOfBoundsException e) {
+        }
+    }
+}
@@ -0,0 +1,80 @@
+/*
+ * Copyright (c) 2002-2012 Alibaba Group Holding Limited.
+ * All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.alibaba.citrus.service.requestcontext.parser;
+
+import static com.alibaba.citrus.util.CollectionUtil.*;
+import static org.junit.Assert.*;
+
+import java.util.List;
+import javax.servlet.http.HttpServletRequest;
+
+import org.junit.Test;
+
+public class ParserRequestContextLazyTests extends ParserRequestContextTests {
+    @Override
+    protected String getDefaultBeanName() {
+        return "parser_lazy";
+    }
+
+    @Test
+    public void lazyParsing() throws Exception {
+        initMockRequest("GET", "a=1&b=%3Cb%3Ex&b.~html=1&c=+3+&d=&d=%26%2365%3B", "UTF-8", null);
+        CountingFilter.keys.clear();
+        initRequestContext();
+
+        ParameterParser params = requestContext.getParameters();
+
+        // 取得参数名，不会处理参数值
+        assertArrayEquals(new Object[] { "a", "b", "c", "d" }, params.getKeys());
+        assertTrue(params.containsKey("c"));
+        assertEquals(4, params.size());
+        assertTrue(CountingFilter.keys.isEmpty());
+
+        // 第一次取得参数时，才解码和处理参数值，且只处理一次
+        assertEquals("<b>x</b>", params.getString("b"));
+        assertEquals("<b>x</b>", params.getString("b"));
+        assertEquals("3", params.getString("c"));
+        assertEquals(3, params.getInt("c"));
+        assertArrayEquals(new String[] { "", "A" }, params.getStrings("d"));
+        assertArrayEquals(new Object[] { "b", "c", "d", "d" }, CountingFilter.keys.toArray());
+
+        // 修改和删除参数
+        params.add("c", "4");
+        assertArrayEquals(new String[] { "3", "4" }, params.getStrings("c"));
+        assertNotNull(params.remove("a"));
+        assertArrayEquals(new Object[] { "b", "c", "d" }, params.getKeys());
+
+        // 被删除的参数不会被过滤
+        assertArrayEquals(new Object[] { "b", "c", "d", "d" }, CountingFilter.keys.toArray());
+        assertFalse(CountingFilter.keys.contains("a"));
+
+        assertEquals("b=%3Cb%3Ex%3C%2Fb%3E&c=3&c=4&d=&d=A", params.toQueryString());
+    }
+
+    public static class CountingFilter implements ParameterValueFilter {
+        private static final List<String> keys = createArrayList();
+
+        public boolean isFiltering(HttpServletRequest request) {
+            return true;
+        }
+
+        public String filter(String key, String value, boolean isHtml) {
+            keys.add(key);
+            return value;
+        }
+    }
+}
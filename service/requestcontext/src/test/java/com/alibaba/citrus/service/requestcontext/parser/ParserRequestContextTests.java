@@ -357,8 +357,8 @@ public class ParserRequestContextTests extends AbstractRequestContextsTests<Pars
         assertArrayEquals(new Object[] { "a", "b" }, newRequest.getParameterMap().keySet().toArray());
     }
 
-    private void initMockRequest(String method, String queryString, String charset,
-                                 Map<String, String[]> engineDecodedParams) {
+    protected void initMockRequest(String method, String queryString, String charset,
+                                   Map<String, String[]> engineDecodedParams) {
         request = createMock(HttpServletRequest.class);
         response = createMock(HttpServletResponse.class);
 
@@ -0,0 +1,171 @@
+/*
+ * Copyright (c) 2002-2012 Alibaba Group Holding Limited.
+ * All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.alibaba.citrus.service.requestcontext.parser.filter;
+
+import static com.alibaba.citrus.util.CollectionUtil.*;
+import static org.junit.Assert.*;
+
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+
+import org.junit.Test;
+
+/**
+ * 除了运行<code>HTMLInputFilterTests</code>中的所有测试，还比较<code>FastHTMLInputFilter</code>和
+ * <code>HTMLInputFilter</code>对相同输入的输出。
+ */
+public class FastHTMLInputFilterTests extends HTMLInputFilterTests {
+    private static final String[] CORPUS = {
+            "",
+            "hello",
+            "<p>hello <b>world</b></p>",
+            "<b>bold <i>italic</b> text</i>",
+            "<a href=\"http://www.taobao.com/\" target=\"_blank\">taobao</a>",
+            "<a href='http://www.taobao.com/?a=1&b=2'>link</a>",
+            "<a href=http://www.taobao.com/ target=_blank onclick=\"alert(1)\">link</a>",
+            "<a HREF=\"JavaScript:alert(1)\">xss</a>",
+            "<a href=\"&#106;avascript:alert(1)\">xss</a>",
+            "<a href=\"&#x6a;avascript:alert(1)\">xss</a>",
+            "<a href=\"%6aavascript:alert(1)\">xss</a>",
+            "<a href=\"//evil.com/\">xss</a>",
+            "<a href=\"view-source://evil.com/\">xss</a>",
+            "<img src=\"http://img.taobao.com/a.jpg\" width=100 height='50' alt=\"a=b\" onerror=alert(1)>",
+            "<IMG SRC=javascript:alert('XSS')>",
+            "<img src=\"a.jpg\"/><img src='b.jpg' />",
+            "<script>alert(1)</script>",
+            "<SCRIPT SRC=http://evil.com/xss.js></SCRIPT>",
+            "<scr<script>ipt>alert(1)</scr</script>ipt>",
+            "<iframe src=\"http://evil.com/\"></iframe>",
+            "<div style=\"background:url(javascript:alert(1))\">x</div>",
+            "<b></b><i> </i><em class=\"x\"></em><strong/>",
+            "<b><i></i></b>",
+            "<a href=\"http://x\"></a>",
+            "</b></b><b>",
+            "<<b>>",
+            "a < b > c",
+            "1 < 2 && 3 > 2",
+            "<!-- comment --> text",
+            "<!-- a<b> --> <!-- c<d> -->",
+            "<!-- unclosed",
+            "<!doctype html><html><body>x</body></html>",
+            "< b>space</ b>",
+            "<b\n>newline</b\n>",
+            "<b>line\n",
+            "text<b\r\n",
+            "&amp;&lt;&gt;&quot;&nbsp;&#39;",
+            "&nbsp;&amp;",
+            "AT&T",
+            "&foo",
+            "price: $100 \\ 200",
+            "<a href=\"http://x/$1\\2\">$</a>",
+            "中文<b>粗体</b>",
+    };
+
+    @Override
+    protected HTMLInputFilter createFilter() {
+        return new FastHTMLInputFilter();
+    }
+
+    @Test
+    public void corpus() {
+        HTMLInputFilter expected = new HTMLInputFilter();
+        HTMLInputFilter actual = new FastHTMLInputFilter();
+
+        for (String input : CORPUS) {
+            assertSameResult(expected, actual, input);
+        }
+    }
+
+    @Test
+    public void corpus_withConfiguration() {
+        Set<String> pAttrs = createHashSet("align");
+        Set<String> divAttrs = createHashSet();
+        Map<String, Set<String>> allowed1 = createHashMap();
+        Map<String, Set<String>> allowed2 = createHashMap();
+
+        allowed1.put("p", pAttrs);
+        allowed1.put("div", divAttrs);
+        allowed2.put("p", pAttrs);
+        allowed2.put("div", divAttrs);
+
+        String[] denied = { "iframe" };
+        String[] selfClosing = { "br" };
+        String[] needClosing = { "p" };
+        String[] protocols = { "https" };
+        String[] protocolAtts = { "align" };
+        String[] removeBlanks = { "p", "div" };
+        String[] entities = { "nbsp" };
+
+        HTMLInputFilter expected = new HTMLInputFilter(allowed1, denied, selfClosing, needClosing, protocols,
+                                                       protocolAtts, removeBlanks, entities);
+        HTMLInputFilter actual = new FastHTMLInputFilter(allowed2, denied, selfClosing, needClosing, protocols,
+                                                         protocolAtts, removeBlanks, entities);
+
+        for (String input : CORPUS) {
+            assertSameResult(expected, actual, input);
+        }
+
+        assertSameResult(expected, actual, "<p align=\"https://x\">a</p><div></div><p></p><br>");
+    }
+
+    @Test
+    public void random() {
+        String[] tokens = { "<", ">", "/", "=", "\"", "'", " ", "\n", "\r", "&", ";", "#", "x", "%", ":", "!--", "-",
+                            "--", "a", "b", "img", "i", "em", "script", "src", "href", "width", "http", "mailto",
+                            "javascript", "amp", "lt", "1", "6a", "0a", "7", "z", "B", "IMG", " " };
+
+        HTMLInputFilter expected = new HTMLInputFilter();
+        HTMLInputFilter actual = new FastHTMLInputFilter();
+        Random rnd = new Random(20121017);
+
+        for (int i = 0; i < 5000; i++) {
+            StringBuilder buf = new StringBuilder();
+            int count = rnd.nextInt(20);
+
+            for (int j = 0; j < count; j++) {
+                buf.append(tokens[rnd.nextInt(tokens.length)]);
+            }
+
+            assertSameResult(expected, actual, buf.toString());
+        }
+    }
+
+    private void assertSameResult(HTMLInputFilter expected, HTMLInputFilter actual, String input) {
+        assertSameResult(expected, actual, input, true);
+        assertSameResult(expected, actual, input, false);
+    }
+
+    private void assertSameResult(HTMLInputFilter expected, HTMLInputFilter actual, String input, boolean isHtml) {
+        String expectedResult;
+
+        // 和HTMLInputFilter一样，非法的数字实体（如&#x6a;）会导致NumberFormatException。
+        try {
+            expectedResult = expected.filter(input, isHtml);
+        } catch (NumberFormatException e) {
+            try {
+                actual.filter(input, isHtml);
+                fail("expected NumberFormatException: " + input);
+            } catch (NumberFormatException ee) {
+            }
+
+            return;
+        }
+
+        assertEquals("isHtml=" + isHtml + ", input=" + input, expectedResult, actual.filter(input, isHtml));
+    }
+}
@@ -28,7 +28,11 @@ public class HTMLInputFilterTests {
 
     @Before
     public void init() {
-        vFilter = new HTMLInputFilter();
+        vFilter = createFilter();
+    }
+
+    protected HTMLInputFilter createFilter() {
+        return new HTMLInputFilter();
     }
 
     @After
@@ -22,6 +22,7 @@ import static org.junit.Assert.*;
 
 import com.alibaba.citrus.service.requestcontext.AbstractRequestContextsTests;
 import com.alibaba.citrus.service.requestcontext.rewrite.impl.RewriteRule;
+import com.alibaba.citrus.service.requestcontext.rewrite.impl.RewriteRuleSet;
 import org.junit.BeforeClass;
 import org.junit.Test;
 
@@ -308,6 +309,25 @@ public class RewriteRequestContextTests extends AbstractRequestContextsTests<Rew
         assertEquals("/servlet.htm", newRequest.getPathInfo());
     }
 
+    @Test
+    public void pathCache() throws Exception {
+        for (int i = 0; i < 2; i++) {
+            initRequest("/servlet/test2/hello.htm?a=1");
+
+            // 第二次请求使用缓存的结果，但仍然清除参数
+            commitToClient();
+
+            assertEquals(302, clientResponse.getResponseCode());
+            assertEquals("http://www.taobao.com/servlet/test2/new_hello.htm", clientResponse.getHeaderField("location"));
+
+            RewriteRuleSet ruleSet = getFieldValue(requestContext, "ruleSet", RewriteRuleSet.class);
+            RewriteRuleSet.CachedResult result = ruleSet.getCachedResult("/servlet/test2/hello.htm");
+
+            assertEquals("/servlet/test2/new_hello.htm", result.getPath());
+            assertEquals(302, result.getRedirectCode());
+        }
+    }
+
     @Test
     public void _toString() throws Exception {
         initRequest("/servlet/test10/hello.htm");
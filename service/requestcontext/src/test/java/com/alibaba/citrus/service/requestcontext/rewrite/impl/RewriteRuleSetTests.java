@@ -0,0 +1,234 @@
+/*
+ * Copyright (c) 2002-2012 Alibaba Group Holding Limited.
+ * All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.alibaba.citrus.service.requestcontext.rewrite.impl;
+
+import static com.alibaba.citrus.service.requestcontext.rewrite.impl.RewriteRuleSet.*;
+import static com.alibaba.citrus.util.CollectionUtil.*;
+import static org.junit.Assert.*;
+
+import java.util.List;
+import java.util.Random;
+
+import com.alibaba.citrus.service.requestcontext.rewrite.impl.RewriteSubstitution.Parameter;
+import org.junit.Test;
+
+public class RewriteRuleSetTests {
+    @Test
+    public void literalPrefix() {
+        assertEquals("/hello/", getLiteralPrefix("^/hello/"));
+        assertEquals("/hello/world.htm", getLiteralPrefix("^/hello/world\\.htm$"));
+        assertEquals("/hello", getLiteralPrefix("^/hello\\d+"));
+        assertEquals("/hell", getLiteralPrefix("^/hello?"));
+        assertEquals("/hell", getLiteralPrefix("^/hello*"));
+        assertEquals("/hell", getLiteralPrefix("^/hello{0,2}"));
+        assertEquals("/hello", getLiteralPrefix("^/hello+"));
+        assertEquals("/a", getLiteralPrefix("^/a.*"));
+
+        assertNull(getLiteralPrefix("/hello"));
+        assertNull(getLiteralPrefix("^.*"));
+        assertNull(getLiteralPrefix("^(/hello)"));
+        assertNull(getLiteralPrefix("^[/]hello"));
+        assertNull(getLiteralPrefix("^/hello|^/world"));
+        assertNull(getLiteralPrefix("^\\Q/hello\\E"));
+    }
+
+    @Test
+    public void requiredLiteral() {
+        assertEquals("/hello/", getRequiredLiteral("/hello/"));
+        assertEquals(".htm", getRequiredLiteral("\\w+\\.htm$"));
+        assertEquals("/world/", getRequiredLiteral("/a.*/world/\\d*"));
+        assertEquals("/hell", getRequiredLiteral("/hello?/x"));
+        assertEquals("abc", getRequiredLiteral(".{2}abc"));
+
+        assertNull(getRequiredLiteral(".*"));
+        assertNull(getRequiredLiteral("\\d+"));
+        assertNull(getRequiredLiteral("(hello)"));
+        assertNull(getRequiredLiteral("hello|world"));
+    }
+
+    @Test
+    public void escapesWithArguments() throws Exception {
+        // 转义字符后面的参数不是字面字符，无法分析
+        String[] prefixes = { "^/a\\x2Fb", "^/foo\\u0041bar", "^/\\0101xyz", "^/\\cJabc", "^/\\p{Lower}abc",
+                              "^/\\P{Lower}abc", "^/\\N{LATIN SMALL LETTER A}bc", "^/\\Qa.b\\E", "^/(?<x>a)\\k<x>" };
+
+        for (String regex : prefixes) {
+            assertNull(regex, getLiteralPrefix(regex));
+            assertNull(regex, getRequiredLiteral(regex));
+        }
+
+        String[] literals = { "/a\\x2Fb", "/foo\\u0041bar", "\\0101xyz", "\\cJabc", "\\p{Lower}abc", "\\P{Lower}abc",
+                              "a\\Q.b\\E" };
+
+        for (String regex : literals) {
+            assertNull(regex, getRequiredLiteral(regex));
+        }
+
+        // 规则不能因此被错误地排除
+        RewriteRuleSet ruleSet = new RewriteRuleSet(new RewriteRule[] { rule("^/a\\x2Fb"), rule("/foo\\u0041bar"),
+                                                                        rule("^/\\0101xyz"), rule("^/\\cJabc") });
+
+        assertCandidates(ruleSet, "/a/b", 0, 1, 2, 3);
+        assertCandidates(ruleSet, "/fooAbar", 0, 1, 2, 3);
+        assertCandidates(ruleSet, "/Axyz", 0, 1, 2, 3);
+        assertCandidates(ruleSet, "/\nabc", 0, 1, 2, 3);
+
+        assertNotNull(ruleSet.getRules()[0].match("/a/b"));
+        assertNotNull(ruleSet.getRules()[1].match("/fooAbar"));
+        assertNotNull(ruleSet.getRules()[2].match("/Axyz"));
+        assertNotNull(ruleSet.getRules()[3].match("/\nabc"));
+
+        // 其它的转义字符不受影响
+        assertEquals("/a.b", getLiteralPrefix("^/a\\.b\\d"));
+        assertEquals("/a/b", getRequiredLiteral("\\w/a\\/b"));
+    }
+
+    @Test
+    public void candidates() throws Exception {
+        RewriteRuleSet ruleSet = new RewriteRuleSet(new RewriteRule[] { rule("^/hello/"), rule("^/hello/world"),
+                                                                        rule("^/other"), rule("\\.htm$"), rule("!\\.htm$"), rule("(a|b)"),
+                                                                        rule("^.*") });
+
+        assertCandidates(ruleSet, "/hello/world.htm", 0, 1, 3, 4, 5, 6);
+        assertCandidates(ruleSet, "/hello/test.jpg", 0, 4, 5, 6);
+        assertCandidates(ruleSet, "/other/test.htm", 2, 3, 4, 5, 6);
+        assertCandidates(ruleSet, "/hello", 4, 5, 6);
+    }
+
+    @Test
+    public void candidates_consistentWithMatching() throws Exception {
+        String[] patterns = { "^/hello/", "^/hello/(\\w+)\\.htm$", "^/a+b", "^/ab?c", "\\.htm$", "world", "^/x/y\\.z",
+                              "a.b", "!^/hello", "^/$", "/(.*)\\.jpg", "^/a{2}", "b+c*d" };
+        RewriteRule[] rules = new RewriteRule[patterns.length];
+
+        for (int i = 0; i < patterns.length; i++) {
+            rules[i] = rule(patterns[i]);
+        }
+
+        RewriteRuleSet ruleSet = new RewriteRuleSet(rules);
+        Random random = new Random(20121017);
+        String[] parts = { "/", "hello", "world", "a", "b", "c", "d", ".", "htm", "jpg", "x", "y", "z" };
+
+        for (int n = 0; n < 5000; n++) {
+            StringBuilder buf = new StringBuilder("/");
+            int count = random.nextInt(6);
+
+            for (int i = 0; i < count; i++) {
+                buf.append(parts[random.nextInt(parts.length)]);
+            }
+
+            String path = buf.toString();
+            boolean[] candidates = ruleSet.getCandidates(path);
+
+            for (int i = 0; i < rules.length; i++) {
+                if (!candidates[i]) {
+                    assertNull(patterns[i] + " should not match " + path, rules[i].match(path));
+                }
+            }
+        }
+    }
+
+    @Test
+    public void pathOnly() throws Exception {
+        RewriteRule withParams = rule("^/a");
+        RewriteSubstitution subs = new RewriteSubstitution();
+        Parameter param = new Parameter();
+
+        param.setKey("x");
+        param.setValue("y");
+        param.afterPropertiesSet();
+        subs.setParameters(new Parameter[] { param });
+        subs.afterPropertiesSet();
+
+        withParams.setSubstitution(subs);
+        withParams.afterPropertiesSet();
+
+        RewriteRule withConditions = rule("^/b");
+        RewriteCondition condition = new RewriteCondition();
+
+        condition.setTest("%{REMOTE_HOST}");
+        condition.setPattern("localhost");
+        condition.afterPropertiesSet();
+        withConditions.setConditions(new RewriteCondition[] { condition });
+        withConditions.afterPropertiesSet();
+
+        RewriteRuleSet ruleSet = new RewriteRuleSet(new RewriteRule[] { rule("^/c"), withParams, withConditions });
+
+        assertTrue(ruleSet.isPathOnly(0));
+        assertFalse(ruleSet.isPathOnly(1));
+        assertFalse(ruleSet.isPathOnly(2));
+    }
+
+    @Test
+    public void pathCache() throws Exception {
+        RewriteRule rule = rule("^/a");
+        List<RewriteRule> matched = createArrayList(rule);
+
+        // 不缓存
+        RewriteRuleSet ruleSet = new RewriteRuleSet(new RewriteRule[] { rule }, 0);
+
+        ruleSet.cacheResult("/a", "/b", 0, matched);
+        assertNull(ruleSet.getCachedResult("/a"));
+        assertEquals(0, ruleSet.getCachedPathCount());
+
+        // 缓存满时清除
+        ruleSet = new RewriteRuleSet(new RewriteRule[] { rule }, 2);
+
+        ruleSet.cacheResult("/a1", "/b1", 0, matched);
+        ruleSet.cacheResult("/a2", "/b2", 302, matched);
+        assertEquals(2, ruleSet.getCachedPathCount());
+
+        CachedResult result = ruleSet.getCachedResult("/a2");
+
+        assertEquals("/b2", result.getPath());
+        assertEquals(302, result.getRedirectCode());
+        assertArrayEquals(new RewriteRule[] { rule }, result.getMatchedRules());
+
+        ruleSet.cacheResult("/a3", "/b3", 0, matched);
+        assertEquals(1, ruleSet.getCachedPathCount());
+        assertNull(ruleSet.getCachedResult("/a1"));
+        assertEquals("/b3", ruleSet.getCachedResult("/a3").getPath());
+    }
+
+    private RewriteRule rule(String pattern) throws Exception {
+        RewriteRule rule = new RewriteRule();
+
+        rule.setPattern(pattern);
+        rule.afterPropertiesSet();
+
+        return rule;
+    }
+
+    private void assertCandidates(RewriteRuleSet ruleSet, String path, int... expected) {
+        boolean[] candidates = ruleSet.getCandidates(path);
+        List<Integer> actual = createArrayList();
+
+        for (int i = 0; i < candidates.length; i++) {
+            if (candidates[i]) {
+                actual.add(i);
+            }
+        }
+
+        List<Integer> expectedList = createArrayList();
+
+        for (int i : expected) {
+            expectedList.add(i);
+        }
+
+        assertEquals(expectedList, actual);
+    }
+}
@@ -544,6 +544,80 @@ public class CookieStoreTests extends AbstractRequestContextsTests<SessionReques
         return getFieldValue(storeState, "checksumValid", Boolean.class);
     }
 
+    @Test
+    public void skipUnchanged() throws Exception {
+        // request 1 - new request
+        invokeNoopServlet("/servlet");
+        initRequestContext("session_cookie_skipUnchanged");
+
+        List<String> list = createArrayList("a");
+
+        session.setAttribute("count", 0);
+        session.setAttribute("list", list);
+
+        requestContexts.commitRequestContext(requestContext);
+        commitToClient();
+
+        assertTrue(hasCookie("myData0="));
+        assertTrue(hasCookie("myDatasum="));
+
+        // request 2 - 读取并设置相同的值，keepInTouch使session被提交，但数据未改变
+        invokeNoopServlet("/servlet");
+        initRequestContext("session_cookie_skipUnchanged");
+
+        assertEquals(0, session.getAttribute("count"));
+        session.setAttribute("count", 0);
+
+        requestContexts.commitRequestContext(requestContext);
+        commitToClient();
+
+        assertTrue(hasCookie("myModel0="));
+        assertFalse(hasCookie("myData0="));
+        assertFalse(hasCookie("myDatasum="));
+
+        // request 3 - 直接修改对象的内容，也能被发现
+        invokeNoopServlet("/servlet");
+        initRequestContext("session_cookie_skipUnchanged");
+
+        @SuppressWarnings("unchecked")
+        List<String> loadedList = (List<String>) session.getAttribute("list");
+
+        assertEquals(list, loadedList);
+        loadedList.add("b");
+        session.setAttribute("list", loadedList);
+
+        requestContexts.commitRequestContext(requestContext);
+        commitToClient();
+
+        assertTrue(hasCookie("myData0="));
+
+        // request 4 - 确认修改被保存
+        invokeNoopServlet("/servlet");
+        initRequestContext("session_cookie_skipUnchanged");
+
+        assertEquals(createArrayList("a", "b"), session.getAttribute("list"));
+        assertEquals(0, session.getAttribute("count"));
+
+        requestContexts.commitRequestContext(requestContext);
+        commitToClient();
+
+        assertFalse(hasCookie("myData0="));
+    }
+
+    private boolean hasCookie(String prefix) {
+        String[] cookies = clientResponse.getHeaderFields("set-cookie");
+
+        if (cookies != null) {
+            for (String cookie : cookies) {
+                if (cookie.startsWith(prefix)) {
+                    return true;
+                }
+            }
+        }
+
+        return false;
+    }
+
     @Test
     public void multi_encoders() throws Exception {
         // request 1
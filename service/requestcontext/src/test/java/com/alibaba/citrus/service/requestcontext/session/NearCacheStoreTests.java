@@ -0,0 +1,224 @@
+/*
+ * Copyright (c) 2002-2012 Alibaba Group Holding Limited.
+ * All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.alibaba.citrus.service.requestcontext.session;
+
+import static com.alibaba.citrus.util.CollectionUtil.*;
+import static org.junit.Assert.*;
+
+import java.util.List;
+import java.util.Set;
+import javax.servlet.http.HttpSession;
+
+import com.alibaba.citrus.service.requestcontext.AbstractRequestContextsTests;
+import com.alibaba.citrus.service.requestcontext.session.RemoteStoreTests.MyClient;
+import com.alibaba.citrus.service.requestcontext.session.impl.SessionImpl;
+import com.alibaba.citrus.service.requestcontext.session.impl.SessionModelImpl;
+import com.alibaba.citrus.service.requestcontext.session.store.nearcache.impl.NearCacheStoreImpl;
+import com.alibaba.citrus.service.requestcontext.session.store.remote.impl.RemoteStoreImpl;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+/**
+ * 测试near-cache store。
+ *
+ * @author Michael Zhou
+ */
+public class NearCacheStoreTests extends AbstractRequestContextsTests<SessionRequestContext> {
+    private HttpSession        session;
+    private NearCacheStoreImpl store;
+    private MyClient           client;
+    private long               baseGetCount;
+
+    @BeforeClass
+    public static void initFactory() {
+        createBeanFactory("services-session-remote-stores.xml");
+    }
+
+    @Override
+    protected void afterInitRequestContext() {
+        session = requestContext.getRequest().getSession();
+        store = (NearCacheStoreImpl) requestContext.getSessionConfig().getStores().getStore("cached");
+    }
+
+    @Test
+    public void config() throws Exception {
+        invokeNoopServlet("/servlet");
+        initRequestContext("session_nearcache_a");
+
+        assertEquals(100, store.getMaxSessions());
+        assertTrue(store.getStore() instanceof RemoteStoreImpl);
+        assertSame(factory.getBean("client3"), ((RemoteStoreImpl) store.getStore()).getClient());
+
+        invokeNoopServlet("/servlet");
+        initRequestContext("session_nearcache_b");
+
+        assertEquals(10, store.getMaxSessions());
+    }
+
+    @Test
+    public void versionedCache() throws Exception {
+        client = (MyClient) factory.getBean("client3");
+        baseGetCount = client.getGetCount();
+
+        // node a, request 1 - new session
+        invokeNoopServlet("/servlet");
+        initRequestContext("session_nearcache_a");
+
+        NearCacheStoreImpl storeA = store;
+        long hits = storeA.getHitCount();
+
+        assertTrue(session.isNew());
+        session.setAttribute("count", 0);
+        commit();
+
+        long version = getVersion();
+        assertTrue(version > 0);
+
+        // node a, request 2 - 版本相同，直接读取缓存
+        invokeNoopServlet("/servlet");
+        initRequestContext("session_nearcache_a");
+
+        assertFalse(session.isNew());
+        assertEquals(0, session.getAttribute("count"));
+        assertEquals(hits + 1, storeA.getHitCount());
+        assertEquals(0, gets());
+
+        session.setAttribute("count", 1);
+        commit();
+
+        assertTrue(getVersion() > version);
+
+        // node a, request 3 - 修改后的版本仍然被缓存
+        invokeNoopServlet("/servlet");
+        initRequestContext("session_nearcache_a");
+
+        assertEquals(1, session.getAttribute("count"));
+        assertEquals(hits + 2, storeA.getHitCount());
+        assertEquals(0, gets());
+
+        commit();
+
+        // node b, request 4 - 本地没有缓存，从remote store中读取，并修改
+        invokeNoopServlet("/servlet");
+        initRequestContext("session_nearcache_b");
+
+        assertEquals(1, session.getAttribute("count"));
+        assertEquals(1, gets());
+
+        session.setAttribute("count", 2);
+        commit();
+
+        // node a, request 5 - 版本已改变，重新读取
+        invokeNoopServlet("/servlet");
+        initRequestContext("session_nearcache_a");
+
+        assertEquals(2, session.getAttribute("count"));
+        assertEquals(hits + 2, storeA.getHitCount());
+        assertEquals(2, gets());
+
+        // invalidate - 清除缓存
+        int cached = storeA.getCachedSessionCount();
+
+        session.invalidate();
+        commit();
+
+        assertEquals(cached - 1, storeA.getCachedSessionCount());
+    }
+
+    @Test
+    public void cachedAttributesNotShared() throws Exception {
+        // request 1 - 保存一个可变的对象
+        invokeNoopServlet("/servlet");
+        initRequestContext("session_nearcache_a");
+
+        long hits = store.getHitCount();
+
+        session.setAttribute("list", createArrayList("a"));
+        commit();
+
+        // request 2 - 从缓存中读取，修改对象但不保存
+        invokeNoopServlet("/servlet");
+        initRequestContext("session_nearcache_a");
+
+        @SuppressWarnings("unchecked")
+        List<String> list = (List<String>) session.getAttribute("list");
+
+        assertEquals(hits + 1, store.getHitCount());
+        list.add("b");
+
+        // request 3 - 其它请求不受影响
+        invokeNoopServlet("/servlet");
+        initRequestContext("session_nearcache_a");
+
+        assertEquals(createArrayList("a"), session.getAttribute("list"));
+        assertNotSame(list, session.getAttribute("list"));
+        assertEquals(hits + 2, store.getHitCount());
+    }
+
+    @Test
+    public void evict() throws Exception {
+        // 每次使用新的web client，以创建新的session
+        for (int i = 0; i < 30; i++) {
+            prepareWebClient();
+            invokeNoopServlet("/servlet");
+            initRequestContext("session_nearcache_b");
+
+            assertTrue(session.isNew());
+            session.setAttribute("count", i);
+            commit();
+
+            assertTrue(store.getCachedSessionCount() <= 10);
+        }
+
+        assertEquals(10, store.getCachedSessionCount());
+    }
+
+    @Test
+    public void uniqueVersions() throws Exception {
+        invokeNoopServlet("/servlet");
+        initRequestContext("session_nearcache_a");
+
+        SessionModelImpl model = (SessionModelImpl) ((SessionImpl) session).getSessionModel();
+        long version = model.getVersion();
+        Set<Long> versions = createHashSet();
+
+        // 同一时刻从同一版本更新，得到的版本仍然不同
+        for (int i = 0; i < 100; i++) {
+            model.setVersion(version);
+            model.updateVersion();
+
+            assertTrue(model.getVersion() > version);
+            versions.add(model.getVersion());
+        }
+
+        assertTrue(versions.size() > 90);
+    }
+
+    private long getVersion() {
+        return ((VersionedSessionModel) ((SessionImpl) session).getSessionModel()).getVersion();
+    }
+
+    private long gets() {
+        return client.getGetCount() - baseGetCount;
+    }
+
+    private void commit() throws Exception {
+        requestContexts.commitRequestContext(requestContext);
+        commitToClient();
+    }
+}
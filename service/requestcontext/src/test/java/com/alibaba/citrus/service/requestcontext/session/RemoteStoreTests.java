@@ -0,0 +1,309 @@
+/*
+ * Copyright (c) 2002-2012 Alibaba Group Holding Limited.
+ * All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.alibaba.citrus.service.requestcontext.session;
+
+import static com.alibaba.citrus.util.CollectionUtil.*;
+import static org.junit.Assert.*;
+
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import javax.servlet.http.HttpSession;
+
+import com.alibaba.citrus.service.requestcontext.AbstractRequestContextsTests;
+import com.alibaba.citrus.service.requestcontext.session.serializer.impl.JavaSerializer;
+import com.alibaba.citrus.service.requestcontext.session.store.remote.impl.LocalRemoteSessionClient;
+import com.alibaba.citrus.service.requestcontext.session.store.remote.impl.RemoteStoreImpl;
+import org.junit.Before;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+/**
+ * 测试remote store。
+ *
+ * @author Michael Zhou
+ */
+public class RemoteStoreTests extends AbstractRequestContextsTests<SessionRequestContext> {
+    private HttpSession     session;
+    private RemoteStoreImpl store;
+    private MyClient        client;
+    private long            baseGetCount;
+    private long            baseSetCount;
+    private long            baseRemoveCount;
+
+    @BeforeClass
+    public static void initFactory() {
+        createBeanFactory("services-session-remote-stores.xml");
+    }
+
+    @Before
+    public void init() {
+        ((MyClient) factory.getBean("client1")).writeGate = null;
+        ((MyClient) factory.getBean("client2")).writeGate = null;
+        ((MyClient) factory.getBean("client2")).afterGet = null;
+    }
+
+    @Override
+    protected void afterInitRequestContext() {
+        session = requestContext.getRequest().getSession();
+        store = (RemoteStoreImpl) requestContext.getSessionConfig().getStores().getStore("remote");
+    }
+
+    @Test
+    public void config() throws Exception {
+        invokeNoopServlet("/servlet");
+        initRequestContext("session_remote");
+
+        assertFalse(store.isWriteBehind());
+        assertSame(factory.getBean("client1"), store.getClient());
+
+        invokeNoopServlet("/servlet");
+        initRequestContext("session_remote_writeBehind");
+
+        assertTrue(store.isWriteBehind());
+        assertEquals(1, store.getWriteBehindThreads());
+        assertTrue(store.getSerializer() instanceof JavaSerializer);
+        assertSame(factory.getBean("client2"), store.getClient());
+
+        store.flush(); // 新session的数据被清除
+    }
+
+    @Test
+    public void sync() throws Exception {
+        initClient("client1");
+
+        // request 1 - new session
+        invokeNoopServlet("/servlet");
+        initRequestContext("session_remote");
+
+        assertTrue(session.isNew());
+
+        session.setAttribute("count", 0);
+        session.setAttribute("name", "hello");
+
+        commit();
+
+        assertEquals(0, gets()); // 新session的数据已被清除，无须读取
+        assertEquals(1, sets());
+        assertEquals(1, removes());
+        assertEquals(createTreeSet("SESSION_MODEL", "count", "name"), client.lastWrittenAttrs());
+
+        // request 2 - 只读取一次远程存储，只写回被改变的值
+        invokeNoopServlet("/servlet");
+        initRequestContext("session_remote");
+
+        assertFalse(session.isNew());
+        assertEquals(0, session.getAttribute("count"));
+        assertEquals("hello", session.getAttribute("name"));
+
+        session.setAttribute("count", 1);
+        session.setAttribute("name", "hello"); // unchanged
+
+        commit();
+
+        assertEquals(1, gets());
+        assertEquals(2, sets());
+        assertEquals(createTreeSet("SESSION_MODEL", "count"), client.lastWrittenAttrs());
+
+        // request 3 - remove
+        invokeNoopServlet("/servlet");
+        initRequestContext("session_remote");
+
+        assertEquals(1, session.getAttribute("count"));
+
+        session.removeAttribute("count");
+
+        commit();
+
+        assertNull(client.lastWritten.get("count"));
+        assertTrue(client.lastWritten.containsKey("count"));
+
+        // request 4 - invalidate
+        invokeNoopServlet("/servlet");
+        initRequestContext("session_remote");
+
+        assertNull(session.getAttribute("count"));
+        assertEquals("hello", session.getAttribute("name"));
+
+        session.invalidate();
+
+        commit();
+
+        assertEquals(2, removes());
+    }
+
+    @Test
+    public void writeBehind() throws Exception {
+        initClient("client2");
+
+        // request 1 - new session
+        invokeNoopServlet("/servlet");
+        initRequestContext("session_remote_writeBehind");
+
+        client.writeGate = new CountDownLatch(1); // 阻止写入，直到countDown
+        session.setAttribute("count", 0);
+
+        commit();
+
+        // request 2 - 尚未写入的修改也可被读到
+        invokeNoopServlet("/servlet");
+        initRequestContext("session_remote_writeBehind");
+
+        assertFalse(session.isNew());
+        assertEquals(0, session.getAttribute("count"));
+
+        session.setAttribute("count", 1);
+
+        commit();
+
+        // request 3
+        invokeNoopServlet("/servlet");
+        initRequestContext("session_remote_writeBehind");
+
+        session.setAttribute("count", 2);
+
+        commit();
+
+        client.writeGate.countDown();
+        store.flush();
+
+        // 后两次提交被合并成一次写入
+        assertEquals(2, sets());
+        assertEquals(createTreeSet("SESSION_MODEL", "count"), client.lastWrittenAttrs());
+
+        // request 4 - invalidate
+        invokeNoopServlet("/servlet");
+        initRequestContext("session_remote_writeBehind");
+
+        assertEquals(2, session.getAttribute("count"));
+
+        session.invalidate();
+
+        commit();
+        store.flush();
+
+        assertEquals(2, removes());
+    }
+
+    @Test
+    public void writeBehind_writtenWhileLoading() throws Exception {
+        initClient("client2");
+
+        // request 1 - new session
+        invokeNoopServlet("/servlet");
+        initRequestContext("session_remote_writeBehind");
+
+        session.setAttribute("count", 0);
+
+        commit();
+
+        final RemoteStoreImpl store = this.store;
+        store.flush();
+
+        // request 2 - 修改尚未写入
+        invokeNoopServlet("/servlet");
+        initRequestContext("session_remote_writeBehind");
+
+        client.writeGate = new CountDownLatch(1);
+        session.setAttribute("count", 1);
+
+        commit();
+
+        // request 3 - 远程存储返回旧值之后、合并之前，后台线程完成写入
+        client.afterGet = new Runnable() {
+            public void run() {
+                client.afterGet = null;
+                client.writeGate.countDown();
+
+                try {
+                    store.flush();
+                } catch (InterruptedException e) {
+                    fail(e.toString());
+                }
+            }
+        };
+
+        invokeNoopServlet("/servlet");
+        initRequestContext("session_remote_writeBehind");
+
+        assertNull(client.afterGet); // 确保写入发生在读取期间
+        assertEquals(1, session.getAttribute("count"));
+
+        commit();
+        store.flush();
+    }
+
+    private void initClient(String clientName) {
+        client = (MyClient) factory.getBean(clientName);
+        baseGetCount = client.getGetCount();
+        baseSetCount = client.getSetCount();
+        baseRemoveCount = client.getRemoveCount();
+    }
+
+    private long gets() {
+        return client.getGetCount() - baseGetCount;
+    }
+
+    private long sets() {
+        return client.getSetCount() - baseSetCount;
+    }
+
+    private long removes() {
+        return client.getRemoveCount() - baseRemoveCount;
+    }
+
+    private void commit() throws Exception {
+        requestContexts.commitRequestContext(requestContext);
+        commitToClient();
+    }
+
+    public static class MyClient extends LocalRemoteSessionClient {
+        private volatile Map<String, byte[]> lastWritten;
+        private volatile CountDownLatch      writeGate;
+        private volatile Runnable            afterGet;
+
+        @Override
+        public Map<String, byte[]> getAttributes(String sessionID) throws InterruptedException {
+            Map<String, byte[]> attrs = super.getAttributes(sessionID);
+            Runnable hook = afterGet;
+
+            if (hook != null) {
+                hook.run();
+            }
+
+            return attrs;
+        }
+
+        @Override
+        public void setAttributes(String sessionID, Map<String, byte[]> attrs, int expireSeconds)
+                throws InterruptedException {
+            CountDownLatch gate = writeGate;
+
+            if (gate != null) {
+                gate.await();
+            }
+
+            super.setAttributes(sessionID, attrs, expireSeconds);
+            lastWritten = createHashMap();
+            lastWritten.putAll(attrs);
+        }
+
+        private Object lastWrittenAttrs() {
+            return createTreeSet(lastWritten.keySet());
+        }
+    }
+}
@@ -0,0 +1,318 @@
+/*
+ * Copyright (c) 2002-2012 Alibaba Group Holding Limited.
+ * All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.alibaba.citrus.service.requestcontext.session;
+
+import static com.alibaba.citrus.util.CollectionUtil.*;
+import static com.alibaba.citrus.util.StringUtil.*;
+import static org.easymock.EasyMock.*;
+import static org.junit.Assert.*;
+
+import java.util.Map;
+
+import com.alibaba.citrus.service.requestcontext.AbstractRequestContextsTests;
+import com.alibaba.citrus.service.requestcontext.session.store.simple.impl.SimpleMemoryStoreImpl;
+import com.alibaba.citrus.util.HumanReadableSize;
+import org.junit.After;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+/**
+ * 测试simple memory store。
+ *
+ * @author Michael Zhou
+ */
+public class SimpleMemoryStoreTests extends AbstractRequestContextsTests<SessionRequestContext> {
+    private static final long START = 1000000000L;
+    private MyStore store;
+
+    @BeforeClass
+    public static void initFactory() {
+        createBeanFactory("services-session.xml");
+    }
+
+    @After
+    public void destroy() {
+        if (store != null) {
+            store.destroy();
+        }
+    }
+
+    @Test
+    public void config() throws Exception {
+        invokeNoopServlet("/servlet");
+        initRequestContext("session_memory_bounded");
+
+        SimpleMemoryStoreImpl store = (SimpleMemoryStoreImpl) requestContext.getSessionConfig().getStores()
+                                                                            .getStore("bounded");
+
+        assertEquals(1800, store.getMaxInactiveInterval());
+        assertEquals(7200, store.getForceExpirationPeriod());
+        assertEquals(100, store.getMaxSessions());
+        assertEquals(1024 * 1024, store.getMaxMemorySize().getValue());
+        assertEquals(30, store.getSweepInterval());
+    }
+
+    @Test
+    public void defaultConfig() {
+        store = new MyStore();
+        store.init("test", createSessionConfig(0, 0));
+
+        assertEquals(0, store.getMaxInactiveInterval());
+        assertEquals(0, store.getForceExpirationPeriod());
+        assertEquals(0, store.getMaxSessions());
+        assertEquals(0, store.getMaxMemorySize().getValue());
+        assertEquals(SimpleMemoryStoreImpl.DEFAULT_SWEEP_INTERVAL, store.getSweepInterval());
+        assertEquals(0, store.sweep());
+    }
+
+    @Test
+    public void commitAndLoad() {
+        store = createStore(0, 0, 0);
+
+        commit("s1", "a", "1", "b", "2");
+
+        assertEquals("1", store.loadAttribute("a", "s1", null));
+        assertEquals("2", store.loadAttribute("b", "s1", null));
+        assertArrayEquals(new Object[] { "a", "b" }, sortedNames("s1"));
+        assertEquals(1, store.getSessionCount());
+        assertTrue(store.getMemorySize() > 0);
+
+        commit("s1", "a", null, "b", null);
+
+        assertNull(store.loadAttribute("a", "s1", null));
+        assertEquals(0, store.getMemorySize());
+
+        commit("s1", "a", "1");
+        store.invalidate("s1", null);
+
+        assertNull(store.getSession("s1"));
+        assertEquals(0, store.getSessionCount());
+        assertEquals(0, store.getMemorySize());
+        assertFalse(store.getAttributeNames("s1", null).iterator().hasNext());
+    }
+
+    @Test
+    public void idleExpiry() {
+        store = createStore(10, 0, 0);
+
+        commit("s1", "a", "1");
+
+        store.now += 9000;
+        assertEquals("1", store.loadAttribute("a", "s1", null));
+
+        store.now += 9000;
+        assertEquals("1", store.loadAttribute("a", "s1", null));
+
+        store.now += 10000;
+        assertNull(store.loadAttribute("a", "s1", null));
+        assertEquals(0, store.getSessionCount());
+        assertEquals(0, store.getMemorySize());
+        assertEquals(1, store.getExpirationCount());
+    }
+
+    @Test
+    public void inheritedExpiry() {
+        store = new MyStore();
+        store.setSweepInterval(0);
+        store.init("test", createSessionConfig(10, 0));
+
+        assertEquals(10, store.getMaxInactiveInterval());
+
+        commit("s1", "a", "1");
+
+        // 保留一段时间，使session框架能读到过期的session
+        store.now += 11000;
+        assertEquals("1", store.loadAttribute("a", "s1", null));
+
+        store.now += (10 + SimpleMemoryStoreImpl.INHERITED_EXPIRY_GRACE_PERIOD) * 1000L;
+        assertNull(store.loadAttribute("a", "s1", null));
+    }
+
+    @Test
+    public void forceExpiry() {
+        store = createStore(10, 20, 0);
+
+        commit("s1", "a", "1");
+
+        for (int i = 0; i < 3; i++) {
+            store.now += 5000;
+            assertEquals("1", store.loadAttribute("a", "s1", null));
+        }
+
+        store.now += 5000;
+        assertNull(store.loadAttribute("a", "s1", null));
+        assertEquals(1, store.getExpirationCount());
+    }
+
+    @Test
+    public void evict_maxSessions() {
+        store = createStore(0, 0, 0);
+        store.setMaxSessions(2);
+
+        // 不同段之间按访问时间比较
+        commit("s1", "a", "1");
+        store.now++;
+        commit("s2", "a", "2");
+        store.now++;
+        assertEquals("1", store.loadAttribute("a", "s1", null)); // s2 becomes the eldest
+        store.now++;
+        commit("s3", "a", "3");
+
+        assertEquals(2, store.getSessionCount());
+        assertEquals(1, store.getEvictionCount());
+        assertEquals("1", store.loadAttribute("a", "s1", null));
+        assertNull(store.loadAttribute("a", "s2", null));
+        assertEquals("3", store.loadAttribute("a", "s3", null));
+    }
+
+    @Test
+    public void evict_maxMemorySize() {
+        store = createStore(0, 0, 0);
+        store.setMaxMemorySize(new HumanReadableSize("1K"));
+
+        commit("s1", "a", repeat("x", 300));
+        commit("s2", "a", repeat("y", 300));
+
+        assertEquals(1, store.getSessionCount());
+        assertEquals(1, store.getEvictionCount());
+        assertNull(store.loadAttribute("a", "s1", null));
+        assertTrue(store.getMemorySize() <= 1024);
+
+        // 当前session即使超出限制也不会被淘汰
+        commit("s2", "b", repeat("z", 1000));
+
+        assertEquals(1, store.getSessionCount());
+        assertNotNull(store.loadAttribute("b", "s2", null));
+    }
+
+    @Test
+    public void sweep() {
+        store = createStore(60, 0, 10);
+
+        commit("s1", "a", "1");
+        commit("s2", "a", "2");
+
+        store.now += 50000;
+        assertEquals("2", store.loadAttribute("a", "s2", null));
+        assertEquals(0, store.sweep());
+
+        store.now += 15000;
+        assertEquals(1, store.sweep());
+        assertEquals(1, store.getSessionCount());
+        assertEquals(1, store.getExpirationCount());
+
+        store.now += 50000;
+        assertEquals(1, store.sweep());
+        assertEquals(0, store.getSessionCount());
+        assertEquals(0, store.getMemorySize());
+
+        // 长时间未清理，不会丢失到期的session
+        commit("s3", "a", "3");
+        store.now += 3600 * 1000L;
+        assertEquals(1, store.sweep());
+    }
+
+    @Test
+    public void evict_concurrent() throws Exception {
+        store = createStore(0, 0, 0);
+        store.setMaxSessions(100);
+
+        Thread[] threads = new Thread[8];
+
+        for (int t = 0; t < threads.length; t++) {
+            final int id = t;
+
+            threads[t] = new Thread() {
+                @Override
+                public void run() {
+                    for (int i = 0; i < 1000; i++) {
+                        String sessionID = "s" + id + "-" + i % 50;
+
+                        commit(sessionID, "a", sessionID);
+                        store.loadAttribute("a", sessionID, null);
+                    }
+                }
+            };
+        }
+
+        for (Thread thread : threads) {
+            thread.start();
+        }
+
+        for (Thread thread : threads) {
+            thread.join();
+        }
+
+        assertTrue(store.getSessionCount() <= 100);
+        assertTrue(store.getEvictionCount() >= 300);
+
+        // 计数和内存占用保持一致
+        for (int t = 0; t < threads.length; t++) {
+            for (int i = 0; i < 50; i++) {
+                store.invalidate("s" + t + "-" + i, null);
+            }
+        }
+
+        assertEquals(0, store.getSessionCount());
+        assertEquals(0, store.getMemorySize());
+    }
+
+    private MyStore createStore(int maxInactiveInterval, long forceExpirationPeriod, int sweepInterval) {
+        MyStore store = new MyStore();
+
+        store.setMaxInactiveInterval(maxInactiveInterval);
+        store.setForceExpirationPeriod(forceExpirationPeriod);
+        store.setSweepInterval(sweepInterval);
+        store.init("test", createSessionConfig(1, 1));
+
+        return store;
+    }
+
+    private SessionConfig createSessionConfig(int maxInactiveInterval, long forceExpirationPeriod) {
+        SessionConfig sessionConfig = createMock(SessionConfig.class);
+
+        expect(sessionConfig.getMaxInactiveInterval()).andReturn(maxInactiveInterval).anyTimes();
+        expect(sessionConfig.getForceExpirationPeriod()).andReturn(forceExpirationPeriod).anyTimes();
+        replay(sessionConfig);
+
+        return sessionConfig;
+    }
+
+    private void commit(String sessionID, Object... nameValues) {
+        Map<String, Object> attrs = createHashMap();
+
+        for (int i = 0; i < nameValues.length; i += 2) {
+            attrs.put((String) nameValues[i], nameValues[i + 1]);
+        }
+
+        store.commit(attrs, sessionID, null);
+    }
+
+    private Object[] sortedNames(String sessionID) {
+        return createTreeSet(store.getAttributeNames(sessionID, null)).toArray();
+    }
+
+    private static class MyStore extends SimpleMemoryStoreImpl {
+        private long now = START;
+
+        @Override
+        protected long currentTimeMillis() {
+            return now;
+        }
+    }
+}
@@ -20,6 +20,7 @@ package com.alibaba.citrus.service.requestcontext.session.encoder;
 import static com.alibaba.citrus.test.TestEnvStatic.*;
 import static com.alibaba.citrus.test.TestUtil.*;
 import static com.alibaba.citrus.util.CollectionUtil.*;
+import static com.alibaba.citrus.util.StringUtil.*;
 import static org.junit.Assert.*;
 
 import java.io.File;
@@ -54,6 +55,7 @@ public class SessionEncoderTests implements Cloneable {
     private        String                       toString;
     private        AbstractSerializationEncoder encoder;
     private        boolean                      skipEncoding;
+    private        String                       compatibleBeanName;
 
     @BeforeClass
     public static void initFactory() {
@@ -111,6 +113,29 @@ public class SessionEncoderTests implements Cloneable {
         tests.skipEncoding = true;
         data.add(tests);
 
+        tests = new SessionEncoderTests();
+        tests.beanName = "hessian_urlSafe";
+        tests.serializerType = HessianSerializer.class;
+        tests.encrypterType = null;
+        tests.toString = "SerializationEncoder[HessianSerializer, no encrypter, compressionLevel=1, urlSafe]";
+        tests.compatibleBeanName = "hessian_noEncrypt";
+        data.add(tests);
+
+        tests = new SessionEncoderTests();
+        tests.beanName = "hessian_aes_urlSafe";
+        tests.serializerType = HessianSerializer.class;
+        tests.encrypterType = AesEncrypter.class;
+        tests.toString = "SerializationEncoder[HessianSerializer, AES(keySize=128), urlSafe]";
+        tests.compatibleBeanName = "hessian_aes";
+        data.add(tests);
+
+        tests = new SessionEncoderTests();
+        tests.beanName = "hessian_aes_gcm";
+        tests.serializerType = HessianSerializer.class;
+        tests.encrypterType = AesEncrypter.class;
+        tests.toString = "SerializationEncoder[HessianSerializer, AES(keySize=128, mode=GCM, keyId=2)]";
+        data.add(tests);
+
         return data;
     }
 
@@ -152,6 +177,17 @@ public class SessionEncoderTests implements Cloneable {
         }
     }
 
+    @Test
+    public void encrypter_previousKeys() {
+        if (encoder.encrypter instanceof AesEncrypter && ((AesEncrypter) encoder.encrypter).isGcm()) {
+            AesEncrypter aes = (AesEncrypter) encoder.encrypter;
+
+            assertEquals(2, aes.getKeyId());
+            assertEquals(1, aes.getPreviousKeys().size());
+            assertEquals("fedcba9876543210fedcba9876543210", aes.getPreviousKeys().get(1));
+        }
+    }
+
     @Test
     public void encode_decode() {
         if (skipEncoding) {
@@ -177,6 +213,36 @@ public class SessionEncoderTests implements Cloneable {
         assertArrayEquals((String[]) obj.get("Array"), (String[]) newobj.get("Array"));
     }
 
+    @Test
+    public void encode_decode_compatible() {
+        if (compatibleBeanName == null) {
+            return;
+        }
+
+        AbstractSerializationEncoder compatibleEncoder = (AbstractSerializationEncoder) factory.getBean(compatibleBeanName);
+
+        for (int i = 0; i < 100; i++) {
+            Map<String, Object> obj = createHashMap();
+
+            obj.put("int", i);
+            obj.put("String", repeat("test", i));
+
+            // 新格式不包含需要URL encoding的字符
+            String encoded = encoder.encode(obj, null);
+
+            assertTrue(encoded, encoded.matches("[A-Za-z0-9_-]+"));
+            assertEquals(obj, compatibleEncoder.decode(encoded, null));
+
+            // 新的encoder可以读取原有格式
+            String oldEncoded = compatibleEncoder.encode(obj, null);
+
+            assertEquals(obj, encoder.decode(oldEncoded, null));
+
+            // 重用压缩器和缓冲区，结果不变
+            assertEquals(encoded, encoder.encode(obj, null));
+        }
+    }
+
     @Test
     public void toString_() {
         assertEquals(toString, encoder.toString());
@@ -20,7 +20,7 @@ package com.alibaba.citrus.service.requestcontext.session.encrypter;
 import static com.alibaba.citrus.test.TestUtil.*;
 import static org.junit.Assert.*;
 
-import java.util.Queue;
+import java.util.concurrent.atomic.AtomicReferenceArray;
 import javax.crypto.Cipher;
 
 import org.junit.Test;
@@ -39,7 +39,9 @@ public abstract class AbstractEncrypterTests<T extends AbstractJceEncrypter> {
     @Test
     public void pool() throws Exception {
         @SuppressWarnings("unchecked")
-        Queue<Cipher> pool = getFieldValue(encrypter, "eciphers", Queue.class);
+        AtomicReferenceArray<Cipher> pool = getFieldValue(encrypter, "eciphers", AtomicReferenceArray.class);
+
+        assertEquals(encrypter.getPoolSize(), pool.length());
 
         Cipher[] ciphers = new Cipher[512];
 
@@ -47,14 +49,34 @@ public abstract class AbstractEncrypterTests<T extends AbstractJceEncrypter> {
             ciphers[i] = encrypter.getCipher(Cipher.ENCRYPT_MODE);
         }
 
-        assertEquals(0, pool.size());
+        assertEquals(0, count(pool));
 
         for (Cipher cipher : ciphers) {
             encrypter.returnCipher(Cipher.ENCRYPT_MODE, cipher);
         }
 
-        assertEquals(256, pool.size());
-        assertEquals(encrypter.getPoolSize(), pool.size());
+        // 每个线程只占用有限的几个槽位，多余的cipher被丢弃
+        int pooled = count(pool);
+
+        assertTrue(pooled > 0 && pooled <= encrypter.getPoolSize());
+
+        // 再次取得时，重用池中的cipher
+        Cipher cipher = encrypter.getCipher(Cipher.ENCRYPT_MODE);
+
+        assertEquals(pooled - 1, count(pool));
+        assertSame(ciphers[0], cipher);
+    }
+
+    private int count(AtomicReferenceArray<Cipher> pool) {
+        int count = 0;
+
+        for (int i = 0; i < pool.length(); i++) {
+            if (pool.get(i) != null) {
+                count++;
+            }
+        }
+
+        return count;
     }
 
     @Test
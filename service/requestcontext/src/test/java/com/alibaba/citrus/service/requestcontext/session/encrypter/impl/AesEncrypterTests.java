@@ -20,6 +20,11 @@ package com.alibaba.citrus.service.requestcontext.session.encrypter.impl;
 import static com.alibaba.citrus.test.TestUtil.*;
 import static org.junit.Assert.*;
 
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Map;
+
+import com.alibaba.citrus.service.requestcontext.session.encoder.SessionEncoderException;
 import com.alibaba.citrus.service.requestcontext.session.encrypter.AbstractEncrypterTests;
 import org.junit.Before;
 import org.junit.Test;
@@ -56,4 +61,111 @@ public class AesEncrypterTests extends AbstractEncrypterTests<AesEncrypter> {
             assertThat(e, exception("Illegal key: expected size=128, actual size is 136"));
         }
     }
+
+    @Test
+    public void wrongMode() throws Exception {
+        encrypter = new AesEncrypter();
+        encrypter.setKey("0123456789abcdef");
+        encrypter.setMode("CBC");
+
+        try {
+            encrypter.afterPropertiesSet();
+            fail();
+        } catch (IllegalArgumentException e) {
+            assertThat(e, exception("unsupported mode: CBC"));
+        }
+    }
+
+    @Test
+    public void gcm() throws Exception {
+        encrypter = createGcmEncrypter("0123456789abcdef", 1, null);
+
+        byte[] plaintext = "hello, world".getBytes("UTF-8");
+        byte[] cryptotext1 = encrypter.encrypt(plaintext);
+        byte[] cryptotext2 = encrypter.encrypt(plaintext);
+
+        // keyId + IV + 密文 + 认证码
+        assertEquals(1 + 12 + plaintext.length + 16, cryptotext1.length);
+        assertEquals(1, cryptotext1[0]);
+
+        // 随机IV，每次加密的结果均不同
+        assertFalse(Arrays.equals(cryptotext1, cryptotext2));
+
+        assertArrayEquals(plaintext, encrypter.decrypt(cryptotext1));
+        assertArrayEquals(plaintext, encrypter.decrypt(cryptotext2));
+
+        // 被篡改的数据
+        cryptotext1[cryptotext1.length - 20] ^= 1;
+        assertDecryptFailure(cryptotext1);
+
+        // 被截断的数据
+        assertDecryptFailure(Arrays.copyOf(cryptotext2, cryptotext2.length - 1));
+
+        // ECB模式的数据
+        AesEncrypter ecb = new AesEncrypter();
+        ecb.setKey("0123456789abcdef");
+        ecb.afterPropertiesSet();
+
+        assertDecryptFailure(ecb.encrypt(plaintext));
+
+        assertEquals("AES(keySize=128, mode=GCM, keyId=1)", encrypter.toString());
+    }
+
+    @Test
+    public void gcm_keyRotation() throws Exception {
+        AesEncrypter oldEncrypter = createGcmEncrypter("0123456789abcdef", 1, null);
+        byte[] plaintext = "hello, world".getBytes("UTF-8");
+        byte[] oldCryptotext = oldEncrypter.encrypt(plaintext);
+
+        // 新密钥用于加密，旧密钥仍可解密
+        encrypter = createGcmEncrypter("fedcba9876543210fedcba9876543210", 2,
+                                       Collections.singletonMap(1, "0123456789abcdef"));
+
+        byte[] newCryptotext = encrypter.encrypt(plaintext);
+
+        assertEquals(2, newCryptotext[0]);
+        assertArrayEquals(plaintext, encrypter.decrypt(oldCryptotext));
+        assertArrayEquals(plaintext, encrypter.decrypt(newCryptotext));
+
+        // 旧的encrypter不认识新密钥
+        encrypter = oldEncrypter;
+        assertDecryptFailure(newCryptotext);
+    }
+
+    @Test
+    public void previousKeysInEcbMode() throws Exception {
+        encrypter = new AesEncrypter();
+        encrypter.setKey("0123456789abcdef");
+        encrypter.setPreviousKeys(Collections.singletonMap(1, "fedcba9876543210"));
+
+        try {
+            encrypter.afterPropertiesSet();
+            fail();
+        } catch (IllegalArgumentException e) {
+            assertThat(e, exception("previousKeys are only supported in GCM mode"));
+        }
+    }
+
+    private AesEncrypter createGcmEncrypter(String key, int keyId, Map<Integer, String> previousKeys)
+            throws Exception {
+        AesEncrypter encrypter = new AesEncrypter();
+
+        encrypter.setKey(key);
+        encrypter.setKeySize(key.length() * 8);
+        encrypter.setMode("gcm");
+        encrypter.setKeyId(keyId);
+        encrypter.setPreviousKeys(previousKeys);
+        encrypter.afterPropertiesSet();
+
+        return encrypter;
+    }
+
+    private void assertDecryptFailure(byte[] cryptotext) {
+        try {
+            encrypter.decrypt(cryptotext);
+            fail();
+        } catch (SessionEncoderException e) {
+            assertThat(e, exception("Failed to decrypt object"));
+        }
+    }
 }
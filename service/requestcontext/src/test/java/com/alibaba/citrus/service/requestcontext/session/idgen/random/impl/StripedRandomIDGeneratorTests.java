@@ -0,0 +1,69 @@
+/*
+ * Copyright (c) 2002-2012 Alibaba Group Holding Limited.
+ * All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.alibaba.citrus.service.requestcontext.session.idgen.random.impl;
+
+import static com.alibaba.citrus.test.TestEnvStatic.*;
+import static org.junit.Assert.*;
+
+import java.io.File;
+
+import com.alibaba.citrus.service.requestcontext.session.idgen.AbstractIDGeneratorTests;
+import com.alibaba.citrus.springext.support.context.XmlApplicationContext;
+import org.junit.Test;
+import org.springframework.beans.factory.BeanFactory;
+import org.springframework.core.io.FileSystemResource;
+
+public class StripedRandomIDGeneratorTests extends AbstractIDGeneratorTests<StripedRandomIDGenerator> {
+    @Test
+    public void generate() {
+        String sid = idgen.generateSessionID();
+
+        assertEquals(16, sid.length());
+        assertTrue(sid, sid.matches("[A-Za-z0-9$-]+"));
+        assertFalse(sid.equals(idgen.generateSessionID()));
+    }
+
+    @Test
+    public void length() throws Exception {
+        for (int length = 1; length <= 40; length++) {
+            StripedRandomIDGenerator idgen = new StripedRandomIDGenerator();
+
+            idgen.setLength(length);
+            idgen.setStripes(1);
+            idgen.afterPropertiesSet();
+
+            assertEquals(length, idgen.generateSessionID().length());
+        }
+    }
+
+    @Test
+    public void config() {
+        BeanFactory factory = new XmlApplicationContext(new FileSystemResource(new File(srcdir, "idgens.xml")));
+
+        StripedRandomIDGenerator idgen = (StripedRandomIDGenerator) factory.getBean("striped_default");
+
+        assertEquals(16, idgen.getLength());
+        assertEquals(Runtime.getRuntime().availableProcessors() * 2, idgen.getStripes());
+
+        idgen = (StripedRandomIDGenerator) factory.getBean("striped");
+
+        assertEquals(21, idgen.getLength());
+        assertEquals(4, idgen.getStripes());
+        assertEquals(21, idgen.generateSessionID().length());
+        assertEquals("StripedRandomSessionIDGenerator[length=21, stripes=4]", idgen.toString());
+    }
+}
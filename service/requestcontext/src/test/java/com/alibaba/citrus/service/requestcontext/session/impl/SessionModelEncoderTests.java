@@ -55,4 +55,42 @@ public class SessionModelEncoderTests extends AbstractSessionModelEncoderTests {
         assertSame(model, encoder.decode("{id:\"\",ct:0,ac:0,mx:-1}", mockFactory));
         verify(mockFactory);
     }
+
+    @Test
+    public void encode_version() {
+        SessionModelImpl model = new SessionModelImpl("myId", 1111, 2222, 3333);
+
+        assertEquals("{id:\"myId\",ct:1111,ac:2222,mx:3333}", encoder.encode(model));
+
+        model.setVersion(4444);
+        assertEquals("{id:\"myId\",ct:1111,ac:2222,mx:3333,vs:4444}", encoder.encode(model));
+
+        model.updateVersion();
+        assertTrue(model.getVersion() > 4444);
+    }
+
+    @Test
+    public void decode_version() {
+        SessionModel.Factory factory = new SessionModel.Factory() {
+            public SessionModel newInstance(String sessionID, long creationTime, long lastAccessedTime,
+                                            int maxInactiveInterval) {
+                return new SessionModelImpl(sessionID, creationTime, lastAccessedTime, maxInactiveInterval);
+            }
+        };
+
+        SessionModelImpl model = (SessionModelImpl) encoder.decode("{id:\"myId\",ct:1111,ac:2222,mx:3333,vs:4444}",
+                                                                   factory);
+
+        assertEquals("myId", model.getSessionID());
+        assertEquals(1111, model.getCreationTime());
+        assertEquals(2222, model.getLastAccessedTime());
+        assertEquals(3333, model.getMaxInactiveInterval());
+        assertEquals(4444, model.getVersion());
+
+        // 兼容没有版本的格式
+        model = (SessionModelImpl) encoder.decode("{id:\"myId\",ct:1111,ac:2222,mx:3333}", factory);
+
+        assertEquals(3333, model.getMaxInactiveInterval());
+        assertEquals(0, model.getVersion());
+    }
 }
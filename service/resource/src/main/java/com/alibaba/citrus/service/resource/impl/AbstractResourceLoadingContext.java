@@ -47,12 +47,13 @@ abstract class AbstractResourceLoadingContext<R> implements ResourceMatchResult
     private final static Set<ResourceLoadingOption> EMPTY_OPTIONS = emptySet();
 
     // 不变量
-    protected final Logger                     log;
-    protected final ResourceLoadingService     parent;
-    private final   String                     originalResourceName;
-    private final   Set<ResourceLoadingOption> originalOptions;
-    private final   ResourceMapping[]          mappings;
-    private final   BestResourcesMatcher       resourcesMatcher;
+    protected final Logger                                log;
+    protected final ResourceLoadingService                parent;
+    private final   String                                originalResourceName;
+    private final   Set<ResourceLoadingOption>            originalOptions;
+    private final   ResourcePatternIndex<ResourceMapping> mappings;
+    private final   ResourceResolutionCache               resolutionCache;
+    private final   BestResourcesMatcher                  resourcesMatcher;
 
     // 变量
     private   List<ResourceMapping>      visitedMappings;
@@ -64,12 +65,27 @@ abstract class AbstractResourceLoadingContext<R> implements ResourceMatchResult
     /** 创建一个context。 */
     public AbstractResourceLoadingContext(String resourceName, Set<ResourceLoadingOption> options,
                                           ResourceMapping[] mappings, ResourceLoadingService parent, Logger log) {
+        this(resourceName, options, new ResourcePatternIndex<ResourceMapping>(assertNotNull(mappings, "mappings")),
+             null, parent, log);
+    }
+
+    /**
+     * 创建一个context。
+     *
+     * @param mappings        mappings的索引
+     * @param resolutionCache 缓存资源名的匹配结果，如果为<code>null</code>，则不缓存
+     */
+    public AbstractResourceLoadingContext(String resourceName, Set<ResourceLoadingOption> options,
+                                          ResourcePatternIndex<ResourceMapping> mappings,
+                                          ResourceResolutionCache resolutionCache, ResourceLoadingService parent,
+                                          Logger log) {
         // 不变量
         this.log = assertNotNull(log, "logger");
         this.parent = parent;
         this.originalResourceName = normalizeAbsolutePath(assertNotNull(trimToNull(resourceName), "resourceName"));
         this.originalOptions = defaultIfNull(options, EMPTY_OPTIONS);
         this.mappings = assertNotNull(mappings, "mappings");
+        this.resolutionCache = resolutionCache;
         this.resourcesMatcher = new BestResourcesMatcher();
 
         // 变量
@@ -191,8 +207,55 @@ abstract class AbstractResourceLoadingContext<R> implements ResourceMatchResult
         return resource;
     }
 
-    /** 查找最佳匹配的&lt;resource&gt;或&lt;resource-alias&gt;。 */
+    /**
+     * 查找最佳匹配的&lt;resource&gt;或&lt;resource-alias&gt;。
+     * <p>
+     * 从头开始的匹配（即尚未访问过任何mapping），其结果只取决于资源名，可以被缓存。
+     * </p>
+     */
     private boolean findBestMatch() throws ResourceNotFoundException {
+        if (resolutionCache == null || !visitedMappings.isEmpty()) {
+            return doFindBestMatch();
+        }
+
+        String name = resourceName;
+        ResourceResolutionCache.Resolution resolution = resolutionCache.get(name);
+
+        if (resolution == null) {
+            boolean matched = doFindBestMatch();
+
+            if (matched) {
+                resolution = new ResourceResolutionCache.Resolution(resourceName, visitedMappings,
+                                                                    lastSubstitution.getMatch());
+            } else {
+                resolution = new ResourceResolutionCache.Resolution();
+            }
+
+            resolutionCache.put(name, resolution);
+
+            return matched;
+        }
+
+        if (!resolution.isMatched()) {
+            return false;
+        }
+
+        log.trace("Resource \"{}\" matched cached pattern: \"{}\"", name,
+                  resolution.getLastMatchedMapping().getPatternName());
+
+        for (ResourceMapping mapping : resolution.getVisitedMappings()) {
+            visitMapping(mapping);
+            visitedMappings.add(mapping);
+        }
+
+        resourceName = resolution.getResourceName();
+        lastMatchedPattern = resolution.getLastMatchedMapping();
+        lastSubstitution = new MatchResultSubstitution(resolution.getMatchResult());
+
+        return true;
+    }
+
+    private boolean doFindBestMatch() throws ResourceNotFoundException {
         if (resourcesMatcher.matches(resourceName)) {
             ResourceMapping resourceMapping = resourcesMatcher.bestMatchPettern;
 
@@ -218,7 +281,7 @@ abstract class AbstractResourceLoadingContext<R> implements ResourceMatchResult
                 resourceName = newResourceName;
 
                 // 递归匹配alias
-                findBestMatch();
+                doFindBestMatch();
 
                 // 情形1. findBestMatch()==false, 匹配了一个alias，但没找到可继续匹配项，则返回最后匹配的alias。
                 // 情形2. findBestMatch()==true, 匹配了一个alias，并递归找到了经过替换后的新匹配项，则返回最终的匹配。
@@ -292,6 +355,9 @@ abstract class AbstractResourceLoadingContext<R> implements ResourceMatchResult
      * <p>
      * 算法：先按pattern相关度排序，再按匹配长度排序。
      * </p>
+     * <p>
+     * <code>nextPattern()</code>须按相关度从高到低返回patterns，这样，一旦pattern的相关度低于已有的匹配，就可以结束查找。
+     * </p>
      */
     protected static abstract class BestMatcher<P extends ResourcePattern> {
         protected String      resourceName;
@@ -317,6 +383,11 @@ abstract class AbstractResourceLoadingContext<R> implements ResourceMatchResult
             init();
 
             for (P pattern = nextPattern(); pattern != null; pattern = nextPattern()) {
+                // 余下的patterns不可能比已有的匹配更相关
+                if (pattern.getRelevancy() < bestMatchRelevancy) {
+                    break;
+                }
+
                 Matcher matcher = pattern.getPattern().matcher(resourceName);
 
                 if (matcher.find() && accept(pattern)) {
@@ -338,18 +409,20 @@ abstract class AbstractResourceLoadingContext<R> implements ResourceMatchResult
 
     /** 找出最匹配的&lt;resource&gt;或&lt;resource-alias&gt;。 */
     private class BestResourcesMatcher extends BestMatcher<ResourceMapping> {
-        private int i;
+        private int[] candidates;
+        private int   i;
 
         @Override
         protected void init() {
+            this.candidates = mappings.getCandidates(resourceName);
             this.i = 0;
             assertNotNull(visitedMappings, "visitedMappings");
         }
 
         @Override
         protected ResourceMapping nextPattern() {
-            if (i < mappings.length) {
-                return mappings[i++];
+            if (i < candidates.length) {
+                return mappings.getPattern(candidates[i++]);
             } else {
                 return null;
             }
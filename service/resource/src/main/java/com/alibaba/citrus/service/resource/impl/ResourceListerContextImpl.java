@@ -38,6 +38,13 @@ public class ResourceListerContextImpl extends AbstractResourceLoadingContext<St
         super(resourceName, options, mappings, parent, log);
     }
 
+    /** 创建一个context，使用预先建立的索引及缓存。 */
+    ResourceListerContextImpl(String resourceName, Set<ResourceLoadingOption> options,
+                              ResourcePatternIndex<ResourceMapping> mappings, ResourceResolutionCache resolutionCache,
+                              ResourceLoadingService parent, Logger log) {
+        super(resourceName, options, mappings, resolutionCache, parent, log);
+    }
+
     /** 开始一个查找过程。 */
     public String[] list() throws ResourceNotFoundException {
         return doLoad(resourceName, options);
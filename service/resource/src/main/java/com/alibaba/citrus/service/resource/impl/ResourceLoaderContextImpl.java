@@ -43,10 +43,10 @@ import org.slf4j.Logger;
 class ResourceLoaderContextImpl extends AbstractResourceLoadingContext<Resource> implements ResourceLoaderContext,
                                                                                             ResourceFilterChain {
     // 不变量
-    private final String                  configLocation;
-    private final String                  beanName;
-    private final ResourceFilterMapping[] filterMappings;
-    private final BestFiltersMatcher      filtersMatcher;
+    private final String                                      configLocation;
+    private final String                                      beanName;
+    private final ResourcePatternIndex<ResourceFilterMapping> filterMappings;
+    private final BestFiltersMatcher                          filtersMatcher;
 
     // 变量
     private List<ResourceTraceElement> trace;
@@ -55,7 +55,19 @@ class ResourceLoaderContextImpl extends AbstractResourceLoadingContext<Resource>
     public ResourceLoaderContextImpl(String resourceName, Set<ResourceLoadingOption> options,
                                      ResourceFilterMapping[] filterMappings, ResourceMapping[] mappings,
                                      ResourceLoadingService parent, Logger log, String configLocation, String beanName) {
-        super(resourceName, options, mappings, parent, log);
+        this(resourceName, options, new ResourcePatternIndex<ResourceFilterMapping>(assertNotNull(filterMappings,
+                                                                                                  "filterMappings")),
+             new ResourcePatternIndex<ResourceMapping>(assertNotNull(mappings, "mappings")), null, parent, log,
+             configLocation, beanName);
+    }
+
+    /** 创建一个context，使用预先建立的索引及缓存。 */
+    public ResourceLoaderContextImpl(String resourceName, Set<ResourceLoadingOption> options,
+                                     ResourcePatternIndex<ResourceFilterMapping> filterMappings,
+                                     ResourcePatternIndex<ResourceMapping> mappings,
+                                     ResourceResolutionCache resolutionCache, ResourceLoadingService parent,
+                                     Logger log, String configLocation, String beanName) {
+        super(resourceName, options, mappings, resolutionCache, parent, log);
 
         this.configLocation = configLocation;
         this.beanName = beanName;
@@ -155,17 +167,19 @@ class ResourceLoaderContextImpl extends AbstractResourceLoadingContext<Resource>
 
     /** 找出最匹配的&lt;resource-filters&gt;。 */
     private class BestFiltersMatcher extends BestMatcher<ResourceFilterMapping> {
-        private int i;
+        private int[] candidates;
+        private int   i;
 
         @Override
         protected void init() {
+            this.candidates = filterMappings.getCandidates(resourceName);
             this.i = 0;
         }
 
         @Override
         protected ResourceFilterMapping nextPattern() {
-            if (i < filterMappings.length) {
-                return filterMappings[i++];
+            if (i < candidates.length) {
+                return filterMappings.getPattern(candidates[i++]);
             } else {
                 return null;
             }
@@ -54,6 +54,7 @@ public class ResourceLoadingServiceDefinitionParser extends
     @Override
     protected void doParse(Element element, ParserContext parserContext, BeanDefinitionBuilder builder) {
         parseBeanDefinitionAttributes(element, parserContext, builder);
+        attributesToProperties(element, builder, "resolutionCacheSize");
 
         URL configFileURL;
 
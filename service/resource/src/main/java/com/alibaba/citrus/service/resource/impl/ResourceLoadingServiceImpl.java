@@ -20,6 +20,7 @@ package com.alibaba.citrus.service.resource.impl;
 import static com.alibaba.citrus.util.ArrayUtil.*;
 import static com.alibaba.citrus.util.Assert.*;
 import static com.alibaba.citrus.util.CollectionUtil.*;
+import static com.alibaba.citrus.util.ObjectUtil.*;
 
 import java.io.File;
 import java.io.IOException;
@@ -47,14 +48,20 @@ import org.springframework.context.ApplicationContextAware;
  */
 public class ResourceLoadingServiceImpl extends AbstractService<ResourceLoadingService> implements
                                                                                         ResourceLoadingService, ApplicationContextAware {
-    public final static  String     DEFAULT_NAME         = "resourceLoadingService";
-    private final static Resource[] EMPTY_RESOURCE_ARRAY = new Resource[0];
+    public final static  String     DEFAULT_NAME                  = "resourceLoadingService";
+    public final static  int        DEFAULT_RESOLUTION_CACHE_SIZE = 1024;
+    private final static Resource[] EMPTY_RESOURCE_ARRAY          = new Resource[0];
 
     private ApplicationContext      factory;
     private ResourceLoadingService  parent;
     private ResourceMapping[]       resourceMappings;
     private ResourceFilterMapping[] filterMappings;
     private String                  configLocation;
+    private Integer                 resolutionCacheSize;
+
+    private ResourcePatternIndex<ResourceMapping>       resourceMappingIndex;
+    private ResourcePatternIndex<ResourceFilterMapping> filterMappingIndex;
+    private ResourceResolutionCache                     resolutionCache;
 
     public void setApplicationContext(ApplicationContext factory) throws BeansException {
         this.factory = factory;
@@ -80,6 +87,11 @@ public class ResourceLoadingServiceImpl extends AbstractService<ResourceLoadingS
         this.configLocation = configLocation.toExternalForm();
     }
 
+    /** 设置缓存资源名匹配结果的最大项数，<code>0</code>表示不缓存。 */
+    public void setResolutionCacheSize(int resolutionCacheSize) {
+        this.resolutionCacheSize = resolutionCacheSize;
+    }
+
     @Override
     protected void init() {
         assertNotNull(factory, "beanFactory");
@@ -113,6 +125,19 @@ public class ResourceLoadingServiceImpl extends AbstractService<ResourceLoadingS
         for (ResourceFilterMapping mapping : filterMappings) {
             mapping.init(this);
         }
+
+        // 建立patterns的索引
+        resourceMappingIndex = new ResourcePatternIndex<ResourceMapping>(resourceMappings);
+        filterMappingIndex = new ResourcePatternIndex<ResourceFilterMapping>(filterMappings);
+
+        // 缓存资源名的匹配结果
+        resolutionCacheSize = defaultIfNull(resolutionCacheSize, DEFAULT_RESOLUTION_CACHE_SIZE);
+
+        assertTrue(resolutionCacheSize >= 0, "resolutionCacheSize must be >= 0: %d", resolutionCacheSize);
+
+        if (resolutionCacheSize > 0) {
+            resolutionCache = new ResourceResolutionCache(resolutionCacheSize);
+        }
     }
 
     /** 查找指定名称的资源。 */
@@ -155,8 +180,9 @@ public class ResourceLoadingServiceImpl extends AbstractService<ResourceLoadingS
     public Resource getResource(String resourceName, Set<ResourceLoadingOption> options)
             throws ResourceNotFoundException {
         assertInitialized();
-        return new ResourceLoaderContextImpl(resourceName, options, filterMappings, resourceMappings, getParent(),
-                                             getLogger(), configLocation, getBeanName()).getResource();
+        return new ResourceLoaderContextImpl(resourceName, options, filterMappingIndex, resourceMappingIndex,
+                                             resolutionCache, getParent(), getLogger(), configLocation, getBeanName())
+                .getResource();
     }
 
     /** 判断指定名称的资源是否存在。如果存在，则返回<code>true</code>。 */
@@ -177,8 +203,10 @@ public class ResourceLoadingServiceImpl extends AbstractService<ResourceLoadingS
     /** 跟踪并获取搜索资源的路径。 */
     public ResourceTrace trace(String resourceName, Set<ResourceLoadingOption> options) {
         assertInitialized();
-        return new ResourceLoaderContextImpl(resourceName, options, filterMappings, resourceMappings, getParent(),
-                                             getLogger(), configLocation, getBeanName()).getTrace();
+
+        // trace须记录每一步匹配时的资源名，故不使用缓存
+        return new ResourceLoaderContextImpl(resourceName, options, filterMappingIndex, resourceMappingIndex, null,
+                                             getParent(), getLogger(), configLocation, getBeanName()).getTrace();
     }
 
     /** 罗列出指定资源的子目录或文件名。如果不存在，则返回空数组。 */
@@ -189,7 +217,8 @@ public class ResourceLoadingServiceImpl extends AbstractService<ResourceLoadingS
     /** 罗列出指定资源的子目录或文件名。如果不存在，则返回空数组。 */
     public String[] list(String resourceName, Set<ResourceLoadingOption> options) throws ResourceNotFoundException {
         assertInitialized();
-        return new ResourceListerContextImpl(resourceName, options, resourceMappings, getParent(), getLogger()).list();
+        return new ResourceListerContextImpl(resourceName, options, resourceMappingIndex, resolutionCache, getParent(),
+                                             getLogger()).list();
     }
 
     /** 罗列出指定资源的子目录或文件资源。如果不存在，则返回空数组。 */
@@ -247,6 +276,7 @@ public class ResourceLoadingServiceImpl extends AbstractService<ResourceLoadingS
         mb.append("configLocation", configLocation);
         mb.append("resourceMappings", resourceMappings);
         mb.append("filterMappings", filterMappings);
+        mb.append("resolutionCacheSize", resolutionCacheSize);
 
         if (parent != null) {
             mb.append("parent", parent);
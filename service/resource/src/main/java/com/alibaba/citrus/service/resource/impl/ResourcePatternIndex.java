@@ -0,0 +1,167 @@
+/*
+ * Copyright (c) 2002-2012 Alibaba Group Holding Limited.
+ * All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.alibaba.citrus.service.resource.impl;
+
+import static com.alibaba.citrus.util.Assert.*;
+import static com.alibaba.citrus.util.regex.PathNameWildcardCompiler.*;
+
+import java.util.Arrays;
+import java.util.Comparator;
+
+import com.alibaba.citrus.util.internal.PrefixTree;
+
+/**
+ * 对一组<code>ResourcePattern</code>建立的索引，用来快速排除那些不可能匹配的patterns。
+ * <ul>
+ * <li>绝对路径的pattern（以<code>/</code>开始），取第一个通配符之前的字面前缀，建立前缀树。</li>
+ * <li>相对路径的pattern，取其中最长的一段字面字符串，只有当资源名包含该字符串时，才可能匹配。</li>
+ * </ul>
+ * <p>
+ * 返回的候选patterns按相关度从高到低排列，相关度相同的patterns保持其原有的顺序。
+ * </p>
+ *
+ * @author Michael Zhou
+ */
+class ResourcePatternIndex<P extends ResourcePattern> {
+    private final P[]        patterns;
+    private final int[]      order;
+    private final String[]   literals;
+    private final boolean[]  prefixed;
+    private final PrefixTree prefixTree = new PrefixTree();
+
+    public ResourcePatternIndex(P[] patterns) {
+        this.patterns = assertNotNull(patterns, "patterns");
+        this.literals = new String[patterns.length];
+        this.prefixed = new boolean[patterns.length];
+
+        // 按相关度从高到低排序，排序是稳定的。
+        Integer[] sorted = new Integer[patterns.length];
+
+        for (int i = 0; i < patterns.length; i++) {
+            sorted[i] = i;
+        }
+
+        Arrays.sort(sorted, new Comparator<Integer>() {
+            public int compare(Integer i1, Integer i2) {
+                return ResourcePatternIndex.this.patterns[i2].getRelevancy()
+                       - ResourcePatternIndex.this.patterns[i1].getRelevancy();
+            }
+        });
+
+        this.order = new int[patterns.length];
+
+        for (int i = 0; i < patterns.length; i++) {
+            order[i] = sorted[i];
+        }
+
+        // 分析patterns
+        for (int i = 0; i < patterns.length; i++) {
+            String patternName = normalizePathName(patterns[i].getPatternName());
+
+            if (patternName.startsWith("/")) {
+                String prefix = getLiteralPrefix(patternName);
+
+                if (prefix.length() > 1) {
+                    prefixTree.add(prefix, i);
+                    prefixed[i] = true;
+                }
+            } else {
+                literals[i] = getRequiredLiteral(patternName);
+            }
+        }
+    }
+
+    public P[] getPatterns() {
+        return patterns;
+    }
+
+    public P getPattern(int index) {
+        return patterns[index];
+    }
+
+    /** 取得可能和资源名匹配的patterns的序号，按相关度从高到低排列。 */
+    public int[] getCandidates(String resourceName) {
+        boolean[] candidates = new boolean[patterns.length];
+        int count = 0;
+
+        for (int i = 0; i < patterns.length; i++) {
+            if (!prefixed[i] && (literals[i] == null || resourceName.indexOf(literals[i]) >= 0)) {
+                candidates[i] = true;
+                count++;
+            }
+        }
+
+        count += prefixTree.mark(resourceName, candidates);
+
+        int[] result = new int[count];
+
+        for (int i = 0, j = 0; i < order.length; i++) {
+            if (candidates[order[i]]) {
+                result[j++] = order[i];
+            }
+        }
+
+        return result;
+    }
+
+    /** 取得绝对路径pattern中，第一个通配符之前的字面前缀。 */
+    static String getLiteralPrefix(String patternName) {
+        int index = indexOfWildcard(patternName, 0);
+
+        return index < 0 ? patternName : patternName.substring(0, index);
+    }
+
+    /** 取得相对路径pattern中，最长的一段字面字符串。如果不存在，则返回<code>null</code>。 */
+    static String getRequiredLiteral(String patternName) {
+        String longest = null;
+
+        for (int start = 0; start < patternName.length(); ) {
+            int end = indexOfWildcard(patternName, start);
+
+            if (end < 0) {
+                end = patternName.length();
+            }
+
+            String literal = patternName.substring(start, end);
+
+            // “**/”中的“/”可以匹配空字符串
+            if (start >= 2 && patternName.startsWith("**", start - 2) && literal.startsWith("/")) {
+                literal = literal.substring(1);
+            }
+
+            if (longest == null || literal.length() > longest.length()) {
+                longest = literal;
+            }
+
+            start = end + 1;
+        }
+
+        return longest == null || longest.length() == 0 ? null : longest;
+    }
+
+    private static int indexOfWildcard(String patternName, int start) {
+        for (int i = start; i < patternName.length(); i++) {
+            char c = patternName.charAt(i);
+
+            if (c == '*' || c == '?') {
+                return i;
+            }
+        }
+
+        return -1;
+    }
+}
@@ -0,0 +1,123 @@
+/*
+ * Copyright (c) 2002-2012 Alibaba Group Holding Limited.
+ * All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.alibaba.citrus.service.resource.impl;
+
+import static com.alibaba.citrus.util.Assert.*;
+
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.regex.MatchResult;
+import java.util.regex.Matcher;
+
+/**
+ * 缓存资源名的匹配结果：从资源名开始，经过所有的&lt;resource-alias&gt;，直到最终匹配的&lt;resource&gt;。
+ * <p>
+ * 匹配的结果只取决于资源名和配置，而配置在service的生命周期中是不变的（重新装载配置时，会创建新的service及缓存），
+ * 所以缓存不需要失效。当缓存的项数超过上限时，清除所有的项，以防止无限增长。
+ * </p>
+ *
+ * @author Michael Zhou
+ */
+class ResourceResolutionCache {
+    private final int                               maxSize;
+    private final ConcurrentMap<String, Resolution> resolutions = new ConcurrentHashMap<String, Resolution>();
+
+    public ResourceResolutionCache(int maxSize) {
+        assertTrue(maxSize > 0, "maxSize must be > 0: %d", maxSize);
+        this.maxSize = maxSize;
+    }
+
+    public int getMaxSize() {
+        return maxSize;
+    }
+
+    public int size() {
+        return resolutions.size();
+    }
+
+    public Resolution get(String resourceName) {
+        return resolutions.get(resourceName);
+    }
+
+    public void put(String resourceName, Resolution resolution) {
+        if (resolutions.size() >= maxSize) {
+            resolutions.clear();
+        }
+
+        resolutions.put(resourceName, resolution);
+    }
+
+    public void clear() {
+        resolutions.clear();
+    }
+
+    /** 代表一个资源名的匹配结果。 */
+    static class Resolution {
+        private final String            resourceName;
+        private final ResourceMapping[] visitedMappings;
+        private final MatchResult       matchResult;
+
+        /** 创建一个不匹配任何mapping的结果。 */
+        public Resolution() {
+            this(null, new ResourceMapping[0], null);
+        }
+
+        /**
+         * 创建一个匹配结果。
+         *
+         * @param resourceName    经过alias替换后的最终资源名
+         * @param visitedMappings 依次被匹配的aliases及最终的mapping
+         * @param matchResult     最终的mapping的匹配结果
+         */
+        public Resolution(String resourceName, List<ResourceMapping> visitedMappings, MatchResult matchResult) {
+            this(resourceName, visitedMappings.toArray(new ResourceMapping[visitedMappings.size()]), matchResult);
+        }
+
+        private Resolution(String resourceName, ResourceMapping[] visitedMappings, MatchResult matchResult) {
+            this.resourceName = resourceName;
+            this.visitedMappings = visitedMappings;
+
+            // Matcher是可变的，保存其不可变的快照。
+            if (matchResult instanceof Matcher) {
+                matchResult = ((Matcher) matchResult).toMatchResult();
+            }
+
+            this.matchResult = matchResult;
+        }
+
+        public boolean isMatched() {
+            return visitedMappings.length > 0;
+        }
+
+        public String getResourceName() {
+            return resourceName;
+        }
+
+        public ResourceMapping[] getVisitedMappings() {
+            return visitedMappings;
+        }
+
+        public ResourceMapping getLastMatchedMapping() {
+            return visitedMappings[visitedMappings.length - 1];
+        }
+
+        public MatchResult getMatchResult() {
+            return matchResult;
+        }
+    }
+}
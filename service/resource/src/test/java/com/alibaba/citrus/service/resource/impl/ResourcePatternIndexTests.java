@@ -0,0 +1,112 @@
+/*
+ * Copyright (c) 2002-2012 Alibaba Group Holding Limited.
+ * All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.alibaba.citrus.service.resource.impl;
+
+import static com.alibaba.citrus.service.resource.impl.ResourcePatternIndex.*;
+import static org.junit.Assert.*;
+
+import java.util.Random;
+
+import org.junit.Test;
+
+public class ResourcePatternIndexTests {
+    @Test
+    public void literalPrefix() {
+        assertEquals("/", getLiteralPrefix("/"));
+        assertEquals("/abc/def.vm", getLiteralPrefix("/abc/def.vm"));
+        assertEquals("/abc/", getLiteralPrefix("/abc/*.vm"));
+        assertEquals("/abc/", getLiteralPrefix("/abc/**/def"));
+        assertEquals("/ab", getLiteralPrefix("/ab?/def"));
+    }
+
+    @Test
+    public void requiredLiteral() {
+        assertEquals("abc/def.vm", getRequiredLiteral("abc/def.vm"));
+        assertEquals("def.vm", getRequiredLiteral("abc/**/def.vm"));
+        assertEquals("abc/", getRequiredLiteral("abc/*/x"));
+        assertEquals(".vm", getRequiredLiteral("*.vm"));
+
+        assertNull(getRequiredLiteral(""));
+        assertNull(getRequiredLiteral("*"));
+        assertNull(getRequiredLiteral("**/*"));
+    }
+
+    @Test
+    public void candidates_orderedByRelevancy() {
+        ResourcePatternIndex<ResourceMapping> index = createIndex("/", "/abc/**", "/abc/def/**", "/xyz", "*.vm",
+                                                                  "def", "/abc/*.vm");
+
+        assertArrayEquals(new int[] { 2, 6, 1, 4, 5, 0 }, index.getCandidates("/abc/def/ghi.vm"));
+        assertArrayEquals(new int[] { 3, 0 }, index.getCandidates("/xyz/abc"));
+        assertArrayEquals(new int[] { 0 }, index.getCandidates("/ab"));
+    }
+
+    @Test
+    public void candidates_consistentWithMatching() {
+        String[] patterns = { "/", "/abc", "/abc/**", "/abc/*.vm", "/abc/**/def/*", "/a?c/def", "abc", "def/*.vm",
+                              "**/def", "*.vm", "/x/**/y", "?bc", "/abc/def/" };
+        ResourcePatternIndex<ResourceMapping> index = createIndex(patterns);
+        Random random = new Random(20121017);
+        String[] parts = { "/", "/", "abc", "def", "a", "b", "c", "x", "y", ".vm", "_", "-" };
+
+        for (int n = 0; n < 5000; n++) {
+            StringBuilder buf = new StringBuilder("/");
+            int count = random.nextInt(7);
+
+            for (int i = 0; i < count; i++) {
+                buf.append(parts[random.nextInt(parts.length)]);
+            }
+
+            String name = buf.toString().replaceAll("/+", "/");
+            boolean[] candidates = new boolean[patterns.length];
+            int lastRelevancy = Integer.MAX_VALUE;
+
+            for (int i : index.getCandidates(name)) {
+                candidates[i] = true;
+
+                int relevancy = index.getPattern(i).getRelevancy();
+
+                assertTrue(relevancy <= lastRelevancy);
+                lastRelevancy = relevancy;
+            }
+
+            for (int i = 0; i < patterns.length; i++) {
+                if (!candidates[i]) {
+                    assertFalse(patterns[i] + " should not match " + name,
+                                index.getPattern(i).getPattern().matcher(name).find());
+                }
+            }
+        }
+    }
+
+    private ResourcePatternIndex<ResourceMapping> createIndex(String... patternNames) {
+        ResourceMapping[] mappings = new ResourceMapping[patternNames.length];
+        ResourceLoadingServiceImpl service = new ResourceLoadingServiceImpl();
+
+        for (int i = 0; i < patternNames.length; i++) {
+            ResourceAlias alias = new ResourceAlias();
+
+            alias.setPatternName(patternNames[i]);
+            alias.setName("/target");
+            alias.init(service);
+
+            mappings[i] = alias;
+        }
+
+        return new ResourcePatternIndex<ResourceMapping>(mappings);
+    }
+}
@@ -81,7 +81,7 @@ public class TemplateServiceDefinitionParser extends AbstractNamedBeanDefinition
         builder.addPropertyValue("engineNameMappings", mappings);
 
         attributesToProperties(element, builder, "defaultExtension", "searchExtensions", "searchLocalizedTemplates",
-                               "cacheEnabled");
+                               "cacheEnabled", "cacheSize", "precompileTemplates", "precompileThreads");
     }
 
     @Override
@@ -20,14 +20,23 @@ package com.alibaba.citrus.service.template.impl;
 import static com.alibaba.citrus.util.Assert.*;
 import static com.alibaba.citrus.util.CollectionUtil.*;
 import static com.alibaba.citrus.util.FileUtil.*;
+import static com.alibaba.citrus.util.ObjectUtil.*;
 import static com.alibaba.citrus.util.StringUtil.*;
 
 import java.io.IOException;
 import java.io.OutputStream;
 import java.io.Writer;
+import java.util.Collections;
+import java.util.Comparator;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import com.alibaba.citrus.service.AbstractService;
 import com.alibaba.citrus.service.configuration.ProductionModeAware;
@@ -36,6 +45,13 @@ import com.alibaba.citrus.service.template.TemplateEngine;
 import com.alibaba.citrus.service.template.TemplateException;
 import com.alibaba.citrus.service.template.TemplateNotFoundException;
 import com.alibaba.citrus.service.template.TemplateService;
+import com.alibaba.citrus.service.template.support.TemplateChangeListener;
+import com.alibaba.citrus.service.template.support.TemplateChangeSource;
+import com.alibaba.citrus.service.template.support.TemplatePrecompiler;
+import com.alibaba.citrus.util.ToStringBuilder.MapBuilder;
+import com.alibaba.citrus.util.collection.BoundedCache;
+import org.springframework.context.ApplicationContext;
+import org.springframework.context.ApplicationContextAware;
 
 /**
  * 实现<code>TemplateService</code>。
@@ -43,7 +59,11 @@ import com.alibaba.citrus.service.template.TemplateService;
  * @author Michael Zhou
  */
 public class TemplateServiceImpl extends AbstractService<TemplateService> implements TemplateService,
-                                                                                     ProductionModeAware {
+                                                                                     ProductionModeAware,
+                                                                                     ApplicationContextAware {
+    private final static int DEFAULT_CACHE_SIZE           = 1024;
+    private final static int PRECOMPILE_SUMMARY_MAX_ITEMS = 10;
+
     private Map<String, TemplateEngine> engines; // engineName -> engine
     private Map<String, TemplateEngine> engineMappings; // ext -> engine
     private Map<String, String>         engineNameMappings; // ext -> engineName
@@ -52,8 +72,13 @@ public class TemplateServiceImpl extends AbstractService<TemplateService> implem
     private boolean                     searchLocalizedTemplates;
     private TemplateSearchingStrategy[] strategies;
     private Boolean                     cacheEnabled;
+    private Integer                     cacheSize;
     private boolean productionMode = true;
-    private Map<TemplateKey, TemplateMatchResult> matchedTemplates;
+    private BoundedCache<TemplateKey, TemplateMatchResult> matchedTemplates;
+    private ApplicationContext factory;
+    private boolean precompileTemplates;
+    private Integer precompileThreads;
+    private Map<String, Long> precompiledTemplates = Collections.emptyMap();
 
     public void setEngines(Map<String, TemplateEngine> engines) {
         this.engines = engines;
@@ -83,6 +108,26 @@ public class TemplateServiceImpl extends AbstractService<TemplateService> implem
         this.cacheEnabled = cacheEnabled;
     }
 
+    /** 设置cache的最大项数，超出时，最少被访问的项将被清除。 */
+    public void setCacheSize(int cacheSize) {
+        this.cacheSize = cacheSize;
+    }
+
+    /** 是否在初始化时预编译所有模板。默认为<code>false</code>。 */
+    public void setPrecompileTemplates(boolean precompileTemplates) {
+        this.precompileTemplates = precompileTemplates;
+    }
+
+    /** 设置预编译模板的线程数。默认为CPU的个数。 */
+    public void setPrecompileThreads(int precompileThreads) {
+        this.precompileThreads = precompileThreads;
+    }
+
+    /** 取得预编译的模板名及其编译时间（毫秒），按编译时间从长到短排列。 */
+    public Map<String, Long> getPrecompiledTemplates() {
+        return precompiledTemplates;
+    }
+
     public boolean isProductionMode() {
         return productionMode;
     }
@@ -91,6 +136,10 @@ public class TemplateServiceImpl extends AbstractService<TemplateService> implem
         this.productionMode = productionMode;
     }
 
+    public void setApplicationContext(ApplicationContext factory) {
+        this.factory = factory;
+    }
+
     /** 初始化service。 */
     @Override
     protected void init() {
@@ -106,8 +155,27 @@ public class TemplateServiceImpl extends AbstractService<TemplateService> implem
             cacheEnabled = productionMode; // 如果未指定cacheEnabled，则默认当productionMode时，打开cache。
         }
 
+        cacheSize = defaultIfNull(cacheSize, DEFAULT_CACHE_SIZE);
+        assertTrue(cacheSize > 0, "cacheSize must be > 0: %d", cacheSize);
+
         if (cacheEnabled) {
-            matchedTemplates = createConcurrentHashMap();
+            matchedTemplates = new BoundedCache<TemplateKey, TemplateMatchResult>(cacheSize);
+            matchedTemplates.registerMBean(factory, "TemplateService."
+                                                    + defaultIfNull(getBeanName(), Integer.toHexString(System.identityHashCode(this))));
+
+            // 假如engine监视模板的改变，则在模板被添加或删除时，清除查找结果
+            for (TemplateEngine engine : engines.values()) {
+                if (engine instanceof TemplateChangeSource) {
+                    ((TemplateChangeSource) engine).addTemplateChangeListener(new TemplateChangeListener() {
+                        public void templateChanged(String templateName) {
+                        }
+
+                        public void templatesAddedOrRemoved() {
+                            matchedTemplates.clear();
+                        }
+                    });
+                }
+            }
         }
 
         Set<String> remappedNames = createHashSet();
@@ -170,6 +238,123 @@ public class TemplateServiceImpl extends AbstractService<TemplateService> implem
         }
 
         strategies = strategyList.toArray(new TemplateSearchingStrategy[strategyList.size()]);
+
+        // 预编译模板，以免第一个请求承担解析模板的开销
+        precompileThreads = defaultIfNull(precompileThreads, Runtime.getRuntime().availableProcessors());
+        assertTrue(precompileThreads > 0, "precompileThreads must be > 0: %d", precompileThreads);
+
+        if (precompileTemplates) {
+            precompileTemplates();
+        }
+    }
+
+    /** 用多个线程并行地预编译所有engine中的模板，并报告每个模板的编译时间。 */
+    private void precompileTemplates() {
+        final Map<String, Long> times = createConcurrentHashMap();
+        final List<String> failedTemplates = new CopyOnWriteArrayList<String>();
+        List<Callable<Object>> tasks = createLinkedList();
+
+        for (Map.Entry<String, TemplateEngine> entry : engines.entrySet()) {
+            TemplateEngine engine = entry.getValue();
+
+            if (!(engine instanceof TemplatePrecompiler)) {
+                getLogger().debug("Template Engine {} does not support precompiling, skipped", entry.getKey());
+                continue;
+            }
+
+            final TemplatePrecompiler precompiler = (TemplatePrecompiler) engine;
+
+            for (final String templateName : precompiler.getTemplateNames()) {
+                // 只预编译被映射到当前engine的模板
+                if (getTemplateEngine(normalizeExtension(getExtension(templateName))) != engine) {
+                    continue;
+                }
+
+                tasks.add(new Callable<Object>() {
+                    public Object call() {
+                        long start = System.nanoTime();
+
+                        try {
+                            precompiler.precompileTemplate(templateName);
+                            times.put(templateName, (System.nanoTime() - start) / 1000000);
+                        } catch (Exception e) {
+                            failedTemplates.add(templateName);
+                            getLogger().warn("Failed to precompile template: " + templateName, e);
+                        }
+
+                        return null;
+                    }
+                });
+            }
+        }
+
+        if (tasks.isEmpty()) {
+            getLogger().info("No templates to precompile for TemplateService: id={}", getBeanName());
+            return;
+        }
+
+        int threads = Math.min(precompileThreads, tasks.size());
+        ExecutorService executor = Executors.newFixedThreadPool(threads, new ThreadFactory() {
+            private final AtomicInteger count = new AtomicInteger();
+
+            public Thread newThread(Runnable r) {
+                Thread thread = new Thread(r, "TemplatePrecompiler-" + getBeanName() + "-" + count.getAndIncrement());
+                thread.setDaemon(true);
+                return thread;
+            }
+        });
+
+        long start = System.currentTimeMillis();
+
+        try {
+            executor.invokeAll(tasks);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            getLogger().warn("Interrupted while precompiling templates for TemplateService: id={}", getBeanName());
+        } finally {
+            executor.shutdownNow();
+        }
+
+        long duration = System.currentTimeMillis() - start;
+
+        // 按编译时间从长到短排序
+        List<Map.Entry<String, Long>> entries = createArrayList(times.entrySet());
+
+        Collections.sort(entries, new Comparator<Map.Entry<String, Long>>() {
+            public int compare(Map.Entry<String, Long> e1, Map.Entry<String, Long> e2) {
+                int result = e2.getValue().compareTo(e1.getValue());
+                return result != 0 ? result : e1.getKey().compareTo(e2.getKey());
+            }
+        });
+
+        Map<String, Long> sortedTimes = createLinkedHashMap();
+        MapBuilder slowest = new MapBuilder();
+
+        for (Map.Entry<String, Long> entry : entries) {
+            sortedTimes.put(entry.getKey(), entry.getValue());
+
+            if (sortedTimes.size() <= PRECOMPILE_SUMMARY_MAX_ITEMS) {
+                slowest.append(entry.getKey(), entry.getValue() + "ms");
+            }
+        }
+
+        precompiledTemplates = Collections.unmodifiableMap(sortedTimes);
+
+        getLogger().info("Precompiled {} of {} templates in {}ms using {} threads, slowest templates: {}",
+                         new Object[] { sortedTimes.size(), tasks.size(), duration, threads, slowest });
+
+        if (!failedTemplates.isEmpty()) {
+            getLogger().warn("Failed to precompile {} templates: {}", failedTemplates.size(), failedTemplates);
+        }
+
+        getLogger().debug("Precompiled templates: {}", new MapBuilder().appendAll(sortedTimes));
+    }
+
+    @Override
+    protected void dispose() {
+        if (matchedTemplates != null) {
+            matchedTemplates.unregisterMBean();
+        }
     }
 
     /** 取得指定模板名后缀对应的engine。 */
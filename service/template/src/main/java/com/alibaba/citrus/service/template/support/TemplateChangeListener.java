@@ -0,0 +1,33 @@
+/*
+ * Copyright (c) 2002-2012 Alibaba Group Holding Limited.
+ * All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.alibaba.citrus.service.template.support;
+
+/**
+ * 接收<code>TemplateChangeWatcher</code>所发出的模板改变的通知。
+ * <p>
+ * 通知是在后台线程中发出的，实现必须是线程安全的。
+ * </p>
+ *
+ * @author Michael Zhou
+ */
+public interface TemplateChangeListener {
+    /** 模板文件被修改或删除。 */
+    void templateChanged(String templateName);
+
+    /** 被监视的目录中有文件被添加或删除，此时模板的查找结果可能已经改变。 */
+    void templatesAddedOrRemoved();
+}
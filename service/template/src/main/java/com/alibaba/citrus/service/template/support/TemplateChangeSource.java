@@ -0,0 +1,30 @@
+/*
+ * Copyright (c) 2002-2012 Alibaba Group Holding Limited.
+ * All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.alibaba.citrus.service.template.support;
+
+/**
+ * 由能监视模板改变的<code>TemplateEngine</code>实现。
+ * <p>
+ * <code>TemplateService</code>通过它来得知模板的改变，以便清除模板查找结果的cache。
+ * </p>
+ *
+ * @author Michael Zhou
+ */
+public interface TemplateChangeSource {
+    /** 添加一个listener。如果engine未打开监视功能，则忽略。 */
+    void addTemplateChangeListener(TemplateChangeListener listener);
+}
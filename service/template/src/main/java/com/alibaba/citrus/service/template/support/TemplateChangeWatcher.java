@@ -0,0 +1,209 @@
+/*
+ * Copyright (c) 2002-2012 Alibaba Group Holding Limited.
+ * All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.alibaba.citrus.service.template.support;
+
+import static com.alibaba.citrus.util.Assert.*;
+import static com.alibaba.citrus.util.CollectionUtil.*;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.core.io.Resource;
+
+/**
+ * 在后台线程中监视模板文件的改变，并通知<code>TemplateChangeListener</code>。
+ * <p>
+ * 模板引擎在装载模板时调用{@link #watch(String, Resource)}，只有位于文件系统中的模板（例如通过
+ * <code>FileResourceLoader</code>或<code>WebappResourceLoader</code>装入的模板）才会被监视。
+ * 后台线程每隔<code>checkInterval</code>秒检查一次被监视的文件及其所在的目录，当文件被修改或删除，
+ * 或目录中有文件被添加或删除时，通知listeners。这样，检查模板是否被修改的开销就不再落在请求上。
+ * </p>
+ *
+ * @author Michael Zhou
+ */
+public class TemplateChangeWatcher {
+    private final static Logger log = LoggerFactory.getLogger(TemplateChangeWatcher.class);
+
+    private final String                                  name;
+    private final long                                    checkIntervalMillis;
+    private final ConcurrentMap<String, WatchedFile>      files       = createConcurrentHashMap();
+    private final ConcurrentMap<File, WatchedFile>        directories = createConcurrentHashMap();
+    private final List<TemplateChangeListener>            listeners   = new CopyOnWriteArrayList<TemplateChangeListener>();
+    private       Thread                                  thread;
+    private       boolean                                 stopped;
+
+    /**
+     * 创建一个watcher。
+     *
+     * @param name          用于日志和线程名
+     * @param checkInterval 检查的间隔（秒），如果<code>&lt;=0</code>，则不启动后台线程，需要手工调用{@link #check()}
+     */
+    public TemplateChangeWatcher(String name, int checkInterval) {
+        this.name = assertNotNull(name, "name");
+        this.checkIntervalMillis = checkInterval * 1000L;
+    }
+
+    public void addListener(TemplateChangeListener listener) {
+        listeners.add(assertNotNull(listener, "listener"));
+    }
+
+    /**
+     * 监视模板文件。
+     *
+     * @return 如果资源不在文件系统中，无法监视，则返回<code>false</code>
+     */
+    public boolean watch(String templateName, Resource resource) {
+        File file;
+
+        try {
+            file = resource.getFile().getAbsoluteFile();
+        } catch (IOException e) {
+            return false;
+        }
+
+        files.put(templateName, new WatchedFile(file));
+
+        File dir = file.getParentFile();
+
+        if (dir != null && !directories.containsKey(dir)) {
+            directories.putIfAbsent(dir, new WatchedFile(dir));
+        }
+
+        startIfNecessary();
+
+        return true;
+    }
+
+    /** 判断模板是否被监视。 */
+    public boolean isWatched(String templateName) {
+        return files.containsKey(templateName);
+    }
+
+    /** 检查所有被监视的文件和目录，并通知listeners。 */
+    public synchronized void check() {
+        for (Map.Entry<String, WatchedFile> entry : files.entrySet()) {
+            String templateName = entry.getKey();
+            WatchedFile file = entry.getValue();
+
+            if (file.isModified()) {
+                // 模板被重新装载时，会再次被监视
+                files.remove(templateName, file);
+
+                log.debug("Template changed: {}", templateName);
+
+                for (TemplateChangeListener listener : listeners) {
+                    listener.templateChanged(templateName);
+                }
+            }
+        }
+
+        boolean addedOrRemoved = false;
+
+        for (WatchedFile dir : directories.values()) {
+            if (dir.isModified()) {
+                dir.reset();
+                addedOrRemoved = true;
+            }
+        }
+
+        if (addedOrRemoved) {
+            log.debug("Templates added or removed in {}", name);
+
+            for (TemplateChangeListener listener : listeners) {
+                listener.templatesAddedOrRemoved();
+            }
+        }
+    }
+
+    private synchronized void startIfNecessary() {
+        if (thread != null || stopped || checkIntervalMillis <= 0) {
+            return;
+        }
+
+        thread = new Thread("TemplateChangeWatcher-" + name) {
+            @Override
+            public void run() {
+                while (!isStopped()) {
+                    try {
+                        Thread.sleep(checkIntervalMillis);
+                    } catch (InterruptedException e) {
+                        break;
+                    }
+
+                    try {
+                        check();
+                    } catch (RuntimeException e) {
+                        log.warn("Failed to check template changes", e);
+                    }
+                }
+            }
+        };
+
+        thread.setDaemon(true);
+        thread.start();
+
+        log.debug("Started watching templates for {}", name);
+    }
+
+    private synchronized boolean isStopped() {
+        return stopped;
+    }
+
+    /** 停止后台线程。 */
+    public synchronized void stop() {
+        stopped = true;
+
+        if (thread != null) {
+            thread.interrupt();
+            thread = null;
+        }
+
+        files.clear();
+        directories.clear();
+    }
+
+    @Override
+    public String toString() {
+        return "TemplateChangeWatcher[" + name + ", " + files.size() + " templates in " + directories.size()
+               + " directories]";
+    }
+
+    private static class WatchedFile {
+        private final File file;
+        private       long lastModified;
+
+        public WatchedFile(File file) {
+            this.file = file;
+            this.lastModified = file.lastModified();
+        }
+
+        /** 文件被删除时，<code>lastModified()</code>返回<code>0</code>，同样视作被修改。 */
+        public boolean isModified() {
+            return file.lastModified() != lastModified;
+        }
+
+        public void reset() {
+            lastModified = file.lastModified();
+        }
+    }
+}
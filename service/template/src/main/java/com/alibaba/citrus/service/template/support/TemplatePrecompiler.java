@@ -0,0 +1,39 @@
+/*
+ * Copyright (c) 2002-2012 Alibaba Group Holding Limited.
+ * All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.alibaba.citrus.service.template.support;
+
+import java.io.IOException;
+
+import com.alibaba.citrus.service.template.TemplateException;
+
+/**
+ * 由能预编译模板的<code>TemplateEngine</code>实现。
+ * <p>
+ * <code>TemplateService</code>在初始化时，可以通过它来列出并预先解析所有模板，并放入engine的cache中，
+ * 以免第一个请求承担解析模板的开销。
+ * </p>
+ *
+ * @author Michael Zhou
+ */
+public interface TemplatePrecompiler {
+    /** 列出engine可以装载的所有模板名，模板名以<code>/</code>开始。 */
+    String[] getTemplateNames();
+
+    /** 装载并解析模板，将其放入engine的cache中。 */
+    void precompileTemplate(String templateName) throws TemplateException, IOException;
+}
@@ -0,0 +1,123 @@
+/*
+ * Copyright (c) 2002-2012 Alibaba Group Holding Limited.
+ * All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.alibaba.citrus.service.template.support;
+
+import static com.alibaba.citrus.util.ArrayUtil.*;
+import static com.alibaba.citrus.util.Assert.*;
+import static com.alibaba.citrus.util.BasicConstant.*;
+import static com.alibaba.citrus.util.CollectionUtil.*;
+import static com.alibaba.citrus.util.FileUtil.*;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Collections;
+import java.util.List;
+
+import org.springframework.core.io.ContextResource;
+import org.springframework.core.io.Resource;
+import org.springframework.core.io.ResourceLoader;
+import org.springframework.core.io.support.PathMatchingResourcePatternResolver;
+import org.springframework.core.io.support.ResourcePatternResolver;
+
+/**
+ * 和模板资源相关的工具类。
+ *
+ * @author Michael Zhou
+ */
+public class TemplateResourceUtil {
+    /**
+     * 列出指定目录下的所有模板名，模板名以<code>/</code>开始，并相对于<code>path</code>。
+     * <p>
+     * 假如<code>loader</code>是由<code>ResourceLoadingService</code>支持的，那么将通过
+     * <code>ResourceLoadingService.list()</code>来列出模板；否则，只能列出文件系统中的模板。
+     * </p>
+     */
+    public static String[] listTemplateNames(ResourceLoader loader, String path) {
+        assertNotNull(loader, "resourceLoader");
+
+        ResourcePatternResolver resolver;
+
+        if (loader instanceof ResourcePatternResolver) {
+            resolver = (ResourcePatternResolver) loader;
+        } else {
+            resolver = new PathMatchingResourcePatternResolver(loader);
+        }
+
+        path = normalizeAbsolutePath(path + "/");
+
+        Resource[] resources;
+
+        try {
+            resources = resolver.getResources(path + "**/*");
+        } catch (IOException e) {
+            resources = null;
+        }
+
+        if (isEmptyArray(resources)) {
+            return EMPTY_STRING_ARRAY;
+        }
+
+        File rootDir = getFile(resolver.getResource(path));
+        List<String> names = createArrayList(resources.length);
+
+        for (Resource resource : resources) {
+            String templateName = getTemplateName(resource, path, rootDir);
+
+            if (templateName != null && !names.contains(templateName)) {
+                names.add(templateName);
+            }
+        }
+
+        Collections.sort(names);
+
+        return names.toArray(new String[names.size()]);
+    }
+
+    private static String getTemplateName(Resource resource, String path, File rootDir) {
+        // 对于多数resource，如ResourceAdapter等，都可以从中取得原始的resourceName
+        if (resource instanceof ContextResource) {
+            String resourceName = ((ContextResource) resource).getPathWithinContext();
+
+            if (resourceName.startsWith(path) && !resourceName.endsWith("/")) {
+                return resourceName.substring(path.length() - 1);
+            }
+        }
+
+        // 对于文件系统中的resource，计算其相对于根目录的路径
+        File file = getFile(resource);
+
+        if (rootDir != null && file != null && file.isFile()) {
+            String rootPath = rootDir.getAbsolutePath() + File.separator;
+            String filePath = file.getAbsolutePath();
+
+            if (filePath.startsWith(rootPath)) {
+                return normalizeAbsolutePath(filePath.substring(rootPath.length() - 1).replace(File.separatorChar, '/'));
+            }
+        }
+
+        return null;
+    }
+
+    private static File getFile(Resource resource) {
+        try {
+            return resource.getFile();
+        } catch (IOException e) {
+            return null;
+        }
+    }
+}
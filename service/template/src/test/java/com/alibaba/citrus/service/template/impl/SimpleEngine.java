@@ -17,6 +17,7 @@
 
 package com.alibaba.citrus.service.template.impl;
 
+import static com.alibaba.citrus.service.template.support.TemplateResourceUtil.*;
 import static com.alibaba.citrus.test.TestEnvStatic.*;
 import static com.alibaba.citrus.util.Assert.*;
 import static com.alibaba.citrus.util.StringUtil.*;
@@ -28,14 +29,21 @@ import java.io.InputStream;
 import java.io.InputStreamReader;
 import java.io.OutputStream;
 import java.io.Writer;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
 
 import com.alibaba.citrus.service.template.TemplateContext;
 import com.alibaba.citrus.service.template.TemplateEngine;
 import com.alibaba.citrus.service.template.TemplateException;
+import com.alibaba.citrus.service.template.support.TemplatePrecompiler;
 import com.alibaba.citrus.util.FileUtil;
 import com.alibaba.citrus.util.io.ByteArrayInputStream;
+import org.springframework.core.io.DefaultResourceLoader;
+import org.springframework.core.io.FileSystemResource;
+import org.springframework.core.io.Resource;
 
-public class SimpleEngine implements TemplateEngine {
+public class SimpleEngine implements TemplateEngine, TemplatePrecompiler {
+    private final List<String> precompiledTemplates = new CopyOnWriteArrayList<String>();
     private String   basedir;
     private String[] exts;
 
@@ -69,6 +77,24 @@ public class SimpleEngine implements TemplateEngine {
         io(new InputStreamReader(getInputStream(templateName)), writer, true, true);
     }
 
+    public String[] getTemplateNames() {
+        return listTemplateNames(new DefaultResourceLoader() {
+            @Override
+            protected Resource getResourceByPath(String path) {
+                return new FileSystemResource(new File(srcdir, path));
+            }
+        }, "/templates/" + trimToEmpty(basedir));
+    }
+
+    public void precompileTemplate(String templateName) throws TemplateException, IOException {
+        getInputStream(templateName).close();
+        precompiledTemplates.add(templateName);
+    }
+
+    public List<String> getPrecompiledTemplates() {
+        return precompiledTemplates;
+    }
+
     private File getTemplateFile(String templateName) {
         return new File(srcdir, "templates/" + trimToEmpty(basedir) + "/" + templateName);
     }
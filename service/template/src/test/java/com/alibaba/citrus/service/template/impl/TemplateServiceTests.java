@@ -51,6 +51,7 @@ public class TemplateServiceTests {
     @After
     public void destroy() {
         System.clearProperty("productionMode");
+        System.clearProperty("cacheSize");
         LocaleUtil.resetContext();
     }
 
@@ -357,6 +358,77 @@ public class TemplateServiceTests {
         assertSame(result1, result2);
     }
 
+    @Test
+    public void search_withCache_bounded() throws Exception {
+        System.setProperty("productionMode", "true");
+        System.setProperty("cacheSize", "1");
+        ApplicationContext factory = createContext("template.xml");
+
+        templateService = (TemplateServiceImpl) factory.getBean("templateService");
+        assertTrue(templateService.isCacheEnabled());
+
+        LocaleUtil.setContext(Locale.CHINA);
+        TemplateMatchResult result1;
+        TemplateMatchResult result2;
+
+        result1 = templateService.findTemplate("template1");
+        assertSame(result1, templateService.findTemplate("template1"));
+
+        // 超出cacheSize，原来的项被清除
+        result2 = templateService.findTemplate("template2.jsp");
+        assertSame(result2, templateService.findTemplate("template2.jsp"));
+        assertNotSame(result1, templateService.findTemplate("template1"));
+    }
+
+    @Test
+    public void precompile() throws Exception {
+        templateService = (TemplateServiceImpl) factory.getBean("precompile");
+
+        SimpleEngine engine1 = (SimpleEngine) templateService.getEngineOfName("myEngine1");
+        SimpleEngine engine2 = (SimpleEngine) templateService.getEngineOfName("myEngine2");
+        SimpleEngine engine3 = (SimpleEngine) templateService.getEngineOfName("myEngine3");
+
+        assertArrayEquals(new String[] { "/template1.vm", "/template2.vm", "/template2_zh_CN.vm" },
+                          engine1.getTemplateNames());
+
+        assertEquals(createHashSet("/template1.vm", "/template2.vm", "/template2_zh_CN.vm"),
+                     createHashSet(engine1.getPrecompiledTemplates()));
+
+        assertEquals(createHashSet("/template1.jsp", "/template3_zh.jhtml"),
+                     createHashSet(engine2.getPrecompiledTemplates()));
+
+        // 只预编译被映射到当前engine的模板
+        assertTrue(engine3.getPrecompiledTemplates().isEmpty());
+
+        // 编译时间报告
+        Map<String, Long> times = templateService.getPrecompiledTemplates();
+
+        assertEquals(createHashSet("/template1.vm", "/template2.vm", "/template2_zh_CN.vm", "/template1.jsp",
+                                   "/template3_zh.jhtml"), times.keySet());
+
+        try {
+            times.clear();
+            fail();
+        } catch (UnsupportedOperationException e) {
+        }
+    }
+
+    @Test
+    public void precompile_illegalThreads() throws Exception {
+        try {
+            factory.getBean("precompile_illegalThreads");
+            fail();
+        } catch (FatalBeanException e) {
+            assertThat(e, exception(IllegalArgumentException.class, "precompileThreads must be > 0: 0"));
+        }
+    }
+
+    @Test
+    public void precompile_disabled() throws Exception {
+        templateService = (TemplateServiceImpl) factory.getBean("templateService");
+        assertTrue(templateService.getPrecompiledTemplates().isEmpty());
+    }
+
     private void assertTemplate(String result, String templateName) throws Exception {
         // exists
         assertTrue(templateName + " not exist", templateService.exists(templateName));
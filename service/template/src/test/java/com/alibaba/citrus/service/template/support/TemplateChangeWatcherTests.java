@@ -0,0 +1,198 @@
+/*
+ * Copyright (c) 2002-2012 Alibaba Group Holding Limited.
+ * All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.alibaba.citrus.service.template.support;
+
+import static com.alibaba.citrus.test.TestEnvStatic.*;
+import static com.alibaba.citrus.test.TestUtil.*;
+import static com.alibaba.citrus.util.CollectionUtil.*;
+import static org.junit.Assert.*;
+
+import java.io.File;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.util.List;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.springframework.core.io.ByteArrayResource;
+import org.springframework.core.io.FileSystemResource;
+
+public class TemplateChangeWatcherTests {
+    private File                  dir;
+    private File                  file;
+    private TemplateChangeWatcher watcher;
+    private List<String>          changed;
+    private int                   addedOrRemoved;
+
+    @Before
+    public void init() throws IOException {
+        dir = new File(destdir, "watcher");
+        dir.mkdirs();
+
+        for (File f : dir.listFiles()) {
+            f.delete();
+        }
+
+        file = new File(dir, "test.vm");
+        write(file, "hello");
+
+        changed = createArrayList();
+        addedOrRemoved = 0;
+
+        watcher = new TemplateChangeWatcher("test", 0);
+        watcher.addListener(new TemplateChangeListener() {
+            public void templateChanged(String templateName) {
+                changed.add(templateName);
+            }
+
+            public void templatesAddedOrRemoved() {
+                addedOrRemoved++;
+            }
+        });
+    }
+
+    @After
+    public void dispose() {
+        watcher.stop();
+    }
+
+    @Test
+    public void newInstance_noName() {
+        try {
+            new TemplateChangeWatcher(null, 0);
+            fail();
+        } catch (IllegalArgumentException e) {
+            assertThat(e, exception("name"));
+        }
+    }
+
+    @Test
+    public void watch_notFile() {
+        assertFalse(watcher.watch("test.vm", new ByteArrayResource(new byte[0])));
+        assertFalse(watcher.isWatched("test.vm"));
+    }
+
+    @Test
+    public void unchanged() {
+        assertTrue(watcher.watch("test.vm", new FileSystemResource(file)));
+        assertTrue(watcher.isWatched("test.vm"));
+
+        watcher.check();
+
+        assertTrue(changed.isEmpty());
+        assertEquals(0, addedOrRemoved);
+        assertTrue(watcher.isWatched("test.vm"));
+    }
+
+    @Test
+    public void modified() throws IOException {
+        watcher.watch("test.vm", new FileSystemResource(file));
+
+        write(file, "world");
+        file.setLastModified(file.lastModified() + 10000);
+
+        watcher.check();
+
+        assertArrayEquals(new String[] { "test.vm" }, changed.toArray());
+        assertFalse(watcher.isWatched("test.vm")); // 模板被重新装载时，再次被监视
+
+        // 不重复通知
+        watcher.check();
+        assertEquals(1, changed.size());
+    }
+
+    @Test
+    public void removed() {
+        watcher.watch("test.vm", new FileSystemResource(file));
+
+        assertTrue(file.delete());
+        dir.setLastModified(dir.lastModified() + 10000);
+
+        watcher.check();
+
+        assertArrayEquals(new String[] { "test.vm" }, changed.toArray());
+        assertEquals(1, addedOrRemoved);
+    }
+
+    @Test
+    public void added() throws IOException {
+        watcher.watch("test.vm", new FileSystemResource(file));
+
+        write(new File(dir, "test2.vm"), "hi");
+        dir.setLastModified(dir.lastModified() + 10000);
+
+        watcher.check();
+
+        assertTrue(changed.isEmpty());
+        assertEquals(1, addedOrRemoved);
+
+        watcher.check();
+        assertEquals(1, addedOrRemoved);
+    }
+
+    @Test
+    public void stop() {
+        watcher.watch("test.vm", new FileSystemResource(file));
+        watcher.stop();
+
+        assertFalse(watcher.isWatched("test.vm"));
+    }
+
+    @Test
+    public void backgroundThread() throws Exception {
+        watcher.stop();
+        watcher = new TemplateChangeWatcher("test", 1);
+
+        final List<String> names = createArrayList();
+
+        watcher.addListener(new TemplateChangeListener() {
+            public void templateChanged(String templateName) {
+                synchronized (names) {
+                    names.add(templateName);
+                    names.notifyAll();
+                }
+            }
+
+            public void templatesAddedOrRemoved() {
+            }
+        });
+
+        watcher.watch("test.vm", new FileSystemResource(file));
+
+        file.setLastModified(file.lastModified() + 10000);
+
+        synchronized (names) {
+            if (names.isEmpty()) {
+                names.wait(5000);
+            }
+        }
+
+        assertArrayEquals(new String[] { "test.vm" }, names.toArray());
+    }
+
+    private void write(File f, String content) throws IOException {
+        FileWriter writer = new FileWriter(f);
+
+        try {
+            writer.write(content);
+        } finally {
+            writer.close();
+        }
+    }
+}
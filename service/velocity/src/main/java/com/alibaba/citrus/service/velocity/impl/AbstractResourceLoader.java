@@ -22,6 +22,7 @@ import static com.alibaba.citrus.util.StringUtil.*;
 import java.io.IOException;
 import java.io.InputStream;
 
+import com.alibaba.citrus.service.template.support.TemplateChangeWatcher;
 import org.apache.velocity.exception.ResourceNotFoundException;
 import org.springframework.core.io.Resource;
 
@@ -31,6 +32,8 @@ import org.springframework.core.io.Resource;
  * @author Michael Zhou
  */
 public abstract class AbstractResourceLoader extends org.apache.velocity.runtime.resource.loader.ResourceLoader {
+    public static final String TEMPLATE_CHANGE_WATCHER_KEY = "_template_change_watcher";
+
     /** 取得输入流。 */
     @Override
     public final InputStream getResourceStream(String templateName) throws ResourceNotFoundException {
@@ -38,6 +41,14 @@ public abstract class AbstractResourceLoader extends org.apache.velocity.runtime
         Exception exception = null;
 
         if (resource != null && resource.exists()) {
+            TemplateChangeWatcher watcher = (TemplateChangeWatcher) rsvc.getApplicationAttribute(
+                    TEMPLATE_CHANGE_WATCHER_KEY);
+
+            // 监视模板的改变，当模板被修改时，由watcher主动将其从cache中清除
+            if (watcher != null) {
+                watcher.watch(templateName, resource);
+            }
+
             try {
                 return resource.getInputStream();
             } catch (IOException e) {
@@ -33,6 +33,7 @@ import java.util.Iterator;
 import java.util.Map;
 import java.util.Set;
 
+import com.alibaba.citrus.service.template.support.TemplateChangeWatcher;
 import com.alibaba.citrus.service.velocity.VelocityConfiguration;
 import com.alibaba.citrus.service.velocity.VelocityPlugin;
 import com.alibaba.citrus.service.velocity.support.RenderableHandler;
@@ -65,6 +66,8 @@ public class VelocityConfigurationImpl implements VelocityConfiguration {
     private String path;
     private boolean cacheEnabled              = true;
     private int     modificationCheckInterval = 2;
+    private boolean watchModifications;
+    private TemplateChangeWatcher watcher;
 
     // strict ref
     private boolean strictReference = true;
@@ -106,6 +109,11 @@ public class VelocityConfigurationImpl implements VelocityConfiguration {
         this.productionMode = productionMode;
     }
 
+    /** 取得搜索模板的根目录。 */
+    public String getPath() {
+        return path;
+    }
+
     /** 设置搜索模板的根目录。默认为<code>/templates</code>。 */
     public void setPath(String path) {
         this.path = trimToNull(path);
@@ -121,6 +129,22 @@ public class VelocityConfigurationImpl implements VelocityConfiguration {
         this.modificationCheckInterval = modificationCheckInterval;
     }
 
+    /**
+     * 是否在后台线程中监视模板文件的改变，并主动清除velocity中被改变的模板。默认为<code>false</code>。
+     * <p>
+     * 打开此选项后，velocity不再在请求中检查模板是否被修改，<code>modificationCheckInterval</code>
+     * 成为后台线程检查的间隔。只对cache打开时有效。
+     * </p>
+     */
+    public void setWatchModifications(boolean watchModifications) {
+        this.watchModifications = watchModifications;
+    }
+
+    /** 取得监视模板改变的watcher，如果未打开监视功能，则返回<code>null</code>。 */
+    public TemplateChangeWatcher getTemplateChangeWatcher() {
+        return watcher;
+    }
+
     /** 设置strict reference模式。默认为<code>true</code>。 */
     public void setStrictReference(boolean strictReference) {
         this.strictReference = strictReference;
@@ -243,6 +267,16 @@ public class VelocityConfigurationImpl implements VelocityConfiguration {
 
         properties.setProperty(RESOURCE_LOADER, "spring");
 
+        // 由后台线程监视模板的改变，velocity本身不再检查
+        int loaderCheckInterval = modificationCheckInterval;
+
+        if (cacheEnabled && watchModifications) {
+            watcher = new TemplateChangeWatcher("velocity:" + path, modificationCheckInterval);
+            loaderCheckInterval = 0;
+
+            properties.setProperty(RESOURCE_MANAGER_CLASS, VelocityResourceManager.class.getName());
+        }
+
         // Spring resource loader
         String prefix = "spring." + RESOURCE_LOADER + ".";
 
@@ -250,7 +284,7 @@ public class VelocityConfigurationImpl implements VelocityConfiguration {
         properties.setProperty(prefix + "class", SpringResourceLoaderAdapter.class.getName());
         properties.setProperty(prefix + "path", path);
         properties.setProperty(prefix + "cache", String.valueOf(cacheEnabled));
-        properties.setProperty(prefix + "modificationCheckInterval", String.valueOf(modificationCheckInterval));
+        properties.setProperty(prefix + "modificationCheckInterval", String.valueOf(loaderCheckInterval));
 
         // Preloaded resource loader
         prefix = "preloaded." + RESOURCE_LOADER + ".";
@@ -258,7 +292,7 @@ public class VelocityConfigurationImpl implements VelocityConfiguration {
         properties.setProperty(prefix + "description", "Preloaded Resource Loader");
         properties.setProperty(prefix + "class", PreloadedResourceLoader.class.getName());
         properties.setProperty(prefix + "cache", String.valueOf(cacheEnabled));
-        properties.setProperty(prefix + "modificationCheckInterval", String.valueOf(modificationCheckInterval));
+        properties.setProperty(prefix + "modificationCheckInterval", String.valueOf(loaderCheckInterval));
         properties.setProperty(prefix + PRELOADED_RESOURCES_KEY, preloadedResources);
 
         if (!preloadedResources.isEmpty()) {
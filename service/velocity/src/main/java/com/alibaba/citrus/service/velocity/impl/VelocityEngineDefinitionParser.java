@@ -45,7 +45,7 @@ public class VelocityEngineDefinitionParser extends AbstractSingleBeanDefinition
     @Override
     protected void doParse(Element element, ParserContext parserContext, BeanDefinitionBuilder builder) {
         attributesToProperties(element, "configuration.", builder, "path", "cacheEnabled", "modificationCheckInterval",
-                               "strictReference", "templateEncoding");
+                               "watchModifications", "strictReference", "templateEncoding");
 
         ElementSelector globalMacros = and(sameNs(element), name("global-macros"));
         ElementSelector plugins = and(sameNs(element), name("plugins"));
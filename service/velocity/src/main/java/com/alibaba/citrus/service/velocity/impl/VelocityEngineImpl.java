@@ -17,7 +17,9 @@
 
 package com.alibaba.citrus.service.velocity.impl;
 
+import static com.alibaba.citrus.service.template.support.TemplateResourceUtil.*;
 import static com.alibaba.citrus.service.velocity.VelocityConfiguration.*;
+import static com.alibaba.citrus.service.velocity.impl.AbstractResourceLoader.*;
 import static com.alibaba.citrus.service.velocity.impl.SpringResourceLoaderAdapter.*;
 import static com.alibaba.citrus.util.Assert.*;
 import static com.alibaba.citrus.util.ObjectUtil.*;
@@ -26,9 +28,7 @@ import static org.apache.velocity.runtime.RuntimeConstants.*;
 
 import java.io.IOException;
 import java.io.OutputStream;
-import java.io.OutputStreamWriter;
 import java.io.StringWriter;
-import java.io.UnsupportedEncodingException;
 import java.io.Writer;
 
 import com.alibaba.citrus.service.AbstractService;
@@ -36,7 +36,12 @@ import com.alibaba.citrus.service.configuration.ProductionModeAware;
 import com.alibaba.citrus.service.template.TemplateContext;
 import com.alibaba.citrus.service.template.TemplateException;
 import com.alibaba.citrus.service.template.TemplateNotFoundException;
+import com.alibaba.citrus.service.template.support.TemplateChangeListener;
+import com.alibaba.citrus.service.template.support.TemplateChangeSource;
+import com.alibaba.citrus.service.template.support.TemplateChangeWatcher;
+import com.alibaba.citrus.service.template.support.TemplatePrecompiler;
 import com.alibaba.citrus.service.velocity.VelocityEngine;
+import com.alibaba.citrus.util.io.EncodingWriter;
 import org.apache.velocity.Template;
 import org.apache.velocity.app.event.EventCartridge;
 import org.apache.velocity.app.event.ReferenceInsertionEventHandler;
@@ -57,7 +62,8 @@ import org.springframework.core.io.ResourceLoader;
  * @author Michael Zhou
  */
 public class VelocityEngineImpl extends AbstractService<VelocityEngine> implements VelocityEngine, ResourceLoaderAware,
-                                                                                   ProductionModeAware {
+                                                                                   ProductionModeAware,
+                                                                                   TemplateChangeSource, TemplatePrecompiler {
     private final static String                    RUNTIME_SERVICES_KEY = "_runtime_services";
     private final        VelocityRuntimeInstance   ri                   = new VelocityRuntimeInstance();
     private final        VelocityConfigurationImpl configuration        = new VelocityConfigurationImpl(getLogger());
@@ -87,6 +93,11 @@ public class VelocityEngineImpl extends AbstractService<VelocityEngine> implemen
 
         ri.setConfiguration(configuration.getProperties());
         ri.setApplicationAttribute(SPRING_RESOURCE_LOADER_KEY, configuration.getResourceLoader());
+
+        if (configuration.getTemplateChangeWatcher() != null) {
+            ri.setApplicationAttribute(TEMPLATE_CHANGE_WATCHER_KEY, configuration.getTemplateChangeWatcher());
+        }
+
         ri.setProperty(EVENTHANDLER_REFERENCEINSERTION, RuntimeServicesExposer.class.getName());
         ri.init();
 
@@ -97,6 +108,23 @@ public class VelocityEngineImpl extends AbstractService<VelocityEngine> implemen
         eventCartridge.initOnce(rs);
     }
 
+    @Override
+    protected void dispose() {
+        TemplateChangeWatcher watcher = configuration.getTemplateChangeWatcher();
+
+        if (watcher != null) {
+            watcher.stop();
+        }
+    }
+
+    public void addTemplateChangeListener(TemplateChangeListener listener) {
+        TemplateChangeWatcher watcher = configuration.getTemplateChangeWatcher();
+
+        if (watcher != null) {
+            watcher.addListener(listener);
+        }
+    }
+
     /**
      * 取得默认的模板名后缀列表。
      * <p>
@@ -112,6 +140,22 @@ public class VelocityEngineImpl extends AbstractService<VelocityEngine> implemen
         return ri.getLoaderNameForResource(templateName) != null;
     }
 
+    /** 列出所有模板。 */
+    public String[] getTemplateNames() {
+        return listTemplateNames(configuration.getResourceLoader(), configuration.getPath());
+    }
+
+    /** 装载并解析模板，将其放入velocity的cache中。 */
+    public void precompileTemplate(String templateName) throws TemplateException, IOException {
+        try {
+            ri.getTemplate(templateName, getDefaultInputEncoding());
+        } catch (ResourceNotFoundException e) {
+            throw new TemplateNotFoundException("Could not find Velocity template: " + templateName, e);
+        } catch (Exception e) {
+            throw new TemplateException("Error precompiling Velocity template: " + templateName, e);
+        }
+    }
+
     /** 渲染模板，并以字符串的形式取得渲染的结果。 */
     public String getText(String templateName, TemplateContext context) throws TemplateException, IOException {
         return mergeTemplate(templateName, new TemplateContextAdapter(context), null);
@@ -137,19 +181,28 @@ public class VelocityEngineImpl extends AbstractService<VelocityEngine> implemen
         return writer.toString();
     }
 
-    /** 渲染模板，并将渲染的结果送到字节输出流中。 */
+    /**
+     * 渲染模板，并将渲染的结果送到字节输出流中。
+     * <p>
+     * 模板中的静态文本是预先编码好的，只有动态的内容才需要被编码。
+     * </p>
+     * <p>
+     * 预编码只作用于此方法及<code>writeTo(..., OutputStream)</code>。渲染到<code>Writer</code>的方法不受此影响，
+     * 包括webx页面通过<code>BufferedResponseImpl.getWriter()</code>渲染的情形（turbine的<code>RenderTemplateValve</code>）。
+     * </p>
+     */
     public void mergeTemplate(String templateName, Context context, OutputStream ostream, String inputEncoding,
                               String outputEncoding) throws TemplateException, IOException {
         if (isEmpty(outputEncoding)) {
             outputEncoding = getDefaultOutputEncoding();
         }
 
-        OutputStreamWriter writer = null;
+        EncodingWriter writer = null;
 
         try {
-            writer = new OutputStreamWriter(ostream, outputEncoding);
-        } catch (UnsupportedEncodingException e) {
-            error(templateName, e);
+            writer = new EncodingWriter(ostream, outputEncoding);
+        } catch (IllegalArgumentException e) {
+            error(templateName, e); // unsupported charset
         }
 
         mergeTemplate(templateName, context, writer, inputEncoding);
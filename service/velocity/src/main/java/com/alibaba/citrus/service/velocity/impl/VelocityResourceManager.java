@@ -0,0 +1,59 @@
+/*
+ * Copyright (c) 2002-2012 Alibaba Group Holding Limited.
+ * All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.alibaba.citrus.service.velocity.impl;
+
+import static com.alibaba.citrus.service.velocity.impl.AbstractResourceLoader.*;
+
+import com.alibaba.citrus.service.template.support.TemplateChangeListener;
+import com.alibaba.citrus.service.template.support.TemplateChangeWatcher;
+import org.apache.velocity.runtime.RuntimeServices;
+import org.apache.velocity.runtime.resource.ResourceManagerImpl;
+
+/**
+ * 扩展了velocity的<code>ResourceManagerImpl</code>，当<code>TemplateChangeWatcher</code>
+ * 发现模板被修改时，将其从cache中清除。
+ * <p>
+ * 这样velocity就不必在请求中检查模板是否被修改。
+ * </p>
+ *
+ * @author Michael Zhou
+ */
+public class VelocityResourceManager extends ResourceManagerImpl implements TemplateChangeListener {
+    @Override
+    public synchronized void initialize(RuntimeServices rs) {
+        super.initialize(rs);
+
+        TemplateChangeWatcher watcher = (TemplateChangeWatcher) rs.getApplicationAttribute(TEMPLATE_CHANGE_WATCHER_KEY);
+
+        if (watcher != null) {
+            watcher.addListener(this);
+        }
+    }
+
+    /** 从cache中清除模板，下次访问时将重新装载。 */
+    public void templateChanged(String templateName) {
+        // 参见ResourceManagerImpl.getResource()中cache key的算法
+        globalCache.remove(RESOURCE_TEMPLATE + templateName);
+        globalCache.remove(RESOURCE_CONTENT + templateName);
+
+        log.debug("ResourceManager: template changed, removed from cache: " + templateName);
+    }
+
+    /** 新添加的模板不在cache中，无需处理。 */
+    public void templatesAddedOrRemoved() {
+    }
+}
@@ -17,13 +17,19 @@
 
 package com.alibaba.citrus.service.velocity.impl;
 
+import static com.alibaba.citrus.service.velocity.support.EscapeSupport.*;
+
 import java.io.Reader;
 
+import com.alibaba.citrus.service.velocity.impl.parser.ASTReferenceEnhanced;
 import com.alibaba.citrus.service.velocity.impl.parser.ASTStringLiteralEnhanced;
+import com.alibaba.citrus.service.velocity.impl.parser.ASTTextEnhanced;
 import com.alibaba.citrus.service.velocity.impl.parser.SimpleNodeUtil;
 import org.apache.velocity.runtime.RuntimeInstance;
 import org.apache.velocity.runtime.parser.ParseException;
+import org.apache.velocity.runtime.parser.node.ASTReference;
 import org.apache.velocity.runtime.parser.node.ASTStringLiteral;
+import org.apache.velocity.runtime.parser.node.ASTText;
 import org.apache.velocity.runtime.parser.node.Node;
 import org.apache.velocity.runtime.parser.node.SimpleNode;
 
@@ -46,25 +52,44 @@ import org.apache.velocity.runtime.parser.node.SimpleNode;
  * <code>runtime.interpolate.string.literals.hack</code>可以开关此特性，默认值为
  * <code>true</code>。
  * </p>
+ * <p>
+ * 此外，模板中的静态文本节点将被替换成{@link ASTTextEnhanced}，当以字节流的方式输出时，静态文本只需要被编码一次。
+ * 注意，只有<code>TemplateService.writeTo(..., OutputStream)</code>和
+ * <code>VelocityEngine.mergeTemplate(..., OutputStream, ...)</code>才是字节流的方式；
+ * 输出到<code>Writer</code>时（包括webx页面通过<code>BufferedResponseImpl.getWriter()</code>渲染的情形，
+ * 其内容是以字符的形式缓存的），此特性不起作用。
+ * 通过velocity configuration：<code>runtime.preencode.text</code>可以开关此特性，默认值为<code>true</code>。
+ * </p>
+ * <p>
+ * 引用节点可被替换成{@link ASTReferenceEnhanced}，使<code>EscapeSupport</code>可以将计算好的转义类型记录在节点中。
+ * 通过velocity configuration：<code>runtime.references.node.data</code>可以开关此特性，默认值为<code>false</code>。
+ * </p>
  *
  * @author Michael Zhou
  */
 public class VelocityRuntimeInstance extends RuntimeInstance {
-    private static final String  INTERPOLATION_HACK_KEY     = "runtime.interpolate.string.literals.hack";
-    private static final Boolean INTERPOLATION_HACK_DEFAULT = true;
+    private static final String  INTERPOLATION_HACK_KEY      = "runtime.interpolate.string.literals.hack";
+    private static final Boolean INTERPOLATION_HACK_DEFAULT  = true;
+    private static final String  PREENCODE_TEXT_KEY          = "runtime.preencode.text";
+    private static final Boolean PREENCODE_TEXT_DEFAULT      = true;
+    private static final Boolean REFERENCE_NODE_DATA_DEFAULT = false;
     private boolean interpolationHack;
+    private boolean preencodeText;
+    private boolean referenceNodeData;
 
     @Override
     public synchronized void init() {
         super.init();
         interpolationHack = getConfiguration().getBoolean(INTERPOLATION_HACK_KEY, INTERPOLATION_HACK_DEFAULT);
+        preencodeText = getConfiguration().getBoolean(PREENCODE_TEXT_KEY, PREENCODE_TEXT_DEFAULT);
+        referenceNodeData = getConfiguration().getBoolean(REFERENCE_NODE_DATA_KEY, REFERENCE_NODE_DATA_DEFAULT);
     }
 
     @Override
     public SimpleNode parse(Reader reader, String templateName, boolean dumpNamespace) throws ParseException {
         SimpleNode node = super.parse(reader, templateName, dumpNamespace);
 
-        if (interpolationHack) {
+        if (interpolationHack || preencodeText || referenceNodeData) {
             node = traversNode(node);
         }
 
@@ -77,8 +102,12 @@ public class VelocityRuntimeInstance extends RuntimeInstance {
         for (int i = 0; i < length; i++) {
             Node child = node.jjtGetChild(i);
 
-            if (child instanceof ASTStringLiteral) {
+            if (interpolationHack && child instanceof ASTStringLiteral) {
                 replaceStringLiteral(node, (ASTStringLiteral) child, i);
+            } else if (preencodeText && child instanceof ASTText) {
+                replaceText(node, (ASTText) child, i);
+            } else if (referenceNodeData && child instanceof ASTReference) {
+                replaceReference(node, (ASTReference) child, i);
             }
 
             if (child instanceof SimpleNode) {
@@ -94,4 +123,16 @@ public class VelocityRuntimeInstance extends RuntimeInstance {
             SimpleNodeUtil.jjtSetChild(parent, new ASTStringLiteralEnhanced(strLit), index);
         }
     }
+
+    private void replaceReference(SimpleNode parent, ASTReference ref, int index) {
+        if (!(ref instanceof ASTReferenceEnhanced)) {
+            SimpleNodeUtil.jjtSetChild(parent, new ASTReferenceEnhanced(ref), index);
+        }
+    }
+
+    private void replaceText(SimpleNode parent, ASTText text, int index) {
+        if (!(text instanceof ASTTextEnhanced)) {
+            SimpleNodeUtil.jjtSetChild(parent, new ASTTextEnhanced(text), index);
+        }
+    }
 }
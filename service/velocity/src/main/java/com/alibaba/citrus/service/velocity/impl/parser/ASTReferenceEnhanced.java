@@ -0,0 +1,112 @@
+/*
+ * Copyright (c) 2002-2012 Alibaba Group Holding Limited.
+ * All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.alibaba.citrus.service.velocity.impl.parser;
+
+import static com.alibaba.citrus.util.CollectionUtil.*;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.lang.reflect.Field;
+import java.lang.reflect.Modifier;
+import java.util.List;
+
+import com.alibaba.citrus.service.velocity.support.EscapeSupport;
+import com.alibaba.citrus.service.velocity.support.EscapeSupport.ReferenceNode;
+import org.apache.velocity.context.InternalContextAdapter;
+import org.apache.velocity.exception.MethodInvocationException;
+import org.apache.velocity.runtime.parser.node.ASTReference;
+
+/**
+ * 可以记录数据的引用节点，使<code>EscapeSupport</code>对每个节点只需计算一次转义类型。
+ *
+ * @author Michael Zhou
+ */
+public class ASTReferenceEnhanced extends ASTReference implements ReferenceNode {
+    private static final Field[] fields;
+    private              String  cachedLiteral;
+    private volatile     Object  escapeData;
+
+    static {
+        List<Field> fieldList = createLinkedList();
+
+        for (Class<?> c = ASTReference.class; c != null && c != Object.class; c = c.getSuperclass()) {
+            Field[] fields = c.getDeclaredFields();
+
+            for (Field field : fields) {
+                if (!Modifier.isStatic(field.getModifiers())) {
+                    field.setAccessible(true);
+                    fieldList.add(field);
+                }
+            }
+        }
+
+        fields = fieldList.toArray(new Field[fieldList.size()]);
+    }
+
+    public ASTReferenceEnhanced(ASTReference src) {
+        super(-1);
+
+        for (Field field : fields) {
+            try {
+                field.set(this, field.get(src));
+            } catch (Exception e) {
+                throw new RuntimeException("Could not copy ASTReference", e);
+            }
+        }
+
+        for (int i = 0; i < jjtGetNumChildren(); i++) {
+            jjtGetChild(i).jjtSetParent(this);
+        }
+    }
+
+    /** 保证每次返回同一个字符串对象，<code>ASTReference</code>会将它作为引用名传给event handler。 */
+    @Override
+    public String literal() {
+        if (cachedLiteral == null) {
+            cachedLiteral = super.literal();
+        }
+
+        return cachedLiteral;
+    }
+
+    public Object getEscapeData() {
+        return escapeData;
+    }
+
+    public void setEscapeData(Object escapeData) {
+        this.escapeData = escapeData;
+    }
+
+    @Override
+    public boolean render(InternalContextAdapter context, Writer writer) throws IOException,
+                                                                               MethodInvocationException {
+        EscapeSupport escapeSupport = EscapeSupport.getRuntimeInstance(context);
+
+        if (escapeSupport == null) {
+            return super.render(context, writer);
+        }
+
+        ReferenceNode savedReference = escapeSupport.setCurrentReference(this);
+
+        try {
+            return super.render(context, writer);
+        } finally {
+            escapeSupport.setCurrentReference(savedReference);
+        }
+    }
+}
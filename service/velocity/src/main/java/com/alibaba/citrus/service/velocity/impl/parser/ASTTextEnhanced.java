@@ -0,0 +1,119 @@
+/*
+ * Copyright (c) 2002-2012 Alibaba Group Holding Limited.
+ * All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.alibaba.citrus.service.velocity.impl.parser;
+
+import static com.alibaba.citrus.util.CollectionUtil.*;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.lang.reflect.Field;
+import java.nio.charset.Charset;
+import java.util.List;
+
+import com.alibaba.citrus.util.io.EncodingWriter;
+import org.apache.velocity.context.InternalContextAdapter;
+import org.apache.velocity.exception.TemplateInitException;
+import org.apache.velocity.runtime.parser.node.ASTText;
+import org.apache.velocity.runtime.parser.node.NodeUtils;
+
+/**
+ * 扩展velocity的静态文本节点：当输出到{@link EncodingWriter}时，直接输出预先编码好的字节，避免每次渲染时重复编码。
+ * <p>
+ * 只有当模板被渲染到字节流（例如<code>VelocityEngine.mergeTemplate(..., OutputStream, ...)</code>）时，
+ * 输出的才是{@link EncodingWriter}。渲染到其它<code>Writer</code>时（例如<code>BufferedResponseImpl.getWriter()</code>），
+ * 静态文本仍按原来的方式输出。
+ * </p>
+ * <p>
+ * 编码的结果按字符集缓存在节点中，由于同一个应用的输出字符集通常是固定的，因此只缓存最近一次的结果。
+ * </p>
+ *
+ * @author Michael Zhou
+ */
+public class ASTTextEnhanced extends ASTText {
+    private static final Field[] fields;
+    private          String      text;
+    private volatile EncodedText encoded;
+
+    static {
+        List<Field> fieldList = createLinkedList();
+
+        for (Class<?> c = ASTText.class; c != null && c != Object.class; c = c.getSuperclass()) {
+            Field[] fields = c.getDeclaredFields();
+
+            for (Field field : fields) {
+                field.setAccessible(true);
+                fieldList.add(field);
+            }
+        }
+
+        fields = fieldList.toArray(new Field[fieldList.size()]);
+    }
+
+    public ASTTextEnhanced(ASTText src) {
+        super(-1);
+
+        for (Field field : fields) {
+            try {
+                field.set(this, field.get(src));
+            } catch (Exception e) {
+                throw new RuntimeException("Could not copy ASTText", e);
+            }
+        }
+    }
+
+    @Override
+    public Object init(InternalContextAdapter context, Object data) throws TemplateInitException {
+        text = NodeUtils.tokenLiteral(getFirstToken());
+        return super.init(context, data);
+    }
+
+    @Override
+    public boolean render(InternalContextAdapter context, Writer writer) throws IOException {
+        if (writer instanceof EncodingWriter && text != null) {
+            EncodingWriter encodingWriter = (EncodingWriter) writer;
+            byte[] bytes = getEncodedText(encodingWriter.getCharset());
+
+            if (bytes != null && encodingWriter.writeEncoded(bytes, 0, bytes.length)) {
+                return true;
+            }
+        }
+
+        return super.render(context, writer);
+    }
+
+    private byte[] getEncodedText(Charset charset) {
+        EncodedText encoded = this.encoded;
+
+        if (encoded == null || !encoded.charset.equals(charset)) {
+            encoded = new EncodedText(charset, EncodingWriter.preEncode(text, charset));
+            this.encoded = encoded;
+        }
+
+        return encoded.bytes;
+    }
+
+    private static class EncodedText {
+        private final Charset charset;
+        private final byte[]  bytes;
+
+        public EncodedText(Charset charset, byte[] bytes) {
+            this.charset = charset;
+            this.bytes = bytes;
+        }
+    }
+}
@@ -26,6 +26,7 @@ import static com.alibaba.citrus.util.StringUtil.*;
 import java.io.IOException;
 import java.io.Writer;
 import java.util.ArrayList;
+import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
 import java.util.regex.Matcher;
@@ -38,6 +39,7 @@ import com.alibaba.citrus.service.velocity.VelocityPlugin;
 import com.alibaba.citrus.util.StringEscapeUtil;
 import com.alibaba.citrus.util.ToStringBuilder;
 import com.alibaba.citrus.util.ToStringBuilder.MapBuilder;
+import org.apache.velocity.app.event.EventCartridge;
 import org.apache.velocity.app.event.ReferenceInsertionEventHandler;
 import org.apache.velocity.context.Context;
 import org.apache.velocity.context.InternalContextAdapter;
@@ -56,16 +58,34 @@ import org.slf4j.LoggerFactory;
 import org.springframework.core.io.Resource;
 import org.springframework.core.io.ResourceLoader;
 
+/**
+ * 根据引用的位置和名称，对输出的引用值进行escape转义。
+ * <p>
+ * 模板被解析时，每个引用节点会被替换成可以记录数据的节点。转义类型第一次被计算以后，就被记录在节点中，
+ * 以后再次渲染该节点时不必重新匹配规则。通过velocity configuration：
+ * <code>runtime.references.node.data</code>可以开关此特性，<code>EscapeSupport</code>会将其打开。
+ * </p>
+ * <p>
+ * <code>#escape</code>和<code>#noescape</code>所指定的转义类型被保存在当前渲染过程所用的
+ * <code>EscapeSupport</code>副本中，而不必在每次输出引用时查找context。
+ * </p>
+ *
+ * @author Michael Zhou
+ */
 public class EscapeSupport implements VelocityPlugin, ReferenceInsertionEventHandler, ContextAware, FastCloneable,
                                       ProductionModeAware {
-    private final static Logger log             = LoggerFactory.getLogger(EscapeSupport.class);
-    private final static String ESCAPE_TYPE_KEY = "_ESCAPE_SUPPORT_TYPE_";
+    public final static  String REFERENCE_NODE_DATA_KEY = "runtime.references.node.data";
+    private final static Logger log                     = LoggerFactory.getLogger(EscapeSupport.class);
+    private final static String ESCAPE_TYPE_KEY         = "_ESCAPE_SUPPORT_TYPE_";
     private ResourceLoader loader;
     private EscapeType     defaultEscape;
     private EscapeRule[]   escapeRules;
     private boolean        cacheReferences;
     private Map<String, EscapeType> referenceCache = createConcurrentHashMap();
-    private transient Context context;
+    private transient Context       context;
+    private transient ReferenceNode currentReference;
+    private transient EscapeType    specifiedEscapeType;
+    private transient boolean       specifiedEscapeTypeResolved;
 
     public Object createCopy() {
         EscapeSupport copy = new EscapeSupport();
@@ -96,6 +116,7 @@ public class EscapeSupport implements VelocityPlugin, ReferenceInsertionEventHan
 
         configuration.getProperties().addProperty("userdirective", Escape.class.getName());
         configuration.getProperties().addProperty("userdirective", Noescape.class.getName());
+        configuration.getProperties().setProperty(REFERENCE_NODE_DATA_KEY, "true");
     }
 
     public Resource[] getMacros() throws IOException {
@@ -122,7 +143,7 @@ public class EscapeSupport implements VelocityPlugin, ReferenceInsertionEventHan
             return value;
         }
 
-        EscapeType escapeType = getEscapeType(reference);
+        EscapeType escapeType = getEscapeType(reference, currentReference);
 
         if (escapeType == null) {
             return value;
@@ -131,17 +152,38 @@ public class EscapeSupport implements VelocityPlugin, ReferenceInsertionEventHan
         return escapeType.escape(value);
     }
 
-    private EscapeType getEscapeType(String reference) {
+    private EscapeType getEscapeType(String reference, ReferenceNode node) {
         // 1. 假如明确指定了#escape或#noescape，则使用之。
-        EscapeType escapeType = (EscapeType) context.get(ESCAPE_TYPE_KEY);
+        // 只在第一次时从context中取得外层模板所指定的值，此后由#escape和#noescape直接更新。
+        if (!specifiedEscapeTypeResolved) {
+            specifiedEscapeType = (EscapeType) context.get(ESCAPE_TYPE_KEY);
+            specifiedEscapeTypeResolved = true;
+        }
+
+        EscapeType escapeType = specifiedEscapeType;
 
         if (escapeType != null) {
             log.debug("{} specified for reference {}", escapeType, reference);
             return escapeType;
         }
 
-        // 2. 假如未明确指定，则查找规则
-        // 3. 假如没有规则，或规则未匹配，则使用默认值
+        // 2. 假如引用节点中已经记录了转义类型，则直接使用之。
+        //    节点可能被另一个配置不同的EscapeSupport解析过，所以需要检查owner。
+        if (node != null && node.literal() == reference) {
+            Object data = node.getEscapeData();
+
+            if (data instanceof ResolvedEscapeType && ((ResolvedEscapeType) data).owner == referenceCache) {
+                return ((ResolvedEscapeType) data).escapeType;
+            }
+
+            escapeType = findEscapeType(reference);
+            node.setEscapeData(new ResolvedEscapeType(referenceCache, escapeType));
+
+            return escapeType;
+        }
+
+        // 3. 假如未明确指定，则查找规则
+        // 4. 假如没有规则，或规则未匹配，则使用默认值
         if (cacheReferences) {
             escapeType = referenceCache.get(reference);
         }
@@ -199,6 +241,16 @@ public class EscapeSupport implements VelocityPlugin, ReferenceInsertionEventHan
     }
 
     public static EscapeType setEscapeType(EscapeType escapeType, InternalContextAdapter context) {
+        for (Iterator<?> i = getReferenceInsertionEventHandlers(context); i != null && i.hasNext(); ) {
+            Object handler = i.next();
+
+            if (handler instanceof EscapeSupport) {
+                ((EscapeSupport) handler).specifiedEscapeType = escapeType;
+                ((EscapeSupport) handler).specifiedEscapeTypeResolved = true;
+            }
+        }
+
+        // 同时保存在context中，使在同一context中渲染的其它模板可以取得该值。
         if (escapeType == null) {
             return (EscapeType) context.remove(ESCAPE_TYPE_KEY);
         } else {
@@ -206,6 +258,40 @@ public class EscapeSupport implements VelocityPlugin, ReferenceInsertionEventHan
         }
     }
 
+    /** 取得当前渲染过程所用的<code>EscapeSupport</code>副本，如果不存在，则返回<code>null</code>。 */
+    public static EscapeSupport getRuntimeInstance(InternalContextAdapter context) {
+        for (Iterator<?> i = getReferenceInsertionEventHandlers(context); i != null && i.hasNext(); ) {
+            Object handler = i.next();
+
+            if (handler instanceof EscapeSupport) {
+                return (EscapeSupport) handler;
+            }
+        }
+
+        return null;
+    }
+
+    /**
+     * 设置当前正在渲染的引用节点，使转义类型可以被记录在节点中。
+     *
+     * @return 原先的引用节点，渲染结束时须恢复之
+     */
+    public ReferenceNode setCurrentReference(ReferenceNode node) {
+        ReferenceNode savedReference = currentReference;
+        currentReference = node;
+        return savedReference;
+    }
+
+    private static Iterator<?> getReferenceInsertionEventHandlers(InternalContextAdapter context) {
+        EventCartridge ec = context.getEventCartridge();
+
+        if (ec == null) {
+            return null;
+        }
+
+        return ec.getReferenceInsertionEventHandlers();
+    }
+
     private static final Pattern referencePattern = Pattern
             .compile("\\s*\\$\\s*\\!?\\s*(\\{\\s*(.*?)\\s*\\}|(.*?))\\s*");
 
@@ -235,6 +321,26 @@ public class EscapeSupport implements VelocityPlugin, ReferenceInsertionEventHan
         return super.clone();
     }
 
+    /** 可以记录转义类型的引用节点。 */
+    public static interface ReferenceNode {
+        String literal();
+
+        Object getEscapeData();
+
+        void setEscapeData(Object data);
+    }
+
+    /** 记录在引用节点中的转义类型，<code>owner</code>标识计算该值的<code>EscapeSupport</code>配置。 */
+    private static final class ResolvedEscapeType {
+        private final Object     owner;
+        private final EscapeType escapeType;
+
+        private ResolvedEscapeType(Object owner, EscapeType escapeType) {
+            this.owner = owner;
+            this.escapeType = escapeType;
+        }
+    }
+
     public static enum EscapeType {
         NO_ESCAPE("noescape") {
             @Override
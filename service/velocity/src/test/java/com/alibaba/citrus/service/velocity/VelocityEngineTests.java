@@ -39,6 +39,8 @@ import com.alibaba.citrus.service.template.TemplateContext;
 import com.alibaba.citrus.service.template.TemplateException;
 import com.alibaba.citrus.service.template.TemplateNotFoundException;
 import com.alibaba.citrus.service.template.support.MappedTemplateContext;
+import com.alibaba.citrus.service.template.impl.TemplateServiceImpl;
+import com.alibaba.citrus.service.template.support.TemplateChangeWatcher;
 import com.alibaba.citrus.service.velocity.impl.ConditionalEscapeHandler;
 import com.alibaba.citrus.service.velocity.impl.CustomizedUberspectImpl;
 import com.alibaba.citrus.service.velocity.impl.PluginDelegator;
@@ -46,11 +48,17 @@ import com.alibaba.citrus.service.velocity.impl.PreloadedResourceLoader;
 import com.alibaba.citrus.service.velocity.impl.SpringResourceLoaderAdapter;
 import com.alibaba.citrus.service.velocity.impl.VelocityEngineImpl;
 import com.alibaba.citrus.service.velocity.impl.VelocityEngineImpl.RuntimeServicesExposer;
+import com.alibaba.citrus.service.velocity.impl.VelocityResourceManager;
+import com.alibaba.citrus.service.velocity.impl.parser.ASTTextEnhanced;
 import com.alibaba.citrus.service.velocity.support.RenderableHandler;
+import org.apache.velocity.Template;
 import org.apache.velocity.VelocityContext;
 import org.apache.velocity.context.Context;
 import org.apache.velocity.exception.MethodInvocationException;
 import org.apache.velocity.exception.ParseErrorException;
+import org.apache.velocity.runtime.resource.ResourceCache;
+import org.apache.velocity.runtime.resource.ResourceManagerImpl;
+import org.apache.velocity.runtime.parser.node.Node;
 import org.apache.velocity.util.introspection.UberspectImpl;
 import org.junit.BeforeClass;
 import org.junit.Test;
@@ -145,6 +153,60 @@ public class VelocityEngineTests extends AbstractVelocityEngineTests {
         assertProperty("input.encoding", "ISO-8859-1");
     }
 
+    @Test
+    public void withWatch() throws Exception {
+        getEngine("with_watch", factory);
+
+        // velocity本身不再检查模板的改变
+        assertProperty("spring.resource.loader.modificationCheckInterval", "0");
+        assertProperty("preloaded.resource.loader.modificationCheckInterval", "0");
+        assertProperty("resource.manager.class", VelocityResourceManager.class.getName());
+
+        TemplateChangeWatcher watcher = velocityEngine.getConfiguration().getTemplateChangeWatcher();
+        assertNotNull(watcher);
+
+        velocityEngine.mergeTemplate("test.vm", new VelocityContext(), null);
+        assertTrue(watcher.isWatched("test.vm"));
+
+        // 模板被修改时，由watcher通知resource manager清除cache
+        List<?> listeners = getFieldValue(watcher, "listeners", List.class);
+        VelocityResourceManager resourceManager = null;
+
+        for (Object listener : listeners) {
+            if (listener instanceof VelocityResourceManager) {
+                resourceManager = (VelocityResourceManager) listener;
+            }
+        }
+
+        assertNotNull(resourceManager);
+
+        ResourceCache cache = getFieldValue(resourceManager, "globalCache", ResourceCache.class);
+        assertNotNull(cache.get("1test.vm"));
+
+        resourceManager.templateChanged("test.vm");
+        assertNull(cache.get("1test.vm"));
+    }
+
+    @Test
+    public void withPrecompile() throws Exception {
+        getEngine("with_precompile", factory);
+
+        assertThat(Arrays.asList(velocityEngine.getTemplateNames()).toString(),
+                   containsAll("/test.vm", "/test_render.vm", "/macros/hello.vm"));
+
+        // 模板已被预编译，并放在cache中
+        Map<String, Long> times = ((TemplateServiceImpl) templateService).getPrecompiledTemplates();
+
+        assertTrue(times.containsKey("/test.vm"));
+        assertTrue(times.containsKey("/test_render.vm"));
+
+        ResourceManagerImpl resourceManager = getFieldValue(velocityEngine.getRuntimeServices(), "resourceManager",
+                                                            ResourceManagerImpl.class);
+        ResourceCache cache = getFieldValue(resourceManager, "globalCache", ResourceCache.class);
+
+        assertNotNull(cache.get("1/test.vm"));
+    }
+
     @Test
     public void defaultMacros() throws Exception {
         getEngine("default_macros", factory);
@@ -503,6 +565,30 @@ public class VelocityEngineTests extends AbstractVelocityEngineTests {
         assertContent(content);
     }
 
+    @Test
+    public void render_preencodedText() throws Exception {
+        getEngine("templateService", factory);
+
+        // 静态文本节点被替换
+        Template template = velocityEngine.getRuntimeServices().getTemplate("test_render.vm", "GBK");
+        Node root = (Node) template.getData();
+
+        assertTrue(root.jjtGetChild(0) instanceof ASTTextEnhanced);
+
+        // 以不同的字符集输出到字节流，结果和输出到字符流相同
+        VelocityContext ctx = new VelocityContext();
+        ctx.put("world", "世界");
+
+        String expected = velocityEngine.mergeTemplate("test_render.vm", ctx, null);
+
+        for (String charset : new String[] { "UTF-8", "GBK", "UTF-8", "UTF-16" }) {
+            ByteArrayOutputStream baos = new ByteArrayOutputStream();
+            velocityEngine.mergeTemplate("test_render.vm", ctx, baos, null, charset);
+
+            assertEquals(charset, expected, new String(baos.toByteArray(), charset));
+        }
+    }
+
     @Test
     public void render_local_context() throws Exception {
         getEngine("templateService", factory);
@@ -18,10 +18,12 @@
 package com.alibaba.citrus.service.velocity.support;
 
 import static com.alibaba.citrus.test.TestUtil.*;
+import static com.alibaba.citrus.util.CollectionUtil.*;
 import static org.hamcrest.Matchers.*;
 import static org.junit.Assert.*;
 
 import java.lang.reflect.Method;
+import java.util.List;
 import java.util.Locale;
 import java.util.Map;
 
@@ -31,12 +33,15 @@ import com.alibaba.citrus.service.template.support.MappedTemplateContext;
 import com.alibaba.citrus.service.velocity.AbstractVelocityEngineTests;
 import com.alibaba.citrus.service.velocity.VelocityEngineTests.Counter;
 import com.alibaba.citrus.service.velocity.VelocityEngineTests.MyRenderable;
+import com.alibaba.citrus.service.velocity.impl.parser.ASTReferenceEnhanced;
 import com.alibaba.citrus.service.velocity.support.EscapeSupport.EscapeType;
 import com.alibaba.citrus.test.TestUtil;
 import com.alibaba.citrus.util.StringEscapeUtil;
 import com.alibaba.citrus.util.i18n.LocaleUtil;
 import org.apache.velocity.app.event.ReferenceInsertionEventHandler;
+import org.apache.velocity.Template;
 import org.apache.velocity.exception.ParseErrorException;
+import org.apache.velocity.runtime.parser.node.Node;
 import org.junit.After;
 import org.junit.Before;
 import org.junit.BeforeClass;
@@ -353,9 +358,10 @@ public class EscapeTests extends AbstractVelocityEngineTests {
 
         assertTrue(getFieldValue(escapeSupport, "cacheReferences", Boolean.class));
 
+        // 转义类型已被记录在引用节点中，不需要再缓存
         Map<String, EscapeType> cacheReferences = getFieldValue(escapeSupport, "referenceCache", null);
 
-        assertFalse(cacheReferences.isEmpty());
+        assertTrue(cacheReferences.isEmpty());
     }
 
     private void escape_with_rules_internal(ApplicationContext factory) throws Exception {
@@ -392,6 +398,40 @@ public class EscapeTests extends AbstractVelocityEngineTests {
         assertThat(content, containsString("7. <world name=\"'中国'\" />"));
     }
 
+    @Test
+    public void escape_referenceNodeData() throws Exception {
+        escape_with_rules_internal(factory);
+        escape_with_rules_internal(factory);
+
+        Template template = velocityEngine.getRuntimeServices().getTemplate("/escape/test_escape_rules.vm", "GBK");
+        List<ASTReferenceEnhanced> refs = createArrayList();
+
+        findReferences((Node) template.getData(), refs);
+
+        assertEquals(7, refs.size());
+
+        // 按规则计算的转义类型被记录在节点中
+        for (int i = 0; i < 5; i++) {
+            assertNotNull(refs.get(i).literal(), refs.get(i).getEscapeData());
+        }
+
+        // #escape和#noescape中的引用不需要计算
+        assertNull(refs.get(5).getEscapeData());
+        assertNull(refs.get(6).getEscapeData());
+    }
+
+    private void findReferences(Node node, List<ASTReferenceEnhanced> refs) {
+        for (int i = 0; i < node.jjtGetNumChildren(); i++) {
+            Node child = node.jjtGetChild(i);
+
+            if (child instanceof ASTReferenceEnhanced) {
+                refs.add((ASTReferenceEnhanced) child);
+            }
+
+            findReferences(child, refs);
+        }
+    }
+
     @Test
     public void escape_define() throws Exception {
         getEngine("with_defaultEscape", factory);
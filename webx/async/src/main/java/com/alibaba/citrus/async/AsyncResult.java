@@ -0,0 +1,41 @@
+/*
+ * Copyright (c) 2002-2012 Alibaba Group Holding Limited.
+ * All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.alibaba.citrus.async;
+
+/**
+ * 代表一个尚未完成的异步结果，例如：一个异步RPC调用的返回值。
+ * <p>
+ * 假如screen返回一个<code>AsyncResult</code>对象，<code>&lt;performRunnableAsync&gt;</code>将启动servlet异步请求，
+ * 然后立即释放当前线程。在等待结果的期间，不会占用任何线程；当结果完成时，异步子pipeline才会被执行，并以结果作为新的screen result。
+ * </p>
+ * <p>
+ * 实现类也可以同时实现{@link AsyncCallback}接口，以便设置超时时间。
+ * </p>
+ *
+ * @author Michael Zhou
+ * @see SettableAsyncResult
+ */
+public interface AsyncResult<T> {
+    /**
+     * 注册一个回调，当结果完成时被调用。假如结果已经完成，则立即调用之。
+     * <p>
+     * 回调可能在任意线程中被调用，例如完成该结果的I/O线程。
+     * </p>
+     */
+    void addCallback(AsyncResultCallback<? super T> callback);
+}
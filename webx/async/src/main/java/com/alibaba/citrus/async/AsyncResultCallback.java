@@ -0,0 +1,31 @@
+/*
+ * Copyright (c) 2002-2012 Alibaba Group Holding Limited.
+ * All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.alibaba.citrus.async;
+
+/**
+ * 当{@link AsyncResult}完成时被调用。
+ *
+ * @author Michael Zhou
+ */
+public interface AsyncResultCallback<T> {
+    /** 结果成功完成。 */
+    void onSuccess(T result);
+
+    /** 结果以异常结束。 */
+    void onFailure(Throwable exception);
+}
@@ -0,0 +1,107 @@
+/*
+ * Copyright (c) 2002-2012 Alibaba Group Holding Limited.
+ * All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.alibaba.citrus.async;
+
+import static com.alibaba.citrus.util.Assert.ExceptionType.*;
+import static com.alibaba.citrus.util.Assert.*;
+import static com.alibaba.citrus.util.CollectionUtil.*;
+
+import java.util.List;
+
+/**
+ * 一个可由应用程序设置结果的{@link AsyncResult}实现。
+ * <p>
+ * 典型的用法是：在screen中发起异步调用，并返回<code>SettableAsyncResult</code>对象；在异步调用的回调中，调用<code>set()</code>或
+ * <code>setException()</code>以结束请求。
+ * </p>
+ *
+ * @author Michael Zhou
+ */
+public class SettableAsyncResult<T> implements AsyncResult<T> {
+    private final List<AsyncResultCallback<? super T>> callbacks = createLinkedList();
+    private boolean   done;
+    private T         result;
+    private Throwable exception;
+
+    /** 设置结果，并通知所有的回调。 */
+    public void set(T result) {
+        complete(result, null);
+    }
+
+    /** 设置异常，并通知所有的回调。 */
+    public void setException(Throwable exception) {
+        complete(null, assertNotNull(exception, "exception"));
+    }
+
+    /** 结果是否已经完成。 */
+    public synchronized boolean isDone() {
+        return done;
+    }
+
+    public void addCallback(AsyncResultCallback<? super T> callback) {
+        assertNotNull(callback, "callback");
+
+        synchronized (this) {
+            if (!done) {
+                callbacks.add(callback);
+                return;
+            }
+        }
+
+        notifyCallback(callback, result, exception);
+    }
+
+    private void complete(T result, Throwable exception) {
+        List<AsyncResultCallback<? super T>> callbacksToNotify;
+
+        synchronized (this) {
+            assertTrue(!done, ILLEGAL_STATE, "result has already been set");
+
+            this.done = true;
+            this.result = result;
+            this.exception = exception;
+
+            callbacksToNotify = createArrayList(callbacks);
+            callbacks.clear();
+        }
+
+        // 在锁外调用回调，以免回调中再次访问本对象而导致死锁。
+        for (AsyncResultCallback<? super T> callback : callbacksToNotify) {
+            notifyCallback(callback, result, exception);
+        }
+    }
+
+    private void notifyCallback(AsyncResultCallback<? super T> callback, T result, Throwable exception) {
+        if (exception == null) {
+            callback.onSuccess(result);
+        } else {
+            callback.onFailure(exception);
+        }
+    }
+
+    @Override
+    public synchronized String toString() {
+        if (!done) {
+            return "SettableAsyncResult[pending]";
+        } else if (exception != null) {
+            return "SettableAsyncResult[failed: " + exception + "]";
+        } else {
+            return "SettableAsyncResult[" + result + "]";
+        }
+    }
+}
@@ -0,0 +1,189 @@
+/*
+ * Copyright (c) 2002-2012 Alibaba Group Holding Limited.
+ * All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.alibaba.citrus.async.executor;
+
+import static com.alibaba.citrus.util.Assert.*;
+
+import java.lang.reflect.Method;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.scheduling.concurrent.ConcurrentTaskExecutor;
+
+/**
+ * 内置的异步任务执行器。
+ * <p>
+ * 假如JVM支持虚拟线程（JDK 21+），则每个任务都在一个新的虚拟线程中执行，阻塞式的I/O不会占用平台线程；
+ * 否则，退化成一个最多包含<code>maxPoolSize</code>个线程的线程池，超出的任务将排队等待。
+ * 队列的长度不超过<code>queueCapacity</code>，队列满时，新的任务将被拒绝（抛出<code>RejectedExecutionException</code>），
+ * 以免在负载过高时无限制地积压任务。
+ * </p>
+ * <p>
+ * 由于代码须兼容低版本的JDK，虚拟线程的API是通过反射来调用的。
+ * </p>
+ *
+ * @author Michael Zhou
+ */
+public class VirtualThreadTaskExecutor extends ConcurrentTaskExecutor implements DisposableBean {
+    public final static  int    DEFAULT_MAX_POOL_SIZE      = 200;
+    public final static  int    DEFAULT_QUEUE_CAPACITY     = 1000;
+    public final static  String DEFAULT_THREAD_NAME_PREFIX = "async-task-";
+    private final static Logger log                        = LoggerFactory.getLogger(VirtualThreadTaskExecutor.class);
+
+    private final ExecutorService executorService;
+    private final boolean         virtualThreads;
+    private final int             maxPoolSize;
+    private final int             queueCapacity;
+
+    public VirtualThreadTaskExecutor() {
+        this(DEFAULT_THREAD_NAME_PREFIX, DEFAULT_MAX_POOL_SIZE, true);
+    }
+
+    /**
+     * 创建执行器，线程池的队列长度为{@link #DEFAULT_QUEUE_CAPACITY}。
+     *
+     * @param threadNamePrefix 线程名前缀
+     * @param maxPoolSize      当虚拟线程不可用时，线程池的最大线程数
+     * @param preferVirtual    是否优先使用虚拟线程
+     */
+    public VirtualThreadTaskExecutor(String threadNamePrefix, int maxPoolSize, boolean preferVirtual) {
+        this(threadNamePrefix, maxPoolSize, DEFAULT_QUEUE_CAPACITY, preferVirtual);
+    }
+
+    /**
+     * 创建执行器。
+     *
+     * @param threadNamePrefix 线程名前缀
+     * @param maxPoolSize      当虚拟线程不可用时，线程池的最大线程数
+     * @param queueCapacity    当虚拟线程不可用时，线程池中等待执行的任务的最大数量，超出时新的任务将被拒绝
+     * @param preferVirtual    是否优先使用虚拟线程
+     */
+    public VirtualThreadTaskExecutor(String threadNamePrefix, int maxPoolSize, int queueCapacity,
+                                     boolean preferVirtual) {
+        this(preferVirtual ? createVirtualThreadExecutor(threadNamePrefix) : null, threadNamePrefix, maxPoolSize,
+             queueCapacity);
+    }
+
+    private VirtualThreadTaskExecutor(ExecutorService virtualThreadExecutor, String threadNamePrefix, int maxPoolSize,
+                                      int queueCapacity) {
+        this(virtualThreadExecutor != null ? virtualThreadExecutor : createThreadPool(threadNamePrefix, maxPoolSize,
+                                                                                      queueCapacity),
+             virtualThreadExecutor != null, maxPoolSize, queueCapacity);
+    }
+
+    private VirtualThreadTaskExecutor(ExecutorService executorService, boolean virtualThreads, int maxPoolSize,
+                                      int queueCapacity) {
+        super(executorService);
+
+        this.executorService = executorService;
+        this.virtualThreads = virtualThreads;
+        this.maxPoolSize = maxPoolSize;
+        this.queueCapacity = queueCapacity;
+
+        if (virtualThreads) {
+            log.debug("Async tasks will be run on virtual threads");
+        } else {
+            log.debug("Virtual threads are not available, async tasks will be run on a thread pool of max size {}, "
+                      + "queue capacity {}", maxPoolSize, queueCapacity);
+        }
+    }
+
+    /** 是否使用虚拟线程来执行任务。 */
+    public boolean isVirtualThreads() {
+        return virtualThreads;
+    }
+
+    /** 当虚拟线程不可用时，线程池的最大线程数。 */
+    public int getMaxPoolSize() {
+        return maxPoolSize;
+    }
+
+    /** 当虚拟线程不可用时，线程池中等待执行的任务的最大数量。 */
+    public int getQueueCapacity() {
+        return queueCapacity;
+    }
+
+    /** 关闭执行器，并中断所有正在执行的任务。 */
+    public void destroy() {
+        executorService.shutdownNow();
+    }
+
+    /** 判断当前JVM是否支持虚拟线程。 */
+    public static boolean isVirtualThreadsSupported() {
+        try {
+            Thread.class.getMethod("ofVirtual");
+            return true;
+        } catch (NoSuchMethodException e) {
+            return false;
+        }
+    }
+
+    /**
+     * 通过反射调用：
+     * <code>Executors.newThreadPerTaskExecutor(Thread.ofVirtual().name(prefix, 0).factory())</code>。
+     * 如果JVM不支持虚拟线程，则返回<code>null</code>。
+     */
+    static ExecutorService createVirtualThreadExecutor(String threadNamePrefix) {
+        try {
+            Object builder = Thread.class.getMethod("ofVirtual").invoke(null);
+            Class<?> builderClass = Class.forName("java.lang.Thread$Builder");
+
+            builder = builderClass.getMethod("name", String.class, long.class).invoke(builder, threadNamePrefix, 0L);
+
+            ThreadFactory factory = (ThreadFactory) builderClass.getMethod("factory").invoke(builder);
+            Method newExecutor = Executors.class.getMethod("newThreadPerTaskExecutor", ThreadFactory.class);
+
+            return (ExecutorService) newExecutor.invoke(null, factory);
+        } catch (Exception e) {
+            return null;
+        }
+    }
+
+    /** 创建有界的线程池：队列满时，由<code>AbortPolicy</code>拒绝新的任务。 */
+    static ExecutorService createThreadPool(final String threadNamePrefix, int maxPoolSize, int queueCapacity) {
+        assertTrue(maxPoolSize > 0, "maxPoolSize must be greater than 0: %d", maxPoolSize);
+        assertTrue(queueCapacity > 0, "queueCapacity must be greater than 0: %d", queueCapacity);
+
+        BlockingQueue<Runnable> queue = new LinkedBlockingQueue<Runnable>(queueCapacity);
+        ThreadFactory threadFactory = new ThreadFactory() {
+            private final AtomicInteger count = new AtomicInteger();
+
+            public Thread newThread(Runnable r) {
+                Thread thread = new Thread(r, threadNamePrefix + count.getAndIncrement());
+                thread.setDaemon(true);
+                return thread;
+            }
+        };
+
+        ThreadPoolExecutor pool = new ThreadPoolExecutor(maxPoolSize, maxPoolSize, 60L, TimeUnit.SECONDS, queue,
+                                                         threadFactory, new ThreadPoolExecutor.AbortPolicy());
+
+        pool.allowCoreThreadTimeOut(true);
+
+        return pool;
+    }
+}
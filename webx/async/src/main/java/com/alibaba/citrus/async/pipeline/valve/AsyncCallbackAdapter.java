@@ -18,20 +18,27 @@
 package com.alibaba.citrus.async.pipeline.valve;
 
 import static com.alibaba.citrus.util.Assert.*;
+import static com.alibaba.citrus.util.Assert.ExceptionType.*;
 
+import java.lang.reflect.UndeclaredThrowableException;
 import java.util.concurrent.Callable;
 import javax.servlet.AsyncContext;
 
 import com.alibaba.citrus.async.AsyncCallback;
+import com.alibaba.citrus.async.AsyncResult;
 
 class AsyncCallbackAdapter implements Callable<Object>, AsyncCallback {
     private final long         defaultTimeout;
     private final long         defaultCancelingTimeout;
     private final Object       runnable;
     private final AsyncContext asyncContext;
+    private volatile boolean   asyncResultDone;
+    private volatile Object    asyncResultValue;
+    private volatile Throwable asyncResultException;
 
     AsyncCallbackAdapter(Object runnable, AsyncContext asyncContext, long defaultTimeout, long defaultCancelingTimeout) {
-        assertTrue(runnable instanceof Runnable || runnable instanceof Callable<?>, "runnable or callable");
+        assertTrue(runnable instanceof Runnable || runnable instanceof Callable<?> || runnable instanceof AsyncResult<?>,
+                   "runnable, callable or async result");
         this.runnable = runnable;
         this.asyncContext = assertNotNull(asyncContext, "asyncContext");
         this.defaultTimeout = defaultTimeout;
@@ -70,9 +77,39 @@ class AsyncCallbackAdapter implements Callable<Object>, AsyncCallback {
         return asyncContext;
     }
 
+    /** 是否为一个无需占用线程等待的异步结果。 */
+    public boolean isAsyncResult() {
+        return runnable instanceof AsyncResult<?>;
+    }
+
+    public AsyncResult<?> getAsyncResult() {
+        return (AsyncResult<?>) runnable;
+    }
+
+    /** 保存异步结果，以便在子pipeline中通过<code>call()</code>取得。 */
+    void setAsyncResultValue(Object value, Throwable exception) {
+        this.asyncResultValue = value;
+        this.asyncResultException = exception;
+        this.asyncResultDone = true;
+    }
+
     @Override
     public Object call() throws Exception {
-        if (runnable instanceof Runnable) {
+        if (isAsyncResult()) {
+            assertTrue(asyncResultDone, ILLEGAL_STATE, "async result is not done yet");
+
+            Throwable e = asyncResultException;
+
+            if (e == null) {
+                return asyncResultValue;
+            } else if (e instanceof Exception) {
+                throw (Exception) e;
+            } else if (e instanceof Error) {
+                throw (Error) e;
+            } else {
+                throw new UndeclaredThrowableException(e);
+            }
+        } else if (runnable instanceof Runnable) {
             ((Runnable) runnable).run();
             return null;
         } else {
@@ -18,6 +18,7 @@
 package com.alibaba.citrus.async.pipeline.valve;
 
 import static com.alibaba.citrus.service.requestcontext.util.RequestContextUtil.*;
+import static com.alibaba.citrus.util.Assert.*;
 import static com.alibaba.citrus.springext.util.SpringExtUtil.*;
 import static com.alibaba.citrus.util.StringUtil.*;
 
@@ -25,15 +26,21 @@ import java.io.IOException;
 import java.util.concurrent.Callable;
 import java.util.concurrent.CountDownLatch;
 import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
 import javax.servlet.AsyncContext;
 import javax.servlet.AsyncEvent;
 import javax.servlet.AsyncListener;
 import javax.servlet.http.HttpServletRequest;
 import javax.servlet.http.HttpServletResponse;
 
+import com.alibaba.citrus.async.AsyncResult;
+import com.alibaba.citrus.async.AsyncResultCallback;
+import com.alibaba.citrus.async.executor.VirtualThreadTaskExecutor;
 import com.alibaba.citrus.service.pipeline.Pipeline;
 import com.alibaba.citrus.service.pipeline.PipelineContext;
+import com.alibaba.citrus.service.pipeline.PipelineInvocationHandle;
 import com.alibaba.citrus.service.pipeline.Valve;
 import com.alibaba.citrus.service.pipeline.impl.PipelineImpl;
 import com.alibaba.citrus.service.pipeline.support.AbstractValveDefinitionParser;
@@ -42,6 +49,7 @@ import com.alibaba.citrus.service.requestcontext.RequestContextChainingService;
 import com.alibaba.citrus.turbine.pipeline.valve.AbstractInputOutputValve;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.NoSuchBeanDefinitionException;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.config.RuntimeBeanReference;
 import org.springframework.beans.factory.support.BeanDefinitionBuilder;
@@ -51,14 +59,32 @@ import org.w3c.dom.Element;
 
 /**
  * 假如screen返回一个<code>Runnable</code>对象，则在另一个线程中执行之，当前valve立即返回，当前线程继续执行并很快退出。
+ * <p>
+ * 假如screen返回一个{@link AsyncResult}对象，则当前线程同样立即返回，但在结果完成之前不占用任何线程。
+ * 结果完成后，子pipeline才被提交到executor中执行，此时<code>&lt;doPerformRunnable&gt;</code>将直接取得该结果。
+ * </p>
+ * <p>
+ * 默认情况下，使用容器中的<code>AsyncTaskExecutor</code>来执行子pipeline。也可以通过<code>executorType</code>指定内置的执行器：
+ * <code>virtual</code>表示在虚拟线程中执行（JVM不支持时退化成线程池），<code>pool</code>表示在线程池中执行，
+ * 线程池的最大线程数由<code>maxPoolSize</code>指定，等待执行的任务数由<code>queueCapacity</code>指定，超出时请求将被立即结束。
+ * <code>executorType</code>和<code>executor-ref</code>不能同时指定。
+ * </p>
  *
  * @author Michael Zhou
  */
 public class PerformRunnableAsyncValve extends AbstractInputOutputValve {
     final static         String ASYNC_CALLBACK_KEY      = "_async_callback_";
+    final static         String EXECUTOR_TYPE_VIRTUAL   = "virtual";
+    final static         String EXECUTOR_TYPE_POOL      = "pool";
+    private final static Object PENDING                 = "PENDING";
+    private final static Object SUBMITTED               = "SUBMITTED";
+    private final static Object TIMED_OUT               = "TIMED_OUT";
     private final static Logger log                     = LoggerFactory.getLogger(PerformRunnableAsyncValve.class);
     private              long   defaultTimeout          = 0L;
     private              long   defaultCancelingTimeout = 1000L;
+    private              String executorType;
+    private              int    maxPoolSize             = VirtualThreadTaskExecutor.DEFAULT_MAX_POOL_SIZE;
+    private              int    queueCapacity           = VirtualThreadTaskExecutor.DEFAULT_QUEUE_CAPACITY;
 
     @Autowired
     private RequestContextChainingService rccs;
@@ -66,9 +92,11 @@ public class PerformRunnableAsyncValve extends AbstractInputOutputValve {
     @Autowired
     private HttpServletRequest request;
 
-    @Autowired
+    @Autowired(required = false)
     private AsyncTaskExecutor executor;
 
+    private VirtualThreadTaskExecutor builtinExecutor;
+
     private Pipeline asyncPipeline;
 
     public long getDefaultTimeout() {
@@ -87,6 +115,30 @@ public class PerformRunnableAsyncValve extends AbstractInputOutputValve {
         this.defaultCancelingTimeout = defaultCancelingTimeout;
     }
 
+    public String getExecutorType() {
+        return executorType;
+    }
+
+    public void setExecutorType(String executorType) {
+        this.executorType = trimToNull(executorType);
+    }
+
+    public int getMaxPoolSize() {
+        return maxPoolSize;
+    }
+
+    public void setMaxPoolSize(int maxPoolSize) {
+        this.maxPoolSize = maxPoolSize;
+    }
+
+    public int getQueueCapacity() {
+        return queueCapacity;
+    }
+
+    public void setQueueCapacity(int queueCapacity) {
+        this.queueCapacity = queueCapacity;
+    }
+
     public AsyncTaskExecutor getExecutor() {
         return executor;
     }
@@ -110,11 +162,26 @@ public class PerformRunnableAsyncValve extends AbstractInputOutputValve {
 
     @Override
     protected boolean filterInputValue(Object inputValue) {
-        return inputValue instanceof Callable<?> || inputValue instanceof Runnable;
+        return inputValue instanceof Callable<?> || inputValue instanceof Runnable || inputValue instanceof AsyncResult<?>;
     }
 
     @Override
     protected void init() throws Exception {
+        if (executorType != null) {
+            assertTrue(EXECUTOR_TYPE_VIRTUAL.equals(executorType) || EXECUTOR_TYPE_POOL.equals(executorType),
+                       "unknown executorType: %s", executorType);
+
+            builtinExecutor = new VirtualThreadTaskExecutor(VirtualThreadTaskExecutor.DEFAULT_THREAD_NAME_PREFIX,
+                                                            maxPoolSize, queueCapacity,
+                                                            EXECUTOR_TYPE_VIRTUAL.equals(executorType));
+            executor = builtinExecutor;
+        }
+
+        if (executor == null) {
+            throw new NoSuchBeanDefinitionException(AsyncTaskExecutor.class,
+                                                    "no executor specified and executorType is not set");
+        }
+
         if (asyncPipeline == null) {
             DoPerformRunnableValve valve = new DoPerformRunnableValve();
             valve.afterPropertiesSet();
@@ -127,6 +194,14 @@ public class PerformRunnableAsyncValve extends AbstractInputOutputValve {
         }
     }
 
+    @Override
+    protected void dispose() {
+        if (builtinExecutor != null) {
+            builtinExecutor.destroy();
+            builtinExecutor = null;
+        }
+    }
+
     public void invoke(final PipelineContext pipelineContext) throws Exception {
         Object resultObject = consumeInputValue(pipelineContext);
 
@@ -147,32 +222,57 @@ public class PerformRunnableAsyncValve extends AbstractInputOutputValve {
 
         final CountDownLatch signal = new CountDownLatch(1);
 
+        // 子pipeline的状态：PENDING、SUBMITTED、TIMED_OUT，或者提交后的Future对象。
+        // 只有从PENDING切换成功的一方，才可以提交子pipeline或结束请求。
+        final AtomicReference<Object> state = new AtomicReference<Object>(PENDING);
+
+        // 在当前线程中创建子pipeline的invocation handle：
+        // 假如当前valve位于已编译的<if>、<choose>等结构中，pipelineContext是从线程池中借来的，
+        // 创建handle会将其固定下来，避免当前valve返回后被归还、重置，而子pipeline尚未在新线程中执行。
+        final PipelineInvocationHandle handle = asyncPipeline.newInvocation(pipelineContext);
+
         // 执行子pipeline，子pipeline中必须包含DoPerformRunnableValve。
         // 执行前将当前的request/response绑定到新线程中。
-        final Future<?> future = executor.submit(new Callable<Object>() {
+        final Callable<Object> task = new Callable<Object>() {
             public Object call() {
                 try {
                     try {
                         rccs.bind(request);
-                        asyncPipeline.newInvocation(pipelineContext).invoke();
+                        handle.invoke();
                     } finally {
                         rccs.unbind(request);
                     }
                 } catch (Throwable e) {
                     log.error("[" + Thread.currentThread().getName() + "] Exception occurred while doing async task", e);
                 } finally {
-                    try {
-                        asyncContext.complete();
-                    } catch (IllegalStateException e) {
-                        // ignore - 有可能因为超时，该异步请求已经被complete了，再次complete将会抛异常。
-                    }
-
+                    complete(asyncContext);
                     signal.countDown();
                 }
 
                 return null;
             }
-        });
+        };
+
+        if (callback.isAsyncResult()) {
+            // 在结果完成之前，不占用任何线程；结果完成后，才提交子pipeline去执行。
+            callback.getAsyncResult().addCallback(new AsyncResultCallback<Object>() {
+                public void onSuccess(Object result) {
+                    callback.setAsyncResultValue(result, null);
+                    submit();
+                }
+
+                public void onFailure(Throwable exception) {
+                    callback.setAsyncResultValue(null, exception);
+                    submit();
+                }
+
+                private void submit() {
+                    submitTask(task, state, asyncContext, signal);
+                }
+            });
+        } else {
+            submitTask(task, state, asyncContext, signal);
+        }
 
         // 当timeout时中断异步线程，并结束请求
         asyncContext.addListener(new AsyncListener() {
@@ -182,7 +282,19 @@ public class PerformRunnableAsyncValve extends AbstractInputOutputValve {
             public void onTimeout(AsyncEvent event) throws IOException {
                 log.debug("Async task timed out.");
 
-                future.cancel(true);
+                if (state.compareAndSet(PENDING, TIMED_OUT)) {
+                    log.debug("Async result is not completed yet.  Tried to complete the request.");
+
+                    // 子pipeline尚未被提交，并且以后也不会被提交，无需等待，直接结束请求。
+                    complete(event.getAsyncContext());
+                    return;
+                }
+
+                Object future = state.get();
+
+                if (future instanceof Future<?>) {
+                    ((Future<?>) future).cancel(true);
+                }
 
                 try {
                     if (signal.await(callback.getCancelingTimeout(), TimeUnit.MILLISECONDS)) {
@@ -191,11 +303,7 @@ public class PerformRunnableAsyncValve extends AbstractInputOutputValve {
                         log.debug("Async task is still running.  Tried to complete the task.");
 
                         // 通知异步线程结束，过了一定时间以后，如果还没有结束，就强制complete。
-                        try {
-                            event.getAsyncContext().complete();
-                        } catch (IllegalStateException e) {
-                            // ignore - 有可能因为超时，该异步请求已经被complete了，再次complete将会抛异常。
-                        }
+                        complete(event.getAsyncContext());
                     }
                 } catch (InterruptedException e) {
                 }
@@ -211,10 +319,38 @@ public class PerformRunnableAsyncValve extends AbstractInputOutputValve {
         pipelineContext.invokeNext();
     }
 
+    /** 提交子pipeline，除非请求已经超时。如果executor拒绝执行，则立即结束请求。 */
+    private void submitTask(Callable<Object> task, AtomicReference<Object> state, AsyncContext asyncContext,
+                            CountDownLatch signal) {
+        if (!state.compareAndSet(PENDING, SUBMITTED)) {
+            log.debug("Async result completed after the request timed out.  Ignored.");
+            signal.countDown();
+            return;
+        }
+
+        try {
+            state.compareAndSet(SUBMITTED, executor.submit(task));
+        } catch (RejectedExecutionException e) {
+            log.error("Async task was rejected by executor: " + executor, e);
+
+            complete(asyncContext);
+            signal.countDown();
+        }
+    }
+
+    private static void complete(AsyncContext asyncContext) {
+        try {
+            asyncContext.complete();
+        } catch (IllegalStateException e) {
+            // ignore - 有可能因为超时，该异步请求已经被complete了，再次complete将会抛异常。
+        }
+    }
+
     public static class DefinitionParser extends AbstractValveDefinitionParser<PerformRunnableAsyncValve> {
         @Override
         protected void doParse(Element element, ParserContext parserContext, BeanDefinitionBuilder builder) {
-            attributesToProperties(element, builder, "input", "defaultTimeout", "defaultCancelingTimeout");
+            attributesToProperties(element, builder, "input", "defaultTimeout", "defaultCancelingTimeout", "executorType",
+                                  "maxPoolSize", "queueCapacity");
 
             // sub pipeline
             Object asyncPipeline = parsePipeline(element, null, parserContext, null, true);
@@ -226,6 +362,9 @@ public class PerformRunnableAsyncValve extends AbstractInputOutputValve {
             // executor
             String executorRef = trimToNull(element.getAttribute("executor-ref"));
 
+            assertTrue(executorRef == null || trimToNull(element.getAttribute("executorType")) == null,
+                       "executor-ref and executorType cannot be specified at the same time");
+
             if (executorRef != null) {
                 builder.addPropertyValue("executor", new RuntimeBeanReference(executorRef));
             }
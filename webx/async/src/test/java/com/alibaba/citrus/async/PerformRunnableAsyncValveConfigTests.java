@@ -20,6 +20,9 @@ package com.alibaba.citrus.async;
 import static com.alibaba.citrus.test.TestUtil.*;
 import static org.junit.Assert.*;
 
+import java.util.concurrent.Callable;
+
+import com.alibaba.citrus.async.executor.VirtualThreadTaskExecutor;
 import com.alibaba.citrus.async.pipeline.valve.DoPerformRunnableValve;
 import com.alibaba.citrus.async.pipeline.valve.PerformRunnableAsyncValve;
 import com.alibaba.citrus.service.pipeline.impl.PipelineImpl;
@@ -28,7 +31,9 @@ import org.junit.BeforeClass;
 import org.junit.Test;
 import org.springframework.beans.factory.BeanCreationException;
 import org.springframework.beans.factory.NoSuchBeanDefinitionException;
+import org.springframework.context.support.AbstractApplicationContext;
 import org.springframework.core.task.AsyncTaskExecutor;
+import org.springframework.core.task.TaskRejectedException;
 
 public class PerformRunnableAsyncValveConfigTests extends AbstractAsyncTests {
     private AsyncTaskExecutor         executor1;
@@ -60,6 +65,17 @@ public class PerformRunnableAsyncValveConfigTests extends AbstractAsyncTests {
         }
     }
 
+    @Test
+    public void conflictingExecutors() {
+        try {
+            createApplicationContext("performRunnableAsyncValveConfig-conflictingExecutors.xml");
+            fail();
+        } catch (Exception e) {
+            assertThat(e, exception(IllegalArgumentException.class,
+                                    "executor-ref and executorType cannot be specified at the same time"));
+        }
+    }
+
     @Test
     public void autowireExecutor() {
         valve = getValve("pipeline1", 0, PerformRunnableAsyncValve.class);
@@ -141,4 +157,46 @@ public class PerformRunnableAsyncValveConfigTests extends AbstractAsyncTests {
         valve = getValve("pipeline6", 0, PerformRunnableAsyncValve.class);
         assertEquals("myresult", valve.getInputKey());
     }
+
+    @Test
+    public void builtinExecutor() throws Exception {
+        factory = createApplicationContext("performRunnableAsyncValveConfig-builtinExecutor.xml");
+
+        // virtual
+        valve = getValve("pipeline1", 0, PerformRunnableAsyncValve.class);
+        assertEquals("virtual", valve.getExecutorType());
+        assertTrue(valve.getExecutor() instanceof VirtualThreadTaskExecutor);
+
+        VirtualThreadTaskExecutor virtualExecutor = (VirtualThreadTaskExecutor) valve.getExecutor();
+        assertEquals(VirtualThreadTaskExecutor.isVirtualThreadsSupported(), virtualExecutor.isVirtualThreads());
+        assertEquals("ok", virtualExecutor.submit(new Callable<String>() {
+            public String call() {
+                return "ok";
+            }
+        }).get());
+
+        // pool
+        valve = getValve("pipeline2", 0, PerformRunnableAsyncValve.class);
+        assertEquals("pool", valve.getExecutorType());
+        assertEquals(10, valve.getMaxPoolSize());
+        assertEquals(100, valve.getQueueCapacity());
+
+        VirtualThreadTaskExecutor poolExecutor = (VirtualThreadTaskExecutor) valve.getExecutor();
+        assertFalse(poolExecutor.isVirtualThreads());
+        assertEquals(10, poolExecutor.getMaxPoolSize());
+        assertEquals(100, poolExecutor.getQueueCapacity());
+
+        // 关闭context时，关闭内置的executor
+        ((AbstractApplicationContext) factory).close();
+
+        try {
+            poolExecutor.submit(new Callable<String>() {
+                public String call() {
+                    return "ok";
+                }
+            });
+            fail();
+        } catch (TaskRejectedException e) {
+        }
+    }
 }
@@ -25,7 +25,9 @@ import java.util.Arrays;
 import java.util.List;
 import java.util.Locale;
 import java.util.Map;
+import java.io.IOException;
 import java.util.concurrent.Callable;
+import java.util.concurrent.RejectedExecutionException;
 import javax.servlet.AsyncContext;
 import javax.servlet.AsyncEvent;
 import javax.servlet.AsyncListener;
@@ -175,6 +177,19 @@ public class PerformRunnableAsyncValveTests extends AbstractAsyncTests {
         }, "myResultObject", 0);
     }
 
+    @Test
+    public void invoke_insideCompiledIf() throws Exception {
+        // 在已编译的<if>中，valve所在的context从线程池中取得，子pipeline在valve返回以后才被执行
+        pipeline = (PipelineImpl) factory.getBean("pipeline2");
+
+        invokeWithResult(new Callable<Object>() {
+            public Object call() {
+                runnableCalled = true;
+                return "myResultObject";
+            }
+        }, "myResultObject", 0);
+    }
+
     @Test
     public void invoke_resultIsCallable_withTimeout() throws Exception {
         class MyCallable implements Callable<Object>, AsyncCallback {
@@ -215,6 +230,228 @@ public class PerformRunnableAsyncValveTests extends AbstractAsyncTests {
         invokeWithResult(new MyCallable(), "myResultObject", 0L);
     }
 
+    @Test
+    public void invoke_resultIsAsyncResult() throws Exception {
+        SettableAsyncResult<Object> result = new SettableAsyncResult<Object>();
+        AsyncListener listener = invokeWithAsyncResult(result, 0L);
+
+        // 在结果完成之前，不会占用任何线程
+        assertNull(executor1.getCallable());
+
+        result.set("myResultObject");
+
+        assertAsyncResultTaskExecuted(listener, "myResultObject");
+    }
+
+    @Test
+    public void invoke_resultIsAsyncResult_alreadyDone() throws Exception {
+        SettableAsyncResult<Object> result = new SettableAsyncResult<Object>();
+        result.set("myResultObject");
+
+        assertAsyncResultTaskExecuted(invokeWithAsyncResult(result, 0L), "myResultObject");
+    }
+
+    @Test
+    public void invoke_resultIsAsyncResult_withTimeout() throws Exception {
+        class MyAsyncResult extends SettableAsyncResult<Object> implements AsyncCallback {
+            public long getTimeout() {
+                return 1000L;
+            }
+
+            public long getCancelingTimeout() {
+                return 500L;
+            }
+        }
+
+        MyAsyncResult result = new MyAsyncResult();
+        AsyncListener listener = invokeWithAsyncResult(result, 1000L);
+
+        // 在结果完成之前超时，立即结束请求，不需要等待
+        AsyncEvent event = createMock(AsyncEvent.class);
+        reset(asyncContext);
+
+        expect(event.getAsyncContext()).andReturn(asyncContext).once();
+        asyncContext.complete();
+        expectLastCall().once();
+
+        replay(event, asyncContext);
+
+        listener.onTimeout(event);
+
+        verify(event, asyncContext);
+
+        // 超时以后才完成的结果被忽略
+        result.set("myResultObject");
+        assertNull(executor1.getCallable());
+    }
+
+    @Test
+    public void invoke_resultIsAsyncResult_timeoutBeforeSubmitting() throws Exception {
+        TimeoutAsyncResult result = new TimeoutAsyncResult();
+        AsyncListener listener = invokeWithAsyncResult(result, 1000L);
+
+        // 结果的回调开始执行时，请求超时：超时的一方直接结束请求，子pipeline不再被提交
+        AsyncEvent event = expectTimeoutCompletion();
+
+        result.beforeCallback = timeout(listener, event);
+        result.set("myResultObject");
+
+        verify(event, asyncContext);
+        assertNull(executor1.getCallable());
+    }
+
+    @Test
+    public void invoke_resultIsAsyncResult_timeoutWhileSubmitting() throws Exception {
+        TimeoutAsyncResult result = new TimeoutAsyncResult();
+        AsyncListener listener = invokeWithAsyncResult(result, 1000L);
+
+        // 子pipeline正在被提交时，请求超时：超时的一方不能直接结束请求，而是等待子pipeline结束
+        AsyncEvent event = expectTimeoutCompletion();
+
+        executor1.setSubmitHook(timeout(listener, event));
+
+        long start = System.currentTimeMillis();
+        result.set("myResultObject");
+        long duration = System.currentTimeMillis() - start;
+
+        verify(event, asyncContext);
+        assertNotNull(executor1.getCallable());
+        assertTrue(duration >= result.getCancelingTimeout());
+    }
+
+    @Test
+    public void invoke_resultIsAsyncResult_rejected() throws Exception {
+        SettableAsyncResult<Object> result = new SettableAsyncResult<Object>();
+        invokeWithAsyncResult(result, 0L);
+
+        // executor拒绝执行时，立即结束请求
+        reset(asyncContext);
+        asyncContext.complete();
+        expectLastCall().once();
+        replay(asyncContext);
+
+        executor1.setSubmitHook(new Runnable() {
+            public void run() {
+                throw new RejectedExecutionException();
+            }
+        });
+
+        result.set("myResultObject");
+
+        verify(asyncContext);
+        assertNull(executor1.getCallable());
+    }
+
+    @Test
+    public void invoke_resultIsAsyncResult_failed() throws Exception {
+        SettableAsyncResult<Object> result = new SettableAsyncResult<Object>();
+        invokeWithAsyncResult(result, 0L);
+
+        reset(asyncContext);
+        asyncContext.complete(); // 即使失败，asyncContext.complete也会被调用。
+        expectLastCall().once();
+        replay(asyncContext);
+
+        result.setException(new IllegalArgumentException("failed"));
+
+        Callable<?> callable = executor1.getCallable();
+        assertNotNull(callable);
+
+        if (doExecuteTask) {
+            assertNull(new SimpleAsyncTaskExecutor().submit(callable).get());
+            verify(asyncContext);
+        }
+    }
+
+    private AsyncEvent expectTimeoutCompletion() {
+        AsyncEvent event = createMock(AsyncEvent.class);
+        reset(asyncContext);
+
+        expect(event.getAsyncContext()).andReturn(asyncContext).once();
+        asyncContext.complete();
+        expectLastCall().once();
+
+        replay(event, asyncContext);
+
+        return event;
+    }
+
+    private Runnable timeout(final AsyncListener listener, final AsyncEvent event) {
+        return new Runnable() {
+            public void run() {
+                try {
+                    listener.onTimeout(event);
+                } catch (IOException e) {
+                    fail(e.toString());
+                }
+            }
+        };
+    }
+
+    /** 在执行回调之前，调用<code>beforeCallback</code>，以模拟此时发生的超时。 */
+    private static class TimeoutAsyncResult extends SettableAsyncResult<Object> implements AsyncCallback {
+        private Runnable beforeCallback;
+
+        public long getTimeout() {
+            return 1000L;
+        }
+
+        public long getCancelingTimeout() {
+            return 100L;
+        }
+
+        @Override
+        public void addCallback(final AsyncResultCallback<? super Object> callback) {
+            super.addCallback(new AsyncResultCallback<Object>() {
+                public void onSuccess(Object result) {
+                    if (beforeCallback != null) {
+                        beforeCallback.run();
+                    }
+
+                    callback.onSuccess(result);
+                }
+
+                public void onFailure(Throwable exception) {
+                    callback.onFailure(exception);
+                }
+            });
+        }
+    }
+
+    private AsyncListener invokeWithAsyncResult(AsyncResult<?> result, long timeout) throws Exception {
+        executor1.reset();
+        SetScreenResult.set(result);
+
+        asyncContext.setTimeout(timeout);
+        expectLastCall().once();
+
+        Capture<AsyncListener> listenerCap = new Capture<AsyncListener>();
+        asyncContext.addListener(capture(listenerCap));
+        expectLastCall().once();
+
+        replay(asyncContext);
+
+        pipeline.newInvocation().invoke();
+
+        return listenerCap.getValue();
+    }
+
+    private void assertAsyncResultTaskExecuted(AsyncListener listener, Object newResult) throws Exception {
+        Callable<?> callable = executor1.getCallable(); // 结果完成时，executor.submit(callable)被调用
+        assertNotNull(callable);
+
+        reset(asyncContext);
+        asyncContext.complete();
+        expectLastCall().once();
+        replay(asyncContext);
+
+        if (doExecuteTask) {
+            assertNull(new SimpleAsyncTaskExecutor().submit(callable).get());
+            assertEquals(newResult, GetScreenResult.get());
+            verify(asyncContext);
+        }
+    }
+
     private void invokeWithResult(Object result, Object newResult, long timeout) throws Exception {
         SetScreenResult.set(result);
 
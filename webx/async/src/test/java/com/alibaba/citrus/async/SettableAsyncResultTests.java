@@ -0,0 +1,107 @@
+/*
+ * Copyright (c) 2002-2012 Alibaba Group Holding Limited.
+ * All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.alibaba.citrus.async;
+
+import static com.alibaba.citrus.test.TestUtil.*;
+import static com.alibaba.citrus.util.CollectionUtil.*;
+import static org.junit.Assert.*;
+
+import java.util.List;
+
+import org.junit.Before;
+import org.junit.Test;
+
+public class SettableAsyncResultTests {
+    private SettableAsyncResult<String> result;
+    private List<String>                events;
+
+    @Before
+    public void init() {
+        result = new SettableAsyncResult<String>();
+        events = createLinkedList();
+    }
+
+    @Test
+    public void set_callbacksAddedBefore() {
+        result.addCallback(new RecordingCallback("a"));
+        result.addCallback(new RecordingCallback("b"));
+
+        assertFalse(result.isDone());
+        assertEquals("SettableAsyncResult[pending]", result.toString());
+        assertTrue(events.isEmpty());
+
+        result.set("value");
+
+        assertTrue(result.isDone());
+        assertEquals("SettableAsyncResult[value]", result.toString());
+        assertArrayEquals(new String[] { "a: value", "b: value" }, events.toArray());
+    }
+
+    @Test
+    public void set_callbacksAddedAfter() {
+        result.set("value");
+        result.addCallback(new RecordingCallback("a"));
+
+        assertArrayEquals(new String[] { "a: value" }, events.toArray());
+    }
+
+    @Test
+    public void setException() {
+        result.addCallback(new RecordingCallback("a"));
+        result.setException(new IllegalArgumentException("test"));
+        result.addCallback(new RecordingCallback("b"));
+
+        assertEquals("SettableAsyncResult[failed: java.lang.IllegalArgumentException: test]", result.toString());
+        assertArrayEquals(new String[] { "a failed: test", "b failed: test" }, events.toArray());
+
+        try {
+            result.setException(null);
+            fail();
+        } catch (IllegalArgumentException e) {
+            assertThat(e, exception("exception"));
+        }
+    }
+
+    @Test
+    public void setTwice() {
+        result.set("value");
+
+        try {
+            result.set("value2");
+            fail();
+        } catch (IllegalStateException e) {
+            assertThat(e, exception("result has already been set"));
+        }
+    }
+
+    private class RecordingCallback implements AsyncResultCallback<String> {
+        private final String name;
+
+        public RecordingCallback(String name) {
+            this.name = name;
+        }
+
+        public void onSuccess(String result) {
+            events.add(name + ": " + result);
+        }
+
+        public void onFailure(Throwable exception) {
+            events.add(name + " failed: " + exception.getMessage());
+        }
+    }
+}
@@ -0,0 +1,178 @@
+/*
+ * Copyright (c) 2002-2012 Alibaba Group Holding Limited.
+ * All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.alibaba.citrus.async.executor;
+
+import static com.alibaba.citrus.test.TestUtil.*;
+import static org.junit.Assert.*;
+
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.After;
+import org.junit.Test;
+import org.springframework.core.task.TaskRejectedException;
+
+public class VirtualThreadTaskExecutorTests {
+    private VirtualThreadTaskExecutor executor;
+
+    @After
+    public void dispose() {
+        if (executor != null) {
+            executor.destroy();
+        }
+    }
+
+    @Test
+    public void defaultExecutor() throws Exception {
+        executor = new VirtualThreadTaskExecutor();
+
+        assertEquals(VirtualThreadTaskExecutor.isVirtualThreadsSupported(), executor.isVirtualThreads());
+        assertEquals(VirtualThreadTaskExecutor.DEFAULT_MAX_POOL_SIZE, executor.getMaxPoolSize());
+        assertEquals(VirtualThreadTaskExecutor.DEFAULT_QUEUE_CAPACITY, executor.getQueueCapacity());
+
+        Future<String> future = executor.submit(new Callable<String>() {
+            public String call() {
+                return Thread.currentThread().getName();
+            }
+        });
+
+        assertTrue(future.get().startsWith(VirtualThreadTaskExecutor.DEFAULT_THREAD_NAME_PREFIX));
+    }
+
+    @Test
+    public void pool_illegalMaxPoolSize() {
+        try {
+            new VirtualThreadTaskExecutor("test-", 0, false);
+            fail();
+        } catch (IllegalArgumentException e) {
+            assertThat(e, exception("maxPoolSize must be greater than 0: 0"));
+        }
+    }
+
+    @Test
+    public void pool_illegalQueueCapacity() {
+        try {
+            new VirtualThreadTaskExecutor("test-", 1, 0, false);
+            fail();
+        } catch (IllegalArgumentException e) {
+            assertThat(e, exception("queueCapacity must be greater than 0: 0"));
+        }
+    }
+
+    @Test
+    public void pool_rejectedWhenQueueIsFull() throws Exception {
+        executor = new VirtualThreadTaskExecutor("test-", 1, 1, false);
+
+        final CountDownLatch started = new CountDownLatch(1);
+        final CountDownLatch release = new CountDownLatch(1);
+        Runnable blocking = new Runnable() {
+            public void run() {
+                started.countDown();
+
+                try {
+                    release.await();
+                } catch (InterruptedException e) {
+                }
+            }
+        };
+
+        executor.execute(blocking); // 占用唯一的线程
+        assertTrue(started.await(5, TimeUnit.SECONDS));
+
+        executor.execute(blocking); // 进入队列
+
+        try {
+            executor.execute(blocking); // 队列已满
+            fail();
+        } catch (TaskRejectedException e) {
+        }
+
+        release.countDown();
+    }
+
+    @Test
+    public void pool_bounded() throws Exception {
+        executor = new VirtualThreadTaskExecutor("test-", 2, false);
+        assertFalse(executor.isVirtualThreads());
+
+        final AtomicInteger running = new AtomicInteger();
+        final AtomicInteger maxRunning = new AtomicInteger();
+        final List<String> threadNames = new CopyOnWriteArrayList<String>();
+        final CountDownLatch done = new CountDownLatch(6);
+
+        for (int i = 0; i < 6; i++) {
+            executor.execute(new Runnable() {
+                public void run() {
+                    int n = running.incrementAndGet();
+
+                    synchronized (maxRunning) {
+                        maxRunning.set(Math.max(maxRunning.get(), n));
+                    }
+
+                    threadNames.add(Thread.currentThread().getName());
+
+                    try {
+                        Thread.sleep(20);
+                    } catch (InterruptedException e) {
+                    } finally {
+                        running.decrementAndGet();
+                        done.countDown();
+                    }
+                }
+            });
+        }
+
+        assertTrue(done.await(5, TimeUnit.SECONDS));
+        assertTrue(maxRunning.get() <= 2);
+
+        for (String name : threadNames) {
+            assertTrue(name, name.equals("test-0") || name.equals("test-1"));
+        }
+    }
+
+    @Test
+    public void destroy_interruptsRunningTasks() throws Exception {
+        executor = new VirtualThreadTaskExecutor("test-", 1, true);
+
+        final CountDownLatch started = new CountDownLatch(1);
+        final CountDownLatch interrupted = new CountDownLatch(1);
+
+        executor.execute(new Runnable() {
+            public void run() {
+                started.countDown();
+
+                try {
+                    Thread.sleep(10000);
+                } catch (InterruptedException e) {
+                    interrupted.countDown();
+                }
+            }
+        });
+
+        assertTrue(started.await(5, TimeUnit.SECONDS));
+
+        executor.destroy();
+
+        assertTrue(interrupted.await(5, TimeUnit.SECONDS));
+    }
+}
@@ -28,12 +28,29 @@ import org.springframework.core.task.SimpleAsyncTaskExecutor;
 public class FakeAsyncExecutor extends SimpleAsyncTaskExecutor {
     private final static Logger                   log            = LoggerFactory.getLogger(FakeAsyncExecutor.class);
     private final        ThreadLocal<Callable<?>> callableHolder = new ThreadLocal<Callable<?>>();
+    private final        ThreadLocal<Runnable>    submitHook     = new ThreadLocal<Runnable>();
 
     public Callable<?> getCallable() {
         return callableHolder.get();
     }
 
+    public void reset() {
+        callableHolder.remove();
+        submitHook.remove();
+    }
+
+    /** 在提交任务之前调用，可用来模拟并发的超时或拒绝执行。 */
+    public void setSubmitHook(Runnable hook) {
+        submitHook.set(hook);
+    }
+
     public <T> Future<T> submit(Callable<T> task) {
+        Runnable hook = submitHook.get();
+
+        if (hook != null) {
+            hook.run();
+        }
+
         FutureTask<T> future = (FutureTask<T>) super.submit(task);
         callableHolder.set(task);
         return future;
@@ -23,7 +23,9 @@ import java.io.IOException;
 import java.util.Map;
 
 import com.alibaba.citrus.dev.handler.impl.visitor.BeansVisitor;
+import com.alibaba.citrus.dev.handler.impl.visitor.CachesVisitor;
 import com.alibaba.citrus.dev.handler.impl.visitor.ConfigurationsVisitor;
+import com.alibaba.citrus.dev.handler.impl.visitor.PipelinesVisitor;
 import com.alibaba.citrus.dev.handler.impl.visitor.PullToolsVisitor;
 import com.alibaba.citrus.dev.handler.impl.visitor.ResolvableDepsVisitor;
 import com.alibaba.citrus.dev.handler.impl.visitor.ResourcesVisitor;
@@ -45,6 +47,8 @@ public class ExplorerHandler extends AbstractExplorerHandler {
         AVAILABLE_FUNCTIONS.put("Resources", "Resources");
         AVAILABLE_FUNCTIONS.put("URIs", "URIs");
         AVAILABLE_FUNCTIONS.put("PullTools", "Pull Tools");
+        AVAILABLE_FUNCTIONS.put("Pipelines", "Pipelines");
+        AVAILABLE_FUNCTIONS.put("Caches", "Caches");
     }
 
     @Override
@@ -102,5 +106,13 @@ public class ExplorerHandler extends AbstractExplorerHandler {
         public Object visitPullTools(Template pullToolsTemplate) {
             return new PullToolsVisitor(context, this, getService("pullService", PullService.class));
         }
+
+        public Object visitPipelines(Template pipelinesTemplate) {
+            return new PipelinesVisitor(context, this);
+        }
+
+        public Object visitCaches(Template cachesTemplate) {
+            return new CachesVisitor(context, this);
+        }
     }
 }
@@ -0,0 +1,113 @@
+/*
+ * Copyright (c) 2002-2012 Alibaba Group Holding Limited.
+ * All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.alibaba.citrus.dev.handler.impl.visitor;
+
+import static com.alibaba.citrus.util.CollectionUtil.*;
+import static com.alibaba.citrus.util.StringEscapeUtil.*;
+
+import java.lang.management.ManagementFactory;
+import java.util.Map;
+import javax.management.Attribute;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+
+import com.alibaba.citrus.dev.handler.impl.ExplorerHandler.ExplorerVisitor;
+import com.alibaba.citrus.util.collection.BoundedCache;
+import com.alibaba.citrus.util.templatelite.Template;
+import com.alibaba.citrus.webx.handler.RequestHandlerContext;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.context.ApplicationContext;
+
+public class CachesVisitor extends AbstractFallbackVisitor<ExplorerVisitor> {
+    private final static Logger   log        = LoggerFactory.getLogger(CachesVisitor.class);
+    private final static String[] ATTRIBUTES = { "Size", "MaxSize", "HitCount", "MissCount", "EvictionCount",
+                                                 "HitRate" };
+
+    private final Map<String, Map<String, Object>> caches;
+    private String              cacheName;
+    private Map<String, Object> cacheStats;
+
+    public CachesVisitor(RequestHandlerContext context, ExplorerVisitor v) {
+        super(context, v);
+
+        this.caches = createTreeMap();
+
+        // 从platform MBean server中取得当前context及其父context中的BoundedCache的统计数据，
+        // 同一JVM中其它应用的cache不会被列出。
+        MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+
+        try {
+            ApplicationContext currentContext = v.getApplicationContext();
+
+            for (ApplicationContext appcontext = currentContext; appcontext != null; appcontext = appcontext.getParent()) {
+                for (ObjectName name : server.queryNames(BoundedCache.getObjectNamePattern(appcontext), null)) {
+                    Map<String, Object> stats = createHashMap();
+
+                    for (Object attr : server.getAttributes(name, ATTRIBUTES)) {
+                        stats.put(((Attribute) attr).getName(), ((Attribute) attr).getValue());
+                    }
+
+                    String cacheName = ObjectName.unquote(name.getKeyProperty("name"));
+
+                    if (name.getKeyProperty("id") != null) {
+                        cacheName += " (" + name.getKeyProperty("id") + ")";
+                    }
+
+                    // 父context中的cache可能和当前context中的cache同名
+                    if (appcontext != currentContext) {
+                        cacheName += " [" + appcontext.getDisplayName() + "]";
+                    }
+
+                    caches.put(cacheName, stats);
+                }
+            }
+        } catch (Exception e) {
+            log.warn("Could not query caches from MBean server", e);
+        }
+    }
+
+    public void visitCaches(Template cachesNotAvailableTemplate, Template cachesTemplate) {
+        if (caches.isEmpty()) {
+            cachesNotAvailableTemplate.accept(this);
+        } else {
+            cachesTemplate.accept(this);
+        }
+    }
+
+    public void visitCache(Template cacheTemplate) {
+        for (Map.Entry<String, Map<String, Object>> entry : caches.entrySet()) {
+            cacheName = entry.getKey();
+            cacheStats = entry.getValue();
+            cacheTemplate.accept(this);
+        }
+    }
+
+    public void visitCacheName() {
+        out().print(escapeHtml(cacheName));
+    }
+
+    public void visitStat(String attr) {
+        Object value = cacheStats.get(attr);
+
+        if (value instanceof Double) {
+            out().printf("%.1f%%", (Double) value * 100);
+        } else if (value != null) {
+            out().print(value);
+        }
+    }
+}
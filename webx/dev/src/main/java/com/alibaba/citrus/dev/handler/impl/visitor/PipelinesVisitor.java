@@ -0,0 +1,116 @@
+/*
+ * Copyright (c) 2002-2012 Alibaba Group Holding Limited.
+ * All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.alibaba.citrus.dev.handler.impl.visitor;
+
+import static com.alibaba.citrus.util.CollectionUtil.*;
+import static com.alibaba.citrus.util.StringEscapeUtil.*;
+
+import java.util.Map;
+
+import com.alibaba.citrus.dev.handler.impl.ExplorerHandler.ExplorerVisitor;
+import com.alibaba.citrus.service.pipeline.impl.LatencyHistogram;
+import com.alibaba.citrus.service.pipeline.impl.ValveLatencyRecorder;
+import com.alibaba.citrus.util.templatelite.Template;
+import com.alibaba.citrus.webx.handler.RequestHandlerContext;
+
+public class PipelinesVisitor extends AbstractFallbackVisitor<ExplorerVisitor> {
+    private final Map<String, ValveLatencyRecorder> recorders;
+    private String                                  recorderName;
+    private ValveLatencyRecorder                    recorder;
+    private String                                  histogramsTitle;
+    private Map<?, LatencyHistogram>                histograms;
+    private Object                                  histogramName;
+    private LatencyHistogram                        histogram;
+
+    public PipelinesVisitor(RequestHandlerContext context, ExplorerVisitor v) {
+        super(context, v);
+
+        this.recorders = createTreeMap();
+
+        for (Object entry : v.getApplicationContext().getBeansOfType(ValveLatencyRecorder.class).entrySet()) {
+            Map.Entry<?, ?> e = (Map.Entry<?, ?>) entry;
+            recorders.put((String) e.getKey(), (ValveLatencyRecorder) e.getValue());
+        }
+    }
+
+    public void visitRecorders(Template recordersNotAvailableTemplate, Template recordersTemplate) {
+        if (recorders.isEmpty()) {
+            recordersNotAvailableTemplate.accept(this);
+        } else {
+            recordersTemplate.accept(this);
+        }
+    }
+
+    public void visitRecorder(Template recorderTemplate) {
+        for (Map.Entry<String, ValveLatencyRecorder> entry : recorders.entrySet()) {
+            recorderName = entry.getKey();
+            recorder = entry.getValue();
+            recorderTemplate.accept(this);
+        }
+    }
+
+    public void visitRecorderName() {
+        out().print(escapeHtml(recorderName));
+    }
+
+    public void visitHistograms(Template histogramsTemplate) {
+        histogramsTitle = "Pipelines";
+        histograms = recorder.getPipelineHistograms();
+        histogramsTemplate.accept(this);
+
+        histogramsTitle = "Valves (excluding subsequent valves)";
+        histograms = recorder.getValveHistograms();
+        histogramsTemplate.accept(this);
+
+        histogramsTitle = "Levels";
+        histograms = recorder.getLevelHistograms();
+        histogramsTemplate.accept(this);
+    }
+
+    public void visitHistogramsTitle() {
+        out().print(histogramsTitle);
+    }
+
+    public void visitHistogram(Template histogramTemplate) {
+        for (Map.Entry<?, LatencyHistogram> entry : histograms.entrySet()) {
+            histogramName = entry.getKey();
+            histogram = entry.getValue();
+            histogramTemplate.accept(this);
+        }
+    }
+
+    public void visitHistogramName() {
+        out().print(escapeHtml(String.valueOf(histogramName)));
+    }
+
+    public void visitCount() {
+        out().print(histogram.getCount());
+    }
+
+    public void visitMean() {
+        out().print(histogram.getMeanMicros());
+    }
+
+    public void visitPercentile(String percentile) {
+        out().print(histogram.getPercentileMicros(Double.parseDouble(percentile)));
+    }
+
+    public void visitMax() {
+        out().print(histogram.getMaxMicros());
+    }
+}
@@ -17,6 +17,7 @@
 
 package com.alibaba.citrus.turbine.pipeline.valve;
 
+import static com.alibaba.citrus.service.requestcontext.util.RequestContextUtil.*;
 import static com.alibaba.citrus.turbine.TurbineConstant.*;
 import static com.alibaba.citrus.turbine.util.TurbineUtil.*;
 import static com.alibaba.citrus.util.Assert.*;
@@ -31,6 +32,7 @@ import com.alibaba.citrus.service.pipeline.PipelineContext;
 import com.alibaba.citrus.service.pipeline.support.AbstractValve;
 import com.alibaba.citrus.service.pipeline.support.AbstractValveDefinitionParser;
 import com.alibaba.citrus.service.requestcontext.buffered.BufferedRequestContext;
+import com.alibaba.citrus.service.requestcontext.buffered.StreamingBufferedRequestContext;
 import com.alibaba.citrus.service.template.TemplateException;
 import com.alibaba.citrus.service.template.TemplateService;
 import com.alibaba.citrus.turbine.Context;
@@ -78,7 +80,14 @@ public class RenderTemplateValve extends AbstractValve {
 
                 if (templateService.exists(layoutTemplate)) {
                     String screenContent = defaultIfNull(bufferedRequestContext.popCharBuffer(), EMPTY_STRING);
-                    context.put(SCREEN_PLACEHOLDER_KEY, screenContent);
+                    StreamingBufferedRequestContext streamingContext = findRequestContext(request,
+                                                                                          StreamingBufferedRequestContext.class);
+
+                    if (streamingContext != null && streamingContext.isStreaming()) {
+                        context.put(SCREEN_PLACEHOLDER_KEY, new StreamingScreenPlaceholder(streamingContext, screenContent));
+                    } else {
+                        context.put(SCREEN_PLACEHOLDER_KEY, screenContent);
+                    }
 
                     renderTemplate(layoutTemplate, context, rundata);
                 }
@@ -107,6 +116,45 @@ public class RenderTemplateValve extends AbstractValve {
         }
     }
 
+    /**
+     * 在streaming模式下代表screen的内容。
+     * <p>
+     * 当layout渲染到screen所在的位置时，先将layout已渲染的内容提交给servlet容器，此后layout的内容将被逐步提交。
+     * </p>
+     */
+    private static class StreamingScreenPlaceholder implements CharSequence {
+        private final StreamingBufferedRequestContext streamingContext;
+        private final String                          screenContent;
+        private       boolean                         flushed;
+
+        private StreamingScreenPlaceholder(StreamingBufferedRequestContext streamingContext, String screenContent) {
+            this.streamingContext = streamingContext;
+            this.screenContent = screenContent;
+        }
+
+        public int length() {
+            return screenContent.length();
+        }
+
+        public char charAt(int index) {
+            return screenContent.charAt(index);
+        }
+
+        public CharSequence subSequence(int start, int end) {
+            return screenContent.subSequence(start, end);
+        }
+
+        @Override
+        public String toString() {
+            if (!flushed) {
+                flushed = true;
+                streamingContext.flush();
+            }
+
+            return screenContent;
+        }
+    }
+
     public static class DefinitionParser extends AbstractValveDefinitionParser<RenderTemplateValve> {
     }
 }
@@ -63,13 +63,21 @@ public class PullableMappedContext extends MappedContext {
 
     @Override
     protected Set<String> internalKeySet() {
+        Set<String> keys = super.internalKeySet();
+
         if (pullContext == null) {
-            return super.internalKeySet();
-        } else {
-            Set<String> keys = createHashSet(super.internalKeySet());
-            keys.addAll(pullContext.getToolNames());
             return keys;
         }
+
+        // 如果context为空，则直接返回pull tools的名称表，不必复制
+        if (keys.isEmpty()) {
+            return pullContext.getToolNames();
+        }
+
+        keys = createHashSet(keys);
+        keys.addAll(pullContext.getToolNames());
+
+        return keys;
     }
 
     public Set<String> keySetWithoutPulling() {
@@ -24,6 +24,7 @@ import static org.junit.Assert.*;
 import com.alibaba.citrus.service.pipeline.PipelineException;
 import com.alibaba.citrus.service.pipeline.impl.PipelineImpl;
 import com.alibaba.citrus.service.requestcontext.buffered.BufferedRequestContext;
+import com.alibaba.citrus.service.requestcontext.buffered.StreamingBufferedRequestContext;
 import com.alibaba.citrus.service.requestcontext.util.RequestContextUtil;
 import com.alibaba.citrus.service.template.TemplateNotFoundException;
 import com.alibaba.citrus.turbine.TurbineConstant;
@@ -87,6 +88,30 @@ public class RenderTemplateValveTests extends AbstractValveTests {
         assertEquals("hello and layout2", text);
     }
 
+    @Test
+    public void render_streaming() throws Exception {
+        getInvocationContext("http://localhost/app1/aaa/bbb/myModule.vm");
+        initRequestContext();
+
+        StreamingBufferedRequestContext streamingContext = findRequestContext(newRequest,
+                                                                              StreamingBufferedRequestContext.class);
+        streamingContext.setStreaming(true);
+
+        rundata.setLayout("aaa/bbb/streaming");
+        pipeline.newInvocation().invoke();
+
+        assertEquals("hello", rundata.getContext().get(TurbineConstant.SCREEN_PLACEHOLDER_KEY).toString());
+
+        // layout渲染到screen时，之前的内容已被提交
+        String text = streamingContext.popCharBuffer();
+        assertEquals("hello and after", text);
+
+        rundata.getResponse().getWriter().write(text);
+
+        WebResponse webResponse = commitRequestContext();
+        assertEquals("layout before hello and after", webResponse.getText());
+    }
+
     @Test
     public void render_template_not_found() throws Exception {
         // template not found